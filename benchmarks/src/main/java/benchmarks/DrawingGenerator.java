@@ -0,0 +1,147 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.Polygon;
+import figures.enums.FigureType;
+import figures.enums.LineType;
+
+/**
+ * Générateur de dessins synthétiques pour les benchmarks.
+ * Les figures sont créées au travers de l'API du modèle
+ * ({@link Drawing#initiateFigure(Point2D)}, {@link Figure#setLastPoint(Point2D)}
+ * puis {@link Figure#normalize()}) comme le feraient les listeners de
+ * création, avec des couleurs et des types de traits variés.
+ * @author davidroussel
+ */
+public class DrawingGenerator
+{
+	/**
+	 * Couleurs utilisées pour le remplissage et les traits
+	 */
+	private static final Paint[] Paints = {
+		Color.black, Color.blue, Color.cyan, Color.green, Color.magenta,
+		Color.orange, Color.pink, Color.red, Color.white, Color.yellow
+	};
+
+	/**
+	 * Taille maximale (en pixels) des figures générées
+	 */
+	private static final double MaxFigureSize = 60.0;
+
+	/**
+	 * Surface moyenne (côté en pixels) disponible pour chaque figure dans les
+	 * dessins générés par {@link #generate(int)} afin que la densité de
+	 * figures reste la même quel que soit leur nombre
+	 */
+	private static final double Spacing = 40.0;
+
+	/**
+	 * Graine utilisée par {@link #generate(int)}
+	 */
+	public static final long DefaultSeed = 42L;
+
+	/**
+	 * Côté de la zone (carrée) occupée par un dessin de count figures généré
+	 * par {@link #generate(int)}
+	 * @param count le nombre de figures
+	 * @return le côté de la zone contenant les figures
+	 */
+	public static double extent(int count)
+	{
+		return Math.ceil(Math.sqrt(count) * Spacing);
+	}
+
+	/**
+	 * Génération d'un dessin reproductible de densité constante
+	 * @param count le nombre de figures à générer
+	 * @return un nouveau dessin contenant count figures réparties dans un
+	 * carré de côté {@link #extent(int)}
+	 */
+	public static Drawing generate(int count)
+	{
+		double side = extent(count);
+		return generate(count, side, side, DefaultSeed);
+	}
+
+	/**
+	 * Génération d'un dessin contenant toutes les sortes de figures
+	 * disponibles ({@link FigureType} pour lesquels
+	 * {@link FigureType#getFigure} fournit une figure).
+	 * @param count le nombre de figures à générer
+	 * @param width la largeur de la zone dans laquelle placer les figures
+	 * @param height la hauteur de la zone dans laquelle placer les figures
+	 * @param seed la graine du générateur aléatoire (pour des dessins
+	 * reproductibles)
+	 * @return un nouveau dessin contenant count figures
+	 */
+	public static Drawing generate(int count, double width, double height,
+	                               long seed)
+	{
+		Random random = new Random(seed);
+		Drawing drawing = new Drawing();
+		List<FigureType> types = new ArrayList<FigureType>();
+		for (FigureType type : FigureType.values())
+		{
+			drawing.setFigureType(type);
+			if (drawing.initiateFigure(new Point2D.Double()) != null)
+			{
+				types.add(type);
+			}
+		}
+		drawing.clear();
+
+		LineType[] lineTypes = LineType.values();
+		for (int i = 0; i < count; i++)
+		{
+			drawing.setFigureType(types.get(i % types.size()));
+			drawing.setFillPaint(Paints[random.nextInt(Paints.length)]);
+			drawing.setEdgePaint(Paints[random.nextInt(Paints.length)]);
+			drawing.setEdgeType(lineTypes[random.nextInt(lineTypes.length)]);
+			drawing.setEdgeWidth(1 + random.nextInt(4));
+
+			double x = random.nextDouble() * width;
+			double y = random.nextDouble() * height;
+			Figure figure = drawing.initiateFigure(new Point2D.Double(x, y));
+			double w = 2.0 + (random.nextDouble() * MaxFigureSize);
+			double h = 2.0 + (random.nextDouble() * MaxFigureSize);
+			if (figure instanceof Polygon)
+			{
+				Polygon polygon = (Polygon) figure;
+				int vertices = 3 + random.nextInt(6);
+				for (int v = 1; v < vertices; v++)
+				{
+					double angle = (2.0 * Math.PI * v) / vertices;
+					polygon.addPoint((int) (x + (w * Math.cos(angle))),
+					                 (int) (y + (h * Math.sin(angle))));
+				}
+			}
+			else
+			{
+				figure.setLastPoint(new Point2D.Double(x + w, y + h));
+			}
+			figure.normalize();
+			drawing.update(figure);
+		}
+
+		return drawing;
+	}
+
+	/**
+	 * Liste des figures d'un dessin (dans l'ordre de dessin)
+	 * @param drawing le dessin
+	 * @return une nouvelle liste contenant les figures du dessin
+	 */
+	public static List<Figure> figures(Drawing drawing)
+	{
+		return drawing.stream().collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,132 @@
+package benchmarks;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import export.TiledExporter;
+
+/**
+ * Benchmark de l'export PNG par tuiles ({@link TiledExporter}) d'un grand
+ * dessin dans une image carrée (jusqu'à 14142 x 14142 soit 200 Mpixels)
+ * selon le nombre de threads utilisés. L'image produite est comptée mais pas
+ * conservée.
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class ExportBenchmark
+{
+	/**
+	 * Flux comptant les octets écrits
+	 */
+	private static class CountingOutputStream extends OutputStream
+	{
+		/**
+		 * Nombre d'octets écrits
+		 */
+		long count = 0;
+
+		@Override
+		public void write(int b)
+		{
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len)
+		{
+			count += len;
+		}
+	}
+
+	/**
+	 * Nombre de figures du dessin
+	 */
+	@Param({"100000"})
+	public int figureCount;
+
+	/**
+	 * Taille (en pixels) du côté de l'image produite
+	 */
+	@Param({"4096", "14142"})
+	public int imageSize;
+
+	/**
+	 * Nombre de threads de rendu
+	 */
+	@Param({"1", "2", "4", "8"})
+	public int parallelism;
+
+	/**
+	 * L'exporteur
+	 */
+	private TiledExporter exporter;
+
+	/**
+	 * Le pool de threads de l'exporteur
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * La zone du dessin à exporter
+	 */
+	private Rectangle2D area;
+
+	/**
+	 * Génération du dessin et mise en place de l'exporteur
+	 */
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		pool = new ForkJoinPool(parallelism);
+		exporter = new TiledExporter(DrawingGenerator.generate(figureCount));
+		exporter.setPool(pool);
+		exporter.setCompressionLevel(Deflater.BEST_SPEED);
+		area = exporter.getExtent();
+	}
+
+	/**
+	 * Arrêt du pool de threads
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		pool.shutdown();
+	}
+
+	/**
+	 * Export complet de l'image
+	 * @return le nombre d'octets de l'image produite
+	 * @throws IOException si l'export échoue
+	 */
+	@Benchmark
+	public long export() throws IOException
+	{
+		CountingOutputStream out = new CountingOutputStream();
+		double scale = imageSize / Math.max(area.getWidth(), area.getHeight());
+		exporter.export(area, scale, out);
+		return out.count;
+	}
+}
@@ -0,0 +1,155 @@
+package benchmarks;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Paint;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import figures.Figure;
+import figures.enums.LineType;
+import utils.PaintFactory;
+import utils.StrokeFactory;
+
+/**
+ * Benchmark des flyweight factories {@link PaintFactory} et
+ * {@link StrokeFactory} sollicitées pour chaque figure lors de sa création
+ * ou de sa copie (historique).
+ * Chaque appel de benchmark recherche dans la factory des instances
+ * égales (mais distinctes) aux paints et strokes de toutes les figures d'un
+ * dessin : le temps mesuré correspond donc à figureCount recherches.
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class FactoryBenchmark
+{
+	/**
+	 * Nombre de figures du dessin
+	 */
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int figureCount;
+
+	/**
+	 * Copies des couleurs de remplissage des figures
+	 */
+	private Paint[] paints;
+
+	/**
+	 * Copies des traits des figures
+	 */
+	private BasicStroke[] strokes;
+
+	/**
+	 * Types de traits des figures
+	 */
+	private LineType[] lineTypes;
+
+	/**
+	 * Épaisseurs de traits des figures
+	 */
+	private float[] widths;
+
+	/**
+	 * Génération d'un dessin et copie des caractéristiques graphiques de ses
+	 * figures
+	 */
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		List<Figure> figures =
+		    DrawingGenerator.figures(DrawingGenerator.generate(figureCount));
+		int count = figures.size();
+		paints = new Paint[count];
+		strokes = new BasicStroke[count];
+		lineTypes = new LineType[count];
+		widths = new float[count];
+
+		for (int i = 0; i < count; i++)
+		{
+			Figure figure = figures.get(i);
+			Paint fill = figure.getFillPaint();
+			if (fill instanceof Color)
+			{
+				paints[i] = new Color(((Color) fill).getRGB(), true);
+			}
+			else
+			{
+				paints[i] = fill;
+			}
+			BasicStroke stroke = figure.getStroke();
+			if (stroke != null)
+			{
+				strokes[i] = new BasicStroke(stroke.getLineWidth(),
+				                             stroke.getEndCap(),
+				                             stroke.getLineJoin(),
+				                             stroke.getMiterLimit(),
+				                             stroke.getDashArray(),
+				                             stroke.getDashPhase());
+				widths[i] = stroke.getLineWidth();
+			}
+			else
+			{
+				widths[i] = 1.0f;
+			}
+			lineTypes[i] = LineType.fromStroke(stroke);
+		}
+	}
+
+	/**
+	 * Recherche des paints dans la {@link PaintFactory}
+	 * @param blackhole consommateur des paints obtenus
+	 */
+	@Benchmark
+	public void getPaint(Blackhole blackhole)
+	{
+		for (Paint paint : paints)
+		{
+			blackhole.consume(PaintFactory.getPaint(paint));
+		}
+	}
+
+	/**
+	 * Recherche des strokes dans la {@link StrokeFactory}
+	 * @param blackhole consommateur des strokes obtenus
+	 */
+	@Benchmark
+	public void getStroke(Blackhole blackhole)
+	{
+		for (BasicStroke stroke : strokes)
+		{
+			blackhole.consume(StrokeFactory.getStroke(stroke));
+		}
+	}
+
+	/**
+	 * Obtention des strokes à partir du type et de l'épaisseur de trait
+	 * @param blackhole consommateur des strokes obtenus
+	 */
+	@Benchmark
+	public void getStrokeByType(Blackhole blackhole)
+	{
+		for (int i = 0; i < lineTypes.length; i++)
+		{
+			blackhole.consume(StrokeFactory.getStroke(lineTypes[i], widths[i]));
+		}
+	}
+}
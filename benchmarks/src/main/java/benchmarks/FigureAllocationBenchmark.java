@@ -0,0 +1,108 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import figures.Drawing;
+import figures.Figure;
+
+/**
+ * Mesure du taux d'allocation des chemins chauds de {@link Figure}
+ * ({@link Figure#draw(Graphics2D)}, {@link Figure#contains(Point2D)},
+ * {@link Figure#getBounds2D()} et {@link Figure#getCenter()}) sur un dessin
+ * de 100 000 figures.
+ * Utilise le compteur d'octets alloués par thread de la JVM HotSpot
+ * ({@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}).
+ * Lancement : java -cp bin:benchmarks/target/classes
+ * benchmarks.FigureAllocationBenchmark [nbFigures]
+ * @author davidroussel
+ */
+public class FigureAllocationBenchmark
+{
+	/**
+	 * Nombre de passes mesurées pour chaque opération
+	 */
+	private static final int Passes = 5;
+
+	/**
+	 * Opération mesurée sur chacune des figures du dessin
+	 */
+	private interface FigureOperation
+	{
+		void apply(Figure figure, Point2D p);
+	}
+
+	/**
+	 * Programme principal
+	 * @param args [nombre de figures] (100 000 par défaut)
+	 */
+	public static void main(String[] args)
+	{
+		int count = (args.length > 0 ? Integer.parseInt(args[0]) : 100_000);
+		Drawing drawing = DrawingGenerator.generate(count, 4000, 4000, 42L);
+		List<Figure> figures = DrawingGenerator.figures(drawing);
+
+		BufferedImage image =
+		    new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2D = image.createGraphics();
+		g2D.setColor(Color.WHITE);
+		Point2D p = new Point2D.Double(2000.0, 2000.0);
+
+		System.out.println("Figures : " + figures.size());
+		measure("draw", figures, p, (Figure f, Point2D q) -> f.draw(g2D));
+		measure("contains", figures, p, (Figure f, Point2D q) -> f.contains(q));
+		measure("getBounds2D", figures, p, (Figure f, Point2D q) -> f.getBounds2D());
+		measure("getCenter", figures, p, (Figure f, Point2D q) -> f.getCenter());
+		measure("getFigureAt", figures, p,
+		        (Figure f, Point2D q) -> drawing.getFigureAt(f.getCenter()));
+		g2D.dispose();
+	}
+
+	/**
+	 * Mesure et affichage du nombre d'octets alloués par opération ainsi que
+	 * du débit d'une opération appliquée à toutes les figures
+	 * @param name le nom de l'opération
+	 * @param figures les figures
+	 * @param p le point de test
+	 * @param operation l'opération à mesurer
+	 */
+	private static void measure(String name,
+	                            List<Figure> figures,
+	                            Point2D p,
+	                            FigureOperation operation)
+	{
+		com.sun.management.ThreadMXBean bean =
+		    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long tid = Thread.currentThread().getId();
+
+		// Passe de chauffe (et remplissage des éventuels caches)
+		for (Figure f : figures)
+		{
+			operation.apply(f, p);
+		}
+
+		long bytes0 = bean.getThreadAllocatedBytes(tid);
+		long t0 = System.nanoTime();
+		for (int pass = 0; pass < Passes; pass++)
+		{
+			for (Figure f : figures)
+			{
+				operation.apply(f, p);
+			}
+		}
+		long t1 = System.nanoTime();
+		long bytes1 = bean.getThreadAllocatedBytes(tid);
+
+		double ops = (double) Passes * figures.size();
+		double seconds = (t1 - t0) / 1e9;
+		System.out.printf("%-12s %10.1f B/op %12.0f ops/s %10.1f MB/s%n",
+		                  name,
+		                  (bytes1 - bytes0) / ops,
+		                  ops / seconds,
+		                  ((bytes1 - bytes0) / seconds) / (1024.0 * 1024.0));
+	}
+}
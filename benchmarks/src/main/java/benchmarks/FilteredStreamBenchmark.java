@@ -0,0 +1,117 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import figures.Drawing;
+import figures.enums.FigureType;
+import figures.enums.LineType;
+import filters.FillColorFilter;
+import filters.LineFilter;
+import filters.ShapeFilter;
+
+/**
+ * Benchmark du parcours (éventuellement filtré) des figures d'un dessin au
+ * travers de {@link Drawing#stream()} et {@link Drawing#stream(Rectangle2D)}
+ * tel qu'il est réalisé à chaque rafraîchissement du panel de dessin.
+ * Le temps mesuré est celui du parcours de l'ensemble du flux.
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class FilteredStreamBenchmark
+{
+	/**
+	 * Nombre de figures du dessin
+	 */
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int figureCount;
+
+	/**
+	 * Filtres actifs :
+	 * <ul>
+	 * <li>none : filtrage désactivé</li>
+	 * <li>shape : figures de type cercle ou rectangle</li>
+	 * <li>all : type de figure + couleur de remplissage + type de trait</li>
+	 * </ul>
+	 */
+	@Param({"none", "shape", "all"})
+	public String filters;
+
+	/**
+	 * Le dessin
+	 */
+	private Drawing drawing;
+
+	/**
+	 * Zone de dessin visible (taille typique d'une fenêtre)
+	 */
+	private Rectangle2D viewport;
+
+	/**
+	 * Génération du dessin et mise en place des filtres
+	 */
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		drawing = DrawingGenerator.generate(figureCount);
+		viewport = new Rectangle2D.Double(0.0, 0.0, 1600.0, 1200.0);
+
+		switch (filters)
+		{
+			case "all":
+				drawing.setFillColorFilter(new FillColorFilter(Color.red));
+				drawing.addLineFilter(new LineFilter(LineType.SOLID));
+				drawing.addLineFilter(new LineFilter(LineType.DASHED));
+				// falls through
+			case "shape":
+				drawing.addShapeFilter(new ShapeFilter(FigureType.CIRCLE));
+				drawing.addShapeFilter(new ShapeFilter(FigureType.RECTANGLE));
+				drawing.setFiltering(true);
+				break;
+			default:
+				drawing.setFiltering(false);
+				break;
+		}
+	}
+
+	/**
+	 * Parcours de toutes les figures (éventuellement filtrées)
+	 * @param blackhole consommateur des figures parcourues
+	 */
+	@Benchmark
+	public void stream(Blackhole blackhole)
+	{
+		drawing.stream().forEach(blackhole::consume);
+	}
+
+	/**
+	 * Parcours des figures (éventuellement filtrées) intersectant la zone
+	 * visible
+	 * @param blackhole consommateur des figures parcourues
+	 */
+	@Benchmark
+	public void streamViewport(Blackhole blackhole)
+	{
+		drawing.stream(viewport).forEach(blackhole::consume);
+	}
+}
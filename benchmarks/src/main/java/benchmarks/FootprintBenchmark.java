@@ -0,0 +1,99 @@
+package benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.FigureStore;
+
+/**
+ * Benchmark du coût d'un grand dessin pour le ramasse miettes : durée d'un
+ * GC complet lorsque le dessin est vivant, selon que ses figures sont des
+ * objets {@link figures.Figure} ou bien rangées en colonnes
+ * ({@link FigureStore}, voir {@link Drawing#compact()}), avant et après un
+ * rendu complet du dessin (qui matérialise toutes les figures stockées en
+ * colonnes, celles-ci devant ensuite pouvoir être récupérées par le GC).
+ * La mémoire occupée après le GC est renvoyée par le benchmark (et peut être
+ * observée avec le profileur "gc" de JMH).
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx3g"})
+public class FootprintBenchmark
+{
+	/**
+	 * Nombre de figures du dessin
+	 */
+	@Param({"1000000"})
+	public int figureCount;
+
+	/**
+	 * Stockage des figures : "objects" ou "columnar"
+	 */
+	@Param({"objects", "columnar"})
+	public String storage;
+
+	/**
+	 * Rendu complet du dessin avant les mesures
+	 */
+	@Param({"false", "true"})
+	public boolean painted;
+
+	/**
+	 * Le dessin (maintenu vivant pendant les mesures)
+	 */
+	private Drawing drawing;
+
+	/**
+	 * Génération du dessin, rangement éventuel en colonnes puis rendu
+	 * éventuel de toutes les figures
+	 */
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		drawing = DrawingGenerator.generate(figureCount);
+		if (storage.equals("columnar"))
+		{
+			drawing.compact();
+		}
+		if (painted)
+		{
+			BufferedImage image =
+			    new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g2D = image.createGraphics();
+			drawing.stream().forEach((Figure figure) -> figure.draw(g2D));
+			g2D.dispose();
+		}
+	}
+
+	/**
+	 * GC complet avec le dessin vivant
+	 * @return la mémoire occupée après le GC (en octets)
+	 */
+	@Benchmark
+	public long fullGc()
+	{
+		System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,93 @@
+package benchmarks;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import figures.Drawing;
+import figures.Figure;
+
+/**
+ * Benchmark de la recherche de la figure située sous le pointeur de la
+ * souris ({@link Drawing#getFigureAt(Point2D)}) utilisée par le panneau
+ * d'informations et les listeners de transformation.
+ * Les points de test sont tirés aléatoirement dans la zone du dessin.
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class GetFigureAtBenchmark
+{
+	/**
+	 * Nombre de points de test (puissance de 2)
+	 */
+	private static final int NbPoints = 1024;
+
+	/**
+	 * Nombre de figures du dessin
+	 */
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int figureCount;
+
+	/**
+	 * Le dessin
+	 */
+	private Drawing drawing;
+
+	/**
+	 * Les points de test
+	 */
+	private Point2D[] points;
+
+	/**
+	 * Index du prochain point de test
+	 */
+	private int next;
+
+	/**
+	 * Génération du dessin et des points de test
+	 */
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		drawing = DrawingGenerator.generate(figureCount);
+		double side = DrawingGenerator.extent(figureCount);
+		Random random = new Random(DrawingGenerator.DefaultSeed);
+		points = new Point2D[NbPoints];
+		for (int i = 0; i < NbPoints; i++)
+		{
+			points[i] = new Point2D.Double(random.nextDouble() * side,
+			                               random.nextDouble() * side);
+		}
+		next = 0;
+	}
+
+	/**
+	 * Recherche de la figure sous un point de test
+	 * @return la figure trouvée (ou null)
+	 */
+	@Benchmark
+	public Figure getFigureAt()
+	{
+		Point2D p = points[next];
+		next = (next + 1) & (NbPoints - 1);
+		return drawing.getFigureAt(p);
+	}
+}
@@ -0,0 +1,94 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import figures.Drawing;
+import figures.Figure;
+import history.HistoryManager;
+import history.Memento;
+
+/**
+ * Benchmark de la gestion de l'historique ({@link HistoryManager}) :
+ * enregistrement d'un {@link Memento} du dessin avant une action ainsi que
+ * l'annulation / le rejeu d'une action.
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class HistoryBenchmark
+{
+	/**
+	 * Nombre maximum d'undos/redos de l'historique
+	 */
+	private static final int HistorySize = 32;
+
+	/**
+	 * Nombre de figures du dessin
+	 */
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int figureCount;
+
+	/**
+	 * Le dessin
+	 */
+	private Drawing drawing;
+
+	/**
+	 * L'historique du dessin
+	 */
+	private HistoryManager<Figure> history;
+
+	/**
+	 * Génération du dessin et enregistrement d'un premier état dans
+	 * l'historique afin que {@link #undoRedo()} ait toujours quelque chose à
+	 * annuler
+	 */
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		drawing = DrawingGenerator.generate(figureCount);
+		history = new HistoryManager<Figure>(drawing, HistorySize);
+		history.record();
+	}
+
+	/**
+	 * Enregistrement de l'état du dessin (puis annulation de cet
+	 * enregistrement pour que la taille de l'historique reste constante)
+	 */
+	@Benchmark
+	public void record()
+	{
+		history.record();
+		history.cancel();
+	}
+
+	/**
+	 * Annulation puis rejeu de la dernière action. Les piles de l'historique
+	 * retrouvent leurs tailles initiales à l'issue de chaque appel
+	 * @return le dessin
+	 */
+	@Benchmark
+	public Drawing undoRedo()
+	{
+		history.undo();
+		history.redo();
+		return drawing;
+	}
+}
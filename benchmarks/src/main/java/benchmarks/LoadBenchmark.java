@@ -0,0 +1,81 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import figures.Drawing;
+import figures.DrawingFile;
+
+/**
+ * Benchmark de l'ouverture d'un fichier de dessin ({@link DrawingFile}) et de
+ * son chargement dans un {@link Drawing} (index spatial compris), les figures
+ * n'étant décodées qu'à la demande.
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class LoadBenchmark
+{
+	/**
+	 * Nombre de figures du fichier
+	 */
+	@Param({"100000", "1000000"})
+	public int figureCount;
+
+	/**
+	 * Le fichier de dessin
+	 */
+	private File file;
+
+	/**
+	 * Génération et enregistrement du dessin
+	 * @throws IOException si l'enregistrement échoue
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		file = File.createTempFile("drawing", ".fig");
+		DrawingGenerator.generate(figureCount).save(file);
+	}
+
+	/**
+	 * Suppression du fichier de dessin
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		file.delete();
+	}
+
+	/**
+	 * Ouverture du fichier et chargement du dessin
+	 * @return le dessin chargé
+	 * @throws IOException si l'ouverture échoue
+	 */
+	@Benchmark
+	public Drawing load() throws IOException
+	{
+		Drawing drawing = new Drawing();
+		drawing.load(DrawingFile.open(file));
+		return drawing;
+	}
+}
@@ -0,0 +1,183 @@
+package benchmarks;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JLabel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import figures.Drawing;
+import figures.LevelOfDetail;
+import figures.SpriteCache;
+import widgets.DrawingPanel;
+import widgets.InfoPanel;
+
+/**
+ * Benchmark du rendu (headless) d'un {@link DrawingPanel} dans une
+ * {@link BufferedImage} au travers de
+ * {@link DrawingPanel#paintComponent(Graphics)} :
+ * <ul>
+ * <li>rafraîchissement complet d'une fenêtre de 1600 x 1200</li>
+ * <li>rafraîchissement d'une petite zone endommagée (déplacement d'une
+ * figure)</li>
+ * </ul>
+ * avec ou sans cache d'images des figures complexes ({@link SpriteCache}) et
+ * niveau de détail ({@link LevelOfDetail}).
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class PaintComponentBenchmark
+{
+	/**
+	 * Largeur de la fenêtre de rendu
+	 */
+	private static final int Width = 1600;
+
+	/**
+	 * Hauteur de la fenêtre de rendu
+	 */
+	private static final int Height = 1200;
+
+	/**
+	 * Taille de la zone endommagée
+	 */
+	private static final int DamageSize = 64;
+
+	/**
+	 * Panel de dessin donnant accès à
+	 * {@link DrawingPanel#paintComponent(Graphics)}
+	 */
+	private static class RenderPanel extends DrawingPanel
+	{
+		/**
+		 * Serializable class must have a serial version UID
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Constructeur
+		 * @param drawing le modèle de dessin à rendre
+		 */
+		public RenderPanel(Drawing drawing)
+		{
+			super(drawing, new JLabel(), new InfoPanel());
+		}
+
+		/**
+		 * Rendu du panel dans un contexte graphique
+		 * @param g le contexte graphique
+		 */
+		public void render(Graphics g)
+		{
+			paintComponent(g);
+		}
+	}
+
+	/**
+	 * Nombre de figures du dessin
+	 */
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int figureCount;
+
+	/**
+	 * Utilisation d'un cache d'images pour les figures complexes
+	 */
+	@Param({"false", "true"})
+	public boolean spriteCache;
+
+	/**
+	 * Utilisation d'une politique de niveau de détail (seuils par défaut)
+	 */
+	@Param({"false", "true"})
+	public boolean levelOfDetail;
+
+	/**
+	 * Le panel de dessin
+	 */
+	private RenderPanel panel;
+
+	/**
+	 * L'image dans laquelle est réalisé le rendu
+	 */
+	private BufferedImage image;
+
+	/**
+	 * Génération du dessin et mise en place du panel et de l'image
+	 */
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Drawing drawing = DrawingGenerator.generate(figureCount);
+		panel = new RenderPanel(drawing);
+		panel.setSize(Width, Height);
+		if (spriteCache)
+		{
+			panel.setSpriteCache(new SpriteCache());
+		}
+		if (levelOfDetail)
+		{
+			panel.setLevelOfDetail(new LevelOfDetail());
+		}
+		image = new BufferedImage(Width, Height, BufferedImage.TYPE_INT_RGB);
+	}
+
+	/**
+	 * Rendu complet de la fenêtre
+	 * @return l'image rendue
+	 */
+	@Benchmark
+	public BufferedImage paintViewport()
+	{
+		Graphics2D g2D = image.createGraphics();
+		try
+		{
+			g2D.setClip(0, 0, Width, Height);
+			panel.render(g2D);
+		}
+		finally
+		{
+			g2D.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * Rendu d'une petite zone endommagée au centre de la fenêtre
+	 * @return l'image rendue
+	 */
+	@Benchmark
+	public BufferedImage paintDamage()
+	{
+		Graphics2D g2D = image.createGraphics();
+		try
+		{
+			g2D.setClip((Width - DamageSize) / 2, (Height - DamageSize) / 2,
+			            DamageSize, DamageSize);
+			panel.render(g2D);
+		}
+		finally
+		{
+			g2D.dispose();
+		}
+		return image;
+	}
+}
@@ -0,0 +1,93 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import figures.Drawing;
+import figures.Figure;
+
+/**
+ * Benchmark des changements d'ordre de dessin d'une figure sélectionnée
+ * ({@link Drawing#moveSelectedUp()}, {@link Drawing#moveSelectedDown()},
+ * {@link Drawing#stepSelectedUp()} et {@link Drawing#stepSelectedDown()})
+ * et de la recherche du rang d'une figure ({@link Drawing#indexOf(Figure)}).
+ * Chaque mesure réalise un déplacement puis le déplacement inverse afin que
+ * le dessin reste le même d'une mesure à l'autre.
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class ZOrderBenchmark
+{
+	/**
+	 * Nombre de figures du dessin
+	 */
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int figureCount;
+
+	/**
+	 * Le dessin
+	 */
+	private Drawing drawing;
+
+	/**
+	 * La figure sélectionnée (déplacée)
+	 */
+	private Figure figure;
+
+	/**
+	 * Génération du dessin et sélection d'une figure quelconque
+	 */
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		drawing = DrawingGenerator.generate(figureCount);
+		Random random = new Random(DrawingGenerator.DefaultSeed);
+		figure = drawing.stream()
+		    .skip(random.nextInt(figureCount))
+		    .findFirst()
+		    .get();
+		drawing.select(figure, true);
+	}
+
+	/**
+	 * Déplacement de la figure en fin puis en début de liste
+	 * @return le rang de la figure
+	 */
+	@Benchmark
+	public int move()
+	{
+		drawing.moveSelectedDown();
+		drawing.moveSelectedUp();
+		return drawing.indexOf(figure);
+	}
+
+	/**
+	 * Déplacement de la figure d'un rang vers le bas puis vers le haut
+	 * @return le rang de la figure
+	 */
+	@Benchmark
+	public int step()
+	{
+		drawing.stepSelectedDown();
+		drawing.stepSelectedUp();
+		return drawing.indexOf(figure);
+	}
+}
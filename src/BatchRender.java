@@ -0,0 +1,216 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import export.BatchRenderer;
+import utils.Signature;
+
+/**
+ * Programme principal (sans interface graphique) rendant en images PNG tous
+ * les fichiers de dessin d'un répertoire avec un {@link BatchRenderer}.
+ * Affiche la latence de chaque fichier au fur et à mesure puis le débit
+ * (dessins par seconde) et la distribution des latences du lot.
+ * <pre>
+ * java -Djava.awt.headless=true -cp bin BatchRender [-threads n] [-scale s] input output
+ * </pre>
+ * @author davidroussel
+ */
+public class BatchRender implements Signature
+{
+	/**
+	 * Code de retour lorsque le rendu d'au moins un fichier a échoué
+	 */
+	private static final int RenderFailed = 1;
+
+	/**
+	 * Code de retour lorsque les arguments sont invalides
+	 */
+	private static final int InvalidArguments = 2;
+
+	/**
+	 * Programme principal
+	 * @param args arguments : options (-threads nombre de threads, -scale
+	 * facteur d'échelle) puis répertoire des fichiers de dessin et
+	 * répertoire des images
+	 */
+	public static void main(String[] args)
+	{
+		// Aucun affichage n'est nécessaire (ni même disponible sur un serveur)
+		if (System.getProperty("java.awt.headless") == null)
+		{
+			System.setProperty("java.awt.headless", "true");
+		}
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		double scale = 1.0;
+		List<String> paths = new ArrayList<String>();
+		try
+		{
+			for (int i = 0; i < args.length; i++)
+			{
+				if (args[i].equals("-threads") && (i + 1 < args.length))
+				{
+					threads = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].equals("-scale") && (i + 1 < args.length))
+				{
+					scale = Double.parseDouble(args[++i]);
+				}
+				else
+				{
+					paths.add(args[i]);
+				}
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			usage("invalid number " + e.getMessage());
+		}
+		if ((paths.size() != 2) || (threads <= 0) || !(scale > 0.0))
+		{
+			usage(null);
+		}
+
+		File inputDirectory = new File(paths.get(0));
+		File outputDirectory = new File(paths.get(1));
+		File[] files = inputDirectory.listFiles((File file) ->
+		    file.isFile() && !file.isHidden());
+		if (files == null)
+		{
+			usage(inputDirectory + " is not a directory");
+		}
+		if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+		{
+			usage("unable to create " + outputDirectory);
+		}
+		Arrays.sort(files);
+
+		BatchRenderer renderer = new BatchRenderer(threads);
+		renderer.setScale(scale);
+		System.out.println("Rendering " + files.length + " drawings with "
+		    + threads + " threads");
+
+		long start = System.nanoTime();
+		List<BatchRenderer.Result> results =
+		    renderer.render(Arrays.asList(files),
+		                    outputDirectory,
+		                    BatchRender::report);
+		long elapsed = System.nanoTime() - start;
+		renderer.shutdown();
+
+		int failed = summary(results, elapsed);
+		System.exit(failed > 0 ? RenderFailed : 0);
+	}
+
+	/**
+	 * Affichage du résultat du rendu d'un fichier (appelé depuis les threads
+	 * de rendu)
+	 * @param result le résultat du rendu d'un fichier
+	 */
+	private static void report(BatchRenderer.Result result)
+	{
+		if (result.succeeded())
+		{
+			System.out.println(String.format("%-40s %9d figures %10.1f ms"
+			    + " (load %.1f ms, render %.1f ms)",
+			    result.getInput().getName(),
+			    result.getFigureCount(),
+			    millis(result.getLatency(TimeUnit.MICROSECONDS)),
+			    millis(result.getLoadTime(TimeUnit.MICROSECONDS)),
+			    millis(result.getRenderTime(TimeUnit.MICROSECONDS))));
+		}
+		else
+		{
+			System.out.println(String.format("%-40s FAILED %s",
+			    result.getInput().getName(),
+			    result.getError().getMessage()));
+		}
+	}
+
+	/**
+	 * Affichage du débit et de la distribution des latences du lot
+	 * @param results les résultats du rendu de chacun des fichiers
+	 * @param elapsed la durée totale (en ns) du rendu du lot
+	 * @return le nombre de fichiers dont le rendu a échoué
+	 */
+	private static int summary(List<BatchRenderer.Result> results,
+	                           long elapsed)
+	{
+		long[] latencies = new long[results.size()];
+		int count = 0;
+		long figures = 0;
+		for (BatchRenderer.Result result : results)
+		{
+			if (result.succeeded())
+			{
+				latencies[count++] = result.getLatency(TimeUnit.MICROSECONDS);
+				figures += result.getFigureCount();
+			}
+		}
+		int failed = results.size() - count;
+		double seconds = elapsed / 1e9;
+
+		System.out.println(String.format("%d drawings rendered (%d failed,"
+		    + " %d figures) in %.2f s : %.1f drawings/s",
+		    count, failed, figures, seconds, count / seconds));
+		if (count > 0)
+		{
+			Arrays.sort(latencies, 0, count);
+			long total = 0;
+			for (int i = 0; i < count; i++)
+			{
+				total += latencies[i];
+			}
+			System.out.println(String.format("latency (ms) : mean %.1f,"
+			    + " p50 %.1f, p95 %.1f, p99 %.1f, max %.1f",
+			    millis(total / count),
+			    millis(percentile(latencies, count, 0.50)),
+			    millis(percentile(latencies, count, 0.95)),
+			    millis(percentile(latencies, count, 0.99)),
+			    millis(latencies[count - 1])));
+		}
+		return failed;
+	}
+
+	/**
+	 * Percentile (méthode du rang le plus proche) de valeurs triées
+	 * @param sorted les valeurs triées par ordre croissant
+	 * @param count le nombre de valeurs
+	 * @param p le percentile souhaité (entre 0 et 1)
+	 * @return la plus petite valeur supérieure ou égale à la proportion p
+	 * des valeurs
+	 */
+	private static long percentile(long[] sorted, int count, double p)
+	{
+		int rank = (int) Math.ceil(p * count);
+		return sorted[Math.max(0, Math.min(count - 1, rank - 1))];
+	}
+
+	/**
+	 * Conversion d'une durée en millisecondes
+	 * @param micros la durée en microsecondes
+	 * @return la durée en millisecondes
+	 */
+	private static double millis(long micros)
+	{
+		return micros / 1000.0;
+	}
+
+	/**
+	 * Affichage de l'utilisation du programme puis arrêt du programme
+	 * @param message le message d'erreur à afficher (ou null)
+	 */
+	private static void usage(String message)
+	{
+		if (message != null)
+		{
+			System.err.println(Signature.getClassName(BatchRender.class) + "::"
+			    + Signature.getStaticMethodName() + " " + message);
+		}
+		System.err.println("usage : BatchRender [-threads n] [-scale s]"
+		    + " <drawings directory> <images directory>");
+		System.exit(InvalidArguments);
+	}
+}
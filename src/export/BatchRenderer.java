@@ -0,0 +1,417 @@
+package export;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+
+import figures.Drawing;
+import figures.DrawingFile;
+import utils.Logger;
+import utils.Signature;
+
+/**
+ * Rendu (sans interface graphique) d'un lot de fichiers de dessin en images
+ * PNG.
+ * Chaque fichier est chargé dans un {@link Drawing} ({@link DrawingFile},
+ * {@link Drawing#load(DrawingFile)}) puis exporté par un
+ * {@link TiledExporter} qui dessine les figures visibles dans l'ordre de
+ * dessin avec {@link figures.Figure#draw(java.awt.Graphics2D)} et
+ * l'anti-aliasing, comme la zone de dessin de l'éditeur.
+ * Les fichiers sont traités en parallèle par un pool de threads de taille
+ * fixe, et les tuiles de leurs exports sont dessinées sur un
+ * {@link ForkJoinPool} distinct de même taille. Les threads des fichiers
+ * attendant leurs tuiles ne sont pas des threads du {@link ForkJoinPool} :
+ * leur attente ne provoque pas la création de threads de compensation, et
+ * le nombre de threads reste borné quel que soit le nombre de fichiers.
+ * @author davidroussel
+ */
+public class BatchRenderer implements Signature
+{
+	/**
+	 * Résultat du rendu d'un fichier
+	 */
+	public static final class Result
+	{
+		/**
+		 * Le fichier de dessin
+		 */
+		private final File input;
+
+		/**
+		 * L'image produite
+		 */
+		private final File output;
+
+		/**
+		 * Nombre de figures du dessin
+		 */
+		private final int figureCount;
+
+		/**
+		 * Durées (en ns) du chargement et du rendu du dessin
+		 */
+		private final long loadTime, renderTime;
+
+		/**
+		 * L'erreur ayant interrompu le rendu (ou null)
+		 */
+		private final Exception error;
+
+		/**
+		 * Constructeur
+		 * @param input le fichier de dessin
+		 * @param output l'image produite
+		 * @param figureCount le nombre de figures du dessin
+		 * @param loadTime la durée (en ns) du chargement
+		 * @param renderTime la durée (en ns) du rendu
+		 * @param error l'erreur ayant interrompu le rendu (ou null)
+		 */
+		private Result(File input,
+		               File output,
+		               int figureCount,
+		               long loadTime,
+		               long renderTime,
+		               Exception error)
+		{
+			this.input = input;
+			this.output = output;
+			this.figureCount = figureCount;
+			this.loadTime = loadTime;
+			this.renderTime = renderTime;
+			this.error = error;
+		}
+
+		/**
+		 * Accesseur du fichier de dessin
+		 * @return le fichier de dessin rendu
+		 */
+		public File getInput()
+		{
+			return input;
+		}
+
+		/**
+		 * Accesseur de l'image produite
+		 * @return le fichier PNG produit
+		 */
+		public File getOutput()
+		{
+			return output;
+		}
+
+		/**
+		 * Accesseur du nombre de figures
+		 * @return le nombre de figures du dessin (0 si celui ci n'a pas pu
+		 * être chargé)
+		 */
+		public int getFigureCount()
+		{
+			return figureCount;
+		}
+
+		/**
+		 * Durée du chargement du dessin
+		 * @param unit l'unité de temps souhaitée
+		 * @return la durée de l'ouverture et du chargement du fichier
+		 */
+		public long getLoadTime(TimeUnit unit)
+		{
+			return unit.convert(loadTime, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Durée du rendu du dessin
+		 * @param unit l'unité de temps souhaitée
+		 * @return la durée du dessin des figures et de l'écriture de l'image
+		 */
+		public long getRenderTime(TimeUnit unit)
+		{
+			return unit.convert(renderTime, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Latence du traitement du fichier
+		 * @param unit l'unité de temps souhaitée
+		 * @return la durée du chargement et du rendu du dessin (sans
+		 * l'attente d'un thread disponible)
+		 */
+		public long getLatency(TimeUnit unit)
+		{
+			return unit.convert(loadTime + renderTime, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Accesseur de l'erreur
+		 * @return l'erreur ayant interrompu le rendu ou null si l'image a été
+		 * produite
+		 */
+		public Exception getError()
+		{
+			return error;
+		}
+
+		/**
+		 * Indique si l'image a été produite
+		 * @return true si le rendu s'est terminé sans erreur
+		 */
+		public boolean succeeded()
+		{
+			return error == null;
+		}
+	}
+
+	/**
+	 * Extension des images produites
+	 */
+	public static final String Extension = ".png";
+
+	/**
+	 * Le pool de threads (de taille fixe) sur lequel sont chargés et exportés
+	 * les dessins
+	 */
+	private final ExecutorService files;
+
+	/**
+	 * Le pool de threads sur lequel sont dessinées les tuiles des exports
+	 */
+	private final ForkJoinPool tiles;
+
+	/**
+	 * Facteur d'échelle entre les coordonnées des dessins et les pixels des
+	 * images
+	 */
+	private double scale;
+
+	/**
+	 * Couleur de fond des images
+	 */
+	private Color background;
+
+	/**
+	 * Niveau de compression des images
+	 */
+	private int compressionLevel;
+
+	/**
+	 * Constructeur
+	 * @param parallelism le nombre de fichiers rendus simultanément (et de
+	 * threads dessinant leurs tuiles)
+	 * @throws IllegalArgumentException si le nombre de threads n'est pas
+	 * strictement positif
+	 */
+	public BatchRenderer(int parallelism) throws IllegalArgumentException
+	{
+		tiles = new ForkJoinPool(parallelism);
+		files = Executors.newFixedThreadPool(parallelism);
+		scale = 1.0;
+		background = Color.WHITE;
+		compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	}
+
+	/**
+	 * Accesseur du nombre de threads
+	 * @return le nombre de fichiers rendus simultanément (et de threads
+	 * dessinant leurs tuiles)
+	 */
+	public int getParallelism()
+	{
+		return tiles.getParallelism();
+	}
+
+	/**
+	 * Mise en place du facteur d'échelle des images
+	 * @param scale le facteur d'échelle entre les coordonnées des dessins et
+	 * les pixels des images
+	 */
+	public void setScale(double scale)
+	{
+		if (scale > 0.0)
+		{
+			this.scale = scale;
+		}
+	}
+
+	/**
+	 * Mise en place de la couleur de fond des images
+	 * @param background la couleur de fond
+	 */
+	public void setBackground(Color background)
+	{
+		if (background != null)
+		{
+			this.background = background;
+		}
+	}
+
+	/**
+	 * Mise en place du niveau de compression des images
+	 * @param level le niveau de compression (de {@link Deflater#BEST_SPEED}
+	 * à {@link Deflater#BEST_COMPRESSION})
+	 */
+	public void setCompressionLevel(int level)
+	{
+		compressionLevel = level;
+	}
+
+	/**
+	 * Rendu d'un lot de fichiers de dessin. Chaque image est écrite dans le
+	 * répertoire de destination sous le nom du fichier de dessin suivi de
+	 * {@link #Extension}. L'échec du rendu d'un fichier n'interrompt pas
+	 * celui des autres fichiers.
+	 * @param inputs les fichiers de dessin à rendre
+	 * @param directory le répertoire dans lequel écrire les images
+	 * @param done action réalisée (depuis les threads de rendu) à la fin du
+	 * traitement de chaque fichier (ou null)
+	 * @return les résultats du rendu de chacun des fichiers, dans l'ordre des
+	 * fichiers
+	 */
+	public List<Result> render(List<File> inputs,
+	                           File directory,
+	                           Consumer<Result> done)
+	{
+		List<FileTask> tasks = new ArrayList<FileTask>(inputs.size());
+		List<Future<Result>> futures =
+		    new ArrayList<Future<Result>>(inputs.size());
+		for (File input : inputs)
+		{
+			FileTask task = new FileTask(input,
+			                             new File(directory,
+			                                      input.getName() + Extension),
+			                             done);
+			tasks.add(task);
+			futures.add(files.submit(task));
+		}
+
+		List<Result> results = new ArrayList<Result>(tasks.size());
+		for (int i = 0; i < tasks.size(); i++)
+		{
+			Future<Result> future = futures.get(i);
+			try
+			{
+				results.add(future.get());
+			}
+			catch (InterruptedException e)
+			{
+				// Les fichiers restants ne sont pas rendus
+				future.cancel(true);
+				Thread.currentThread().interrupt();
+				results.add(tasks.get(i).failed(e));
+			}
+			catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+				results.add(tasks.get(i).failed(cause instanceof Exception
+				    ? (Exception) cause : e));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Arrêt des threads de rendu
+	 */
+	public void shutdown()
+	{
+		files.shutdown();
+		tiles.shutdown();
+	}
+
+	/**
+	 * Chargement puis rendu d'un fichier de dessin
+	 */
+	private class FileTask implements Callable<Result>
+	{
+		/**
+		 * Le fichier de dessin
+		 */
+		private final File input;
+
+		/**
+		 * L'image à produire
+		 */
+		private final File output;
+
+		/**
+		 * Action réalisée à la fin du traitement (ou null)
+		 */
+		private final Consumer<Result> done;
+
+		/**
+		 * Constructeur
+		 * @param input le fichier de dessin
+		 * @param output l'image à produire
+		 * @param done action réalisée à la fin du traitement (ou null)
+		 */
+		FileTask(File input, File output, Consumer<Result> done)
+		{
+			this.input = input;
+			this.output = output;
+			this.done = done;
+		}
+
+		/**
+		 * Résultat d'un rendu interrompu avant la fin du traitement
+		 * @param error l'erreur ayant interrompu le rendu
+		 * @return le résultat en échec du rendu du fichier
+		 */
+		Result failed(Exception error)
+		{
+			return new Result(input, output, 0, 0L, 0L, error);
+		}
+
+		@Override
+		public Result call()
+		{
+			long start = System.nanoTime();
+			long loaded = start;
+			int figureCount = 0;
+			Exception error = null;
+			try
+			{
+				Drawing drawing = new Drawing();
+				drawing.load(DrawingFile.open(input));
+				figureCount = drawing.snapshot().size();
+				loaded = System.nanoTime();
+
+				TiledExporter exporter = new TiledExporter(drawing);
+				exporter.setPool(tiles);
+				exporter.setBackground(background);
+				exporter.setCompressionLevel(compressionLevel);
+				exporter.export(scale, output);
+			}
+			catch (IOException | RuntimeException e)
+			{
+				error = e;
+				Logger.error(() -> "unable to render " + input + " : " + e);
+			}
+			long end = System.nanoTime();
+			if ((error != null) && (loaded == start))
+			{
+				loaded = end;
+			}
+
+			Result result = new Result(input,
+			                           output,
+			                           figureCount,
+			                           loaded - start,
+			                           end - loaded,
+			                           error);
+			if (done != null)
+			{
+				done.accept(result);
+			}
+			return result;
+		}
+	}
+}
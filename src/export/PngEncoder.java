@@ -0,0 +1,351 @@
+package export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodeur PNG (RGB 8 bits, non entrelacé) recevant l'image par bandes de
+ * lignes successives afin de ne jamais avoir à conserver l'image complète en
+ * mémoire.
+ * Chaque bande est filtrée (filtre PNG "Sub") et compressée indépendamment
+ * des autres par {@link #compress(int[][], int[], int, boolean)} (qui
+ * peut donc être appelée en parallèle pour plusieurs bandes) : chaque bande
+ * forme un segment deflate terminé sur une frontière d'octet (sans
+ * dictionnaire commun), les segments concaténés formant un flux zlib valide
+ * dont la somme de contrôle Adler-32 est obtenue en combinant celles des
+ * bandes. Les bandes compressées doivent ensuite être écrites dans l'ordre
+ * avec {@link #write(Band)}.
+ * @author davidroussel
+ */
+public class PngEncoder
+{
+	/**
+	 * Signature d'un fichier PNG
+	 */
+	private static final byte[] Signature =
+	    {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+
+	/**
+	 * Entête zlib (deflate, fenêtre de 32 ko, compression par défaut)
+	 */
+	private static final byte[] ZlibHeader = {0x78, (byte) 0x9C};
+
+	/**
+	 * Module de la somme de contrôle Adler-32
+	 */
+	private static final long AdlerBase = 65521;
+
+	/**
+	 * Filtre PNG "Sub" : chaque octet est codé par sa différence avec l'octet
+	 * correspondant du pixel précédent
+	 */
+	private static final byte SubFilter = 1;
+
+	/**
+	 * Bande de lignes compressée
+	 */
+	public static final class Band
+	{
+		/**
+		 * Segment deflate de la bande
+		 */
+		private final byte[] data;
+
+		/**
+		 * Somme de contrôle Adler-32 des lignes filtrées de la bande
+		 */
+		private final int adler;
+
+		/**
+		 * Nombre d'octets (non compressés) des lignes filtrées de la bande
+		 */
+		private final long length;
+
+		/**
+		 * Constructeur
+		 * @param data le segment deflate
+		 * @param adler la somme de contrôle des données non compressées
+		 * @param length le nombre d'octets non compressés
+		 */
+		private Band(byte[] data, int adler, long length)
+		{
+			this.data = data;
+			this.adler = adler;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Le flux dans lequel est écrite l'image
+	 */
+	private final DataOutputStream out;
+
+	/**
+	 * Largeur de l'image
+	 */
+	private final int width;
+
+	/**
+	 * Hauteur de l'image
+	 */
+	private final int height;
+
+	/**
+	 * Niveau de compression (voir {@link Deflater})
+	 */
+	private final int level;
+
+	/**
+	 * Nombre de lignes déjà écrites
+	 */
+	private int rows;
+
+	/**
+	 * Somme de contrôle Adler-32 des données écrites
+	 */
+	private int adler;
+
+	/**
+	 * Constructeur : écrit la signature et l'entête de l'image
+	 * @param out le flux dans lequel écrire l'image
+	 * @param width la largeur de l'image
+	 * @param height la hauteur de l'image
+	 * @param level le niveau de compression (de
+	 * {@link Deflater#BEST_SPEED} à {@link Deflater#BEST_COMPRESSION})
+	 * @throws IOException si l'écriture échoue
+	 * @throws IllegalArgumentException si les dimensions sont nulles
+	 */
+	public PngEncoder(OutputStream out, int width, int height, int level)
+	    throws IOException, IllegalArgumentException
+	{
+		if ((width <= 0) || (height <= 0))
+		{
+			throw new IllegalArgumentException("invalid image size " + width
+			    + " x " + height);
+		}
+		this.out = new DataOutputStream(out);
+		this.width = width;
+		this.height = height;
+		this.level = level;
+		rows = 0;
+		adler = 1;
+
+		this.out.write(Signature);
+		ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+		DataOutputStream headerData = new DataOutputStream(header);
+		headerData.writeInt(width);
+		headerData.writeInt(height);
+		headerData.writeByte(8);	// bits par composante
+		headerData.writeByte(2);	// RGB
+		headerData.writeByte(0);	// compression deflate
+		headerData.writeByte(0);	// filtrage adaptatif
+		headerData.writeByte(0);	// non entrelacé
+		chunk("IHDR", header.toByteArray(), 0, header.size());
+		chunk("IDAT", ZlibHeader, 0, ZlibHeader.length);
+	}
+
+	/**
+	 * Accesseur de la largeur de l'image
+	 * @return la largeur de l'image
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * Accesseur de la hauteur de l'image
+	 * @return la hauteur de l'image
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Compression d'une bande de lignes. Ne modifie pas l'état de
+	 * l'encodeur : peut être appelée depuis plusieurs threads à la fois.
+	 * @param tiles les pixels (RGB) des tuiles constituant la bande, de gauche
+	 * à droite, chaque tuile étant stockée ligne par ligne
+	 * @param tileWidths les largeurs des tuiles (dont la somme doit être égale
+	 * à la largeur de l'image)
+	 * @param rowCount le nombre de lignes de la bande
+	 * @param last true s'il s'agit de la dernière bande de l'image
+	 * @return la bande compressée à écrire avec {@link #write(Band)}
+	 */
+	public Band compress(int[][] tiles,
+	                     int[] tileWidths,
+	                     int rowCount,
+	                     boolean last)
+	{
+		byte[] row = new byte[1 + (3 * width)];
+		byte[] buffer = new byte[64 * 1024];
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		Adler32 checksum = new Adler32();
+		Deflater deflater = new Deflater(level, true);
+		try
+		{
+			for (int y = 0; y < rowCount; y++)
+			{
+				row[0] = SubFilter;
+				int index = 1;
+				int r = 0;
+				int g = 0;
+				int b = 0;
+				for (int t = 0; t < tiles.length; t++)
+				{
+					int[] pixels = tiles[t];
+					int offset = y * tileWidths[t];
+					for (int x = 0; x < tileWidths[t]; x++)
+					{
+						int rgb = pixels[offset + x];
+						int nr = (rgb >> 16) & 0xFF;
+						int ng = (rgb >> 8) & 0xFF;
+						int nb = rgb & 0xFF;
+						row[index++] = (byte) (nr - r);
+						row[index++] = (byte) (ng - g);
+						row[index++] = (byte) (nb - b);
+						r = nr;
+						g = ng;
+						b = nb;
+					}
+				}
+				checksum.update(row, 0, row.length);
+				deflater.setInput(row);
+				while (!deflater.needsInput())
+				{
+					int n = deflater.deflate(buffer);
+					compressed.write(buffer, 0, n);
+				}
+			}
+
+			if (last)
+			{
+				deflater.finish();
+				while (!deflater.finished())
+				{
+					int n = deflater.deflate(buffer);
+					compressed.write(buffer, 0, n);
+				}
+			}
+			else
+			{
+				// Segment non final terminé sur une frontière d'octet
+				int n;
+				do
+				{
+					n = deflater.deflate(buffer, 0, buffer.length,
+					                     Deflater.SYNC_FLUSH);
+					compressed.write(buffer, 0, n);
+				}
+				while (n == buffer.length);
+			}
+		}
+		finally
+		{
+			deflater.end();
+		}
+
+		return new Band(compressed.toByteArray(),
+		                (int) checksum.getValue(),
+		                (long) rowCount * row.length);
+	}
+
+	/**
+	 * Écriture de la bande suivante de l'image. Les bandes doivent être
+	 * écrites dans l'ordre, la dernière ayant été compressée comme telle.
+	 * @param band la bande compressée
+	 * @throws IOException si l'écriture échoue
+	 */
+	public void write(Band band) throws IOException
+	{
+		chunk("IDAT", band.data, 0, band.data.length);
+		adler = combine(adler, band.adler, band.length);
+		rows += (int) (band.length / (1 + (3L * width)));
+	}
+
+	/**
+	 * Terminaison de l'image : écriture de la somme de contrôle du flux
+	 * compressé et de la fin de l'image
+	 * @throws IOException si l'écriture échoue ou si toutes les lignes de
+	 * l'image n'ont pas été écrites
+	 */
+	public void finish() throws IOException
+	{
+		if (rows != height)
+		{
+			throw new IOException("incomplete image : " + rows + " / "
+			    + height + " rows");
+		}
+		byte[] trailer = {
+			(byte) (adler >>> 24),
+			(byte) (adler >>> 16),
+			(byte) (adler >>> 8),
+			(byte) adler
+		};
+		chunk("IDAT", trailer, 0, trailer.length);
+		chunk("IEND", trailer, 0, 0);
+		out.flush();
+	}
+
+	/**
+	 * Écriture d'un bloc PNG (longueur, type, données et CRC)
+	 * @param type le type du bloc
+	 * @param data les données du bloc
+	 * @param offset l'indice des données dans data
+	 * @param length la longueur des données
+	 * @throws IOException si l'écriture échoue
+	 */
+	private void chunk(String type, byte[] data, int offset, int length)
+	    throws IOException
+	{
+		byte[] typeBytes = type.getBytes("US-ASCII");
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, offset, length);
+		out.writeInt(length);
+		out.write(typeBytes);
+		out.write(data, offset, length);
+		out.writeInt((int) crc.getValue());
+	}
+
+	/**
+	 * Combinaison des sommes de contrôle Adler-32 de deux suites d'octets
+	 * consécutives (voir adler32_combine de zlib)
+	 * @param adler1 la somme de contrôle de la première suite
+	 * @param adler2 la somme de contrôle de la seconde suite
+	 * @param length2 la longueur de la seconde suite
+	 * @return la somme de contrôle de la concaténation des deux suites
+	 */
+	static int combine(int adler1, int adler2, long length2)
+	{
+		long remainder = length2 % AdlerBase;
+		long sum1 = adler1 & 0xFFFF;
+		long sum2 = (remainder * sum1) % AdlerBase;
+		sum1 += (adler2 & 0xFFFF) + AdlerBase - 1;
+		sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF)
+		    + AdlerBase - remainder;
+		if (sum1 >= AdlerBase)
+		{
+			sum1 -= AdlerBase;
+		}
+		if (sum1 >= AdlerBase)
+		{
+			sum1 -= AdlerBase;
+		}
+		if (sum2 >= (AdlerBase << 1))
+		{
+			sum2 -= (AdlerBase << 1);
+		}
+		if (sum2 >= AdlerBase)
+		{
+			sum2 -= AdlerBase;
+		}
+		return (int) ((sum2 << 16) | sum1);
+	}
+}
@@ -0,0 +1,595 @@
+package export;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
+
+import figures.Drawing;
+import figures.Figure;
+import utils.Signature;
+
+/**
+ * Export (sans interface graphique) d'un dessin dans une image PNG de taille
+ * arbitraire.
+ * L'image est découpée en bandes horizontales, elles mêmes découpées en
+ * tuiles. Les figures sont d'abord réparties dans les bandes d'après leur
+ * emprise ({@link Figure#getBounds2D()} élargi de la demi épaisseur de trait
+ * et d'un pixel d'anti-aliasing),
+ * puis chaque tuile ne dessine (avec {@link Figure#draw(Graphics2D)}) que les
+ * figures de sa bande dont l'emprise l'intersecte. Les tuiles sont dessinées
+ * en parallèle dans des {@link BufferedImage} distinctes sur un
+ * {@link ForkJoinPool}, puis chaque bande est compressée (en parallèle elle
+ * aussi) par le {@link PngEncoder}. Les bandes sont écrites dans l'ordre au
+ * fur et à mesure : seules les bandes en cours de traitement sont en mémoire,
+ * jamais l'image complète.
+ * L'exporteur travaille sur une version figée du dessin
+ * ({@link Drawing#snapshot()}) : le dessin peut continuer à être modifié
+ * pendant l'export.
+ * @author davidroussel
+ */
+public class TiledExporter implements Signature
+{
+	/**
+	 * Taille par défaut (en pixels) des tuiles
+	 */
+	public static final int DefaultTileSize = 256;
+
+	/**
+	 * Marge (en pixels de l'image) ajoutée autour de l'emprise des figures
+	 * pour tenir compte des pixels partiellement couverts par l'anti-aliasing
+	 */
+	private static final double AntialiasMargin = 1.0;
+
+	/**
+	 * Les figures à exporter dans l'ordre de dessin
+	 */
+	private final List<Figure> figures;
+
+	/**
+	 * Prédicat de visibilité (filtres) des figures
+	 */
+	private final Predicate<Figure> visible;
+
+	/**
+	 * Taille (en pixels) des tuiles (et hauteur des bandes)
+	 */
+	private int tileSize;
+
+	/**
+	 * Couleur de fond de l'image
+	 */
+	private Color background;
+
+	/**
+	 * Niveau de compression de l'image
+	 */
+	private int compressionLevel;
+
+	/**
+	 * Le pool de threads sur lequel sont dessinées les tuiles
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * Constructeur d'un exporteur de la version courante d'un dessin (en
+	 * tenant compte de ses filtres)
+	 * @param drawing le dessin à exporter
+	 */
+	public TiledExporter(Drawing drawing)
+	{
+		this(drawing.snapshot(), drawing.visibility());
+	}
+
+	/**
+	 * Constructeur d'un exporteur d'une liste de figures
+	 * @param figures les figures à exporter dans l'ordre de dessin. Ces
+	 * figures ne doivent pas être modifiées pendant l'export.
+	 * @param visible le prédicat indiquant les figures à exporter
+	 */
+	public TiledExporter(List<Figure> figures, Predicate<Figure> visible)
+	{
+		this.figures = figures;
+		this.visible = (visible != null ? visible : (Figure f) -> true);
+		tileSize = DefaultTileSize;
+		background = Color.WHITE;
+		compressionLevel = Deflater.DEFAULT_COMPRESSION;
+		pool = ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Accesseur de la taille des tuiles
+	 * @return la taille (en pixels) des tuiles
+	 */
+	public int getTileSize()
+	{
+		return tileSize;
+	}
+
+	/**
+	 * Mise en place de la taille des tuiles
+	 * @param tileSize la taille (en pixels) des tuiles
+	 */
+	public void setTileSize(int tileSize)
+	{
+		this.tileSize = Math.max(tileSize, 16);
+	}
+
+	/**
+	 * Mise en place de la couleur de fond de l'image
+	 * @param background la couleur de fond
+	 */
+	public void setBackground(Color background)
+	{
+		if (background != null)
+		{
+			this.background = background;
+		}
+	}
+
+	/**
+	 * Mise en place du niveau de compression de l'image
+	 * @param level le niveau de compression (de {@link Deflater#BEST_SPEED}
+	 * à {@link Deflater#BEST_COMPRESSION})
+	 */
+	public void setCompressionLevel(int level)
+	{
+		compressionLevel = level;
+	}
+
+	/**
+	 * Mise en place du pool de threads utilisé pour l'export (par défaut
+	 * {@link ForkJoinPool#commonPool()})
+	 * @param pool le pool de threads
+	 */
+	public void setPool(ForkJoinPool pool)
+	{
+		if (pool != null)
+		{
+			this.pool = pool;
+		}
+	}
+
+	/**
+	 * Emprise de l'ensemble des figures exportées
+	 * @return le rectangle englobant les figures visibles (vide s'il n'y en a
+	 * aucune)
+	 */
+	public Rectangle2D getExtent()
+	{
+		Rectangle2D extent = null;
+		for (Figure figure : figures)
+		{
+			if (visible.test(figure))
+			{
+				Rectangle2D bounds = Drawing.indexBounds(figure);
+				if (extent == null)
+				{
+					extent = bounds;
+				}
+				else
+				{
+					extent.add(bounds);
+				}
+			}
+		}
+		return (extent != null ? extent : new Rectangle2D.Double());
+	}
+
+	/**
+	 * Export de l'ensemble des figures dans un fichier PNG
+	 * @param scale le facteur d'échelle entre les coordonnées du dessin et
+	 * les pixels de l'image
+	 * @param file le fichier à écrire (qui est supprimé si l'export échoue)
+	 * @throws IOException si l'écriture échoue
+	 * @throws IllegalArgumentException si l'image à produire est vide
+	 * @throws RuntimeException si le dessin d'une figure échoue
+	 */
+	public void export(double scale, File file)
+	    throws IOException, IllegalArgumentException
+	{
+		OutputStream out =
+		    new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+		try
+		{
+			try
+			{
+				export(getExtent(), scale, out);
+			}
+			finally
+			{
+				out.close();
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			try
+			{
+				Files.deleteIfExists(file.toPath());
+			}
+			catch (IOException deletion)
+			{
+				e.addSuppressed(deletion);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Export d'une zone du dessin dans un flux PNG
+	 * @param area la zone du dessin (en coordonnées du dessin) à exporter
+	 * @param scale le facteur d'échelle entre les coordonnées du dessin et
+	 * les pixels de l'image
+	 * @param out le flux dans lequel écrire l'image (qui n'est pas fermé)
+	 * @throws IOException si l'écriture échoue
+	 * @throws IllegalArgumentException si l'image à produire est vide
+	 * @throws RuntimeException si le dessin d'une figure échoue (l'image
+	 * écrite dans le flux est alors incomplète)
+	 */
+	public void export(Rectangle2D area, double scale, OutputStream out)
+	    throws IOException, IllegalArgumentException
+	{
+		long width = (long) Math.ceil(area.getWidth() * scale);
+		long height = (long) Math.ceil(area.getHeight() * scale);
+		if ((width <= 0) || (height <= 0) || (width > Integer.MAX_VALUE / 3)
+		    || (height > Integer.MAX_VALUE))
+		{
+			throw new IllegalArgumentException("invalid image size " + width
+			    + " x " + height);
+		}
+
+		Layout layout = new Layout(area, scale, (int) width, (int) height);
+		PngEncoder encoder = new PngEncoder(out,
+		                                    layout.width,
+		                                    layout.height,
+		                                    compressionLevel);
+
+		/*
+		 * Les bandes sont traitées en parallèle en limitant le nombre de
+		 * bandes en cours (et donc la mémoire utilisée), puis écrites dans
+		 * l'ordre
+		 */
+		int window = 2 * pool.getParallelism();
+		Deque<ForkJoinTask<PngEncoder.Band>> pending =
+		    new ArrayDeque<ForkJoinTask<PngEncoder.Band>>();
+		try
+		{
+			for (int band = 0; band < layout.bands; band++)
+			{
+				pending.addLast(pool.submit(new BandTask(layout, encoder, band)));
+				if (pending.size() >= window)
+				{
+					encoder.write(pending.removeFirst().join());
+				}
+			}
+			while (!pending.isEmpty())
+			{
+				encoder.write(pending.removeFirst().join());
+			}
+			encoder.finish();
+		}
+		catch (IOException | RuntimeException e)
+		{
+			/*
+			 * Une tuile (ou l'écriture) a échoué : l'image est incomplète, les
+			 * bandes restantes ne sont pas calculées
+			 */
+			for (ForkJoinTask<PngEncoder.Band> task : pending)
+			{
+				task.cancel(false);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Découpage de l'image en bandes et en tuiles et répartition des figures
+	 * visibles dans les bandes
+	 */
+	private class Layout
+	{
+		/**
+		 * Abscisse et ordonnée (dans le dessin) du coin supérieur gauche de
+		 * l'image
+		 */
+		final double x, y;
+
+		/**
+		 * Facteur d'échelle du dessin vers l'image
+		 */
+		final double scale;
+
+		/**
+		 * Dimensions de l'image
+		 */
+		final int width, height;
+
+		/**
+		 * Nombre de bandes et de tuiles par bande
+		 */
+		final int bands, columns;
+
+		/**
+		 * Figures visibles intersectant l'image
+		 */
+		final Figure[] kept;
+
+		/**
+		 * Emprises (en pixels de l'image) des figures de {@link #kept} :
+		 * xmin, ymin, xmax, ymax
+		 */
+		final double[] extents;
+
+		/**
+		 * Indices (dans l'ordre de dessin) des figures de {@link #kept}
+		 * intersectant chaque bande
+		 */
+		final int[][] bins;
+
+		/**
+		 * Constructeur
+		 * @param area la zone du dessin à exporter
+		 * @param scale le facteur d'échelle
+		 * @param width la largeur de l'image
+		 * @param height la hauteur de l'image
+		 */
+		Layout(Rectangle2D area, double scale, int width, int height)
+		{
+			x = area.getX();
+			y = area.getY();
+			this.scale = scale;
+			this.width = width;
+			this.height = height;
+			bands = (height + tileSize - 1) / tileSize;
+			columns = (width + tileSize - 1) / tileSize;
+
+			List<Figure> inside = new ArrayList<Figure>();
+			double[] boxes = new double[4 * Math.max(figures.size(), 1)];
+			int[] counts = new int[bands];
+			for (Figure figure : figures)
+			{
+				if (!visible.test(figure))
+				{
+					continue;
+				}
+				Rectangle2D bounds = Drawing.indexBounds(figure);
+				double x0 = ((bounds.getMinX() - x) * scale) - AntialiasMargin;
+				double y0 = ((bounds.getMinY() - y) * scale) - AntialiasMargin;
+				double x1 = ((bounds.getMaxX() - x) * scale) + AntialiasMargin;
+				double y1 = ((bounds.getMaxY() - y) * scale) + AntialiasMargin;
+				if ((x1 < 0) || (y1 < 0) || (x0 > width) || (y0 > height))
+				{
+					continue;
+				}
+				int k = 4 * inside.size();
+				boxes[k] = x0;
+				boxes[k + 1] = y0;
+				boxes[k + 2] = x1;
+				boxes[k + 3] = y1;
+				inside.add(figure);
+				for (int b = firstBand(y0); b <= lastBand(y1); b++)
+				{
+					counts[b]++;
+				}
+			}
+
+			kept = inside.toArray(new Figure[inside.size()]);
+			extents = boxes;
+			bins = new int[bands][];
+			for (int b = 0; b < bands; b++)
+			{
+				bins[b] = new int[counts[b]];
+				counts[b] = 0;
+			}
+			for (int i = 0; i < kept.length; i++)
+			{
+				int last = lastBand(extents[(4 * i) + 3]);
+				for (int b = firstBand(extents[(4 * i) + 1]); b <= last; b++)
+				{
+					bins[b][counts[b]++] = i;
+				}
+			}
+		}
+
+		/**
+		 * Première bande intersectée par une ordonnée minimum
+		 * @param minY l'ordonnée (en pixels de l'image)
+		 * @return l'indice de la bande
+		 */
+		private int firstBand(double minY)
+		{
+			return Math.max(0, Math.min(bands - 1, (int) (minY / tileSize)));
+		}
+
+		/**
+		 * Dernière bande intersectée par une ordonnée maximum
+		 * @param maxY l'ordonnée (en pixels de l'image)
+		 * @return l'indice de la bande
+		 */
+		private int lastBand(double maxY)
+		{
+			return Math.max(0, Math.min(bands - 1, (int) (maxY / tileSize)));
+		}
+	}
+
+	/**
+	 * Dessin des tuiles d'une bande (en parallèle) puis compression de la
+	 * bande
+	 */
+	private class BandTask extends RecursiveTask<PngEncoder.Band>
+	{
+		/**
+		 * Serializable class must have a serial version UID
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Le découpage de l'image
+		 */
+		private final Layout layout;
+
+		/**
+		 * L'encodeur compressant la bande
+		 */
+		private final PngEncoder encoder;
+
+		/**
+		 * L'indice de la bande
+		 */
+		private final int band;
+
+		/**
+		 * Constructeur
+		 * @param layout le découpage de l'image
+		 * @param encoder l'encodeur de l'image
+		 * @param band l'indice de la bande
+		 */
+		BandTask(Layout layout, PngEncoder encoder, int band)
+		{
+			this.layout = layout;
+			this.encoder = encoder;
+			this.band = band;
+		}
+
+		@Override
+		protected PngEncoder.Band compute()
+		{
+			int top = band * tileSize;
+			int rows = Math.min(tileSize, layout.height - top);
+			TileTask[] tiles = new TileTask[layout.columns];
+			for (int column = 0; column < layout.columns; column++)
+			{
+				int left = column * tileSize;
+				tiles[column] = new TileTask(layout,
+				                             band,
+				                             left,
+				                             top,
+				                             Math.min(tileSize,
+				                                      layout.width - left),
+				                             rows);
+			}
+			invokeAll(tiles);
+
+			int[][] pixels = new int[tiles.length][];
+			int[] widths = new int[tiles.length];
+			for (int column = 0; column < tiles.length; column++)
+			{
+				pixels[column] = tiles[column].pixels;
+				widths[column] = tiles[column].width;
+			}
+			return encoder.compress(pixels, widths, rows,
+			                        band == (layout.bands - 1));
+		}
+	}
+
+	/**
+	 * Dessin d'une tuile
+	 */
+	private class TileTask extends RecursiveAction
+	{
+		/**
+		 * Serializable class must have a serial version UID
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Le découpage de l'image
+		 */
+		private final Layout layout;
+
+		/**
+		 * L'indice de la bande contenant la tuile
+		 */
+		private final int band;
+
+		/**
+		 * Position et dimensions (en pixels de l'image) de la tuile
+		 */
+		private final int left, top, width, height;
+
+		/**
+		 * Les pixels (RGB) de la tuile une fois dessinée
+		 */
+		int[] pixels;
+
+		/**
+		 * Constructeur
+		 * @param layout le découpage de l'image
+		 * @param band l'indice de la bande contenant la tuile
+		 * @param left l'abscisse de la tuile dans l'image
+		 * @param top l'ordonnée de la tuile dans l'image
+		 * @param width la largeur de la tuile
+		 * @param height la hauteur de la tuile
+		 */
+		TileTask(Layout layout,
+		         int band,
+		         int left,
+		         int top,
+		         int width,
+		         int height)
+		{
+			this.layout = layout;
+			this.band = band;
+			this.left = left;
+			this.top = top;
+			this.width = width;
+			this.height = height;
+			pixels = null;
+		}
+
+		@Override
+		protected void compute()
+		{
+			BufferedImage image =
+			    new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g2D = image.createGraphics();
+			try
+			{
+				g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				                     RenderingHints.VALUE_ANTIALIAS_ON);
+				g2D.setColor(background);
+				g2D.fillRect(0, 0, width, height);
+				g2D.translate(-left, -top);
+				g2D.scale(layout.scale, layout.scale);
+				g2D.translate(-layout.x, -layout.y);
+
+				double right = left + width;
+				double bottom = top + height;
+				double[] extents = layout.extents;
+				for (int i : layout.bins[band])
+				{
+					int k = 4 * i;
+					if ((extents[k + 2] >= left) && (extents[k] <= right)
+					    && (extents[k + 3] >= top) && (extents[k + 1] <= bottom))
+					{
+						layout.kept[i].draw(g2D);
+					}
+				}
+			}
+			finally
+			{
+				g2D.dispose();
+			}
+			pixels = ((DataBufferInt) image.getRaster().getDataBuffer())
+			    .getData();
+		}
+	}
+}
@@ -0,0 +1,12 @@
+/**
+ * Package contenant l'export des dessins en dehors de l'interface graphique :
+ * <ul>
+ * 	<li>un moteur de rendu parallèle par tuiles : {@link export.TiledExporter}</li>
+ * 	<li>un encodeur PNG recevant l'image par bandes successives :
+ * 	{@link export.PngEncoder}</li>
+ * 	<li>le rendu en parallèle d'un lot de fichiers de dessin :
+ * 	{@link export.BatchRenderer}</li>
+ * </ul>
+ * @author davidroussel
+ */
+package export;
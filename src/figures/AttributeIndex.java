@@ -0,0 +1,376 @@
+package figures;
+
+import java.awt.BasicStroke;
+import java.awt.Paint;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import figures.enums.FigureType;
+import figures.enums.LineType;
+
+/**
+ * Index des attributs des figures d'un dessin : pour chaque type de figure,
+ * type de trait, couleur de remplissage et couleur de trait, l'ensemble
+ * ({@link BitSet}) des rangs (dans l'ordre de dessin) des figures ayant cet
+ * attribut.
+ * Permet d'évaluer les filtres de figures ({@link filters.FigureFilter}) par
+ * des opérations ensemblistes (union, intersection) sur ces ensembles plutôt
+ * qu'en testant chacune des figures : le parcours des figures filtrées
+ * dépend alors du nombre de figures retenues et de la taille des ensembles
+ * (n/64 mots pour n figures), et non plus du coût du test de chaque figure.
+ * Cet index est maintenu par le {@link Drawing} lors des ajouts, retraits,
+ * déplacements et changements de style des figures. Les ensembles étant
+ * indexés par rang, les changements de style et les échanges de figures
+ * voisines ne modifient que quelques bits, mais un ajout, un retrait ou un
+ * déplacement de k figures ailleurs qu'en fin de liste décale chacun des
+ * ensembles en O(n/64 + k) (voir {@link #shift(BitSet, int[], boolean)}) :
+ * son coût est proportionnel au nombre de valeurs distinctes d'attributs
+ * présentes dans le dessin.
+ * Les couleurs sont comparées avec {@link Paint#equals(Object)} (elles sont
+ * de toutes façons partagées par {@link utils.PaintFactory}).
+ * @author davidroussel
+ */
+public class AttributeIndex
+{
+	/**
+	 * Ensemble vide renvoyé pour un attribut qu'aucune figure ne possède
+	 */
+	private static final BitSet None = new BitSet();
+
+	/**
+	 * Rangs des figures de chaque type
+	 */
+	private final Map<FigureType, BitSet> types;
+
+	/**
+	 * Rangs des figures de chaque type de trait
+	 */
+	private final Map<LineType, BitSet> lines;
+
+	/**
+	 * Rangs des figures de chaque couleur de remplissage (la clé null
+	 * correspondant aux figures sans remplissage)
+	 */
+	private final Map<Paint, BitSet> fills;
+
+	/**
+	 * Rangs des figures de chaque couleur de trait (la clé null correspondant
+	 * aux figures sans trait)
+	 */
+	private final Map<Paint, BitSet> edges;
+
+	/**
+	 * Nombre de modifications de l'index, permettant aux utilisateurs de
+	 * savoir si les ensembles qu'ils ont calculés sont toujours valides
+	 */
+	private int modifications;
+
+	/**
+	 * Constructeur d'un index vide
+	 */
+	public AttributeIndex()
+	{
+		types = new EnumMap<FigureType, BitSet>(FigureType.class);
+		lines = new EnumMap<LineType, BitSet>(LineType.class);
+		fills = new HashMap<Paint, BitSet>();
+		edges = new HashMap<Paint, BitSet>();
+		modifications = 0;
+	}
+
+	/**
+	 * Nombre de modifications subies par l'index depuis sa création
+	 * @return le nombre de modifications de l'index
+	 */
+	public int getModifications()
+	{
+		return modifications;
+	}
+
+	/**
+	 * Rangs des figures d'un type donné
+	 * @param type le type de figure
+	 * @return l'ensemble des rangs des figures de ce type (à ne pas modifier)
+	 */
+	public BitSet ofType(FigureType type)
+	{
+		return lookup(types, type);
+	}
+
+	/**
+	 * Rangs des figures ayant un type de trait donné
+	 * @param type le type de trait
+	 * @return l'ensemble des rangs des figures dont le trait est de ce type
+	 * (à ne pas modifier)
+	 */
+	public BitSet withLine(LineType type)
+	{
+		return lookup(lines, type);
+	}
+
+	/**
+	 * Rangs des figures ayant une couleur de remplissage donnée
+	 * @param paint la couleur de remplissage (ou null pour les figures sans
+	 * remplissage)
+	 * @return l'ensemble des rangs des figures remplies avec cette couleur
+	 * (à ne pas modifier)
+	 */
+	public BitSet withFill(Paint paint)
+	{
+		return lookup(fills, paint);
+	}
+
+	/**
+	 * Rangs des figures ayant une couleur de trait donnée
+	 * @param paint la couleur de trait (ou null pour les figures sans trait)
+	 * @return l'ensemble des rangs des figures dont le trait a cette couleur
+	 * (à ne pas modifier)
+	 */
+	public BitSet withEdge(Paint paint)
+	{
+		return lookup(edges, paint);
+	}
+
+	/**
+	 * Effacement de l'index
+	 */
+	void clear()
+	{
+		types.clear();
+		lines.clear();
+		fills.clear();
+		edges.clear();
+		modifications++;
+	}
+
+	/**
+	 * Reconstruction de l'index à partir d'une liste de figures
+	 * @param figures les figures dans l'ordre de dessin
+	 */
+	void rebuild(List<Figure> figures)
+	{
+		clear();
+		int index = 0;
+		for (Figure figure : figures)
+		{
+			set(index++, figure);
+		}
+	}
+
+	/**
+	 * Mise en place des attributs d'une figure à un rang donné
+	 * @param index le rang de la figure
+	 * @param figure la figure
+	 */
+	void set(int index, Figure figure)
+	{
+		set(index,
+		    figure.getType(),
+		    figure.getEdgePaint(),
+		    figure.getFillPaint(),
+		    figure.getStroke());
+	}
+
+	/**
+	 * Mise en place des attributs d'une figure (éventuellement non décodée)
+	 * à un rang donné
+	 * @param index le rang de la figure
+	 * @param type le type de la figure
+	 * @param edge la couleur de trait de la figure
+	 * @param fill la couleur de remplissage de la figure
+	 * @param stroke le trait de la figure
+	 */
+	void set(int index,
+	         FigureType type,
+	         Paint edge,
+	         Paint fill,
+	         BasicStroke stroke)
+	{
+		entry(types, type).set(index);
+		entry(lines, LineType.fromStroke(stroke)).set(index);
+		entry(fills, fill).set(index);
+		entry(edges, edge).set(index);
+		modifications++;
+	}
+
+	/**
+	 * Retrait des attributs d'une figure à un rang donné, à appeler avant de
+	 * modifier le style de cette figure
+	 * @param index le rang de la figure
+	 * @param figure la figure
+	 */
+	void clear(int index, Figure figure)
+	{
+		lookup(types, figure.getType()).clear(index);
+		lookup(lines, LineType.fromStroke(figure.getStroke())).clear(index);
+		lookup(fills, figure.getFillPaint()).clear(index);
+		lookup(edges, figure.getEdgePaint()).clear(index);
+		modifications++;
+	}
+
+	/**
+	 * Insertion de figures : les rangs des figures suivantes sont décalés
+	 * @param indices les rangs croissants des figures insérées (après
+	 * insertion)
+	 * @param figures les figures insérées
+	 */
+	void insert(int[] indices, Figure[] figures)
+	{
+		if (indices.length > 0)
+		{
+			shift(types, indices, true);
+			shift(lines, indices, true);
+			shift(fills, indices, true);
+			shift(edges, indices, true);
+			for (int i = 0; i < indices.length; i++)
+			{
+				set(indices[i], figures[i]);
+			}
+		}
+	}
+
+	/**
+	 * Retrait de figures : les rangs des figures suivantes sont décalés
+	 * @param indices les rangs croissants des figures retirées (avant
+	 * retrait)
+	 */
+	void remove(int[] indices)
+	{
+		if (indices.length > 0)
+		{
+			shift(types, indices, false);
+			shift(lines, indices, false);
+			shift(fills, indices, false);
+			shift(edges, indices, false);
+			modifications++;
+		}
+	}
+
+	/**
+	 * Ensemble associé à un attribut
+	 * @param map la table des ensembles de cet attribut
+	 * @param key la valeur de l'attribut
+	 * @return l'ensemble associé à la valeur ou {@link #None}
+	 */
+	private static <K> BitSet lookup(Map<K, BitSet> map, K key)
+	{
+		BitSet bits = map.get(key);
+		return (bits != null ? bits : None);
+	}
+
+	/**
+	 * Ensemble associé à un attribut, créé si besoin
+	 * @param map la table des ensembles de cet attribut
+	 * @param key la valeur de l'attribut
+	 * @return l'ensemble (modifiable) associé à la valeur
+	 */
+	private static <K> BitSet entry(Map<K, BitSet> map, K key)
+	{
+		BitSet bits = map.get(key);
+		if (bits == null)
+		{
+			bits = new BitSet();
+			map.put(key, bits);
+		}
+		return bits;
+	}
+
+	/**
+	 * Décalage des rangs de tous les ensembles d'une table suite à une
+	 * insertion ou un retrait
+	 * @param map la table des ensembles d'un attribut
+	 * @param indices les rangs croissants insérés (après insertion) ou retirés
+	 * (avant retrait)
+	 * @param insertion true pour une insertion, false pour un retrait
+	 * @see #shift(BitSet, int[], boolean)
+	 */
+	private static <K> void shift(Map<K, BitSet> map,
+	                              int[] indices,
+	                              boolean insertion)
+	{
+		for (Map.Entry<K, BitSet> entry : map.entrySet())
+		{
+			entry.setValue(shift(entry.getValue(), indices, insertion));
+		}
+	}
+
+	/**
+	 * Décalage des rangs d'un ensemble suite à une insertion ou un retrait.
+	 * Les rangs compris entre deux rangs insérés ou retirés sont recopiés par
+	 * mots de 64 bits : le décalage ne dépend que du nombre de mots de
+	 * l'ensemble et du nombre de rangs insérés ou retirés, pas du nombre de
+	 * rangs contenus dans l'ensemble. Les rangs insérés ne font pas partie de
+	 * l'ensemble obtenu, les rangs retirés en sont supprimés.
+	 * @param bits l'ensemble à décaler
+	 * @param indices les rangs croissants insérés (après insertion) ou retirés
+	 * (avant retrait)
+	 * @param insertion true pour une insertion, false pour un retrait
+	 * @return l'ensemble décalé (bits lui même s'il n'y a aucun rang à
+	 * décaler)
+	 */
+	static BitSet shift(BitSet bits, int[] indices, boolean insertion)
+	{
+		int k = indices.length;
+		int length = bits.length();
+		if ((k == 0) || (length <= indices[0]))
+		{
+			// Aucun rang à décaler (ajout ou retrait en fin de liste)
+			return bits;
+		}
+		long[] words = new long[((length + k) >>> 6) + 2];
+		int source = 0;
+		for (int j = 0; j <= k; j++)
+		{
+			if (insertion)
+			{
+				// Rangs compris entre les rangs insérés j - 1 et j
+				int end = (j < k ? indices[j] : length + k) - j;
+				copy(bits, source, end, words, source + j);
+				source = end;
+			}
+			else
+			{
+				// Rangs compris entre les rangs retirés j - 1 et j
+				int end = (j < k ? indices[j] : length);
+				copy(bits, source, end, words, source - j);
+				source = end + 1;
+			}
+		}
+		return BitSet.valueOf(words);
+	}
+
+	/**
+	 * Copie d'une plage de rangs d'un ensemble à une position donnée d'un
+	 * ensemble représenté par ses mots de 64 bits (initialement nuls sur la
+	 * plage de destination)
+	 * @param bits l'ensemble source
+	 * @param from le premier rang de la plage (inclus)
+	 * @param to le dernier rang de la plage (exclus)
+	 * @param words les mots de l'ensemble destination
+	 * @param position le rang de destination du rang from
+	 */
+	private static void copy(BitSet bits,
+	                         int from,
+	                         int to,
+	                         long[] words,
+	                         int position)
+	{
+		if (from >= to)
+		{
+			return;
+		}
+		long[] range = bits.get(from, to).toLongArray();
+		int word = position >>> 6;
+		int offset = position & 63;
+		for (int i = 0; i < range.length; i++)
+		{
+			words[word + i] |= range[i] << offset;
+			if (offset != 0)
+			{
+				words[word + i + 1] |= range[i] >>> (64 - offset);
+			}
+		}
+	}
+}
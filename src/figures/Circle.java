@@ -23,7 +23,7 @@ public class Circle extends Figure {
     public Circle (Circle circle){
         super(circle);
         Ellipse2D ellipse2D = (Ellipse2D) circle.shape;
-        shape = new Ellipse2D.Double(ellipse2D.getMinX(), ellipse2D.getCenterY(), ellipse2D.getWidth(), ellipse2D.getHeight());
+        shape = new Ellipse2D.Double(ellipse2D.getMinX(), ellipse2D.getMinY(), ellipse2D.getWidth(), ellipse2D.getHeight());
     }
 
 
@@ -41,6 +41,7 @@ public class Circle extends Figure {
         double taille = Math.abs(l) < Math.abs(h) ? l : h;
         ellipse.width = taille;
         ellipse.height = taille;
+        invalidate();
     }
 
     @Override
@@ -51,16 +52,13 @@ public class Circle extends Figure {
         Ellipse2D.Double c = (Ellipse2D.Double) shape;
         translation.translate(x, y);
         c.setFrame(c.x - x, c.y -y, c.width,c.height);
-
+        invalidate();
     }
 
     @Override
-    public Point2D getCenter() {
+    protected Point2D computeCenter() {
         Ellipse2D ellipse2D = (Ellipse2D.Double) shape;
-        Point2D centre = new Point2D.Double(ellipse2D.getCenterX(), ellipse2D.getCenterY());
-        Point2D barycentre = new Point2D.Double();
-        getTransform().transform(centre, barycentre);
-        return barycentre;
+        return new Point2D.Double(ellipse2D.getCenterX(), ellipse2D.getCenterY());
     }
 
     @Override
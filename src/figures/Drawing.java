@@ -2,42 +2,185 @@ package figures;
 
 import java.awt.BasicStroke;
 import java.awt.Paint;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import figures.enums.DrawingEventType;
 import figures.enums.FigureType;
 import figures.enums.LineType;
 import filters.FigureFilter;
 import filters.FigureFilters;
+import filters.FilterCompiler;
+import history.Edit;
+import history.EditListener;
+import history.EditSource;
+import history.Footprint;
 import history.Memento;
 import history.Originator;
+import utils.Logger;
 import utils.PaintFactory;
+import utils.PersistentVector;
+import utils.RTree;
 import utils.Signature;
 import utils.StrokeFactory;
 
 /**
- * Classe contenant l'ensemble des figures à dessiner (LE MODELE)
+ * Classe contenant l'ensemble des figures à dessiner (LE MODELE).
+ * Chaque modification de la liste des figures (ajout, retrait, déplacement
+ * dans la liste, style ou transformation d'une figure) est décrite par une
+ * {@link Edit} auprès des {@link EditListener} enregistrés afin de
+ * permettre un historique par différences.
+ * La liste des figures est une liste persistante ({@link PersistentVector})
+ * : chaque modification produit une nouvelle version de la liste partageant
+ * l'essentiel de sa structure avec la précédente. Une version de la liste
+ * peut donc être conservée en O(1) ({@link #snapshot()}) pour l'historique
+ * ou pour le rendu pendant que le dessin continue d'évoluer. Les figures
+ * d'une version conservée sont protégées par copie sur écriture
+ * ({@link #mutable(Figure)}).
+ * Le dessin peut être enregistré dans un fichier binaire ({@link #save(File)})
+ * puis rechargé ({@link #load(DrawingFile)}) sans avoir à décoder toutes ses
+ * figures, ou bien rangé en mémoire dans un stockage en colonnes
+ * ({@link #compact()}).
+ * Les modifications du dessin sont signalées aux {@link DrawingListener}
+ * abonnés aux types de modifications ({@link DrawingEventType}) qui les
+ * concernent. Les modifications réalisées au cours d'une transaction
+ * ({@link #beginTransaction()}, {@link #endTransaction()}) sont regroupées
+ * en un seul {@link DrawingEvent}.
  * @author davidroussel
  */
-public class Drawing extends Observable implements Originator<Figure>, Signature
+public class Drawing
+    implements Originator<Figure>, EditSource, Signature
 {
 	/**
-	 * Liste des figures à dessiner (protected pour que les classes du même
-	 * package puissent y accéder)
+	 * Liste (persistante) des figures à dessiner (protected pour que les
+	 * classes du même package puissent y accéder). Chaque modification
+	 * remplace cette liste par une nouvelle version.
 	 */
-	protected Vector<Figure> figures;
+	protected PersistentVector<Figure> figures;
 
 	/**
-	 * Liste triée des indices (uniques) des figures sélectionnées de
-	 * {@link #figures}.
+	 * Époque courante du dessin, incrémentée à chaque fois qu'une version de
+	 * {@link #figures} est conservée ({@link #snapshot()}). Les figures dont la
+	 * {@link Figure#version} est antérieure à cette époque peuvent faire partie
+	 * d'une version conservée et doivent être copiées avant modification.
+	 * @see #mutable(Figure)
+	 */
+	private int epoch;
+
+	/**
+	 * Ensemble des indices des figures sélectionnées de {@link #figures}.
 	 * On peut savoir si une {@link Figure} est sélectionnée en l'interrogeant
 	 * avec sa méthode {@link Figure#isSelected()}, mais on gardera les indices
 	 * des figures sélectionnées dans {@link #selectionIndex} pour aller plus
 	 * vite sur les opérations qui concernent uniquement les figures
 	 * sélectionnées
 	 */
-	protected SortedSet<Integer> selectionIndex;
+	protected BitSet selectionIndex;
+
+	/**
+	 * Index spatial des figures basé sur leurs rectangles englobants
+	 * ({@link Figure#getBounds2D()} élargi de la demi épaisseur de trait, voir
+	 * {@link #indexBounds(Figure)}). Permet de ne tester
+	 * {@link Figure#contains(Point2D)} que sur les figures dont le rectangle
+	 * englobant contient le point recherché.
+	 * @see #getFigureAt(Point2D)
+	 */
+	private RTree<Figure> spatialIndex;
+
+	/**
+	 * Dernier identifiant de figure attribué (commun à tous les dessins afin
+	 * que les identifiants des figures soient uniques)
+	 * @see #reserveIds(int)
+	 */
+	private static final AtomicLong lastId = new AtomicLong();
+
+	/**
+	 * Figures du dessin indexées par leur identifiant
+	 * ({@link Figure#getId()}). Cette table est tenue à jour lors des ajouts,
+	 * retraits et copies ({@link #mutable(Figure)}) des figures. Les figures
+	 * d'une {@link #source} n'y figurent pas tant qu'elles n'ont pas été
+	 * copiées : elles sont retrouvées dans la source à partir de leur
+	 * identifiant.
+	 * @see #getFigure(long)
+	 */
+	private Map<Long, Figure> figuresById;
+
+	/**
+	 * Ordre de dessin des figures : les profondeurs ({@link Figure#depth})
+	 * des figures sont strictement croissantes le long de {@link #figures},
+	 * ce qui permet de retrouver le rang d'une figure par une recherche
+	 * dichotomique dans la liste ({@link PersistentVector#binarySearch}) et de
+	 * comparer les rangs de deux figures sans les rechercher.
+	 * @see #zIndex(Figure)
+	 */
+	private static final Comparator<Figure> DepthOrder =
+	    (Figure f1, Figure f2) -> Double.compare(f1.depth, f2.depth);
+
+	/**
+	 * Estimation (en octets) de la mémoire occupée dans une liste de figures
+	 * par une figure provenant encore d'une source compacte : l'élément
+	 * différé qui la désigne (la figure elle même est stockée dans la source)
+	 * @see #listFootprint(PersistentVector)
+	 */
+	private static final long DeferredFootprint =
+	    Footprint.ObjectHeader + Footprint.Reference + 8;
+
+	/**
+	 * Source compacte (fichier ou stockage en colonnes) dont proviennent les
+	 * figures du dessin (ou null). Les figures de cette source ne sont
+	 * matérialisées qu'à leur première utilisation : leur profondeur est
+	 * alors leur indice dans la source et elles ne figurent dans
+	 * {@link #figuresById} que si elles ont été copiées.
+	 * @see #load(DrawingFile)
+	 * @see #compact()
+	 */
+	private FigureSource source;
+
+	/**
+	 * Index des attributs (type, couleurs et type de trait) des figures
+	 * permettant d'évaluer les filtres sans tester chacune des figures.
+	 * Tenu à jour lors des ajouts, retraits, déplacements et changements de
+	 * style des figures.
+	 * @see #visibleFigures()
+	 */
+	private AttributeIndex attributes;
+
+	/**
+	 * Source dont les attributs des figures n'ont pas encore été placés dans
+	 * {@link #attributes} (ou null) : l'index n'est construit qu'à sa
+	 * première utilisation afin de ne pas ralentir le chargement.
+	 * @see #attributes()
+	 */
+	private FigureSource pendingAttributes;
+
+	/**
+	 * Rangs des figures passant les filtres courants, calculés à partir de
+	 * {@link #attributes} (ou null s'ils doivent être recalculés)
+	 * @see #visibleFigures()
+	 */
+	private BitSet visibleFigures;
+
+	/**
+	 * Nombre de modifications de {@link #attributes} lors du calcul de
+	 * {@link #visibleFigures}
+	 */
+	private int visibleModifications;
+
+	/**
+	 * Prédicat compilé ({@link FilterCompiler}) équivalent aux filtres
+	 * courants, conservé jusqu'à la prochaine modification des filtres (ou
+	 * null s'il doit être compilé)
+	 * @see #compiledFilter()
+	 */
+	private Predicate<Figure> compiledFilter;
 
 	/**
 	 * Figure située sous le curseur.
@@ -45,6 +188,19 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	 */
 	private Figure selectedFigure;
 
+	/**
+	 * Figure en cours de transformation interactive (déplacement, rotation
+	 * ou facteur d'échelle) ou null.
+	 * @see #setActiveFigure(Figure)
+	 */
+	private Figure activeFigure;
+
+	/**
+	 * Zone de sélection en cours de tracé (rectangle élastique) ou null.
+	 * @see #setSelectionArea(Rectangle2D)
+	 */
+	private Rectangle2D selectionArea;
+
 	/**
 	 * Le type de figure à créer (pour la prochaine figure)
 	 */
@@ -118,15 +274,68 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	 */
 	private FigureFilters<LineType> lineFilters;
 
+	/**
+	 * Listeners informés des modifications ({@link Edit}) de la liste des
+	 * figures
+	 */
+	private List<EditListener> editListeners;
+
+	/**
+	 * Abonnements des listeners informés des modifications du dessin, chacun
+	 * pour certains types de modifications. Une liste copiée à chaque
+	 * modification permet à un listener de se désabonner lors d'une
+	 * notification.
+	 */
+	private List<Subscription> drawingListeners;
+
+	/**
+	 * Nombre de transactions en cours (imbriquées)
+	 * @see #beginTransaction()
+	 */
+	private int transactionDepth;
+
+	/**
+	 * Types des modifications réalisées depuis le début de la transaction en
+	 * cours
+	 */
+	private EnumSet<DrawingEventType> pendingTypes;
+
+	/**
+	 * Union des zones modifiées depuis le début de la transaction en cours
+	 * (ou null)
+	 */
+	private Rectangle2D pendingDamage;
+
+	/**
+	 * Indique si l'une des modifications de la transaction en cours concerne
+	 * tout le dessin
+	 */
+	private boolean pendingAll;
+
 	/**
 	 * Constructeur de modèle de dessin
 	 */
 	public Drawing()
 	{
-		figures = new Vector<Figure>();
-		selectionIndex = new TreeSet<Integer>(Integer::compare);
+		figures = PersistentVector.empty();
+		epoch = 0;
+		selectionIndex = new BitSet();
+		spatialIndex = new RTree<Figure>();
+		figuresById = new HashMap<Long, Figure>();
+		source = null;
+		attributes = new AttributeIndex();
+		pendingAttributes = null;
+		visibleFigures = null;
+		visibleModifications = 0;
+		compiledFilter = null;
 		shapeFilters = new FigureFilters<FigureType>();
 		lineFilters = new FigureFilters<LineType>();
+		editListeners = new ArrayList<EditListener>();
+		drawingListeners = new CopyOnWriteArrayList<Subscription>();
+		transactionDepth = 0;
+		pendingTypes = EnumSet.noneOf(DrawingEventType.class);
+		pendingDamage = null;
+		pendingAll = false;
 		edgeType = LineType.SOLID;
 		stroke = StrokeFactory.getStroke(edgeType, edgeWidth);
 		filtering = false;
@@ -134,7 +343,9 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 		edgePaint = null;
 		edgeWidth = 1.0f;
 		selectedFigure = null;
-		System.out.println("Dessin créé.");
+		activeFigure = null;
+		selectionArea = null;
+		Logger.debug(() -> "Dessin créé.");
 	}
 
 	/**
@@ -143,10 +354,13 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	@Override
 	protected void finalize()
 	{
-		figures.clear();
 		figures = null;
 		selectionIndex.clear();
 		selectionIndex = null;
+		spatialIndex.clear();
+		spatialIndex = null;
+		figuresById.clear();
+		figuresById = null;
 		fillPaint = null;
 		edgePaint = null;
 		stroke = null;
@@ -158,13 +372,433 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	}
 
 	/**
-	 * Mise à jour du ou des {@link Observer} qui observent ce modèle. On place
-	 * le modèle dans un état "changé" puis on notifie les observateurs.
+	 * Notification d'une modification non précisée de l'ensemble du dessin
+	 * ({@link DrawingEventType#DRAWING_CHANGED}) aux listeners du dessin
 	 */
 	public void update()
 	{
-		setChanged();
-		notifyObservers(); // pour que les observateurs soient mis à jour
+		fire(DrawingEventType.DRAWING_CHANGED, null);
+	}
+
+	/**
+	 * Mise à jour du modèle suite à la modification géométrique d'une figure
+	 * (création en cours, translation, rotation ou facteur d'échelle) :
+	 * met à jour la position de la figure dans l'index spatial puis notifie
+	 * les listeners ({@link DrawingEventType#FIGURE_TRANSFORMED}) en leur
+	 * fournissant la zone endommagée (union de l'ancienne et de la nouvelle
+	 * emprise de la figure).
+	 * @param figure la figure modifiée
+	 */
+	public void update(Figure figure)
+	{
+		if ((figure != null) && spatialIndex.contains(figure))
+		{
+			Rectangle2D damage = spatialIndex.getBounds(figure);
+			Rectangle2D bounds = indexBounds(figure);
+			spatialIndex.put(figure, bounds);
+			damage.add(bounds);
+			fire(DrawingEventType.FIGURE_TRANSFORMED, damage);
+		}
+		else
+		{
+			fire(DrawingEventType.FIGURE_TRANSFORMED, null);
+		}
+	}
+
+	/**
+	 * Abonnement d'un listener à toutes les modifications du dessin
+	 * @param listener le listener à abonner
+	 */
+	public void addDrawingListener(DrawingListener listener)
+	{
+		addDrawingListener(listener, EnumSet.allOf(DrawingEventType.class));
+	}
+
+	/**
+	 * Abonnement d'un listener à certains types de modifications du dessin :
+	 * le listener ne sera informé que des évènements contenant au moins une
+	 * modification de l'un de ces types. Un listener déjà abonné voit son
+	 * abonnement remplacé.
+	 * @param listener le listener à abonner
+	 * @param interests les types de modifications dont le listener doit être
+	 * informé
+	 */
+	public void addDrawingListener(DrawingListener listener,
+	                               Set<DrawingEventType> interests)
+	{
+		if ((listener != null) && (interests != null) && !interests.isEmpty())
+		{
+			removeDrawingListener(listener);
+			drawingListeners.add(new Subscription(listener, interests));
+		}
+	}
+
+	/**
+	 * Désabonnement d'un listener
+	 * @param listener le listener à désabonner
+	 */
+	public void removeDrawingListener(DrawingListener listener)
+	{
+		for (Subscription subscription : drawingListeners)
+		{
+			if (subscription.listener == listener)
+			{
+				drawingListeners.remove(subscription);
+			}
+		}
+	}
+
+	/**
+	 * Début d'une transaction : les modifications réalisées jusqu'à la fin
+	 * de la transaction ({@link #endTransaction()}) seront signalées par un
+	 * seul évènement. Les transactions peuvent être imbriquées, l'évènement
+	 * étant émis à la fin de la transaction la plus externe.
+	 */
+	public void beginTransaction()
+	{
+		transactionDepth++;
+	}
+
+	/**
+	 * Fin d'une transaction : si c'est la transaction la plus externe, les
+	 * modifications réalisées depuis son début sont signalées aux listeners
+	 * par un seul évènement dont la zone modifiée est l'union des zones
+	 * modifiées
+	 */
+	public void endTransaction()
+	{
+		if (transactionDepth == 0)
+		{
+			Logger.warning(() -> "no transaction in progress");
+			return;
+		}
+		transactionDepth--;
+		if ((transactionDepth == 0) && !pendingTypes.isEmpty())
+		{
+			DrawingEvent event = new DrawingEvent(this,
+			                                      pendingTypes,
+			                                      pendingAll ? null
+			                                                 : pendingDamage);
+			pendingTypes.clear();
+			pendingDamage = null;
+			pendingAll = false;
+			dispatch(event);
+		}
+	}
+
+	/**
+	 * Exécution d'opérations sur le dessin au sein d'une transaction
+	 * @param operations les opérations à réaliser
+	 * @see #beginTransaction()
+	 * @see #endTransaction()
+	 */
+	public void transaction(Runnable operations)
+	{
+		beginTransaction();
+		try
+		{
+			operations.run();
+		}
+		finally
+		{
+			endTransaction();
+		}
+	}
+
+	/**
+	 * Signalement d'une modification aux listeners (ou ajout à la
+	 * transaction en cours)
+	 * @param type le type de la modification
+	 * @param damage la zone modifiée du dessin (en coordonnées du dessin) ou
+	 * null si tout le dessin est concerné
+	 */
+	private void fire(DrawingEventType type, Rectangle2D damage)
+	{
+		fire(EnumSet.of(type), damage);
+	}
+
+	/**
+	 * Signalement de modifications aux listeners (ou ajout à la transaction
+	 * en cours)
+	 * @param types les types des modifications
+	 * @param damage la zone modifiée du dessin (en coordonnées du dessin) ou
+	 * null si tout le dessin est concerné
+	 */
+	private void fire(Set<DrawingEventType> types, Rectangle2D damage)
+	{
+		if (transactionDepth > 0)
+		{
+			pendingTypes.addAll(types);
+			if (damage == null)
+			{
+				pendingAll = true;
+			}
+			else if (pendingDamage == null)
+			{
+				pendingDamage = (Rectangle2D) damage.clone();
+			}
+			else
+			{
+				pendingDamage.add(damage);
+			}
+		}
+		else if (!drawingListeners.isEmpty())
+		{
+			dispatch(new DrawingEvent(this, types, damage));
+		}
+	}
+
+	/**
+	 * Transmission d'un évènement aux listeners abonnés à l'un de ses types
+	 * de modifications
+	 * @param event l'évènement
+	 */
+	private void dispatch(DrawingEvent event)
+	{
+		for (Subscription subscription : drawingListeners)
+		{
+			if (event.containsAny(subscription.interests))
+			{
+				subscription.listener.drawingChanged(event);
+			}
+		}
+	}
+
+	/**
+	 * Abonnement d'un {@link DrawingListener} à certains types de
+	 * modifications
+	 */
+	private static class Subscription
+	{
+		/**
+		 * Le listener abonné
+		 */
+		final DrawingListener listener;
+
+		/**
+		 * Les types de modifications dont le listener doit être informé
+		 */
+		final EnumSet<DrawingEventType> interests;
+
+		/**
+		 * Constructeur
+		 * @param listener le listener abonné
+		 * @param interests les types de modifications (non vide)
+		 */
+		Subscription(DrawingListener listener, Set<DrawingEventType> interests)
+		{
+			this.listener = listener;
+			this.interests = EnumSet.copyOf(interests);
+		}
+	}
+
+	/**
+	 * Emprise d'une figure dans le dessin : son rectangle englobant élargi de
+	 * la demi épaisseur de son trait (elle même soumise au facteur d'échelle
+	 * de la figure).
+	 * @param figure la figure dont on veut l'emprise
+	 * @return un nouveau rectangle contenant tout ce que dessine la figure
+	 */
+	public static Rectangle2D indexBounds(Figure figure)
+	{
+		Rectangle2D bounds = figure.getBounds2D();
+		double margin = 0.0;
+		BasicStroke figureStroke = figure.getStroke();
+		if ((figureStroke != null) && (figure.getEdgePaint() != null))
+		{
+			double scaleFactor =
+			    Math.sqrt(Math.abs(figure.getScale().getDeterminant()));
+			margin = (figureStroke.getLineWidth() / 2.0) * scaleFactor;
+		}
+		return new Rectangle2D.Double(bounds.getX() - margin,
+		                              bounds.getY() - margin,
+		                              bounds.getWidth() + (2.0 * margin),
+		                              bounds.getHeight() + (2.0 * margin));
+	}
+
+	/**
+	 * Enregistrement de l'état géométrique (translation, rotation et facteur
+	 * d'échelle) d'une figure avant sa transformation afin que celle-ci
+	 * puisse être annulée. A appeler au début d'une transformation
+	 * interactive (déplacement, rotation ou changement d'échelle).
+	 * @param figure la figure qui va être transformée
+	 */
+	public void recordTransform(Figure figure)
+	{
+		if ((figure != null) && !editListeners.isEmpty())
+		{
+			int index = zIndex(figure);
+			if (index >= 0)
+			{
+				fireEdit(new TransformEdit(index, figure));
+			}
+		}
+	}
+
+	/**
+	 * Accesseur de la figure en cours de transformation interactive
+	 * @return la figure en cours de transformation (ou sa copie si elle a
+	 * été copiée depuis, voir {@link #mutable(Figure)}) ou null si aucune
+	 * figure n'est en cours de transformation
+	 */
+	public Figure getActiveFigure()
+	{
+		return activeFigure;
+	}
+
+	/**
+	 * Début ou fin de la transformation interactive d'une figure (notifiée
+	 * par {@link DrawingEventType#ACTIVE_FIGURE_CHANGED}) : tant qu'elle dure
+	 * seule cette figure est modifiée, les vues peuvent donc conserver le
+	 * rendu des autres figures.
+	 * @param figure la figure dont la transformation commence ou null à la
+	 * fin de la transformation
+	 */
+	public void setActiveFigure(Figure figure)
+	{
+		if (figure != activeFigure)
+		{
+			activeFigure = figure;
+			fire(DrawingEventType.ACTIVE_FIGURE_CHANGED, null);
+		}
+	}
+
+	/**
+	 * Accesseur de la zone de sélection en cours de tracé
+	 * @return la zone de sélection (rectangle élastique) en cours de tracé
+	 * ou null
+	 */
+	public Rectangle2D getSelectionArea()
+	{
+		return selectionArea;
+	}
+
+	/**
+	 * Mise en place de la zone de sélection en cours de tracé afin que les
+	 * vues puissent l'afficher (notifiée par
+	 * {@link DrawingEventType#SELECTION_CHANGED} avec l'union de l'ancienne
+	 * et de la nouvelle zone comme zone endommagée). La sélection des figures
+	 * n'est pas modifiée (voir {@link #selectArea(Rectangle2D, boolean, boolean)}).
+	 * @param area la nouvelle zone de sélection ou null à la fin du tracé
+	 */
+	public void setSelectionArea(Rectangle2D area)
+	{
+		Rectangle2D damage = null;
+		if (selectionArea != null)
+		{
+			damage = (Rectangle2D) selectionArea.clone();
+		}
+		if (area != null)
+		{
+			if (damage != null)
+			{
+				damage.add(area);
+			}
+			else
+			{
+				damage = (Rectangle2D) area.clone();
+			}
+		}
+		selectionArea = (area != null ? (Rectangle2D) area.clone() : null);
+		if (damage != null)
+		{
+			fire(DrawingEventType.SELECTION_CHANGED, damage);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see history.EditSource#addEditListener(history.EditListener)
+	 */
+	@Override
+	public void addEditListener(EditListener listener)
+	{
+		if ((listener != null) && !editListeners.contains(listener))
+		{
+			editListeners.add(listener);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see history.EditSource#removeEditListener(history.EditListener)
+	 */
+	@Override
+	public void removeEditListener(EditListener listener)
+	{
+		editListeners.remove(listener);
+	}
+
+	/**
+	 * Notification d'une modification aux {@link #editListeners}
+	 * @param edit la modification réalisée
+	 */
+	private void fireEdit(Edit edit)
+	{
+		for (EditListener listener : editListeners)
+		{
+			listener.editPerformed(edit);
+		}
+	}
+
+	/**
+	 * Prise en compte d'une modification annulée ou rejouée : notification
+	 * des listeners. Chaque modification met elle même à jour
+	 * {@link #selectionIndex} pour les seuls rangs qu'elle concerne (voir
+	 * {@link #reselect(int)}), sans parcourir l'ensemble des figures.
+	 * @param type le type de la modification annulée ou rejouée
+	 */
+	private void editApplied(DrawingEventType type)
+	{
+		fire(EnumSet.of(type, DrawingEventType.SELECTION_CHANGED), null);
+	}
+
+	/**
+	 * Mise à jour de l'appartenance d'un rang à {@link #selectionIndex} à
+	 * partir de l'état sélectionné et de la visibilité de la figure de ce
+	 * rang, en O(log n)
+	 * @param index le rang de la figure
+	 */
+	private void reselect(int index)
+	{
+		Figure figure = figures.get(index);
+		selectionIndex.set(index, figure.isSelected() && isVisible(figure));
+	}
+
+	/**
+	 * Remise en place d'une sélection conservée lors du remplacement de
+	 * l'ensemble des figures (effacement, chargement), en ne parcourant que
+	 * les figures sélectionnées
+	 * @param selection les rangs des figures sélectionnées à remettre en
+	 * place
+	 */
+	private void restoreSelection(BitSet selection)
+	{
+		selectionIndex = (BitSet) selection.clone();
+		for (int i = selectionIndex.nextSetBit(0); i >= 0;
+		     i = selectionIndex.nextSetBit(i + 1))
+		{
+			setSelected(i, figures.get(i), true);
+		}
+	}
+
+	/**
+	 * Mise en place de l'état sélectionné d'une figure du dessin (sans mise
+	 * à jour de {@link #selectionIndex}). Une figure sélectionnée provenant
+	 * de la source compacte du dessin est conservée dans la liste des figures
+	 * à la place de son élément différé : la source ne la référençant que
+	 * faiblement ({@link FigureSource#get(int)}), elle pourrait sinon être
+	 * matérialisée à nouveau dans l'état non sélectionné. Les éléments
+	 * différés de {@link #figures} ne sont donc jamais sélectionnés.
+	 * @param index le rang de la figure
+	 * @param figure la figure de ce rang
+	 * @param selected le nouvel état sélectionné de la figure
+	 */
+	private void setSelected(int index, Figure figure, boolean selected)
+	{
+		figure.setSelected(selected);
+		if (selected && (source != null) && (source.slotOf(figure) >= 0))
+		{
+			figures = figures.with(index, figure);
+		}
 	}
 
 	/**
@@ -282,12 +916,25 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 		Figure newFigure = type.getFigure(stroke, edgePaint, fillPaint, p);
 
 		if (newFigure != null) {
-			figures.add(newFigure);
-		}
-
-		/* Notification des observers */
+			newFigure.version = epoch;
+			newFigure.id = reserveIds(1);
+			newFigure.depth = (figures.isEmpty() ? 0
+			    : figures.get(figures.size() - 1).depth + 1);
+			figuresById.put(Long.valueOf(newFigure.id), newFigure);
+			figures = figures.plus(newFigure);
+			attributes().insert(new int[] {figures.size() - 1},
+			                  new Figure[] {newFigure});
+			Rectangle2D bounds = indexBounds(newFigure);
+			spatialIndex.put(newFigure, bounds);
+			if (!editListeners.isEmpty()) {
+				fireEdit(new FiguresEdit(true,
+				                         new int[] {figures.size() - 1},
+				                         new Figure[] {newFigure}));
+			}
 
-		update();
+			/* Notification des listeners */
+			fire(DrawingEventType.FIGURE_ADDED, bounds);
+		}
 		return newFigure;
 	}
 
@@ -303,7 +950,7 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 			return figures.get(figures.size()-1);
 		}
 		else{
-			System.out.println("Pas de dernière figure.");
+			Logger.debug(() -> "Pas de dernière figure.");
 			return null;
 		}
 	}
@@ -317,8 +964,15 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	public Figure getFigureAt(Point2D p)
 	{
 		selectedFigure = null;
-		stream().forEach((Figure figure) -> {
-			if (figure.contains(p)){
+		/*
+		 * Passe grossière avec l'index spatial puis test précis sur les
+		 * seules figures candidates, en conservant la plus haute dans l'ordre
+		 * de dessin
+		 */
+		spatialIndex.search(p, (Figure figure) -> {
+			if (((selectedFigure == null) ||
+			     (figure.depth > selectedFigure.depth)) &&
+			    isVisible(figure) && figure.contains(p)){
 				selectedFigure = figure;
 			}
 		});
@@ -326,38 +980,429 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	}
 
 	/**
-	 * Retrait de la dernière figure.
-	 * Utile pour retirer une figure de taille nulle lorsque l'on clique
-	 * dans la zone de dessin
-	 * @post le modèle de dessin a été mis à jour (update)
+	 * Accès aux figures (éventuellement filtrées) dont l'emprise intersecte
+	 * une zone particulière du dessin, dans l'ordre de dessin.
+	 * Utilise l'index spatial pour ne pas parcourir l'ensemble des figures
+	 * lorsque seule une petite partie du dessin doit être redessinée.
+	 * @param area la zone du dessin concernée
+	 * @return le flux des figures (filtrées) intersectant la zone
 	 */
-	public void removeLastFigure()
+	public Stream<Figure> stream(Rectangle2D area)
 	{
-		if(!figures.isEmpty()){
-			figures.remove(figures.size()-1);
-			update();
+		List<Figure> candidates = new ArrayList<Figure>();
+		spatialIndex.search(area, candidates::add);
+
+		if (candidates.size() > (figures.size() / 4))
+		{
+			// Grande partie du dessin : on conserve l'ordre de la liste
+			Set<Figure> inside =
+			    Collections.newSetFromMap(new IdentityHashMap<Figure, Boolean>());
+			inside.addAll(candidates);
+			return stream().filter(inside::contains);
 		}
+
+		candidates.sort(DepthOrder);
+		return candidates.stream().filter(this::isVisible);
 	}
 
 	/**
-	 * Effacement de toutes les figures (sera déclenché par une action clear)
-	 * @post le modèle de dessin a été mis à jour
+	 * Rang d'une figure dans l'ordre de dessin
+	 * @param figure la figure dont on veut le rang
+	 * @return le rang de la figure (0 pour la première figure dessinée) ou
+	 * -1 si celle-ci ne fait pas partie du dessin
 	 */
-	public void clear()
+	public int indexOf(Figure figure)
 	{
-		if(!figures.isEmpty()){
-			figures.clear();
-			update();
-		}
+		return zIndex(figure);
 	}
 
 	/**
-	 * Accesseur de l'état de filtrage
-	 * @return l'état courant de filtrage
+	 * Rang d'une figure dans l'ordre de dessin à partir de son identifiant
+	 * @param id l'identifiant de la figure ({@link Figure#getId()})
+	 * @return le rang de la figure (0 pour la première figure dessinée) ou
+	 * -1 si aucune figure du dessin ne possède cet identifiant
 	 */
-	public boolean getFiltering()
+	public int indexOf(long id)
 	{
-		return filtering;
+		return zIndex(id);
+	}
+
+	/**
+	 * Accès à une figure du dessin à partir de son identifiant, en temps
+	 * constant. Contrairement à son rang, l'identifiant d'une figure ne
+	 * change pas lorsque des figures sont retirées ou déplacées.
+	 * @param id l'identifiant de la figure ({@link Figure#getId()})
+	 * @return la figure du dessin possédant cet identifiant (la version
+	 * courante si elle a été copiée, voir {@link #mutable(Figure)}) ou null
+	 * si aucune figure du dessin ne possède cet identifiant
+	 */
+	public Figure getFigure(long id)
+	{
+		Figure figure = figuresById.get(Long.valueOf(id));
+		if ((figure == null) && (source != null))
+		{
+			// Figure de la source pas encore copiée (mais peut être retirée)
+			int slot = source.slotOf(id);
+			if (slot >= 0)
+			{
+				figure = source.get(slot);
+				if (zIndex(figure) < 0)
+				{
+					figure = null;
+				}
+			}
+		}
+		return figure;
+	}
+
+	/**
+	 * Réservation d'un bloc d'identifiants de figures
+	 * @param count le nombre d'identifiants à réserver
+	 * @return le premier identifiant du bloc : les identifiants réservés
+	 * sont consécutifs et n'ont jamais été (et ne seront jamais) attribués
+	 * à d'autres figures
+	 */
+	static long reserveIds(int count)
+	{
+		return lastId.getAndAdd(count) + 1;
+	}
+
+	/**
+	 * Rang d'une figure dans l'ordre de dessin, obtenu en O(log n) à partir
+	 * de sa profondeur ({@link #DepthOrder})
+	 * @param figure la figure dont on veut le rang
+	 * @return l'indice de la figure dans {@link #figures} ou -1 si celle-ci
+	 * n'en fait pas partie (y compris si elle a été remplacée par une copie)
+	 */
+	private int zIndex(Figure figure)
+	{
+		if (figure == null){
+			return -1;
+		}
+		int index = figures.binarySearch(figure, DepthOrder);
+		return ((index >= 0) && (figures.get(index) == figure)) ? index : -1;
+	}
+
+	/**
+	 * Rang d'une figure dans l'ordre de dessin à partir de son identifiant
+	 * @param id l'identifiant de la figure
+	 * @return l'indice dans {@link #figures} de la figure possédant cet
+	 * identifiant ou -1 si aucune figure n'en fait partie
+	 */
+	private int zIndex(long id)
+	{
+		Figure figure = getFigure(id);
+		return (figure != null ? zIndex(figure) : -1);
+	}
+
+	/**
+	 * Mise en place de la profondeur d'une figure insérée dans
+	 * {@link #figures} afin qu'elle soit comprise entre celles de ses
+	 * voisines (la profondeur de la figure est conservée si c'est déjà le
+	 * cas). Lorsqu'il n'y a plus de valeur représentable entre les
+	 * profondeurs des voisines, toutes les profondeurs sont renumérotées.
+	 * @param index le rang de la figure insérée
+	 */
+	private void place(int index)
+	{
+		Figure figure = figures.get(index);
+		Figure previous = (index > 0 ? figures.get(index - 1) : null);
+		Figure next = (index < figures.size() - 1 ? figures.get(index + 1)
+		                                         : null);
+		if (((previous == null) || (previous.depth < figure.depth)) &&
+		    ((next == null) || (figure.depth < next.depth))){
+			return;
+		}
+		if (previous == null){
+			mutable(index).depth = next.depth - 1;
+		}
+		else if (next == null){
+			mutable(index).depth = previous.depth + 1;
+		}
+		else{
+			double middle = (previous.depth + next.depth) / 2;
+			if ((previous.depth < middle) && (middle < next.depth)){
+				mutable(index).depth = middle;
+			}
+			else{
+				renumber();
+			}
+		}
+	}
+
+	/**
+	 * Renumérotation des profondeurs de toutes les figures suivant leur rang
+	 * (les figures partagées avec une version conservée sont copiées)
+	 */
+	private void renumber()
+	{
+		for (int index = 0; index < figures.size(); index++){
+			mutable(index).depth = index;
+		}
+	}
+
+	/**
+	 * Reconstruction de l'index spatial, de la table des identifiants et des
+	 * profondeurs des figures après une modification globale de la liste des
+	 * figures
+	 */
+	private void rebuildIndex()
+	{
+		spatialIndex.clear();
+		figuresById.clear();
+		int index = 0;
+		for (Figure figure : figures){
+			figure.depth = index++;
+			spatialIndex.put(figure, indexBounds(figure));
+			figuresById.put(Long.valueOf(figure.id), figure);
+		}
+		pendingAttributes = null;
+		attributes.rebuild(figures);
+		source = null;
+	}
+
+	/**
+	 * Accès à l'index des attributs des figures, construit si besoin à partir
+	 * du fichier chargé ({@link #pendingAttributes})
+	 * @return l'index à jour des attributs des figures
+	 */
+	private AttributeIndex attributes()
+	{
+		if (pendingAttributes != null)
+		{
+			attributes.clear();
+			pendingAttributes.index(attributes);
+			pendingAttributes = null;
+		}
+		return attributes;
+	}
+
+	/**
+	 * Indique si une figure passe les filtres courants (lorsque le filtrage
+	 * est actif)
+	 * @param figure la figure à tester
+	 * @return true si la figure fait partie du flux fourni par
+	 * {@link #stream()}
+	 */
+	private boolean isVisible(Figure figure)
+	{
+		return !filtering || compiledFilter().test(figure);
+	}
+
+	/**
+	 * Filtres actifs : chacun d'entre eux doit être vérifié par les figures
+	 * visibles lorsque le filtrage est actif
+	 * @return une nouvelle liste contenant les filtres actifs
+	 */
+	private List<FigureFilter<?>> activeFilters()
+	{
+		List<FigureFilter<?>> active = new ArrayList<FigureFilter<?>>();
+		if (shapeFilters.size() > 0){
+			active.add(shapeFilters);
+		}
+		if (fillColorFilter != null){
+			active.add(fillColorFilter);
+		}
+		if (edgeColorFilter != null){
+			active.add(edgeColorFilter);
+		}
+		if (lineFilters.size() > 0){
+			active.add(lineFilters);
+		}
+		return active;
+	}
+
+	/**
+	 * Prédicat compilé équivalent aux filtres actifs, compilé lors du premier
+	 * appel suivant une modification des filtres
+	 * @return le prédicat vérifié par les figures passant les filtres actifs
+	 * @see FilterCompiler#compile(List, AttributeIndex, List)
+	 */
+	private Predicate<Figure> compiledFilter()
+	{
+		if (compiledFilter == null)
+		{
+			compiledFilter = FilterCompiler.compile(activeFilters(),
+			                                        attributes(),
+			                                        figures);
+		}
+		return compiledFilter;
+	}
+
+	/**
+	 * Prise en compte d'une modification des filtres (ou de l'état du
+	 * filtrage) : invalidation des résultats dépendant des filtres (prédicat
+	 * compilé et figures visibles), reconstruction de
+	 * {@link #selectionIndex} qui ne contient que les figures sélectionnées
+	 * visibles, puis notification des listeners
+	 */
+	private void filtersChanged()
+	{
+		compiledFilter = null;
+		visibleFigures = null;
+		refreshSelection();
+		fire(EnumSet.of(DrawingEventType.FILTERS_CHANGED,
+		                DrawingEventType.SELECTION_CHANGED), null);
+	}
+
+	/**
+	 * Prédicat de visibilité des figures figé sur l'état de filtrage et les
+	 * filtres courants : les modifications ultérieures des filtres du dessin
+	 * ne le modifient pas. Permet de filtrer une version conservée de la liste
+	 * des figures ({@link #snapshot()}) depuis un autre thread.
+	 * @return un prédicat indiquant si une figure fait partie du flux fourni
+	 * par {@link #stream()} avec les filtres courants
+	 */
+	public Predicate<Figure> visibility()
+	{
+		if (!filtering)
+		{
+			return (Figure figure) -> true;
+		}
+		// Le prédicat compilé ne dépend pas des filtres du dessin
+		return compiledFilter();
+	}
+
+	/**
+	 * Retrait de la dernière figure.
+	 * Utile pour retirer une figure de taille nulle lorsque l'on clique
+	 * dans la zone de dessin
+	 * @post le modèle de dessin a été mis à jour (update)
+	 */
+	public void removeLastFigure()
+	{
+		if(!figures.isEmpty()){
+			Figure last = figures.get(figures.size()-1);
+			figures = figures.minus(figures.size()-1);
+			attributes().remove(new int[] {figures.size()});
+			Rectangle2D damage = spatialIndex.getBounds(last);
+			spatialIndex.remove(last);
+			figuresById.remove(Long.valueOf(last.id));
+			selectionIndex.clear(figures.size());
+			if (!editListeners.isEmpty()) {
+				fireEdit(new FiguresEdit(false,
+				                         new int[] {figures.size()},
+				                         new Figure[] {last}));
+			}
+			fire(DrawingEventType.FIGURE_REMOVED, damage);
+		}
+	}
+
+	/**
+	 * Effacement de toutes les figures (sera déclenché par une action clear)
+	 * @post le modèle de dessin a été mis à jour
+	 */
+	public void clear()
+	{
+		if(!figures.isEmpty()){
+			if (!editListeners.isEmpty()) {
+				// la liste vidée est conservée par l'edit
+				fireEdit(new ClearEdit(figures));
+			}
+			figures = PersistentVector.empty();
+			spatialIndex.clear();
+			attributes.clear();
+			pendingAttributes = null;
+			selectionIndex.clear();
+			figuresById.clear();
+			source = null;
+			activeFigure = null;
+			fire(EnumSet.of(DrawingEventType.DRAWING_CHANGED,
+			                DrawingEventType.SELECTION_CHANGED), null);
+		}
+	}
+
+	/**
+	 * Remplacement de toutes les figures par celles d'un fichier de dessin.
+	 * Les figures du fichier ne sont décodées qu'à leur première utilisation
+	 * (dessin, recherche de la figure sous le curseur, parcours de la liste)
+	 * et l'index spatial est construit directement à partir des rectangles
+	 * englobants stockés dans le fichier : le chargement ne dépend donc pas
+	 * du coût de décodage des figures.
+	 * @param file le fichier de dessin ouvert
+	 * @post le modèle de dessin a été mis à jour
+	 */
+	public void load(DrawingFile file)
+	{
+		if (!editListeners.isEmpty()) {
+			fireEdit(new LoadEdit(figures, file));
+		}
+		apply(file);
+		fire(EnumSet.of(DrawingEventType.DRAWING_CHANGED,
+		                DrawingEventType.SELECTION_CHANGED), null);
+	}
+
+	/**
+	 * Rangement de toutes les figures du dessin dans un stockage en colonnes
+	 * ({@link FigureStore}) : les figures sont remplacées par des vues
+	 * matérialisées à la demande sur ce stockage, ce qui réduit fortement la
+	 * mémoire occupée et le travail du ramasse miettes pour les dessins
+	 * comportant un grand nombre de figures. Le contenu du dessin (et la
+	 * sélection, y compris celle des figures masquées par les filtres) ne
+	 * change pas : cette opération n'est pas annulable.
+	 * Les versions conservées de la liste des figures (historique) ne sont
+	 * pas concernées.
+	 * @throws IllegalArgumentException si la forme de l'une des figures ne
+	 * peut pas être rangée (voir {@link FigureStore#of(List)})
+	 * @post le modèle de dessin a été mis à jour
+	 */
+	public void compact() throws IllegalArgumentException
+	{
+		BitSet selection = new BitSet(figures.size());
+		figures.forEachPresentIndexed((Figure figure, int index) -> {
+			if (figure.isSelected())
+			{
+				selection.set(index);
+			}
+		});
+		apply(FigureStore.of(figures));
+		restoreSelection(selection);
+		refreshSelection();
+		fire(DrawingEventType.DRAWING_CHANGED, null);
+	}
+
+	/**
+	 * Mise en place des figures d'une source compacte (sans notification)
+	 * @param file la source des figures (fichier de dessin ouvert ou stockage
+	 * en colonnes)
+	 */
+	private void apply(FigureSource file)
+	{
+		/*
+		 * Les figures matérialisées peuvent être fournies à nouveau par la
+		 * source (si elle est chargée à nouveau) : elles ne doivent pas être
+		 * modifiées sans être copiées
+		 */
+		epoch++;
+		source = file;
+		file.restoreState();
+		figures = file.figures();
+		spatialIndex.load(file.size(), file.bounds(), file::get, file::slotOf);
+		pendingAttributes = file;
+		figuresById.clear();
+		selectionIndex.clear();
+		selectedFigure = null;
+		activeFigure = null;
+	}
+
+	/**
+	 * Enregistrement de la version courante du dessin dans un fichier
+	 * @param file le fichier à écrire
+	 * @throws IOException si l'écriture échoue
+	 * @see DrawingFile#write(Drawing, File)
+	 */
+	public void save(File file) throws IOException
+	{
+		DrawingFile.write(this, file);
+	}
+
+	/**
+	 * Accesseur de l'état de filtrage
+	 * @return l'état courant de filtrage
+	 */
+	public boolean getFiltering()
+	{
+		return filtering;
 	}
 
 	/**
@@ -368,7 +1413,7 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	public void setFiltering(boolean filtering)
 	{
 		this.filtering = filtering;
-		update();
+		filtersChanged();
 	}
 
 	/**
@@ -382,7 +1427,7 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	{
 		boolean isok = shapeFilters.add(filter);
 		if(isok){
-			update();
+			filtersChanged();
 		}
 		return isok;
 	}
@@ -398,7 +1443,7 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	{
 		boolean isremoved = shapeFilters.remove(filter);
 		if(isremoved){
-			update();
+			filtersChanged();
 		}
 		return isremoved;
 	}
@@ -412,7 +1457,7 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	public void setFillColorFilter(FigureFilter<Paint> filter)
 	{
 		fillColorFilter = filter;
-		update();
+		filtersChanged();
 	}
 
 	/**
@@ -424,7 +1469,7 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	public void setEdgeColorFilter(FigureFilter<Paint> filter)
 	{
 		edgeColorFilter = filter;
-		update();
+		filtersChanged();
 	}
 
 	/**
@@ -438,7 +1483,7 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	{
 		boolean isadded = lineFilters.add(filter);
 		if(isadded){
-			update();
+			filtersChanged();
 		}
 		return isadded;
 
@@ -453,43 +1498,178 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	 */
 	public boolean removeLineFilter(FigureFilter<LineType> filter)
 	{
-		boolean isremoved = lineFilters.add(filter);
+		boolean isremoved = lineFilters.remove(filter);
 		if(isremoved){
-			update();
+			filtersChanged();
 		}
 		return isremoved;
 	}
 
 	/**
-	 * Remise à l'état non sélectionné de toutes les figures
+	 * Remise à l'état non sélectionné de toutes les figures sélectionnées,
+	 * y compris celles masquées par les filtres. Sans filtrage, seules les
+	 * figures sélectionnées sont parcourues ({@link #selectionIndex}) ; avec
+	 * filtrage, les figures présentes dans {@link #figures} le sont également
+	 * afin de désélectionner les figures masquées (les figures encore
+	 * différées n'étant jamais sélectionnées).
+	 * @post si des figures étaient sélectionnées les listeners en sont
+	 * informés
 	 */
 	public void clearSelection()
 	{
-		for (Iterator<Figure> el = figures.iterator(); el.hasNext();)
+		boolean cleared = hasSelection();
+		for (int i = selectionIndex.nextSetBit(0); i >= 0;
+		     i = selectionIndex.nextSetBit(i + 1))
 		{
-			Figure figure = el.next();
-			if (figure.isSelected()){
-				figure.setSelected(false);
-			}
+			figures.get(i).setSelected(false);
 		}
+		selectionIndex.clear();
+		if (filtering)
+		{
+			boolean[] hidden = {false};
+			figures.forEachPresent((Figure figure) -> {
+				if (figure.isSelected())
+				{
+					figure.setSelected(false);
+					hidden[0] = true;
+				}
+			});
+			cleared |= hidden[0];
+		}
+		if (cleared){
+			fire(DrawingEventType.SELECTION_CHANGED, null);
+		}
+	}
+
+	/**
+	 * Sélection ou désélection d'une figure du dessin : met à jour l'état de
+	 * la figure et {@link #selectionIndex} directement (sans parcourir les
+	 * autres figures), puis notifie les listeners en leur fournissant
+	 * l'emprise de la figure comme zone endommagée.
+	 * A utiliser plutôt que {@link Figure#setSelected(boolean)} pour les
+	 * figures du dessin.
+	 * @param figure la figure à sélectionner ou désélectionner
+	 * @param selected le nouvel état sélectionné de la figure
+	 */
+	public void select(Figure figure, boolean selected)
+	{
+		int index = zIndex(figure);
+		if (index < 0)
+		{
+			return;
+		}
+		setSelected(index, figure, selected);
+		if (selected && isVisible(figure))
+		{
+			selectionIndex.set(index);
+		}
+		else
+		{
+			selectionIndex.clear(index);
+		}
+		fire(DrawingEventType.SELECTION_CHANGED, indexBounds(figure));
 	}
 
 	/**
-	 * Mise à jour des indices des figures sélectionnées dans
-	 * {@link #selectionIndex} en parcourant l'ensemble des {@link #figures}
+	 * Inversion de l'état sélectionné d'une figure du dessin
+	 * @param figure la figure à sélectionner ou désélectionner
+	 * @see #select(Figure, boolean)
+	 */
+	public void toggleSelection(Figure figure)
+	{
+		if (figure != null)
+		{
+			select(figure, !figure.isSelected());
+		}
+	}
+
+	/**
+	 * Reconstruction complète des indices des figures sélectionnées dans
+	 * {@link #selectionIndex} en parcourant l'ensemble des {@link #figures}.
+	 * N'est nécessaire que si l'état sélectionné des figures a été modifié
+	 * directement ({@link Figure#setSelected(boolean)}) : utiliser plutôt
+	 * {@link #select(Figure, boolean)}.
 	 */
 	public void updateSelection()
+	{
+		refreshSelection();
+		Logger.debug(() -> "Update Selection = " + selectionIndex);
+		fire(DrawingEventType.SELECTION_CHANGED, null);
+	}
+
+	/**
+	 * Sélection des figures (visibles) dont le rectangle englobant intersecte
+	 * ou est contenu dans une zone du dessin. Les figures concernées sont
+	 * obtenues par une seule requête de l'index spatial, et la sélection
+	 * ({@link #selectionIndex}) est mise à jour en bloc, sans parcourir
+	 * l'ensemble des figures.
+	 * @param area la zone de sélection
+	 * @param contained true pour ne sélectionner que les figures contenues
+	 * dans la zone, false pour sélectionner toutes les figures qui
+	 * l'intersectent
+	 * @param extend true pour ajouter les figures à la sélection courante,
+	 * false pour remplacer la sélection courante
+	 * @return le nombre de figures de la zone sélectionnées
+	 */
+	public int selectArea(Rectangle2D area, boolean contained, boolean extend)
+	{
+		BitSet hits = new BitSet(figures.size());
+		spatialIndex.search(area, (Figure figure) -> {
+			Rectangle2D bounds = figure.getBounds2D();
+			if ((contained ? area.contains(bounds) : area.intersects(bounds))
+			    && isVisible(figure))
+			{
+				int index = zIndex(figure);
+				if (index >= 0)
+				{
+					hits.set(index);
+				}
+			}
+		});
+
+		if (!extend)
+		{
+			// Désélection des figures sélectionnées hors de la zone
+			BitSet released = (BitSet) selectionIndex.clone();
+			released.andNot(hits);
+			for (int i = released.nextSetBit(0); i >= 0;
+			     i = released.nextSetBit(i + 1))
+			{
+				figures.get(i).setSelected(false);
+			}
+			selectionIndex.clear();
+		}
+		for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1))
+		{
+			setSelected(i, figures.get(i), true);
+		}
+		selectionIndex.or(hits);
+
+		Logger.debug(() -> "Selected " + hits.cardinality() + " figures in "
+		    + area);
+		fire(DrawingEventType.SELECTION_CHANGED, null);
+		return hits.cardinality();
+	}
+
+	/**
+	 * Reconstruction de {@link #selectionIndex} à partir de l'état
+	 * sélectionné des figures visibles (sans notification). Seules les
+	 * figures présentes dans {@link #figures} sont parcourues : les figures
+	 * encore différées de la source compacte du dessin ne sont jamais
+	 * sélectionnées (voir {@link #setSelected(int, Figure, boolean)}) et ne
+	 * sont donc pas matérialisées.
+	 */
+	private void refreshSelection()
 	{
 		selectionIndex.clear();
-		stream().forEach((Figure figure) -> {
-			if(figure.isSelected()){
-				int indice = figures.indexOf(figure);
-				selectionIndex.add(new Integer(indice));
+		BitSet visible = visibleFigures();
+		figures.forEachPresentIndexed((Figure figure, int i) -> {
+			if (figure.isSelected() &&
+			    (visible != null ? visible.get(i) : isVisible(figure)))
+			{
+				selectionIndex.set(i);
 			}
-	});
-		System.out.println(getClassName() + "::" + getMethodName()
-		    + " Update Selection = " + selectionIndex);
-		update();
+		});
 	}
 
 	/**
@@ -498,7 +1678,7 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	 */
 	public boolean hasSelection()
 	{
-		return selectionIndex.size()>= 1;
+		return !selectionIndex.isEmpty();
 	}
 
 	/**
@@ -508,13 +1688,26 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	 */
 	public void deleteSelected()
 	{
-		while (hasSelection()){
-			Integer indice = selectionIndex.last();
-			figures.removeElementAt(indice.intValue());
-			selectionIndex.remove(indice);
+		int[] indices = selectedIndices();
+		if (hasSelection() && !editListeners.isEmpty()){
+			Figure[] removed = new Figure[indices.length];
+			for (int i = 0; i < indices.length; i++){
+				removed[i] = figures.get(indices[i]);
+			}
+			fireEdit(new FiguresEdit(false, indices, removed));
 		}
-		clearSelection();
-		update();
+		for (int i = indices.length - 1; i >= 0; i--){
+			Figure removed = figures.get(indices[i]);
+			spatialIndex.remove(removed);
+			figuresById.remove(Long.valueOf(removed.id));
+			figures = figures.minus(indices[i]);
+		}
+		// Seules les figures sélectionnées ont été retirées (elles restent
+		// sélectionnées afin de l'être à nouveau si le retrait est annulé)
+		selectionIndex.clear();
+		attributes().remove(indices);
+		fire(EnumSet.of(DrawingEventType.FIGURE_REMOVED,
+		                DrawingEventType.SELECTION_CHANGED), null);
 	}
 
 	/**
@@ -525,10 +1718,18 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	 */
 	public void applyStyleToSelected(Paint fill, Paint edge, BasicStroke stroke)
 	{
-		for (Iterator<Integer> figuresSel = selectionIndex.iterator(); figuresSel.hasNext();)
+		StyleEdit edit = null;
+		if (hasSelection() && !editListeners.isEmpty()){
+			edit = new StyleEdit(selectedIndices());
+		}
+		Rectangle2D damage = null;
+		for (int index = selectionIndex.nextSetBit(0); index >= 0;
+		     index = selectionIndex.nextSetBit(index + 1))
 		{
 			try{
-				Figure figure = figures.get(figuresSel.next());
+				Figure figure = mutable(figures.get(index));
+				Rectangle2D oldBounds = spatialIndex.getBounds(figure);
+				attributes().clear(index, figure);
 				if(fill != null){
 					figure.setFillPaint(fill);
 				}
@@ -538,11 +1739,31 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 				if(stroke != null){
 					figure.setStroke(stroke);
 				}
+				attributes().set(index, figure);
+				// L'épaisseur du trait change l'emprise de la figure
+				Rectangle2D bounds = indexBounds(figure);
+				spatialIndex.put(figure, bounds);
+				if (oldBounds != null) {
+					bounds.add(oldBounds);
+				}
+				if (damage == null) {
+					damage = bounds;
+				}
+				else {
+					damage.add(bounds);
+				}
 			}
 			catch(ArrayIndexOutOfBoundsException e){
-				System.err.println(getClass().getSimpleName() + "applyStyleToSelected : erreur");
+				Logger.error(() -> "erreur");
 		}
 		}
+		if (edit != null) {
+			edit.captureAfter();
+			fireEdit(edit);
+		}
+		if (damage != null) {
+			fire(DrawingEventType.FIGURE_RESTYLED, damage);
+		}
 	}
 
 	/**
@@ -552,18 +1773,15 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	 */
 	public void moveSelectedUp()
 	{
-		Vector<Figure> collection = new Vector<>();
-		for(Iterator<Integer> it = selectionIndex.iterator(); it.hasNext();){
-			collection.add(figures.get(it.next()));
-		}
-		for(int i=0; i<figures.size();i++){
-			if(!selectionIndex.contains(Integer.valueOf(i))){
-				collection.add(figures.get(i));
-			}
+		int[] indices = selectedIndices();
+		if (indices.length > 0 && !editListeners.isEmpty()){
+			fireEdit(new ReorderEdit(indices, true));
 		}
-		figures.clear();
-		figures = collection;
-		updateSelection();
+		// Les figures sélectionnées (et leurs rangs dans selectionIndex) sont
+		// désormais en début de liste
+		reorder(indices, true, false);
+		fire(EnumSet.of(DrawingEventType.FIGURES_REORDERED,
+		                DrawingEventType.SELECTION_CHANGED), null);
 	}
 
 	/**
@@ -572,18 +1790,212 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	 */
 	public void moveSelectedDown()
 	{
-		Vector<Figure> collection = new Vector<>();
-		for(int i=0; i<figures.size();i++){
-			if(!selectionIndex.contains(Integer.valueOf(i))){
-				collection.add(figures.get(i));
+		int[] indices = selectedIndices();
+		if (indices.length > 0 && !editListeners.isEmpty()){
+			fireEdit(new ReorderEdit(indices, false));
+		}
+		// Les figures sélectionnées (et leurs rangs dans selectionIndex) sont
+		// désormais en fin de liste
+		reorder(indices, false, false);
+		fire(EnumSet.of(DrawingEventType.FIGURES_REORDERED,
+		                DrawingEventType.SELECTION_CHANGED), null);
+	}
+
+	/**
+	 * Indices (croissants) des figures sélectionnées
+	 * @return un nouveau tableau contenant les indices de
+	 * {@link #selectionIndex}
+	 */
+	private int[] selectedIndices()
+	{
+		return selectionIndex.stream().toArray();
+	}
+
+	/**
+	 * Déplacement d'un rang vers le haut de la liste des figures de chacune
+	 * des figures sélectionnées, en O(log n) par figure déplacée. Les figures
+	 * sont traitées dans le sens du déplacement (par rangs croissants) et
+	 * chacune est échangée avec la figure qui la précède si celle-ci n'est
+	 * pas (ou plus) sélectionnée : un bloc de figures sélectionnées contiguës
+	 * se déplace donc d'un seul tenant, et reste en place lorsqu'il est déjà
+	 * en début de liste.
+	 * @post Si des figures ont été déplacées le modèle a été mis à jour
+	 */
+	public void stepSelectedUp()
+	{
+		int[] swaps = new int[selectionIndex.cardinality()];
+		int count = 0;
+		Rectangle2D damage = null;
+		for (int i = selectionIndex.nextSetBit(1); i >= 0;
+		     i = selectionIndex.nextSetBit(i + 1))
+		{
+			// Le voisin est testé après les échanges précédents
+			if (!selectionIndex.get(i - 1))
+			{
+				swaps[count++] = i - 1;
+				damage = union(damage, swap(i - 1));
 			}
 		}
-		for(Iterator<Integer> it = selectionIndex.iterator(); it.hasNext();){
-			collection.add(figures.get(it.next()));
+		swapped(swaps, count, damage);
+	}
+
+	/**
+	 * Déplacement d'un rang vers le bas de la liste des figures de chacune
+	 * des figures sélectionnées, en O(log n) par figure déplacée. Les figures
+	 * sont traitées dans le sens du déplacement (par rangs décroissants) et
+	 * chacune est échangée avec la figure qui la suit si celle-ci n'est pas
+	 * (ou plus) sélectionnée : un bloc de figures sélectionnées contiguës se
+	 * déplace donc d'un seul tenant, et reste en place lorsqu'il est déjà en
+	 * fin de liste.
+	 * @post Si des figures ont été déplacées le modèle a été mis à jour
+	 */
+	public void stepSelectedDown()
+	{
+		int[] swaps = new int[selectionIndex.cardinality()];
+		int count = 0;
+		Rectangle2D damage = null;
+		for (int i = selectionIndex.previousSetBit(figures.size() - 2); i >= 0;
+		     i = selectionIndex.previousSetBit(i - 1))
+		{
+			// Le voisin est testé après les échanges précédents
+			if (!selectionIndex.get(i + 1))
+			{
+				swaps[count++] = i;
+				damage = union(damage, swap(i));
+			}
+		}
+		swapped(swaps, count, damage);
+	}
+
+	/**
+	 * Union de deux zones
+	 * @param area la zone courante (éventuellement null)
+	 * @param bounds la zone à ajouter
+	 * @return area agrandie de bounds, ou bounds si area est null
+	 */
+	private static Rectangle2D union(Rectangle2D area, Rectangle2D bounds)
+	{
+		if (area == null)
+		{
+			return bounds;
+		}
+		area.add(bounds);
+		return area;
+	}
+
+	/**
+	 * Enregistrement et notification d'une suite d'échanges de figures
+	 * voisines réalisés
+	 * @param swaps les rangs des premières figures des échanges réalisés dans
+	 * l'ordre (voir {@link #swap(int)})
+	 * @param count le nombre d'échanges réalisés
+	 * @param damage la zone occupée par les figures échangées
+	 */
+	private void swapped(int[] swaps, int count, Rectangle2D damage)
+	{
+		if (count > 0)
+		{
+			if (!editListeners.isEmpty())
+			{
+				fireEdit(new SwapEdit(Arrays.copyOf(swaps, count)));
+			}
+			fire(EnumSet.of(DrawingEventType.FIGURES_REORDERED,
+			                DrawingEventType.SELECTION_CHANGED), damage);
+		}
+	}
+
+	/**
+	 * Échange de deux figures voisines dans la liste des figures en
+	 * O(log n) : les figures (copiées si elles sont partagées avec une
+	 * version conservée) échangent leurs profondeurs, leurs rangs dans
+	 * l'index des attributs et dans {@link #selectionIndex}
+	 * @param index le rang de la première des deux figures
+	 * @return la zone occupée par les deux figures
+	 */
+	private Rectangle2D swap(int index)
+	{
+		Figure lower = mutable(index);
+		Figure upper = mutable(index + 1);
+		attributes().clear(index, lower);
+		attributes().clear(index + 1, upper);
+		figures = figures.with(index, upper).with(index + 1, lower);
+		double depth = lower.depth;
+		lower.depth = upper.depth;
+		upper.depth = depth;
+		attributes().set(index, upper);
+		attributes().set(index + 1, lower);
+		boolean selected = selectionIndex.get(index);
+		selectionIndex.set(index, selectionIndex.get(index + 1));
+		selectionIndex.set(index + 1, selected);
+		Rectangle2D damage = indexBounds(lower);
+		damage.add(indexBounds(upper));
+		return damage;
+	}
+
+	/**
+	 * Déplacement d'un ensemble de figures en début (ou en fin) de la liste
+	 * des figures en conservant leur ordre relatif, ou bien opération inverse.
+	 * Les figures sont retirées puis insérées dans la liste en O(k log n)
+	 * pour k figures déplacées : les figures déplacées en début (ou en fin)
+	 * de liste reçoivent des profondeurs inférieures (ou supérieures) à
+	 * celles des autres figures et les figures replacées à leurs indices
+	 * d'origine des profondeurs comprises entre celles de leurs voisines
+	 * (les figures partagées avec une version conservée étant copiées).
+	 * Les rangs des figures suivantes sont ensuite décalés dans
+	 * {@link #selectionIndex} et dans chacun des ensembles de l'index des
+	 * attributs, en O(n/64 + k) par ensemble : le coût total est donc
+	 * proportionnel à n/64 fois le nombre de valeurs distinctes d'attributs
+	 * présentes dans le dessin (voir {@link AttributeIndex}).
+	 * @param indices les indices croissants des figures à déplacer (avant le
+	 * déplacement)
+	 * @param toFront true pour un déplacement en début de liste, false pour
+	 * un déplacement en fin de liste
+	 * @param inverse true pour replacer les figures précédemment déplacées à
+	 * leurs indices d'origine
+	 */
+	private void reorder(int[] indices, boolean toFront, boolean inverse)
+	{
+		int k = indices.length;
+		if (k == 0){
+			return;
+		}
+		int block = (toFront ? 0 : figures.size() - k);
+		int[] blockIndices = new int[k];
+		for (int j = 0; j < k; j++){
+			blockIndices[j] = block + j;
+		}
+		int[] from = (inverse ? blockIndices : indices);
+		int[] to = (inverse ? indices : blockIndices);
+		Figure[] moved = new Figure[k];
+		boolean[] selected = new boolean[k];
+		for (int j = k - 1; j >= 0; j--){
+			// Les profondeurs des figures déplacées en début ou en fin de
+			// liste sont modifiées ci-dessous, celles des figures replacées
+			// par place
+			moved[j] = (inverse ? figures.get(from[j]) : mutable(from[j]));
+			selected[j] = selectionIndex.get(from[j]);
+			figures = figures.minus(from[j]);
+		}
+		if (!inverse && !figures.isEmpty()){
+			double depth = (toFront ? figures.get(0).depth - k
+			    : figures.get(figures.size() - 1).depth + 1);
+			for (int j = 0; j < k; j++){
+				moved[j].depth = depth + j;
+			}
+		}
+		for (int j = 0; j < k; j++){
+			figures = figures.plus(to[j], moved[j]);
+			if (inverse){
+				place(to[j]);
+			}
+		}
+		attributes().remove(from);
+		attributes().insert(to, moved);
+		selectionIndex = AttributeIndex.shift(selectionIndex, from, false);
+		selectionIndex = AttributeIndex.shift(selectionIndex, to, true);
+		for (int j = 0; j < k; j++){
+			selectionIndex.set(to[j], selected[j]);
 		}
-		figures.clear();
-		figures = collection;
-		updateSelection();
 	}
 
 	/**
@@ -594,27 +2006,64 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	 */
 	public Stream<Figure> stream()
 	{
-		Stream<Figure> figuresStream = figures.stream();
 		if (filtering)
 		{
-			if(shapeFilters.size() > 0){
-				figuresStream = figuresStream.filter(shapeFilters);
+			BitSet visible = visibleFigures();
+			if (visible != null)
+			{
+				// Seules les figures retenues par les filtres sont parcourues
+				PersistentVector<Figure> current = figures;
+				return visible.stream().mapToObj(current::get);
 			}
+		}
 
-			if(fillColorFilter != null){
-				figuresStream = figuresStream.filter(fillColorFilter);
-			}
+		Stream<Figure> figuresStream = figures.stream();
+		if (filtering)
+		{
+			figuresStream = figuresStream.filter(compiledFilter());
+		}
 
-			if(edgeColorFilter != null){
-				figuresStream = figuresStream.filter(edgeColorFilter);
-			}
+		return figuresStream;
+	}
 
-			if(lineFilters.size() > 0){
-				figuresStream = figuresStream.filter(lineFilters);
-			}
+	/**
+	 * Rangs des figures passant les filtres courants lorsque le filtrage est
+	 * actif, calculés par union (au sein d'un ensemble de filtres) et
+	 * intersection (entre les différents filtres) des ensembles de
+	 * {@link #attributes}. Le résultat est conservé tant que les filtres et
+	 * les figures ne changent pas.
+	 * @return l'ensemble des rangs des figures visibles (à ne pas modifier)
+	 * ou bien null si le filtrage n'est pas actif ou si l'un des filtres ne
+	 * peut pas être évalué à partir de l'index
+	 * @see FigureFilter#select(AttributeIndex)
+	 */
+	private BitSet visibleFigures()
+	{
+		if (!filtering)
+		{
+			return null;
+		}
+		AttributeIndex index = attributes();
+		if ((visibleFigures != null) &&
+		    (visibleModifications == index.getModifications()))
+		{
+			return visibleFigures;
 		}
 
-		return figuresStream;
+		BitSet visible = new BitSet(figures.size());
+		visible.set(0, figures.size());
+		for (FigureFilter<?> filter : activeFilters())
+		{
+			BitSet selected = filter.select(index);
+			if (selected == null)
+			{
+				return null;
+			}
+			visible.and(selected);
+		}
+		visibleFigures = visible;
+		visibleModifications = index.getModifications();
+		return visible;
 	}
 
 	/* (non-Javadoc)
@@ -623,27 +2072,760 @@ public class Drawing extends Observable implements Originator<Figure>, Signature
 	@Override
 	public Memento<Figure> createMemento()
 	{
-		return new Memento<Figure>(figures);
+		return new Memento<Figure>(snapshot());
+	}
+
+	/**
+	 * Conservation de la version courante de la liste des figures en O(1).
+	 * La version renvoyée n'est plus modifiée par la suite : les figures
+	 * qu'elle contient seront copiées avant toute modification du dessin
+	 * (voir {@link #mutable(Figure)}), seul leur état sélectionné pouvant
+	 * encore changer.
+	 * @return la version courante (immuable) de la liste des figures
+	 */
+	public PersistentVector<Figure> snapshot()
+	{
+		epoch++;
+		return figures;
+	}
+
+	/**
+	 * Obtention d'une figure du dessin pouvant être modifiée (copie sur
+	 * écriture) : si la figure est susceptible d'être partagée avec une
+	 * version conservée de la liste des figures ({@link #snapshot()}), elle
+	 * est remplacée dans le dessin par une copie qui pourra être modifiée
+	 * sans altérer les versions conservées.
+	 * A appeler avant toute modification d'une figure du dessin (création en
+	 * cours, transformation, changement de style).
+	 * @param figure la figure à modifier
+	 * @return la figure elle même si elle peut être modifiée ou bien la copie
+	 * qui la remplace dans le dessin (à utiliser à la place de figure)
+	 */
+	public Figure mutable(Figure figure)
+	{
+		if ((figure == null) || (figure.version == epoch))
+		{
+			return figure;
+		}
+		int index = zIndex(figure);
+		if (index < 0)
+		{
+			return figure;
+		}
+		return copy(index, figure);
+	}
+
+	/**
+	 * Obtention de la figure d'un rang donné pouvant être modifiée (voir
+	 * {@link #mutable(Figure)}), sans rechercher son rang à partir de sa
+	 * profondeur : utilisable lorsque celle ci n'est pas (ou plus) ordonnée
+	 * par rapport à celles de ses voisines
+	 * @param index le rang de la figure à modifier
+	 * @return la figure de ce rang ou bien la copie qui la remplace
+	 */
+	private Figure mutable(int index)
+	{
+		Figure figure = figures.get(index);
+		return (figure.version == epoch ? figure : copy(index, figure));
+	}
+
+	/**
+	 * Remplacement dans le dessin d'une figure par une copie pouvant être
+	 * modifiée
+	 * @param index le rang de la figure
+	 * @param figure la figure à copier
+	 * @return la copie qui remplace la figure dans le dessin
+	 */
+	private Figure copy(int index, Figure figure)
+	{
+		Figure copy = figure.clone();
+		copy.version = epoch;
+		figures = figures.with(index, copy);
+		Rectangle2D bounds = spatialIndex.getBounds(figure);
+		spatialIndex.remove(figure);
+		spatialIndex.put(copy, (bounds != null ? bounds : indexBounds(copy)));
+		// La copie a le même identifiant et donc le même rang que la figure
+		figuresById.put(Long.valueOf(copy.id), copy);
+		if (selectedFigure == figure)
+		{
+			selectedFigure = copy;
+		}
+		if (activeFigure == figure)
+		{
+			activeFigure = copy;
+		}
+		return copy;
 	}
 
 	/* (non-Javadoc)
 	 * @see history.Originator#setMemento(history.Memento)
 	 */
 	@Override
+	@SuppressWarnings("unchecked")
 	public void setMemento(Memento<Figure> memento)
 	{
 		if(memento!=null){
 			List<Figure> sauvegarde = memento.getState();
-			figures.clear();
-			for(Figure figure : sauvegarde){
-				figures.add(figure.clone());
+			if (sauvegarde instanceof PersistentVector<?>){
+				// Version partagée avec le memento : ses figures ne doivent
+				// plus être modifiées sans être copiées
+				figures = (PersistentVector<Figure>) sauvegarde;
+				epoch++;
 			}
-			update();
+			else{
+				Figure[] copies = new Figure[sauvegarde.size()];
+				int i = 0;
+				for(Figure figure : sauvegarde){
+					copies[i] = figure.clone();
+					copies[i++].version = epoch;
+				}
+				figures = PersistentVector.of(copies);
+			}
+			rebuildIndex();
+			refreshSelection();
+			fire(EnumSet.of(DrawingEventType.DRAWING_CHANGED,
+			                DrawingEventType.SELECTION_CHANGED), null);
 		}
 		else{
-			System.err.println("setMemento : erreur");
+			Logger.error(() -> "erreur");
 		}
 	}
 
-}
+	/**
+	 * Ajout ou retrait d'un ensemble de figures à des indices donnés
+	 */
+	private class FiguresEdit implements Edit
+	{
+		/**
+		 * true s'il s'agit d'un ajout, false s'il s'agit d'un retrait
+		 */
+		private final boolean insertion;
+
+		/**
+		 * Indices croissants des figures dans la liste des figures lorsque
+		 * celles-ci en font partie
+		 */
+		private final int[] indices;
+
+		/**
+		 * Les figures ajoutées ou retirées
+		 */
+		private final Figure[] edited;
+
+		/**
+		 * Constructeur
+		 * @param insertion true pour un ajout, false pour un retrait
+		 * @param indices les indices (croissants) des figures
+		 * @param edited les figures ajoutées ou retirées
+		 */
+		public FiguresEdit(boolean insertion, int[] indices, Figure[] edited)
+		{
+			this.insertion = insertion;
+			this.indices = indices;
+			this.edited = edited;
+		}
+
+		/**
+		 * Insertion des figures à leurs indices
+		 */
+		private void insert()
+		{
+			for (int i = 0; i < indices.length; i++)
+			{
+				figures = figures.plus(indices[i], edited[i]);
+				place(indices[i]);
+				// place a pu remplacer la figure par une copie
+				edited[i] = figures.get(indices[i]);
+				spatialIndex.put(edited[i], indexBounds(edited[i]));
+				figuresById.put(Long.valueOf(edited[i].id), edited[i]);
+			}
+			attributes().insert(indices, edited);
+			selectionIndex = AttributeIndex.shift(selectionIndex, indices, true);
+			for (int index : indices)
+			{
+				reselect(index);
+			}
+		}
+
+		/**
+		 * Retrait des figures de leurs indices. Les figures effectivement
+		 * retirées sont conservées (elles peuvent avoir été remplacées par des
+		 * copies depuis leur ajout, voir {@link Drawing#mutable(Figure)})
+		 */
+		private void remove()
+		{
+			for (int i = indices.length - 1; i >= 0; i--)
+			{
+				edited[i] = figures.get(indices[i]);
+				figures = figures.minus(indices[i]);
+				spatialIndex.remove(edited[i]);
+				figuresById.remove(Long.valueOf(edited[i].id));
+			}
+			attributes().remove(indices);
+			selectionIndex = AttributeIndex.shift(selectionIndex, indices, false);
+		}
+
+		@Override
+		public void undo()
+		{
+			if (insertion)
+			{
+				remove();
+			}
+			else
+			{
+				insert();
+			}
+			editApplied(insertion ? DrawingEventType.FIGURE_REMOVED
+			                      : DrawingEventType.FIGURE_ADDED);
+		}
+
+		@Override
+		public void redo()
+		{
+			if (insertion)
+			{
+				insert();
+			}
+			else
+			{
+				remove();
+			}
+			editApplied(insertion ? DrawingEventType.FIGURE_ADDED
+			                      : DrawingEventType.FIGURE_REMOVED);
+		}
+
+		/**
+		 * Les figures retirées ne sont plus référencées que par l'edit, leur
+		 * taille est donc comptée
+		 */
+		@Override
+		public long footprint()
+		{
+			long bytes = Footprint.ObjectHeader + (2 * Footprint.Reference) + 8
+			    + Footprint.array(indices.length, 4)
+			    + Footprint.array(edited.length, Footprint.Reference);
+			if (!insertion)
+			{
+				for (Figure figure : edited)
+				{
+					bytes += figure.footprint();
+				}
+			}
+			return bytes;
+		}
+
+		@Override
+		public String toString()
+		{
+			return (insertion ? "Insert" : "Remove") + Arrays.toString(indices);
+		}
+	}
+
+	/**
+	 * Estimation de la mémoire occupée par une liste de figures remplacée
+	 * (effacement, chargement) sans matérialiser ses figures : les figures
+	 * provenant encore d'une source compacte (éléments différés de la liste,
+	 * voir {@link FigureSource#figures()}) restent stockées dans cette source
+	 * et seule leur référence différée est comptée, les autres figures sont
+	 * comptées en totalité.
+	 * @param list la liste des figures
+	 * @return le nombre estimé d'octets occupés par la liste et ses figures
+	 */
+	private static long listFootprint(PersistentVector<Figure> list)
+	{
+		long[] bytes = {Footprint.ObjectHeader
+		    + (list.size() * (Footprint.ObjectHeader
+		        + (3 * Footprint.Reference) + 8))};
+		int deferred = list.forEachPresent((Figure figure) ->
+		    bytes[0] += figure.footprint());
+		return bytes[0] + (deferred * DeferredFootprint);
+	}
+
+	/**
+	 * Effacement de toutes les figures
+	 */
+	private class ClearEdit implements Edit
+	{
+		/**
+		 * La liste des figures effacées
+		 */
+		private PersistentVector<Figure> cleared;
+
+		/**
+		 * Rangs des figures sélectionnées de la liste effacée
+		 */
+		private BitSet selection;
+
+		/**
+		 * Estimation de la mémoire occupée par les figures effacées (-1 tant
+		 * qu'elle n'a pas été calculée)
+		 */
+		private long clearedFootprint;
+
+		/**
+		 * Constructeur
+		 * @param cleared la liste des figures effacées (la liste courante)
+		 */
+		public ClearEdit(PersistentVector<Figure> cleared)
+		{
+			this.cleared = cleared;
+			selection = (BitSet) selectionIndex.clone();
+			clearedFootprint = -1;
+		}
+
+		@Override
+		public void undo()
+		{
+			figures = cleared;
+			rebuildIndex();
+			restoreSelection(selection);
+			editApplied(DrawingEventType.DRAWING_CHANGED);
+		}
+
+		@Override
+		public void redo()
+		{
+			cleared = figures;
+			selection = (BitSet) selectionIndex.clone();
+			clearedFootprint = -1;
+			figures = PersistentVector.empty();
+			rebuildIndex();
+			selectionIndex.clear();
+			editApplied(DrawingEventType.DRAWING_CHANGED);
+		}
+
+		/**
+		 * Les figures effacées ne sont plus référencées que par l'edit, leur
+		 * taille est donc comptée
+		 */
+		@Override
+		public long footprint()
+		{
+			if (clearedFootprint < 0)
+			{
+				clearedFootprint = listFootprint(cleared);
+			}
+			return Footprint.ObjectHeader + (3 * Footprint.Reference) + 8
+			    + Footprint.ObjectHeader + (selection.size() / 8)
+			    + clearedFootprint;
+		}
 
+		@Override
+		public String toString()
+		{
+			return "Clear[" + cleared.size() + "]";
+		}
+	}
+
+	/**
+	 * Chargement d'un fichier de dessin
+	 * @see Drawing#load(DrawingFile)
+	 */
+	private class LoadEdit implements Edit
+	{
+		/**
+		 * La liste des figures remplacées par celles du fichier
+		 */
+		private PersistentVector<Figure> replaced;
+
+		/**
+		 * Rangs des figures sélectionnées de la liste remplacée
+		 */
+		private BitSet selection;
+
+		/**
+		 * Le fichier chargé
+		 */
+		private final DrawingFile file;
+
+		/**
+		 * Estimation de la mémoire occupée par les figures remplacées (-1
+		 * tant qu'elle n'a pas été calculée)
+		 */
+		private long replacedFootprint;
+
+		/**
+		 * Constructeur
+		 * @param replaced la liste des figures remplacées (la liste courante)
+		 * @param file le fichier chargé
+		 */
+		public LoadEdit(PersistentVector<Figure> replaced, DrawingFile file)
+		{
+			this.replaced = replaced;
+			selection = (BitSet) selectionIndex.clone();
+			this.file = file;
+			replacedFootprint = -1;
+		}
+
+		@Override
+		public void undo()
+		{
+			figures = replaced;
+			rebuildIndex();
+			restoreSelection(selection);
+			editApplied(DrawingEventType.DRAWING_CHANGED);
+		}
+
+		@Override
+		public void redo()
+		{
+			replaced = figures;
+			selection = (BitSet) selectionIndex.clone();
+			replacedFootprint = -1;
+			apply(file);
+			editApplied(DrawingEventType.DRAWING_CHANGED);
+		}
+
+		/**
+		 * Les figures remplacées ne sont plus référencées que par l'edit, leur
+		 * taille est donc comptée (celles du fichier restent disponibles
+		 * dans le fichier)
+		 */
+		@Override
+		public long footprint()
+		{
+			if (replacedFootprint < 0)
+			{
+				replacedFootprint = listFootprint(replaced);
+			}
+			return Footprint.ObjectHeader + (4 * Footprint.Reference) + 8
+			    + Footprint.ObjectHeader + (selection.size() / 8)
+			    + replacedFootprint;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Load[" + file.size() + "]";
+		}
+	}
+
+	/**
+	 * Déplacement des figures sélectionnées en début ou en fin de la liste
+	 * des figures
+	 * @see Drawing#reorder(int[], boolean, boolean)
+	 */
+	private class ReorderEdit implements Edit
+	{
+		/**
+		 * Indices croissants des figures déplacées avant leur déplacement
+		 */
+		private final int[] indices;
+
+		/**
+		 * true pour un déplacement en début de liste, false pour un
+		 * déplacement en fin de liste
+		 */
+		private final boolean toFront;
+
+		/**
+		 * Constructeur
+		 * @param indices les indices des figures déplacées
+		 * @param toFront le sens du déplacement
+		 */
+		public ReorderEdit(int[] indices, boolean toFront)
+		{
+			this.indices = indices;
+			this.toFront = toFront;
+		}
+
+		@Override
+		public void undo()
+		{
+			reorder(indices, toFront, true);
+			editApplied(DrawingEventType.FIGURES_REORDERED);
+		}
+
+		@Override
+		public void redo()
+		{
+			reorder(indices, toFront, false);
+			editApplied(DrawingEventType.FIGURES_REORDERED);
+		}
+
+		@Override
+		public long footprint()
+		{
+			return Footprint.ObjectHeader + (2 * Footprint.Reference) + 8
+			    + Footprint.array(indices.length, 4);
+		}
+
+		@Override
+		public String toString()
+		{
+			return (toFront ? "Up" : "Down") + Arrays.toString(indices);
+		}
+	}
+
+	/**
+	 * Déplacement d'un rang des figures sélectionnées
+	 * @see Drawing#stepSelectedUp()
+	 * @see Drawing#stepSelectedDown()
+	 */
+	private class SwapEdit implements Edit
+	{
+		/**
+		 * Rangs des premières figures des échanges de figures voisines
+		 * réalisés, dans l'ordre
+		 */
+		private final int[] swaps;
+
+		/**
+		 * Constructeur
+		 * @param swaps les échanges réalisés
+		 */
+		public SwapEdit(int[] swaps)
+		{
+			this.swaps = swaps;
+		}
+
+		@Override
+		public void undo()
+		{
+			for (int i = swaps.length - 1; i >= 0; i--)
+			{
+				swap(swaps[i]);
+			}
+			editApplied(DrawingEventType.FIGURES_REORDERED);
+		}
+
+		@Override
+		public void redo()
+		{
+			for (int swap : swaps)
+			{
+				swap(swap);
+			}
+			editApplied(DrawingEventType.FIGURES_REORDERED);
+		}
+
+		@Override
+		public long footprint()
+		{
+			return Footprint.ObjectHeader + Footprint.Reference
+			    + Footprint.array(swaps.length, 4);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Swap" + Arrays.toString(swaps);
+		}
+	}
+
+	/**
+	 * Changement de style (couleurs de remplissage et de trait, trait) d'un
+	 * ensemble de figures.
+	 * Les couleurs et traits étant issus des flyweight factories, seules des
+	 * références sont conservées.
+	 */
+	private class StyleEdit implements Edit
+	{
+		/**
+		 * Indices des figures concernées
+		 */
+		private final int[] indices;
+
+		/**
+		 * Couleurs de remplissage, couleurs de trait et traits des figures
+		 * avant le changement de style
+		 */
+		private final Paint[] fillsBefore, edgesBefore;
+		private final BasicStroke[] strokesBefore;
+
+		/**
+		 * Couleurs de remplissage, couleurs de trait et traits des figures
+		 * après le changement de style
+		 */
+		private Paint[] fillsAfter, edgesAfter;
+		private BasicStroke[] strokesAfter;
+
+		/**
+		 * Constructeur : enregistre le style des figures avant le changement
+		 * @param indices les indices des figures concernées
+		 */
+		public StyleEdit(int[] indices)
+		{
+			this.indices = indices;
+			fillsBefore = new Paint[indices.length];
+			edgesBefore = new Paint[indices.length];
+			strokesBefore = new BasicStroke[indices.length];
+			capture(fillsBefore, edgesBefore, strokesBefore);
+		}
+
+		/**
+		 * Enregistrement du style des figures après le changement
+		 */
+		public void captureAfter()
+		{
+			fillsAfter = new Paint[indices.length];
+			edgesAfter = new Paint[indices.length];
+			strokesAfter = new BasicStroke[indices.length];
+			capture(fillsAfter, edgesAfter, strokesAfter);
+		}
+
+		/**
+		 * Enregistrement du style courant des figures
+		 * @param fills les couleurs de remplissage à remplir
+		 * @param edges les couleurs de trait à remplir
+		 * @param strokes les traits à remplir
+		 */
+		private void capture(Paint[] fills, Paint[] edges, BasicStroke[] strokes)
+		{
+			for (int i = 0; i < indices.length; i++)
+			{
+				Figure figure = figures.get(indices[i]);
+				fills[i] = figure.fill;
+				edges[i] = figure.edge;
+				strokes[i] = figure.stroke;
+			}
+		}
+
+		/**
+		 * Mise en place d'un style (éventuellement null) sur les figures
+		 * @param fills les couleurs de remplissage
+		 * @param edges les couleurs de trait
+		 * @param strokes les traits
+		 */
+		private void restore(Paint[] fills, Paint[] edges, BasicStroke[] strokes)
+		{
+			for (int i = 0; i < indices.length; i++)
+			{
+				Figure figure = mutable(figures.get(indices[i]));
+				attributes().clear(indices[i], figure);
+				figure.fill = fills[i];
+				figure.edge = edges[i];
+				figure.stroke = strokes[i];
+				attributes().set(indices[i], figure);
+				spatialIndex.put(figure, indexBounds(figure));
+				// Le style peut changer la visibilité de la figure
+				reselect(indices[i]);
+			}
+			editApplied(DrawingEventType.FIGURE_RESTYLED);
+		}
+
+		@Override
+		public void undo()
+		{
+			restore(fillsBefore, edgesBefore, strokesBefore);
+		}
+
+		@Override
+		public void redo()
+		{
+			restore(fillsAfter, edgesAfter, strokesAfter);
+		}
+
+		@Override
+		public long footprint()
+		{
+			return Footprint.ObjectHeader + (8 * Footprint.Reference)
+			    + Footprint.array(indices.length, 4)
+			    + (6 * Footprint.array(indices.length, Footprint.Reference));
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Style" + Arrays.toString(indices);
+		}
+	}
+
+	/**
+	 * Transformation (translation, rotation, facteur d'échelle) d'une figure.
+	 * L'état précédant la transformation est enregistré à la création de
+	 * l'edit, l'état la suivant lors de sa première annulation.
+	 */
+	private class TransformEdit implements Edit
+	{
+		/**
+		 * Indice de la figure transformée
+		 */
+		private final int index;
+
+		/**
+		 * Translation, rotation et facteur d'échelle avant la transformation
+		 */
+		private final AffineTransform[] before;
+
+		/**
+		 * Translation, rotation et facteur d'échelle après la transformation
+		 */
+		private AffineTransform[] after;
+
+		/**
+		 * Constructeur
+		 * @param index l'indice de la figure
+		 * @param figure la figure sur le point d'être transformée
+		 */
+		public TransformEdit(int index, Figure figure)
+		{
+			this.index = index;
+			before = transformsOf(figure);
+			after = null;
+		}
+
+		/**
+		 * Copie de la translation, de la rotation et du facteur d'échelle
+		 * d'une figure
+		 * @param figure la figure
+		 * @return un nouveau tableau contenant des copies des transformations
+		 */
+		private AffineTransform[] transformsOf(Figure figure)
+		{
+			return new AffineTransform[] {
+				new AffineTransform(figure.getTranslation()),
+				new AffineTransform(figure.getRotation()),
+				new AffineTransform(figure.getScale())
+			};
+		}
+
+		/**
+		 * Mise en place de copies de transformations sur la figure
+		 * @param transforms translation, rotation et facteur d'échelle
+		 */
+		private void restore(AffineTransform[] transforms)
+		{
+			Figure figure = mutable(figures.get(index));
+			figure.setTranslation(new AffineTransform(transforms[0]));
+			figure.setRotation(new AffineTransform(transforms[1]));
+			figure.setScale(new AffineTransform(transforms[2]));
+			spatialIndex.put(figure, indexBounds(figure));
+			editApplied(DrawingEventType.FIGURE_TRANSFORMED);
+		}
+
+		@Override
+		public void undo()
+		{
+			if (after == null)
+			{
+				after = transformsOf(figures.get(index));
+			}
+			restore(before);
+		}
+
+		@Override
+		public void redo()
+		{
+			if (after != null)
+			{
+				restore(after);
+			}
+		}
+
+		@Override
+		public long footprint()
+		{
+			return Footprint.ObjectHeader + (3 * Footprint.Reference) + 8
+			    + (2 * (Footprint.array(3, Footprint.Reference)
+			        + (3 * Footprint.AffineTransformSize)));
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Transform[" + index + "]";
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package figures;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.EventObject;
+import java.util.Set;
+
+import figures.enums.DrawingEventType;
+
+/**
+ * Évènement décrivant une ou plusieurs modifications d'un {@link Drawing} :
+ * les types des modifications ({@link DrawingEventType}) et la zone du dessin
+ * qu'elles concernent. Les modifications réalisées au cours d'une transaction
+ * ({@link Drawing#beginTransaction()}, {@link Drawing#endTransaction()}) sont
+ * regroupées en un seul évènement dont la zone est l'union des zones
+ * modifiées.
+ * @author davidroussel
+ */
+public class DrawingEvent extends EventObject
+{
+	/**
+	 * Serializable class must have a serial version UID
+	 */
+	private static final long serialVersionUID = 4629185067351093870L;
+
+	/**
+	 * Types des modifications (non modifiable)
+	 */
+	private final Set<DrawingEventType> types;
+
+	/**
+	 * Zone modifiée du dessin (en coordonnées du dessin) ou null si tout le
+	 * dessin est concerné
+	 */
+	private final Rectangle2D damage;
+
+	/**
+	 * Constructeur
+	 * @param source le dessin modifié
+	 * @param types les types des modifications (non vide)
+	 * @param damage la zone modifiée du dessin ou null si tout le dessin est
+	 * concerné
+	 */
+	public DrawingEvent(Drawing source,
+	                    Set<DrawingEventType> types,
+	                    Rectangle2D damage)
+	{
+		super(source);
+		this.types = Collections.unmodifiableSet(EnumSet.copyOf(types));
+		this.damage = (damage != null ? (Rectangle2D) damage.clone() : null);
+	}
+
+	/**
+	 * Accesseur du dessin modifié
+	 * @return le dessin à l'origine de l'évènement
+	 */
+	public Drawing getDrawing()
+	{
+		return (Drawing) getSource();
+	}
+
+	/**
+	 * Accesseur des types de modifications
+	 * @return l'ensemble (non modifiable) des types de modifications
+	 */
+	public Set<DrawingEventType> getTypes()
+	{
+		return types;
+	}
+
+	/**
+	 * Test d'un type de modification
+	 * @param type le type de modification
+	 * @return true si l'évènement contient une modification de ce type
+	 */
+	public boolean contains(DrawingEventType type)
+	{
+		return types.contains(type);
+	}
+
+	/**
+	 * Test des types de modification
+	 * @param interests des types de modifications
+	 * @return true si l'évènement contient une modification de l'un de ces
+	 * types
+	 */
+	public boolean containsAny(Set<DrawingEventType> interests)
+	{
+		for (DrawingEventType type : types)
+		{
+			if (interests.contains(type))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Accesseur de la zone modifiée
+	 * @return une copie de la zone modifiée du dessin (en coordonnées du
+	 * dessin) ou null si tout le dessin est concerné
+	 */
+	public Rectangle2D getDamage()
+	{
+		return (damage != null ? (Rectangle2D) damage.clone() : null);
+	}
+
+	/**
+	 * Test d'appartenance d'un point à la zone modifiée
+	 * @param x l'abscisse du point (en coordonnées du dessin)
+	 * @param y l'ordonnée du point (en coordonnées du dessin)
+	 * @return true si le point est dans la zone modifiée ou si tout le dessin
+	 * est concerné
+	 */
+	public boolean concerns(double x, double y)
+	{
+		return (damage == null) || damage.contains(x, y);
+	}
+
+	/**
+	 * Représentation de l'évènement
+	 * @return une chaine de caractères contenant les types et la zone des
+	 * modifications
+	 */
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + types
+		    + (damage != null ? " " + damage : " all");
+	}
+}
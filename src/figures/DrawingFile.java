@@ -0,0 +1,702 @@
+package figures;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
+
+import figures.enums.FigureType;
+import utils.PaintFactory;
+import utils.StrokeFactory;
+
+/**
+ * Fichier de dessin binaire (versionné) ouvert en mémoire partagée.
+ * Le fichier contient successivement :
+ * <ul>
+ * <li>un entête : {@link #Magic}, {@link #Version}, nombre de figures, de
+ * couleurs et de traits, puis position de chacune des sections suivantes</li>
+ * <li>la table des couleurs (ARGB) utilisées par les figures</li>
+ * <li>la table des traits (épaisseur, extrémités, jointures, pointillés)
+ * utilisés par les figures</li>
+ * <li>les rectangles englobants ({@link Drawing#indexBounds(Figure)}) des
+ * figures, qui permettent de construire l'index spatial du dessin sans
+ * décoder les figures</li>
+ * <li>la position de chaque figure dans la section suivante</li>
+ * <li>les figures dans l'ordre de dessin : type, numéro d'instance, indices
+ * des couleurs et du trait dans les tables, transformations (seules les
+ * transformations différentes de l'identité sont stockées) et géométrie de
+ * la forme (voir {@link FigureSource#geometry(java.awt.Shape)}), dont les
+ * valeurs sont des {@code double}, ou des {@code int} pour les polygones</li>
+ * </ul>
+ * A l'ouverture ({@link #open(File)}) le fichier est projeté en mémoire
+ * ({@link MappedByteBuffer}) et seules les tables de couleurs et de traits
+ * (passées aux flyweight factories) et les rectangles englobants sont lus :
+ * chaque figure n'est décodée qu'à sa première utilisation ({@link #get(int)})
+ * puis conservée. Les positions et les indices de chaque enregistrement sont
+ * néanmoins vérifiés à l'ouverture afin qu'un fichier corrompu soit refusé
+ * dès son ouverture plutôt que lors du décodage de ses figures.
+ * Un fichier est enregistré ({@link #write(List, File)}) dans un fichier
+ * temporaire qui remplace ensuite le fichier de destination : un fichier de
+ * dessin ouvert n'est donc jamais modifié, même lorsque le dessin est
+ * enregistré dans le fichier dont il provient.
+ * @author davidroussel
+ */
+public class DrawingFile extends FigureSource
+{
+	/**
+	 * Signature des fichiers de dessin ("FIGD")
+	 */
+	public static final int Magic = 0x46494744;
+
+	/**
+	 * Version courante du format
+	 */
+	public static final int Version = 1;
+
+	/**
+	 * Taille de l'entête : 6 entiers et 5 positions
+	 */
+	private static final int HeaderSize = (6 * 4) + (5 * 8);
+
+	/**
+	 * Le fichier projeté en mémoire
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * Table des couleurs (issues de la {@link PaintFactory})
+	 */
+	private final Paint[] paints;
+
+	/**
+	 * Table des traits (issus de la {@link StrokeFactory})
+	 */
+	private final BasicStroke[] strokes;
+
+	/**
+	 * Rectangles englobants des figures (minX, minY, maxX, maxY)
+	 */
+	private final double[] bounds;
+
+	/**
+	 * Position de la section des positions des figures
+	 */
+	private final int indexOffset;
+
+	/**
+	 * Position de la section des figures
+	 */
+	private final int recordsOffset;
+
+	/**
+	 * Identifiant de la première figure du fichier : les identifiants des
+	 * figures (qui ne sont pas stockés dans le fichier) sont réservés en bloc
+	 * à l'ouverture du fichier, ils restent donc les mêmes si le fichier est
+	 * chargé à nouveau (annulation puis rétablissement du chargement)
+	 */
+	private final long firstId;
+
+	/**
+	 * Constructeur privé : les fichiers sont ouverts par {@link #open(File)}
+	 * @param buffer le fichier projeté en mémoire
+	 * @throws IOException si le fichier n'est pas un fichier de dessin valide
+	 */
+	private DrawingFile(ByteBuffer buffer) throws IOException
+	{
+		super(header(buffer));
+		this.buffer = buffer;
+		int paintCount = buffer.getInt(12);
+		int strokeCount = buffer.getInt(16);
+		int paintsOffset = offset(24);
+		int strokesOffset = offset(32);
+		int boundsOffset = offset(40);
+		indexOffset = offset(48);
+		recordsOffset = offset(56);
+		if ((paintCount < 0) || (strokeCount < 0))
+		{
+			throw new IOException("corrupted drawing file");
+		}
+		check(paintsOffset, 4L * paintCount);
+		check(boundsOffset, 32L * count);
+		check(indexOffset, 4L * count);
+
+		paints = new Paint[paintCount];
+		int position = paintsOffset;
+		for (int i = 0; i < paintCount; i++)
+		{
+			paints[i] = PaintFactory.getPaint(new Color(buffer.getInt(position),
+			                                            true));
+			position += 4;
+		}
+
+		strokes = new BasicStroke[strokeCount];
+		position = strokesOffset;
+		for (int i = 0; i < strokeCount; i++)
+		{
+			check(position, 18);
+			float width = buffer.getFloat(position);
+			int cap = buffer.get(position + 4);
+			int join = buffer.get(position + 5);
+			float miterLimit = buffer.getFloat(position + 6);
+			int dashCount = buffer.getInt(position + 10);
+			position += 14;
+			check(position, 4 + (4L * Math.max(dashCount, 0)));
+			float[] dash = null;
+			if (dashCount > 0)
+			{
+				dash = new float[dashCount];
+				for (int j = 0; j < dashCount; j++)
+				{
+					dash[j] = buffer.getFloat(position);
+					position += 4;
+				}
+			}
+			float phase = buffer.getFloat(position);
+			position += 4;
+			strokes[i] = StrokeFactory.getStroke(new BasicStroke(width,
+			                                                     cap,
+			                                                     join,
+			                                                     miterLimit,
+			                                                     dash,
+			                                                     phase));
+		}
+
+		checkRecords();
+
+		bounds = new double[4 * count];
+		ByteBuffer boundsBuffer = buffer.duplicate();
+		boundsBuffer.position(boundsOffset);
+		boundsBuffer.asDoubleBuffer().get(bounds);
+
+		// Identifiants réservés une fois le fichier entièrement vérifié
+		firstId = Drawing.reserveIds(count);
+	}
+
+	/**
+	 * Vérification qu'une section est entièrement contenue dans le fichier
+	 * @param position la position de la section
+	 * @param length la taille (en octets) de la section
+	 * @throws IOException si la section dépasse du fichier
+	 */
+	private void check(long position, long length) throws IOException
+	{
+		if ((position < 0) || (length < 0)
+		    || (position + length > buffer.capacity()))
+		{
+			throw new IOException("corrupted drawing file");
+		}
+	}
+
+	/**
+	 * Vérification (sans les décoder) des enregistrements de toutes les
+	 * figures : position et taille de l'enregistrement, type de figure (que
+	 * {@link FigureType#getFigure} doit savoir construire) et indices dans
+	 * les tables de couleurs et de traits. Les figures pourront ensuite être
+	 * décodées ({@link #decode(int)}) sans sortir du fichier.
+	 * @throws IOException si l'un des enregistrements est invalide
+	 */
+	private void checkRecords() throws IOException
+	{
+		int supported = 0; // types de figures déjà construits
+		for (int slot = 0; slot < count; slot++)
+		{
+			long position =
+			    (long) recordsOffset + buffer.getInt(indexOffset + (4 * slot));
+			check(position, 18);
+			int p = (int) position;
+			int typeCode = buffer.get(p);
+			int mask = buffer.get(p + 1);
+			int edge = buffer.getInt(p + 6);
+			int fill = buffer.getInt(p + 10);
+			int strokeIndex = buffer.getInt(p + 14);
+			if ((typeCode < 0) || (typeCode >= FigureType.NbFigureTypes)
+			    || ((mask & ~TransformMasks) != 0)
+			    || (edge < -1) || (edge >= paints.length)
+			    || (fill < -1) || (fill >= paints.length)
+			    || (strokeIndex < -1) || (strokeIndex >= strokes.length))
+			{
+				throw new IOException("corrupted drawing file : figure "
+				    + slot);
+			}
+			FigureType type = FigureType.fromInteger(typeCode);
+			if ((supported & (1 << typeCode)) == 0)
+			{
+				if (type.getFigure(null, null, null, new Point2D.Double())
+				    == null)
+				{
+					throw new IOException("unsupported figure type " + type
+					    + " : figure " + slot);
+				}
+				supported |= 1 << typeCode;
+			}
+			position += 18 + (48 * Integer.bitCount(mask));
+			int size = geometrySize(type);
+			if (size > 0)
+			{
+				check(position, 8L * size);
+			}
+			else
+			{
+				check(position, 4);
+				int n = buffer.getInt((int) position);
+				if (n < 0)
+				{
+					throw new IOException("corrupted drawing file : figure "
+					    + slot);
+				}
+				check(position + 4, 8L * n);
+			}
+		}
+	}
+
+	/**
+	 * Vérification de l'entête d'un fichier de dessin
+	 * @param buffer le fichier projeté en mémoire
+	 * @return le nombre de figures du fichier
+	 * @throws IOException si le fichier n'est pas un fichier de dessin valide
+	 */
+	private static int header(ByteBuffer buffer) throws IOException
+	{
+		if (buffer.capacity() < HeaderSize)
+		{
+			throw new IOException("truncated drawing file");
+		}
+		if (buffer.getInt(0) != Magic)
+		{
+			throw new IOException("not a drawing file");
+		}
+		int version = buffer.getInt(4);
+		if (version != Version)
+		{
+			throw new IOException("unsupported drawing file version " + version);
+		}
+		int count = buffer.getInt(8);
+		if (count < 0)
+		{
+			throw new IOException("corrupted drawing file");
+		}
+		return count;
+	}
+
+	/**
+	 * Lecture d'une position de l'entête
+	 * @param position la position de la valeur dans l'entête
+	 * @return la position lue
+	 * @throws IOException si la position est en dehors du fichier
+	 */
+	private int offset(int position) throws IOException
+	{
+		long offset = buffer.getLong(position);
+		if ((offset < HeaderSize) || (offset > buffer.capacity()))
+		{
+			throw new IOException("corrupted drawing file");
+		}
+		return (int) offset;
+	}
+
+	/**
+	 * Ouverture d'un fichier de dessin (projeté en mémoire en lecture seule)
+	 * @param file le fichier à ouvrir
+	 * @return le fichier de dessin ouvert
+	 * @throws IOException si le fichier ne peut pas être lu ou n'est pas un
+	 * fichier de dessin valide
+	 */
+	public static DrawingFile open(File file) throws IOException
+	{
+		try (RandomAccessFile input = new RandomAccessFile(file, "r");
+		     FileChannel channel = input.getChannel())
+		{
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+			{
+				throw new IOException("drawing file too large : " + size);
+			}
+			// La projection reste valide après la fermeture du canal
+			return new DrawingFile(channel.map(FileChannel.MapMode.READ_ONLY,
+			                                   0,
+			                                   size));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see figures.FigureSource#bounds()
+	 */
+	@Override
+	double[] bounds()
+	{
+		return bounds;
+	}
+
+	/* (non-Javadoc)
+	 * @see figures.FigureSource#index(figures.AttributeIndex)
+	 */
+	@Override
+	void index(AttributeIndex attributes) throws IllegalStateException
+	{
+		for (int slot = 0; slot < count; slot++)
+		{
+			int position =
+			    recordsOffset + buffer.getInt(indexOffset + (4 * slot));
+			int typeCode = buffer.get(position);
+			if ((typeCode < 0) || (typeCode >= FigureType.NbFigureTypes))
+			{
+				throw new IllegalStateException(getClassName() + "::"
+				    + getMethodName() + " unknown figure type " + typeCode);
+			}
+			int strokeIndex = buffer.getInt(position + 14);
+			attributes.set(slot,
+			               FigureType.fromInteger(typeCode),
+			               paint(buffer.getInt(position + 6)),
+			               paint(buffer.getInt(position + 10)),
+			               (strokeIndex >= 0 ? strokes[strokeIndex] : null));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see figures.FigureSource#idOf(int)
+	 */
+	@Override
+	public long idOf(int slot)
+	{
+		return firstId + slot;
+	}
+
+	/* (non-Javadoc)
+	 * @see figures.FigureSource#slotOf(long)
+	 */
+	@Override
+	public int slotOf(long id)
+	{
+		return ((id >= firstId) && (id < firstId + count)) ? (int) (id - firstId)
+		                                                  : -1;
+	}
+
+	/**
+	 * Décodage d'une figure
+	 * @param slot l'indice de la figure dans le fichier
+	 * @return une nouvelle figure
+	 * @throws IllegalStateException si la figure ne peut pas être décodée
+	 */
+	@Override
+	protected Figure decode(int slot) throws IllegalStateException
+	{
+		int position = recordsOffset + buffer.getInt(indexOffset + (4 * slot));
+		int typeCode = buffer.get(position);
+		int mask = buffer.get(position + 1);
+		int instanceNumber = buffer.getInt(position + 2);
+		Paint edge = paint(buffer.getInt(position + 6));
+		Paint fill = paint(buffer.getInt(position + 10));
+		int strokeIndex = buffer.getInt(position + 14);
+		BasicStroke stroke = (strokeIndex >= 0 ? strokes[strokeIndex] : null);
+		position += 18;
+
+		if ((typeCode < 0) || (typeCode >= FigureType.NbFigureTypes))
+		{
+			throw new IllegalStateException(getClassName() + "::"
+			    + getMethodName() + " unknown figure type " + typeCode);
+		}
+		FigureType type = FigureType.fromInteger(typeCode);
+		Figure figure = type.getFigure(stroke, edge, fill,
+		                               new Point2D.Double());
+		if (figure == null)
+		{
+			throw new IllegalStateException(getClassName() + "::"
+			    + getMethodName() + " unsupported figure type " + type);
+		}
+		figure.instanceNumber = instanceNumber;
+		for (AffineTransform transform : transforms(figure, mask))
+		{
+			position = readTransform(position, transform);
+		}
+
+		int shapePosition = position;
+		IntToDoubleFunction values = (geometrySize(type) > 0
+		    ? (int i) -> buffer.getDouble(shapePosition + (8 * i))
+		    : (int i) -> buffer.getInt(shapePosition + (4 * i)));
+		figure.shape = shape(type, values);
+		return figure;
+	}
+
+	/**
+	 * Couleur d'indice donné de la table des couleurs
+	 * @param index l'indice de la couleur ou -1
+	 * @return la couleur ou null si index vaut -1
+	 */
+	private Paint paint(int index)
+	{
+		return (index >= 0 ? paints[index] : null);
+	}
+
+	/**
+	 * Lecture d'une transformation
+	 * @param position la position de la transformation
+	 * @param transform la transformation à mettre en place
+	 * @return la position suivant la transformation
+	 */
+	private int readTransform(int position, AffineTransform transform)
+	{
+		transform.setTransform(buffer.getDouble(position),
+		                       buffer.getDouble(position + 8),
+		                       buffer.getDouble(position + 16),
+		                       buffer.getDouble(position + 24),
+		                       buffer.getDouble(position + 32),
+		                       buffer.getDouble(position + 40));
+		return position + 48;
+	}
+
+	/**
+	 * Enregistrement d'une liste de figures dans un fichier de dessin
+	 * @param figures les figures dans l'ordre de dessin (qui ne doivent pas
+	 * être modifiées pendant l'enregistrement, voir {@link Drawing#snapshot()})
+	 * @param file le fichier à écrire
+	 * @throws IOException si l'écriture échoue ou si l'une des figures ne peut
+	 * pas être enregistrée (couleur autre qu'une {@link Color} par exemple)
+	 */
+	public static void write(List<Figure> figures, File file)
+	    throws IOException
+	{
+		int n = figures.size();
+		Map<Paint, Integer> paints = new LinkedHashMap<Paint, Integer>();
+		Map<BasicStroke, Integer> strokes =
+		    new LinkedHashMap<BasicStroke, Integer>();
+		int[] positions = new int[n];
+		int strokesSize = 0;
+		long recordsSize = 0;
+		int i = 0;
+		for (Figure figure : figures)
+		{
+			for (Paint paint : new Paint[] {figure.edge, figure.fill})
+			{
+				if ((paint != null) && !paints.containsKey(paint))
+				{
+					if (!(paint instanceof Color))
+					{
+						throw new IOException("unsupported paint " + paint);
+					}
+					paints.put(paint, Integer.valueOf(paints.size()));
+				}
+			}
+			if ((figure.stroke != null) && !strokes.containsKey(figure.stroke))
+			{
+				strokes.put(figure.stroke, Integer.valueOf(strokes.size()));
+				float[] dash = figure.stroke.getDashArray();
+				strokesSize += 18 + (dash != null ? 4 * dash.length : 0);
+			}
+			positions[i++] = (int) recordsSize;
+			recordsSize += recordSize(figure);
+		}
+
+		long paintsOffset = HeaderSize;
+		long strokesOffset = paintsOffset + (4L * paints.size());
+		long boundsOffset = strokesOffset + strokesSize;
+		long indexOffset = boundsOffset + (32L * n);
+		long end = indexOffset + (4L * n) + recordsSize;
+		if (end > Integer.MAX_VALUE)
+		{
+			throw new IOException("drawing too large : " + end + " bytes");
+		}
+
+		/*
+		 * Le fichier de destination peut être projeté en mémoire (dessin
+		 * chargé depuis ce fichier, éventuellement dans l'historique) : il ne
+		 * doit pas être tronqué mais remplacé une fois le nouveau fichier
+		 * entièrement écrit
+		 */
+		Path target = file.getAbsoluteFile().toPath();
+		Path temporary = Files.createTempFile(target.getParent(),
+		                                      "." + target.getFileName(),
+		                                      ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+		    new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16)))
+		{
+			out.writeInt(Magic);
+			out.writeInt(Version);
+			out.writeInt(n);
+			out.writeInt(paints.size());
+			out.writeInt(strokes.size());
+			out.writeInt(0);
+			out.writeLong(paintsOffset);
+			out.writeLong(strokesOffset);
+			out.writeLong(boundsOffset);
+			out.writeLong(indexOffset);
+			out.writeLong(indexOffset + (4L * n));
+
+			for (Paint paint : paints.keySet())
+			{
+				out.writeInt(((Color) paint).getRGB());
+			}
+
+			for (BasicStroke stroke : strokes.keySet())
+			{
+				float[] dash = stroke.getDashArray();
+				out.writeFloat(stroke.getLineWidth());
+				out.writeByte(stroke.getEndCap());
+				out.writeByte(stroke.getLineJoin());
+				out.writeFloat(stroke.getMiterLimit());
+				out.writeInt(dash != null ? dash.length : 0);
+				if (dash != null)
+				{
+					for (float d : dash)
+					{
+						out.writeFloat(d);
+					}
+				}
+				out.writeFloat(stroke.getDashPhase());
+			}
+
+			for (Figure figure : figures)
+			{
+				Rectangle2D box = Drawing.indexBounds(figure);
+				out.writeDouble(box.getMinX());
+				out.writeDouble(box.getMinY());
+				out.writeDouble(box.getMaxX());
+				out.writeDouble(box.getMaxY());
+			}
+
+			for (int position : positions)
+			{
+				out.writeInt(position);
+			}
+
+			for (Figure figure : figures)
+			{
+				writeRecord(out, figure, paints, strokes);
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			Files.deleteIfExists(temporary);
+			throw e;
+		}
+
+		try
+		{
+			try
+			{
+				Files.move(temporary,
+				           target,
+				           StandardCopyOption.ATOMIC_MOVE,
+				           StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temporary,
+				           target,
+				           StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException e)
+		{
+			Files.deleteIfExists(temporary);
+			throw e;
+		}
+	}
+
+	/**
+	 * Enregistrement de la version courante d'un dessin dans un fichier
+	 * @param drawing le dessin à enregistrer
+	 * @param file le fichier à écrire
+	 * @throws IOException si l'écriture échoue
+	 */
+	public static void write(Drawing drawing, File file) throws IOException
+	{
+		write(drawing.snapshot(), file);
+	}
+
+	/**
+	 * Taille de l'enregistrement d'une figure
+	 * @param figure la figure
+	 * @return le nombre d'octets de l'enregistrement de la figure
+	 * @throws IOException si la figure ne peut pas être enregistrée
+	 */
+	private static long recordSize(Figure figure) throws IOException
+	{
+		long size = 18 + (48 * Integer.bitCount(transformMask(figure)));
+		try
+		{
+			int values = geometrySize(figure.shape);
+			return size + ((figure.shape instanceof java.awt.Polygon ? 4L : 8L)
+			    * values);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException("unsupported figure " + figure, e);
+		}
+	}
+
+	/**
+	 * Écriture de l'enregistrement d'une figure
+	 * @param out le flux de sortie
+	 * @param figure la figure
+	 * @param paints la table des couleurs
+	 * @param strokes la table des traits
+	 * @throws IOException si l'écriture échoue
+	 */
+	private static void writeRecord(DataOutputStream out,
+	                                Figure figure,
+	                                Map<Paint, Integer> paints,
+	                                Map<BasicStroke, Integer> strokes)
+	    throws IOException
+	{
+		int mask = transformMask(figure);
+		out.writeByte(figure.getType().intValue());
+		out.writeByte(mask);
+		out.writeInt(figure.instanceNumber);
+		out.writeInt(figure.edge != null ? paints.get(figure.edge) : -1);
+		out.writeInt(figure.fill != null ? paints.get(figure.fill) : -1);
+		out.writeInt(figure.stroke != null ? strokes.get(figure.stroke) : -1);
+		for (AffineTransform transform : transforms(figure, mask))
+		{
+			writeTransform(out, transform);
+		}
+
+		boolean polygon = (figure.shape instanceof java.awt.Polygon);
+		for (double value : geometry(figure.shape))
+		{
+			if (polygon)
+			{
+				out.writeInt((int) value);
+			}
+			else
+			{
+				out.writeDouble(value);
+			}
+		}
+	}
+
+	/**
+	 * Écriture d'une transformation
+	 * @param out le flux de sortie
+	 * @param transform la transformation
+	 * @throws IOException si l'écriture échoue
+	 */
+	private static void writeTransform(DataOutputStream out,
+	                                   AffineTransform transform)
+	    throws IOException
+	{
+		double[] matrix = new double[6];
+		transform.getMatrix(matrix);
+		for (double value : matrix)
+		{
+			out.writeDouble(value);
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package figures;
+
+import java.util.EventListener;
+
+/**
+ * Interface des objets souhaitant être informés des modifications d'un
+ * {@link Drawing}
+ * @author davidroussel
+ * @see Drawing#addDrawingListener(DrawingListener, java.util.Set)
+ */
+public interface DrawingListener extends EventListener
+{
+	/**
+	 * Notification d'une modification du dessin (ou de plusieurs
+	 * modifications regroupées dans une transaction)
+	 * @param event l'évènement décrivant les modifications
+	 */
+	public abstract void drawingChanged(DrawingEvent event);
+}
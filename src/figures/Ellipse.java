@@ -6,6 +6,7 @@ import java.awt.geom.Ellipse2D;
 import java.awt.geom.Point2D;
 
 import figures.enums.FigureType;
+import utils.Logger;
 import utils.Signature;
 
 /**
@@ -100,28 +101,23 @@ public class Ellipse extends Figure implements Signature
 			double newHeight = p.getY() - ellipse.y;
 			ellipse.width = newWidth;
 			ellipse.height = newHeight;
+			invalidate();
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null shape");
+			Logger.error(() -> "null shape");
 		}
 	}
 
 	/**
-	 * Obtention du barycentre de la figure.
-	 * @return le point correspondant au barycentre de la figure
+	 * Calcul du barycentre de l'ellipse (sans ses transformations).
+	 * @return le centre de l'ellipse
 	 */
 	@Override
-	public Point2D getCenter()
+	protected Point2D computeCenter()
 	{
 		Ellipse2D.Double ellipse = (Ellipse2D.Double) shape;
-		Point2D center = new Point2D.Double(ellipse.getCenterX(),
-		                                    ellipse.getCenterY());
-		Point2D tCenter = new Point2D.Double();
-		getTransform().transform(center, tCenter);
-
-		return tCenter;
+		return new Point2D.Double(ellipse.getCenterX(), ellipse.getCenterY());
 	}
 
 	/**
@@ -141,6 +137,7 @@ public class Ellipse extends Figure implements Signature
 		                 ellipse.y - cy,
 		                 ellipse.width,
 		                 ellipse.height);
+		invalidate();
 	}
 
 	/**
@@ -12,8 +12,10 @@ import java.awt.geom.Rectangle2D;
 
 import figures.enums.FigureType;
 import figures.enums.LineType;
+import history.Footprint;
 import history.Prototype;
 import utils.CColor;
+import utils.Logger;
 import utils.PaintFactory;
 import utils.Signature;
 import utils.StrokeFactory;
@@ -22,7 +24,8 @@ import utils.StrokeFactory;
  * Classe commune à toutes les sortes de figures
  * @author davidroussel
  */
-public abstract class Figure implements Prototype<Figure>, Signature
+public abstract class Figure
+    implements Prototype<Figure>, Footprint, Signature
 {
 	/**
 	 * La forme à dessiner
@@ -87,11 +90,174 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 */
 	protected int instanceNumber;
 
+	/**
+	 * Identifiant de la figure, unique parmi toutes les figures et attribué
+	 * par le {@link Drawing} lors de l'ajout de la figure (0 tant qu'elle
+	 * n'a pas été ajoutée à un dessin). Il ne change pas lorsque la figure
+	 * change de rang dans le dessin et il est conservé par les copies de la
+	 * figure ({@link Drawing#mutable(Figure)}).
+	 * @see Drawing#getFigure(long)
+	 */
+	long id;
+
 	/**
 	 * Indique si la figure fait partie des figrues sélectionnées
 	 */
 	protected boolean selected;
 
+	/**
+	 * Version (époque du {@link Drawing}) à laquelle la figure a été créée ou
+	 * copiée. Une figure dont la version est antérieure à l'époque courante
+	 * du dessin peut être partagée avec une version conservée du dessin
+	 * (historique, rendu) et doit donc être copiée avant d'être modifiée.
+	 * @see Drawing#mutable(Figure)
+	 */
+	int version;
+
+	/**
+	 * Indice de la figure dans la source compacte ({@link FigureSource} :
+	 * fichier ou stockage en colonnes) dont elle a été matérialisée, ou -1 si
+	 * elle n'a pas été obtenue depuis une telle source (les copies d'une
+	 * figure matérialisée ne sont pas concernées).
+	 */
+	int slot = -1;
+
+	/**
+	 * Profondeur de la figure dans l'ordre de dessin du {@link Drawing} qui
+	 * la contient : clé strictement croissante le long de la liste des
+	 * figures qui permet de retrouver le rang d'une figure en O(log n) et de
+	 * comparer les rangs de deux figures sans les rechercher. Comme l'état
+	 * sélectionné, c'est un état propre au dessin qui peut changer sans que
+	 * la figure soit copiée.
+	 * @see Drawing#indexOf(Figure)
+	 */
+	double depth;
+
+	/**
+	 * Géométrie transformée de la figure mise en cache : transformation
+	 * complète, son inverse et rectangle englobant transformé.
+	 * Ces éléments sont utilisés à chaque dessin et à chaque test de contenance,
+	 * ils ne sont donc recalculés que lorsque la figure est modifiée.
+	 * Les champs de ce cache sont final, un cache publié est donc toujours
+	 * vu complet par les autres threads.
+	 * @see #invalidate()
+	 */
+	private static final class Geometry
+	{
+		/**
+		 * La transformation complète (translation * échelle * rotation)
+		 */
+		final AffineTransform transform;
+
+		/**
+		 * L'inverse de {@link #transform} ou null si celle ci n'est pas
+		 * inversible
+		 */
+		final AffineTransform inverse;
+
+		/**
+		 * Le rectangle englobant transformé de la figure (ou null si la figure
+		 * n'a pas encore de forme)
+		 */
+		final Rectangle2D bounds;
+
+		/**
+		 * Calcul de la géométrie transformée d'une figure
+		 * @param figure la figure
+		 */
+		Geometry(Figure figure)
+		{
+			transform = new AffineTransform(figure.translation);
+			transform.concatenate(figure.scale);
+			transform.concatenate(figure.rotation);
+
+			AffineTransform inv;
+			try
+			{
+				inv = transform.createInverse();
+			}
+			catch (NoninvertibleTransformException e)
+			{
+				inv = null;
+			}
+			inverse = inv;
+
+			if (figure.shape != null)
+			{
+				bounds = transformedBounds(figure.shape.getBounds2D(), transform);
+			}
+			else
+			{
+				bounds = null;
+			}
+		}
+
+		/**
+		 * Rectangle englobant d'un rectangle transformé par une
+		 * transformation affine (calculé sur les 4 coins du rectangle)
+		 * @param r le rectangle à transformer (réutilisé pour le résultat)
+		 * @param t la transformation à appliquer
+		 * @return le rectangle r contenant le rectangle englobant transformé
+		 */
+		private static Rectangle2D transformedBounds(Rectangle2D r,
+		                                             AffineTransform t)
+		{
+			double m00 = t.getScaleX();
+			double m01 = t.getShearX();
+			double m02 = t.getTranslateX();
+			double m10 = t.getShearY();
+			double m11 = t.getScaleY();
+			double m12 = t.getTranslateY();
+			double[] xs = { r.getMinX(), r.getMaxX(), r.getMaxX(), r.getMinX() };
+			double[] ys = { r.getMinY(), r.getMinY(), r.getMaxY(), r.getMaxY() };
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < 4; i++)
+			{
+				double tx = (m00 * xs[i]) + (m01 * ys[i]) + m02;
+				double ty = (m10 * xs[i]) + (m11 * ys[i]) + m12;
+				minX = (tx < minX ? tx : minX);
+				minY = (ty < minY ? ty : minY);
+				maxX = (tx > maxX ? tx : maxX);
+				maxY = (ty > maxY ? ty : maxY);
+			}
+			r.setFrame(minX, minY, maxX - minX, maxY - minY);
+			return r;
+		}
+	}
+
+	/**
+	 * Cache de la géométrie transformée de la figure. null lorsque la figure
+	 * a été modifiée depuis le dernier calcul.
+	 */
+	private Geometry geometry;
+
+	/**
+	 * Barycentre (transformé) de la figure mis en cache. null lorsque la
+	 * figure a été modifiée depuis le dernier calcul. Le point n'est plus
+	 * modifié une fois publié : volatile afin qu'il soit vu complet par les
+	 * autres threads.
+	 * @see #getCenter()
+	 */
+	private volatile Point2D center;
+
+	/**
+	 * Image de la figure dans un {@link SpriteCache} (ou null). Elle reste
+	 * valide tant que seule la translation de la figure change.
+	 * @see #draw(Graphics2D, SpriteCache)
+	 */
+	SpriteCache.Sprite sprite;
+
+	/**
+	 * Forme simplifiée de la figure mise en cache par un
+	 * {@link LevelOfDetail} (ou null). Peut être écrite par plusieurs threads
+	 * de rendu dessinant la même figure (voir {@link LevelOfDetail}) : volatile
+	 * afin que la forme mise en cache par l'un soit visible des autres.
+	 */
+	volatile LevelOfDetail.Simplified simplified;
+
 	/**
 	 * Constructeur d'une figure abstraite à partir d'un style de ligne d'une
 	 * couleur de bordure et d'une couleur de remplissage. Les styles de lignes
@@ -131,7 +297,11 @@ public abstract class Figure implements Prototype<Figure>, Signature
 		rotation = new AffineTransform(f.rotation);
 		scale = new AffineTransform(f.scale);
 		instanceNumber = f.instanceNumber;
+		id = f.id;
+		depth = f.depth;
 		selected = f.selected;
+		geometry = null;
+		center = null;
 	}
 
 	/**
@@ -239,7 +409,8 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 */
 	public final void draw(Graphics2D g2D)
 	{
-		// Get the current transform
+		// Get the current transform (the only allocation of this method,
+		// imposed by Graphics2D)
 		AffineTransform savedT = g2D.getTransform();
 
 		// Perform transformations
@@ -262,6 +433,22 @@ public abstract class Figure implements Prototype<Figure>, Signature
 		g2D.setTransform(savedT);
 	}
 
+	/**
+	 * Dessin de la figure à partir de son image dans un cache de sprites
+	 * lorsque celui-ci l'accepte, ou bien directement (voir
+	 * {@link #draw(Graphics2D)}) sinon.
+	 * @param g2D le contexte graphique
+	 * @param sprites le cache de sprites à utiliser (ou null pour dessiner
+	 * directement la figure)
+	 */
+	public final void draw(Graphics2D g2D, SpriteCache sprites)
+	{
+		if ((sprites == null) || !sprites.draw(this, g2D))
+		{
+			draw(g2D);
+		}
+	}
+
 	/**
 	 * Dessin de la sélection de la figure (son soulignement) dans un contexte
 	 * graphique fournit par le système.
@@ -292,9 +479,69 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 */
 	public abstract void normalize();
 
+	/**
+	 * Invalidation de la géométrie transformée mise en cache. Doit être
+	 * appelée par toutes les méthodes modifiant la forme ({@link #shape}) ou
+	 * les transformations ({@link #translation}, {@link #rotation} et
+	 * {@link #scale}) de la figure, y compris dans les classes filles.
+	 * L'image de la figure dans un {@link SpriteCache} et sa forme simplifiée
+	 * ({@link LevelOfDetail}) sont également abandonnées.
+	 */
+	protected void invalidate()
+	{
+		geometry = null;
+		center = null;
+		simplified = null;
+		dropSprite();
+	}
+
+	/**
+	 * Invalidation de la seule géométrie transformée lorsque seule la
+	 * translation de la figure change : son image dans un {@link SpriteCache}
+	 * reste valide.
+	 */
+	private void invalidateTranslation()
+	{
+		geometry = null;
+		center = null;
+	}
+
+	/**
+	 * Abandon de l'image de la figure dans un {@link SpriteCache} (après un
+	 * changement de forme, de rotation, d'échelle ou de style)
+	 */
+	private void dropSprite()
+	{
+		SpriteCache.Sprite s = sprite;
+		if (s != null)
+		{
+			sprite = null;
+			s.release();
+		}
+	}
+
+	/**
+	 * Obtention de la géométrie transformée de la figure, recalculée si
+	 * celle-ci a été invalidée
+	 * @return la géométrie transformée à jour
+	 */
+	private Geometry geometry()
+	{
+		Geometry g = geometry;
+		if (g == null)
+		{
+			g = new Geometry(this);
+			geometry = g;
+		}
+		return g;
+	}
+
 	/**
 	 * Accesseur en lecture de la translation courante
 	 * @return la translation courante
+	 * @note la translation ne doit pas être modifiée directement : utiliser
+	 * {@link #translate(double, double)} ou
+	 * {@link #setTranslation(AffineTransform)}
 	 */
 	public AffineTransform getTranslation()
 	{
@@ -304,6 +551,8 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	/**
 	 * Accesseur en lecture de la rotation courante
 	 * @return la rotation courante
+	 * @note la rotation ne doit pas être modifiée directement : utiliser
+	 * {@link #rotate(double)} ou {@link #setRotation(AffineTransform)}
 	 */
 	public AffineTransform getRotation()
 	{
@@ -313,6 +562,8 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	/**
 	 * Accesseur en lecture de l'échelle courante
 	 * @return l'échelle courante
+	 * @note l'échelle ne doit pas être modifiée directement : utiliser
+	 * {@link #scale(double)} ou {@link #setScale(AffineTransform)}
 	 */
 	public AffineTransform getScale()
 	{
@@ -324,14 +575,12 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 * (facteur d'échelle)*(rotation)*(translation)
 	 * @return la transformation combinant le facteur d'échelle, la rotation et
 	 * la translation de cette figure.
+	 * @note la transformation renvoyée est celle mise en cache par la figure,
+	 * elle ne doit donc pas être modifiée.
 	 */
 	public AffineTransform getTransform()
 	{
-		AffineTransform transform = (AffineTransform) translation.clone();
-		transform.concatenate(scale);
-		transform.concatenate(rotation);
-
-		return transform;
+		return geometry().transform;
 	}
 
 	/**
@@ -341,6 +590,7 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	public void setTranslation(AffineTransform translation)
 	{
 		this.translation = translation;
+		invalidateTranslation();
 	}
 
 	/**
@@ -351,6 +601,7 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	public void translate(double dx, double dy)
 	{
 		translation.translate(dx, dy);
+		invalidateTranslation();
 	}
 
 	/**
@@ -360,6 +611,7 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	public void setRotation(AffineTransform rotation)
 	{
 		this.rotation = rotation;
+		invalidate();
 	}
 
 	/**
@@ -369,6 +621,7 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	public void rotate(double deltaAngle)
 	{
 		rotation.rotate(deltaAngle);
+		invalidate();
 	}
 
 	/**
@@ -378,6 +631,7 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	public void setScale(AffineTransform scale)
 	{
 		this.scale = scale;
+		invalidate();
 	}
 
 	/**
@@ -387,68 +641,54 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	public void scale(double deltaScale)
 	{
 		scale.scale(deltaScale, deltaScale);
+		invalidate();
 	}
 
 	/**
 	 * Obtention du rectangle englobant de la figure.
-	 * Obtenu grâce au {@link Shape#getBounds2D()}
+	 * Obtenu grâce au {@link Shape#getBounds2D()} auquel on applique la
+	 * transformation courante de la figure.
 	 * @return le rectangle englobant de la figure
+	 * @note le rectangle renvoyé est celui mis en cache par la figure, il ne
+	 * doit donc pas être modifié.
 	 */
 	public Rectangle2D getBounds2D()
 	{
-		/*
-		 * Attention, il faut appliquer la transformation affine courante
-		 * au Rectangle2D résultant de l'appel à shape.getBounds2D();
-		 */
-		Rectangle2D bounds = shape.getBounds2D();
-		double minX = bounds.getMinX();
-		double minY = bounds.getMinY();
-		double maxX = bounds.getMaxX();
-		double maxY = bounds.getMaxY();
-		Point2D[] corners = new Point2D[] { new Point2D.Double(minX, minY),
-		    new Point2D.Double(maxX, minY), new Point2D.Double(maxX, maxY),
-		    new Point2D.Double(minX, maxY) };
-		Point2D[] tCorners = new Point2D[4];
-		for (int i = 0; i < 4; i++)
-		{
-			tCorners[i] = new Point2D.Double();
-		}
-
-		getTransform().transform(corners, 0, tCorners, 0, corners.length);
-
-		double x = tCorners[0].getX();
-		double y = tCorners[0].getY();
-		double w = 0.0;
-		double h = 0.0;
-
-		for (int i = 0; i < 4; i++)
-		{
-			double tx = tCorners[i].getX();
-			x = (x < tx ? x : tx);
-
-			double ty = tCorners[i].getY();
-			y = (y < ty ? y : ty);
-		}
+		Rectangle2D bounds = geometry().bounds;
+		return (bounds != null ? bounds : new Rectangle2D.Double());
+	}
 
-		for (int i = 0; i < 4; i++)
+	/**
+	 * Obtention du barycentre de la figure.
+	 * Calculé par {@link #computeCenter()} puis transformé par la
+	 * transformation courante de la figure.
+	 * @return le point correspondant au barycentre de la figure (ou null si
+	 * la figure ne sait pas le calculer)
+	 * @note le point renvoyé est celui mis en cache par la figure, il ne
+	 * doit donc pas être modifié.
+	 */
+	public final Point2D getCenter()
+	{
+		Point2D c = center;
+		if (c == null)
 		{
-			double tw = tCorners[i].getX() - x;
-			w = (tw > w ? tw : w);
-
-			double th = tCorners[i].getY() - y;
-			h = (th > h ? th : h);
+			Point2D local = computeCenter();
+			if (local == null)
+			{
+				return null;
+			}
+			c = getTransform().transform(local, null);
+			center = c;
 		}
-
-		bounds.setFrame(x, y, w, h);
-
-		return bounds;
+		return c;
 	}
 
 	/**
-	 * Obtention du barycentre de la figure.
-	 * @return le point correspondant au barycentre de la figure
+	 * Calcul du barycentre de la forme ({@link #shape}) de la figure, sans
+	 * ses transformations
+	 * @return le barycentre de la forme de la figure
 	 */
-	public abstract Point2D getCenter();
+	protected abstract Point2D computeCenter();
 
 	/**
 	 * Teste si le point p est contenu dans cette figure.
@@ -458,24 +698,32 @@ public abstract class Figure implements Prototype<Figure>, Signature
 	 */
 	public boolean contains(Point2D p)
 	{
+		Geometry g = geometry();
+		if ((g.bounds == null) || !g.bounds.contains(p))
+		{
+			return false;
+		}
+
 		/*
 		 * Ce point p doit subir la transformation inverse
 		 * de celle subie par la figure pour déterminer si le point p fait
-		 * partie de la figure
+		 * partie de la figure (calculée ici sans allouer de point)
 		 */
-		try
-		{
-			Point2D transformedPoint = new Point2D.Double();
-			getTransform().inverseTransform(p, transformedPoint);
-
-			return shape.contains(transformedPoint);
-		}
-		catch (NoninvertibleTransformException e)
+		AffineTransform inverse = g.inverse;
+		if (inverse == null)
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " contains : Non inversible transformation");
+			Logger.warning(() -> "contains : Non inversible transformation");
 			return false;
 		}
+
+		double x = p.getX();
+		double y = p.getY();
+		double tx = (inverse.getScaleX() * x) + (inverse.getShearX() * y)
+		    + inverse.getTranslateX();
+		double ty = (inverse.getShearY() * x) + (inverse.getScaleY() * y)
+		    + inverse.getTranslateY();
+
+		return shape.contains(tx, ty);
 	}
 
 	/**
@@ -519,11 +767,11 @@ public abstract class Figure implements Prototype<Figure>, Signature
 		if (edge != null)
 		{
 			this.edge = edge;
+			dropSprite();
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null paint");
+			Logger.error(() -> "null paint");
 		}
 	}
 
@@ -562,11 +810,11 @@ public abstract class Figure implements Prototype<Figure>, Signature
 		if (fill != null)
 		{
 			this.fill = fill;
+			dropSprite();
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null paint");
+			Logger.error(() -> "null paint");
 		}
 	}
 
@@ -600,14 +848,25 @@ public abstract class Figure implements Prototype<Figure>, Signature
 		if (stroke != null)
 		{
 			this.stroke = stroke;
+			dropSprite();
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null stroke");
+			Logger.error(() -> "null stroke");
 		}
 	}
 
+	/**
+	 * Accesseur de l'identifiant de la figure
+	 * @return l'identifiant de la figure ou 0 si elle n'a pas été ajoutée à
+	 * un dessin
+	 * @see #id
+	 */
+	public long getId()
+	{
+		return id;
+	}
+
 	/**
 	 * Accesseur de la propriété {@link #selected}
 	 * @return la valeur de {@link #selected}
@@ -626,6 +885,30 @@ public abstract class Figure implements Prototype<Figure>, Signature
 		this.selected = selected;
 	}
 
+	/**
+	 * Estimation de la mémoire occupée par une figure : ses champs, ses trois
+	 * transformations et sa forme (les couleurs et les traits proviennent des
+	 * flyweight factories et ne sont donc pas comptés). Le cache de
+	 * géométrie n'est pas compté car il est recalculé à la demande.
+	 * @return le nombre estimé d'octets occupés par la figure
+	 */
+	@Override
+	public long footprint()
+	{
+		return Footprint.ObjectHeader + (8 * Footprint.Reference) + 8
+		    + (3 * Footprint.AffineTransformSize) + shapeFootprint();
+	}
+
+	/**
+	 * Estimation de la mémoire occupée par la forme de la figure. Par défaut
+	 * une forme définie par 4 coordonnées (rectangle, ellipse, ...).
+	 * @return le nombre estimé d'octets occupés par {@link #shape}
+	 */
+	protected long shapeFootprint()
+	{
+		return Footprint.ObjectHeader + (4 * 8);
+	}
+
 	/**
 	 * Hashcode of a figure
 	 * @return the hash code of the internal Shape (since the equals method will
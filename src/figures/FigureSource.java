@@ -0,0 +1,432 @@
+package figures;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
+import java.awt.geom.RoundRectangle2D;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntToDoubleFunction;
+
+import figures.enums.FigureType;
+import utils.PersistentVector;
+import utils.Signature;
+
+/**
+ * Source compacte de figures : un ensemble de figures stockées sous une forme
+ * compacte (fichier projeté en mémoire {@link DrawingFile}, tableaux de
+ * primitives {@link FigureStore}) et qui ne sont matérialisées en
+ * {@link Figure} qu'à leur utilisation.
+ * Une figure matérialisée n'est référencée que faiblement par la source :
+ * tant qu'elle est utilisée (sélection, historique, modification en cours),
+ * deux accès à cette figure renvoient le même objet, ce qui permet de
+ * l'utiliser comme clé dans les index du dessin ({@link Drawing}). Une fois
+ * inutilisée (après un rendu complet du dessin par exemple), elle peut être
+ * récupérée par le ramasse miettes puis sera à nouveau matérialisée au
+ * besoin : la mémoire occupée par un grand dessin reste celle de sa forme
+ * compacte.
+ * Une source fournit également, sans matérialiser les figures, leurs
+ * rectangles englobants (pour construire l'index spatial du dessin) et leurs
+ * attributs (pour construire l'index des attributs).
+ * Le codage des figures commun aux différentes sources (masques des
+ * transformations stockées, valeurs de la géométrie des formes) est fourni
+ * par les méthodes de classe de cette classe.
+ * @author davidroussel
+ */
+public abstract class FigureSource implements Signature
+{
+	/**
+	 * Nombre de figures de la source
+	 */
+	protected final int count;
+
+	/**
+	 * Masques indiquant les transformations stockées (différentes de
+	 * l'identité) d'une figure
+	 */
+	static final int TranslationMask = 1, RotationMask = 2, ScaleMask = 4;
+
+	/**
+	 * Ensemble des masques de transformations
+	 */
+	static final int TransformMasks = TranslationMask | RotationMask
+	    | ScaleMask;
+
+	/**
+	 * Références (faibles) des figures déjà matérialisées
+	 */
+	private final AtomicReferenceArray<View> views;
+
+	/**
+	 * File des références des figures matérialisées récupérées par le
+	 * ramasse miettes, dont les cases de {@link #views} sont à vider
+	 */
+	private final ReferenceQueue<Figure> released;
+
+	/**
+	 * Référence faible d'une figure matérialisée, qui connaît l'indice de la
+	 * figure afin de pouvoir vider sa case une fois la figure récupérée
+	 */
+	private static final class View extends WeakReference<Figure>
+	{
+		/**
+		 * L'indice de la figure dans la source
+		 */
+		private final int slot;
+
+		/**
+		 * Constructeur
+		 * @param figure la figure matérialisée
+		 * @param slot l'indice de la figure dans la source
+		 * @param queue la file où placer la référence une fois la figure
+		 * récupérée
+		 */
+		private View(Figure figure, int slot, ReferenceQueue<Figure> queue)
+		{
+			super(figure, queue);
+			this.slot = slot;
+		}
+	}
+
+	/**
+	 * Constructeur d'une source de figures
+	 * @param count le nombre de figures de la source
+	 */
+	protected FigureSource(int count)
+	{
+		this.count = count;
+		views = new AtomicReferenceArray<View>(count);
+		released = new ReferenceQueue<Figure>();
+	}
+
+	/**
+	 * Nombre de figures de la source
+	 * @return le nombre de figures
+	 */
+	public int size()
+	{
+		return count;
+	}
+
+	/**
+	 * Rectangles englobants des figures ({@link Drawing#indexBounds(Figure)})
+	 * obtenus sans matérialiser les figures
+	 * @return un tableau contenant minX, minY, maxX et maxY de chacune des
+	 * figures (à ne pas modifier)
+	 */
+	abstract double[] bounds();
+
+	/**
+	 * Mise en place des attributs (type, couleurs et trait) de toutes les
+	 * figures de la source dans un index d'attributs, sans matérialiser les
+	 * figures
+	 * @param attributes l'index (vide) à remplir, les rangs des figures étant
+	 * leurs indices dans la source
+	 * @throws IllegalStateException si le type d'une figure est inconnu
+	 */
+	abstract void index(AttributeIndex attributes)
+	    throws IllegalStateException;
+
+	/**
+	 * Matérialisation d'une figure
+	 * @param slot l'indice (valide) de la figure dans la source
+	 * @return une nouvelle figure
+	 * @throws IllegalStateException si la figure ne peut pas être matérialisée
+	 */
+	protected abstract Figure decode(int slot) throws IllegalStateException;
+
+	/**
+	 * Identifiant d'une figure de la source
+	 * @param slot l'indice (valide) de la figure dans la source
+	 * @return l'identifiant de la figure
+	 */
+	public abstract long idOf(int slot);
+
+	/**
+	 * Indice d'une figure de la source à partir de son identifiant, sans
+	 * matérialiser la figure
+	 * @param id l'identifiant de la figure
+	 * @return l'indice de la figure dans la source ou -1 si aucune figure de
+	 * la source ne possède cet identifiant
+	 */
+	public abstract int slotOf(long id);
+
+	/**
+	 * Accès à une figure de la source, matérialisée lors du premier accès
+	 * puis référencée faiblement : deux appels pour un même indice renvoient
+	 * la même figure tant que celle-ci est utilisée. Peut être appelée depuis
+	 * plusieurs threads.
+	 * @param slot l'indice de la figure dans la source
+	 * @return la figure
+	 * @throws IndexOutOfBoundsException si l'indice n'est pas valide
+	 * @throws IllegalStateException si la figure ne peut pas être matérialisée
+	 */
+	public Figure get(int slot)
+	    throws IndexOutOfBoundsException, IllegalStateException
+	{
+		if ((slot < 0) || (slot >= count))
+		{
+			throw new IndexOutOfBoundsException("Index: " + slot + ", Size: "
+			    + count);
+		}
+		Figure figure = view(slot);
+		if (figure == null)
+		{
+			synchronized (this)
+			{
+				expunge();
+				figure = view(slot);
+				if (figure == null)
+				{
+					figure = decode(slot);
+					figure.slot = slot;
+					figure.id = idOf(slot);
+					figure.depth = slot;
+					figure.invalidate();
+					views.set(slot, new View(figure, slot, released));
+				}
+			}
+		}
+		return figure;
+	}
+
+	/**
+	 * Figure matérialisée d'indice donné si elle n'a pas été récupérée
+	 * @param slot l'indice de la figure dans la source
+	 * @return la figure matérialisée ou null
+	 */
+	private Figure view(int slot)
+	{
+		View view = views.get(slot);
+		return (view != null ? view.get() : null);
+	}
+
+	/**
+	 * Vidage des cases de {@link #views} dont les figures ont été récupérées
+	 * par le ramasse miettes (sauf si la figure a été matérialisée à nouveau
+	 * depuis)
+	 */
+	private void expunge()
+	{
+		Reference<? extends Figure> reference;
+		while ((reference = released.poll()) != null)
+		{
+			View view = (View) reference;
+			views.compareAndSet(view.slot, view, null);
+		}
+	}
+
+	/**
+	 * Remise des figures déjà matérialisées dans l'ordre de la source
+	 * ({@link Figure#depth}) et dans l'état non sélectionné lorsque celle-ci
+	 * est à nouveau mise en place dans un dessin, les figures matérialisées
+	 * ayant pu être déplacées ou sélectionnées depuis
+	 */
+	void restoreState()
+	{
+		for (int slot = 0; slot < count; slot++)
+		{
+			Figure figure = view(slot);
+			if (figure != null)
+			{
+				figure.depth = slot;
+				figure.selected = false;
+			}
+		}
+	}
+
+	/**
+	 * Indice d'une figure matérialisée depuis cette source
+	 * @param figure la figure
+	 * @return l'indice de la figure dans la source ou -1 si elle n'a pas été
+	 * obtenue par {@link #get(int)}
+	 */
+	public int slotOf(Figure figure)
+	{
+		int slot = figure.slot;
+		if ((slot >= 0) && (slot < count) && (view(slot) == figure))
+		{
+			return slot;
+		}
+		return -1;
+	}
+
+	/**
+	 * Liste (persistante) des figures de la source dans l'ordre de dessin,
+	 * dont les figures sont matérialisées à la lecture ({@link #get(int)})
+	 * @return une nouvelle liste des figures de la source
+	 */
+	public PersistentVector<Figure> figures()
+	{
+		return PersistentVector.lazy(count, this::get);
+	}
+
+	/**
+	 * Masque des transformations d'une figure différentes de l'identité
+	 * @param figure la figure
+	 * @return le masque des transformations à stocker
+	 */
+	static int transformMask(Figure figure)
+	{
+		return (figure.translation.isIdentity() ? 0 : TranslationMask)
+		    | (figure.rotation.isIdentity() ? 0 : RotationMask)
+		    | (figure.scale.isIdentity() ? 0 : ScaleMask);
+	}
+
+	/**
+	 * Transformations d'une figure désignées par un masque, dans l'ordre où
+	 * elles sont stockées : translation, rotation puis facteurs d'échelle
+	 * @param figure la figure
+	 * @param mask le masque des transformations
+	 * @return les transformations (de la figure) à stocker ou à lire
+	 */
+	static AffineTransform[] transforms(Figure figure, int mask)
+	{
+		AffineTransform[] transforms =
+		    new AffineTransform[Integer.bitCount(mask & TransformMasks)];
+		int i = 0;
+		if ((mask & TranslationMask) != 0)
+		{
+			transforms[i++] = figure.translation;
+		}
+		if ((mask & RotationMask) != 0)
+		{
+			transforms[i++] = figure.rotation;
+		}
+		if ((mask & ScaleMask) != 0)
+		{
+			transforms[i++] = figure.scale;
+		}
+		return transforms;
+	}
+
+	/**
+	 * Nombre de valeurs de la géométrie d'une forme (voir
+	 * {@link #geometry(Shape)})
+	 * @param shape la forme
+	 * @return le nombre de valeurs de la géométrie de la forme
+	 * @throws IllegalArgumentException si la forme n'est ni un
+	 * {@link RectangularShape} ni un {@link java.awt.Polygon}
+	 */
+	static int geometrySize(Shape shape) throws IllegalArgumentException
+	{
+		if (shape instanceof java.awt.Polygon)
+		{
+			return 1 + (2 * ((java.awt.Polygon) shape).npoints);
+		}
+		if (shape instanceof RoundRectangle2D)
+		{
+			return 6;
+		}
+		if (shape instanceof RectangularShape)
+		{
+			return 4;
+		}
+		throw new IllegalArgumentException("unsupported shape " + shape);
+	}
+
+	/**
+	 * Nombre de valeurs de la géométrie des formes d'un type de figure
+	 * @param type le type de figure
+	 * @return le nombre de valeurs, ou 0 pour les polygones dont la géométrie
+	 * comporte 1 + 2n valeurs (n étant la première valeur)
+	 */
+	static int geometrySize(FigureType type)
+	{
+		switch (type)
+		{
+			case CIRCLE:
+			case ELLIPSE:
+			case RECTANGLE:
+				return 4;
+			case ROUNDED_RECTANGLE:
+				return 6;
+			default:
+				return 0;
+		}
+	}
+
+	/**
+	 * Valeurs de la géométrie d'une forme : x, y, largeur et hauteur (puis
+	 * largeur et hauteur des arrondis pour un rectangle arrondi), ou bien
+	 * nombre de points puis coordonnées (entières) des points pour un polygone
+	 * @param shape la forme
+	 * @return les valeurs de la géométrie de la forme
+	 * @throws IllegalArgumentException si la forme n'est ni un
+	 * {@link RectangularShape} ni un {@link java.awt.Polygon}
+	 */
+	static double[] geometry(Shape shape) throws IllegalArgumentException
+	{
+		double[] values = new double[geometrySize(shape)];
+		int i = 0;
+		if (shape instanceof java.awt.Polygon)
+		{
+			java.awt.Polygon polygon = (java.awt.Polygon) shape;
+			values[i++] = polygon.npoints;
+			for (int j = 0; j < polygon.npoints; j++)
+			{
+				values[i++] = polygon.xpoints[j];
+				values[i++] = polygon.ypoints[j];
+			}
+			return values;
+		}
+		RectangularShape frame = (RectangularShape) shape;
+		values[i++] = frame.getX();
+		values[i++] = frame.getY();
+		values[i++] = frame.getWidth();
+		values[i++] = frame.getHeight();
+		if (shape instanceof RoundRectangle2D)
+		{
+			RoundRectangle2D round = (RoundRectangle2D) shape;
+			values[i++] = round.getArcWidth();
+			values[i++] = round.getArcHeight();
+		}
+		return values;
+	}
+
+	/**
+	 * Forme d'une figure à partir des valeurs de sa géométrie (voir
+	 * {@link #geometry(Shape)})
+	 * @param type le type de la figure
+	 * @param values les valeurs de la géométrie selon leur rang
+	 * @return une nouvelle forme
+	 */
+	static Shape shape(FigureType type, IntToDoubleFunction values)
+	{
+		switch (type)
+		{
+			case CIRCLE:
+			case ELLIPSE:
+				return new Ellipse2D.Double(values.applyAsDouble(0),
+				                            values.applyAsDouble(1),
+				                            values.applyAsDouble(2),
+				                            values.applyAsDouble(3));
+			case RECTANGLE:
+				return new Rectangle2D.Double(values.applyAsDouble(0),
+				                              values.applyAsDouble(1),
+				                              values.applyAsDouble(2),
+				                              values.applyAsDouble(3));
+			case ROUNDED_RECTANGLE:
+				return new RoundRectangle2D.Double(values.applyAsDouble(0),
+				                                   values.applyAsDouble(1),
+				                                   values.applyAsDouble(2),
+				                                   values.applyAsDouble(3),
+				                                   values.applyAsDouble(4),
+				                                   values.applyAsDouble(5));
+			default:
+				int n = (int) values.applyAsDouble(0);
+				int[] xs = new int[n];
+				int[] ys = new int[n];
+				for (int i = 0; i < n; i++)
+				{
+					xs[i] = (int) values.applyAsDouble(1 + (2 * i));
+					ys[i] = (int) values.applyAsDouble(2 + (2 * i));
+				}
+				return new java.awt.Polygon(xs, ys, n);
+		}
+	}
+}
@@ -0,0 +1,355 @@
+package figures;
+
+import java.awt.BasicStroke;
+import java.awt.Paint;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import figures.enums.FigureType;
+
+/**
+ * Stockage en colonnes (tableaux de primitives) d'un ensemble de figures.
+ * Chaque attribut des figures est rangé dans un tableau indexé par le rang de
+ * la figure :
+ * <ul>
+ * <li>type de figure et transformations présentes : {@code byte}</li>
+ * <li>identifiant : {@code long} (avec une table de hachage ouverte
+ * donnant le rang d'une figure à partir de son identifiant)</li>
+ * <li>numéro d'instance, indices des couleurs et du trait dans les tables
+ * de flyweights de la source : {@code int}</li>
+ * <li>transformations différentes de l'identité (6 coefficients chacune) et
+ * géométrie de la forme : {@code double} dans des tableaux communs à toutes
+ * les figures (avec la position des valeurs de chaque figure)</li>
+ * <li>rectangles englobants (pour l'index spatial) : {@code double}</li>
+ * </ul>
+ * Une figure n'occupe ainsi qu'une centaine d'octets sans aucun objet (et
+ * donc sans entête d'objet ni référence à parcourir par le ramasse miettes)
+ * tant qu'elle n'est pas utilisée. Les {@link Figure} ne sont que des vues
+ * matérialisées à la demande ({@link #get(int)}) sur ce stockage, avec le
+ * même codage que les fichiers de dessin ({@link DrawingFile}).
+ * @author davidroussel
+ */
+public class FigureStore extends FigureSource
+{
+	/**
+	 * Type de chaque figure ({@link FigureType#intValue()})
+	 */
+	private final byte[] types;
+
+	/**
+	 * Transformations stockées de chaque figure (voir
+	 * {@link FigureSource#transformMask(Figure)})
+	 */
+	private final byte[] masks;
+
+	/**
+	 * Identifiant de chaque figure
+	 */
+	private final long[] ids;
+
+	/**
+	 * Table de hachage ouverte (à sondage linéaire) des rangs des figures
+	 * indexée par leurs identifiants : chaque case contient le rang + 1 d'une
+	 * figure ou 0 si elle est vide. Sa taille est une puissance de 2 au moins
+	 * double du nombre de figures.
+	 */
+	private final int[] slots;
+
+	/**
+	 * Numéro d'instance de chaque figure
+	 */
+	private final int[] instanceNumbers;
+
+	/**
+	 * Indice de la couleur de trait de chaque figure dans {@link #paints}
+	 * (ou -1)
+	 */
+	private final int[] edges;
+
+	/**
+	 * Indice de la couleur de remplissage de chaque figure dans
+	 * {@link #paints} (ou -1)
+	 */
+	private final int[] fills;
+
+	/**
+	 * Indice du trait de chaque figure dans {@link #strokes} (ou -1)
+	 */
+	private final int[] strokeIds;
+
+	/**
+	 * Position des transformations de chaque figure dans
+	 * {@link #transforms}
+	 */
+	private final int[] transformOffsets;
+
+	/**
+	 * Coefficients des transformations (différentes de l'identité) de toutes
+	 * les figures
+	 */
+	private final double[] transforms;
+
+	/**
+	 * Position de la géométrie de chaque figure dans {@link #shapes}
+	 */
+	private final int[] shapeOffsets;
+
+	/**
+	 * Géométrie de toutes les figures (voir
+	 * {@link FigureSource#geometry(java.awt.Shape)})
+	 */
+	private final double[] shapes;
+
+	/**
+	 * Rectangles englobants des figures (minX, minY, maxX, maxY)
+	 */
+	private final double[] bounds;
+
+	/**
+	 * Table des couleurs (flyweights) utilisées par les figures
+	 */
+	private final Paint[] paints;
+
+	/**
+	 * Table des traits (flyweights) utilisés par les figures
+	 */
+	private final BasicStroke[] strokes;
+
+	/**
+	 * Constructeur privé : les stockages sont créés par {@link #of(List)}
+	 * @param count le nombre de figures
+	 * @param transformCount le nombre de coefficients de transformations
+	 * @param shapeCount le nombre de valeurs de géométrie
+	 * @param paints la table des couleurs
+	 * @param strokes la table des traits
+	 */
+	private FigureStore(int count,
+	                    int transformCount,
+	                    int shapeCount,
+	                    Paint[] paints,
+	                    BasicStroke[] strokes)
+	{
+		super(count);
+		types = new byte[count];
+		masks = new byte[count];
+		ids = new long[count];
+		slots = new int[Integer.highestOneBit(Math.max(1, count)) << 2];
+		instanceNumbers = new int[count];
+		edges = new int[count];
+		fills = new int[count];
+		strokeIds = new int[count];
+		transformOffsets = new int[count];
+		transforms = new double[transformCount];
+		shapeOffsets = new int[count];
+		shapes = new double[shapeCount];
+		bounds = new double[4 * count];
+		this.paints = paints;
+		this.strokes = strokes;
+	}
+
+	/**
+	 * Rangement d'une liste de figures dans un nouveau stockage en colonnes
+	 * @param figures les figures dans l'ordre de dessin (qui ne doivent pas
+	 * être modifiées pendant le rangement, voir {@link Drawing#snapshot()})
+	 * @return un nouveau stockage contenant les figures
+	 * @throws IllegalArgumentException si la forme de l'une des figures n'est
+	 * ni un {@link RectangularShape} ni un {@link java.awt.Polygon}
+	 */
+	public static FigureStore of(List<Figure> figures)
+	    throws IllegalArgumentException
+	{
+		Map<Paint, Integer> paintIds = new LinkedHashMap<Paint, Integer>();
+		Map<BasicStroke, Integer> strokeIds =
+		    new LinkedHashMap<BasicStroke, Integer>();
+		int transformCount = 0;
+		int shapeCount = 0;
+		for (Figure figure : figures)
+		{
+			for (Paint paint : new Paint[] {figure.edge, figure.fill})
+			{
+				if ((paint != null) && !paintIds.containsKey(paint))
+				{
+					paintIds.put(paint, Integer.valueOf(paintIds.size()));
+				}
+			}
+			if ((figure.stroke != null) && !strokeIds.containsKey(figure.stroke))
+			{
+				strokeIds.put(figure.stroke, Integer.valueOf(strokeIds.size()));
+			}
+			transformCount += 6 * Integer.bitCount(transformMask(figure));
+			shapeCount += geometrySize(figure.shape);
+		}
+
+		FigureStore store =
+		    new FigureStore(figures.size(),
+		                    transformCount,
+		                    shapeCount,
+		                    paintIds.keySet().toArray(new Paint[paintIds.size()]),
+		                    strokeIds.keySet()
+		                        .toArray(new BasicStroke[strokeIds.size()]));
+		int i = 0;
+		int transformPosition = 0;
+		int shapePosition = 0;
+		double[] matrix = new double[6];
+		for (Figure figure : figures)
+		{
+			int mask = transformMask(figure);
+			store.types[i] = (byte) figure.getType().intValue();
+			store.masks[i] = (byte) mask;
+			// Les figures qui ne font pas partie d'un dessin reçoivent un
+			// identifiant pour pouvoir être retrouvées dans le stockage
+			store.ids[i] = (figure.id != 0 ? figure.id : Drawing.reserveIds(1));
+			store.slots[store.probe(store.ids[i])] = i + 1;
+			store.instanceNumbers[i] = figure.instanceNumber;
+			store.edges[i] = id(paintIds, figure.edge);
+			store.fills[i] = id(paintIds, figure.fill);
+			store.strokeIds[i] = id(strokeIds, figure.stroke);
+			store.transformOffsets[i] = transformPosition;
+			for (AffineTransform transform : transforms(figure, mask))
+			{
+				transform.getMatrix(matrix);
+				System.arraycopy(matrix, 0,
+				                 store.transforms, transformPosition, 6);
+				transformPosition += 6;
+			}
+			store.shapeOffsets[i] = shapePosition;
+			double[] geometry = geometry(figure.shape);
+			System.arraycopy(geometry, 0,
+			                 store.shapes, shapePosition, geometry.length);
+			shapePosition += geometry.length;
+			Rectangle2D box = Drawing.indexBounds(figure);
+			store.bounds[(4 * i)] = box.getMinX();
+			store.bounds[(4 * i) + 1] = box.getMinY();
+			store.bounds[(4 * i) + 2] = box.getMaxX();
+			store.bounds[(4 * i) + 3] = box.getMaxY();
+			i++;
+		}
+		return store;
+	}
+
+	/* (non-Javadoc)
+	 * @see figures.FigureSource#bounds()
+	 */
+	@Override
+	double[] bounds()
+	{
+		return bounds;
+	}
+
+	/* (non-Javadoc)
+	 * @see figures.FigureSource#index(figures.AttributeIndex)
+	 */
+	@Override
+	void index(AttributeIndex attributes)
+	{
+		for (int slot = 0; slot < count; slot++)
+		{
+			attributes.set(slot,
+			               FigureType.fromInteger(types[slot]),
+			               paint(edges[slot]),
+			               paint(fills[slot]),
+			               (strokeIds[slot] >= 0 ? strokes[strokeIds[slot]] : null));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see figures.FigureSource#idOf(int)
+	 */
+	@Override
+	public long idOf(int slot)
+	{
+		return ids[slot];
+	}
+
+	/* (non-Javadoc)
+	 * @see figures.FigureSource#slotOf(long)
+	 */
+	@Override
+	public int slotOf(long id)
+	{
+		return slots[probe(id)] - 1;
+	}
+
+	/**
+	 * Recherche de la case de {@link #slots} correspondant à un identifiant
+	 * @param id l'identifiant
+	 * @return la case contenant le rang de la figure ayant cet identifiant ou
+	 * bien la case vide où le ranger
+	 */
+	private int probe(long id)
+	{
+		int mask = slots.length - 1;
+		int index = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		while ((slots[index] != 0) && (ids[slots[index] - 1] != id))
+		{
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	/**
+	 * Matérialisation d'une figure à partir des colonnes du stockage
+	 * @param slot l'indice de la figure
+	 * @return une nouvelle figure
+	 * @throws IllegalStateException si le type de la figure ne fournit pas de
+	 * figure
+	 */
+	@Override
+	protected Figure decode(int slot) throws IllegalStateException
+	{
+		FigureType type = FigureType.fromInteger(types[slot]);
+		int strokeId = strokeIds[slot];
+		Figure figure = type.getFigure((strokeId >= 0 ? strokes[strokeId] : null),
+		                               paint(edges[slot]),
+		                               paint(fills[slot]),
+		                               new Point2D.Double());
+		if (figure == null)
+		{
+			throw new IllegalStateException(getClassName() + "::"
+			    + getMethodName() + " unsupported figure type " + type);
+		}
+		figure.instanceNumber = instanceNumbers[slot];
+
+		int position = transformOffsets[slot];
+		for (AffineTransform transform : transforms(figure, masks[slot]))
+		{
+			transform.setTransform(transforms[position],
+			                       transforms[position + 1],
+			                       transforms[position + 2],
+			                       transforms[position + 3],
+			                       transforms[position + 4],
+			                       transforms[position + 5]);
+			position += 6;
+		}
+
+		int shapeOffset = shapeOffsets[slot];
+		figure.shape = shape(type, (int i) -> shapes[shapeOffset + i]);
+		return figure;
+	}
+
+	/**
+	 * Couleur d'indice donné de la table des couleurs
+	 * @param index l'indice de la couleur ou -1
+	 * @return la couleur ou null si index vaut -1
+	 */
+	private Paint paint(int index)
+	{
+		return (index >= 0 ? paints[index] : null);
+	}
+
+	/**
+	 * Indice d'un élément dans une table de flyweights
+	 * @param ids la table des indices des éléments
+	 * @param element l'élément (éventuellement null)
+	 * @return l'indice de l'élément ou -1 s'il est null
+	 */
+	private static <T> int id(Map<T, Integer> ids, T element)
+	{
+		return (element != null ? ids.get(element).intValue() : -1);
+	}
+}
@@ -0,0 +1,506 @@
+package figures;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.function.Consumer;
+
+import figures.enums.LineType;
+import utils.Signature;
+import utils.StrokeFactory;
+
+/**
+ * Politique de niveau de détail du rendu des figures, en fonction de leur
+ * taille à l'écran (dans le contexte graphique) :
+ * <ul>
+ * <li>les figures plus petites que {@link #getPointSize()} pixels sont
+ * dessinées par un simple carré de leur couleur, qui n'est pas redessiné
+ * sur des pixels portant déjà cette couleur (la dernière figure dessinée sur
+ * un pixel reste visible)</li>
+ * <li>les figures plus petites que {@link #getSimpleSize()} pixels sont
+ * dessinées sans antialiasing et leur trait pointillé est remplacé par un
+ * trait plein</li>
+ * <li>les sommets des polygones plus proches que {@link #getTolerance()}
+ * pixels sont fusionnés</li>
+ * </ul>
+ * Ces choix ne dépendent que du facteur d'échelle du contexte graphique (et
+ * non de sa translation) : le rendu reste donc stable lors du déplacement de
+ * la vue. La simplification des polygones est calculée pour des facteurs
+ * d'échelle arrondis à une puissance de 2 et mise en cache dans les figures.
+ * Une politique est immuable et peut être partagée entre threads, mais ses
+ * {@link Painter} écrivent ce cache dans les figures qu'ils dessinent, qui
+ * peuvent être partagées entre l'EDT et le {@link widgets.RenderThread} (les
+ * versions conservées par {@link Drawing#snapshot()}). Cette concurrence est
+ * bénigne : le cache ({@link Simplified}) est immuable et publié par un champ
+ * volatile, et deux threads dessinant la même figure calculent la même forme
+ * (au pire chacun la sienne, la dernière écrite étant conservée). Les
+ * figures partagées étant copiées avant d'être modifiées
+ * ({@link Drawing#mutable(Figure)}), une figure en cours de rendu n'est
+ * jamais invalidée.
+ * @author davidroussel
+ * @see #painter(Graphics2D, SpriteCache)
+ */
+public class LevelOfDetail implements Signature
+{
+	/**
+	 * Taille (en pixels) par défaut en dessous de laquelle les figures sont
+	 * dessinées par un point
+	 */
+	public static final double DefaultPointSize = 2.0;
+
+	/**
+	 * Taille (en pixels) par défaut en dessous de laquelle les figures sont
+	 * dessinées sans antialiasing ni pointillés
+	 */
+	public static final double DefaultSimpleSize = 8.0;
+
+	/**
+	 * Distance (en pixels) par défaut en dessous de laquelle les sommets des
+	 * polygones sont fusionnés
+	 */
+	public static final double DefaultTolerance = 1.0;
+
+	/**
+	 * Nombre minimum de sommets d'un polygone pour qu'il soit simplifié
+	 */
+	private static final int MinVertices = 8;
+
+	/**
+	 * Polygone simplifié mis en cache dans une figure pour un niveau de zoom
+	 * (puissance de 2) et une tolérance donnés
+	 */
+	static final class Simplified
+	{
+		/**
+		 * Niveau de zoom (logarithme en base 2 du facteur d'échelle)
+		 */
+		final int level;
+
+		/**
+		 * Tolérance (en pixels) de la simplification
+		 */
+		final double tolerance;
+
+		/**
+		 * La forme simplifiée (ou la forme de la figure si elle ne peut pas
+		 * être simplifiée)
+		 */
+		final Shape shape;
+
+		/**
+		 * Constructeur
+		 * @param level le niveau de zoom
+		 * @param tolerance la tolérance de la simplification
+		 * @param shape la forme simplifiée
+		 */
+		Simplified(int level, double tolerance, Shape shape)
+		{
+			this.level = level;
+			this.tolerance = tolerance;
+			this.shape = shape;
+		}
+	}
+
+	/**
+	 * Taille en dessous de laquelle les figures sont dessinées par un point
+	 */
+	private final double pointSize;
+
+	/**
+	 * Taille en dessous de laquelle les figures sont dessinées sans
+	 * antialiasing ni pointillés
+	 */
+	private final double simpleSize;
+
+	/**
+	 * Distance en dessous de laquelle les sommets des polygones sont fusionnés
+	 */
+	private final double tolerance;
+
+	/**
+	 * Constructeur d'une politique de niveau de détail
+	 * @param pointSize la taille (en pixels) en dessous de laquelle les
+	 * figures sont dessinées par un point (0 pour ne jamais le faire)
+	 * @param simpleSize la taille (en pixels) en dessous de laquelle les
+	 * figures sont dessinées sans antialiasing ni pointillés (0 pour ne jamais
+	 * le faire)
+	 * @param tolerance la distance (en pixels) en dessous de laquelle les
+	 * sommets des polygones sont fusionnés (0 pour ne jamais simplifier les
+	 * polygones)
+	 */
+	public LevelOfDetail(double pointSize, double simpleSize, double tolerance)
+	{
+		this.pointSize = Math.max(pointSize, 0.0);
+		this.simpleSize = Math.max(simpleSize, 0.0);
+		this.tolerance = Math.max(tolerance, 0.0);
+	}
+
+	/**
+	 * Constructeur d'une politique de niveau de détail avec les seuils par
+	 * défaut
+	 */
+	public LevelOfDetail()
+	{
+		this(DefaultPointSize, DefaultSimpleSize, DefaultTolerance);
+	}
+
+	/**
+	 * Accesseur de la taille en dessous de laquelle les figures sont
+	 * dessinées par un point
+	 * @return la taille en pixels
+	 */
+	public double getPointSize()
+	{
+		return pointSize;
+	}
+
+	/**
+	 * Accesseur de la taille en dessous de laquelle les figures sont
+	 * dessinées sans antialiasing ni pointillés
+	 * @return la taille en pixels
+	 */
+	public double getSimpleSize()
+	{
+		return simpleSize;
+	}
+
+	/**
+	 * Accesseur de la distance en dessous de laquelle les sommets des
+	 * polygones sont fusionnés
+	 * @return la distance en pixels
+	 */
+	public double getTolerance()
+	{
+		return tolerance;
+	}
+
+	/**
+	 * Obtention d'un dessinateur de figures pour un contexte graphique dont
+	 * la transformation (vue comprise) et la zone de dessin sont déjà mises
+	 * en place
+	 * @param g2D le contexte graphique
+	 * @param sprites le cache d'images des figures complexes (ou null)
+	 * @return un dessinateur de figures (à n'utiliser que pour un seul
+	 * parcours des figures)
+	 */
+	public Painter painter(Graphics2D g2D, SpriteCache sprites)
+	{
+		return new Painter(g2D, sprites);
+	}
+
+	/**
+	 * Dessinateur des figures d'un parcours (dessin d'une image ou d'une
+	 * zone) dans un contexte graphique selon la politique de niveau de détail
+	 */
+	public final class Painter implements Consumer<Figure>
+	{
+		/**
+		 * Le contexte graphique
+		 */
+		private final Graphics2D g2D;
+
+		/**
+		 * Le cache d'images des figures complexes (ou null)
+		 */
+		private final SpriteCache sprites;
+
+		/**
+		 * La transformation du contexte graphique au début du parcours
+		 */
+		private final AffineTransform transform;
+
+		/**
+		 * Le facteur d'échelle du contexte graphique
+		 */
+		private final double scale;
+
+		/**
+		 * La zone du contexte graphique (en pixels) couverte par
+		 * {@link #colors} ou null si elle est inconnue
+		 */
+		private final Rectangle device;
+
+		/**
+		 * Couleur (opaque) du dernier point dessiné sur chacun des pixels de
+		 * {@link #device} (alloué à la première figure concernée)
+		 */
+		private int[] colors;
+
+		/**
+		 * Génération de la couleur de chacun des pixels de {@link #colors} :
+		 * une couleur n'est valide que pour la génération courante
+		 */
+		private int[] generations;
+
+		/**
+		 * Génération courante, incrémentée à chaque figure dessinée autrement
+		 * que par un point (qui peut recouvrir les points déjà dessinés)
+		 */
+		private int generation;
+
+		/**
+		 * Constructeur
+		 * @param g2D le contexte graphique
+		 * @param sprites le cache d'images des figures complexes (ou null)
+		 */
+		private Painter(Graphics2D g2D, SpriteCache sprites)
+		{
+			this.g2D = g2D;
+			this.sprites = sprites;
+			transform = g2D.getTransform();
+			scale = Math.sqrt(Math.abs(transform.getDeterminant()));
+			Rectangle clip = g2D.getClipBounds();
+			device = (clip != null
+			    ? transform.createTransformedShape(clip).getBounds() : null);
+			colors = null;
+			generations = null;
+			generation = 1;
+		}
+
+		/**
+		 * Dessin d'une figure selon sa taille à l'écran
+		 * @param figure la figure à dessiner
+		 */
+		@Override
+		public void accept(Figure figure)
+		{
+			Rectangle2D bounds = figure.getBounds2D();
+			double size = Math.max(bounds.getWidth(), bounds.getHeight()) * scale;
+			if (size < pointSize)
+			{
+				drawPoint(figure, bounds, size);
+				return;
+			}
+
+			generation++;
+			Shape shape = simplified(figure);
+			boolean simple = size < simpleSize;
+			if (!simple && (shape == figure.shape))
+			{
+				figure.draw(g2D, sprites);
+			}
+			else
+			{
+				drawShape(figure, shape, simple);
+			}
+		}
+
+		/**
+		 * Dessin d'une figure (plus petite que {@link #pointSize}) par un
+		 * carré de sa couleur centré sur son centre, à moins que tous les
+		 * pixels de ce carré ne portent déjà cette couleur (opaque)
+		 * @param figure la figure à dessiner
+		 * @param bounds le rectangle englobant de la figure
+		 * @param size la taille de la figure en pixels
+		 */
+		private void drawPoint(Figure figure, Rectangle2D bounds, double size)
+		{
+			Paint paint = (figure.fill != null ? figure.fill : figure.edge);
+			if (paint == null)
+			{
+				return;
+			}
+			double[] center = {bounds.getCenterX(), bounds.getCenterY()};
+			transform.transform(center, 0, center, 0, 1);
+			int x = (int) Math.floor(center[0]);
+			int y = (int) Math.floor(center[1]);
+
+			int side = Math.max((int) Math.round(size), 1);
+			x -= (side - 1) / 2;
+			y -= (side - 1) / 2;
+
+			/*
+			 * Agrégation des figures tombant sur des pixels déjà dessinés de
+			 * la même couleur : les figures suivantes (au dessus) d'une autre
+			 * couleur sont toujours dessinées
+			 */
+			if ((device != null) && (paint instanceof Color)
+			    && (((Color) paint).getAlpha() == 255)
+			    && device.contains(x, y, side, side))
+			{
+				if (!cover(x, y, side, ((Color) paint).getRGB()))
+				{
+					return;
+				}
+			}
+			else
+			{
+				// Point non enregistré pouvant recouvrir les points dessinés
+				generation++;
+			}
+
+			g2D.setTransform(new AffineTransform());
+			g2D.setPaint(paint);
+			g2D.fillRect(x, y, side, side);
+			g2D.setTransform(transform);
+		}
+
+		/**
+		 * Enregistrement de la couleur d'un carré de pixels de
+		 * {@link #device}
+		 * @param x l'abscisse (en pixels) du carré
+		 * @param y l'ordonnée (en pixels) du carré
+		 * @param side le côté du carré
+		 * @param rgb la couleur (opaque) du carré
+		 * @return true si au moins un des pixels du carré n'avait pas déjà
+		 * cette couleur (le carré doit alors être dessiné)
+		 */
+		private boolean cover(int x, int y, int side, int rgb)
+		{
+			if (colors == null)
+			{
+				colors = new int[device.width * device.height];
+				generations = new int[colors.length];
+			}
+			boolean changed = false;
+			for (int row = y - device.y; row < (y - device.y) + side; row++)
+			{
+				int pixel = (row * device.width) + (x - device.x);
+				for (int end = pixel + side; pixel < end; pixel++)
+				{
+					if ((generations[pixel] != generation)
+					    || (colors[pixel] != rgb))
+					{
+						generations[pixel] = generation;
+						colors[pixel] = rgb;
+						changed = true;
+					}
+				}
+			}
+			return changed;
+		}
+
+		/**
+		 * Dessin d'une forme (éventuellement simplifiée) d'une figure avec le
+		 * style de celle-ci, sans antialiasing ni pointillés si la figure est
+		 * petite
+		 * @param figure la figure à dessiner
+		 * @param shape la forme à dessiner
+		 * @param simple true pour dessiner sans antialiasing ni pointillés
+		 */
+		private void drawShape(Figure figure, Shape shape, boolean simple)
+		{
+			Object antialiasing = null;
+			if (simple)
+			{
+				antialiasing = g2D.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+				g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				                     RenderingHints.VALUE_ANTIALIAS_OFF);
+			}
+			g2D.transform(figure.getTransform());
+
+			if (figure.fill != null)
+			{
+				g2D.setPaint(figure.fill);
+				g2D.fill(shape);
+			}
+			if ((figure.edge != null) && (figure.stroke != null))
+			{
+				BasicStroke stroke = figure.stroke;
+				if (simple && (stroke.getDashArray() != null))
+				{
+					stroke = StrokeFactory.getStroke(LineType.SOLID,
+					                                 stroke.getLineWidth());
+				}
+				g2D.setStroke(stroke);
+				g2D.setPaint(figure.edge);
+				g2D.draw(shape);
+			}
+
+			g2D.setTransform(transform);
+			if (antialiasing != null)
+			{
+				g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				                     antialiasing);
+			}
+		}
+
+		/**
+		 * Obtention de la forme simplifiée d'une figure pour le facteur
+		 * d'échelle courant (arrondi à une puissance de 2)
+		 * @param figure la figure
+		 * @return la forme simplifiée ou bien la forme de la figure si elle
+		 * n'a pas besoin d'être simplifiée
+		 */
+		private Shape simplified(Figure figure)
+		{
+			if ((tolerance <= 0.0)
+			    || !(figure.shape instanceof java.awt.Polygon)
+			    || (((java.awt.Polygon) figure.shape).npoints < MinVertices))
+			{
+				return figure.shape;
+			}
+			double figureScale = scale
+			    * Math.sqrt(Math.abs(figure.getTransform().getDeterminant()));
+			if (figureScale <= 0.0)
+			{
+				return figure.shape;
+			}
+			int level = (int) Math.floor(Math.log(figureScale) / Math.log(2.0));
+			Simplified cached = figure.simplified;
+			if ((cached == null) || (cached.level != level)
+			    || (cached.tolerance != tolerance))
+			{
+				cached = new Simplified(level,
+				                        tolerance,
+				                        simplify((java.awt.Polygon) figure.shape,
+				                                 tolerance / Math.pow(2.0, level)));
+				figure.simplified = cached;
+			}
+			return cached.shape;
+		}
+	}
+
+	/**
+	 * Simplification d'un polygone : fusion des sommets successifs plus
+	 * proches qu'une distance donnée
+	 * @param polygon le polygone à simplifier
+	 * @param distance la distance minimale (dans le repère du polygone) entre
+	 * deux sommets conservés
+	 * @return le polygone simplifié ou bien le polygone lui même si aucun
+	 * sommet n'a été fusionné
+	 */
+	static Shape simplify(java.awt.Polygon polygon, double distance)
+	{
+		int n = polygon.npoints;
+		int[] xs = new int[n];
+		int[] ys = new int[n];
+		double d2 = distance * distance;
+		xs[0] = polygon.xpoints[0];
+		ys[0] = polygon.ypoints[0];
+		int kept = 1;
+		for (int i = 1; i < n; i++)
+		{
+			double dx = polygon.xpoints[i] - xs[kept - 1];
+			double dy = polygon.ypoints[i] - ys[kept - 1];
+			if ((i == (n - 1)) || (((dx * dx) + (dy * dy)) >= d2))
+			{
+				xs[kept] = polygon.xpoints[i];
+				ys[kept] = polygon.ypoints[i];
+				kept++;
+			}
+		}
+		if (kept == n)
+		{
+			return polygon;
+		}
+		return new java.awt.Polygon(xs, ys, kept);
+	}
+
+	/**
+	 * Représentation de la politique
+	 * @return une chaine de caractères contenant les seuils de la politique
+	 */
+	@Override
+	public String toString()
+	{
+		return getClassName() + "[point < " + pointSize + "px, simple < "
+		    + simpleSize + "px, tolerance = " + tolerance + "px]";
+	}
+}
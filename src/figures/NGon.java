@@ -29,7 +29,7 @@ public class NGon extends Figure{
     }
 
     @Override
-    public Point2D getCenter() {
+    protected Point2D computeCenter() {
         return null;
     }
 
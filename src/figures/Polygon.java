@@ -1,6 +1,7 @@
 package figures;
 
 import figures.enums.FigureType;
+import history.Footprint;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
@@ -41,9 +42,12 @@ public class Polygon extends Figure {
         if (indice >= 0){
             polygon.xpoints[indice] = Double.valueOf(p.getX()).intValue();
             polygon.ypoints[indice] = Double.valueOf(p.getY()).intValue();
+            polygon.invalidate();
+            invalidate();
         }
     }
 
+    @Override
     protected Point2D computeCenter(){
         java.awt.Polygon polygon = (java.awt.Polygon) shape;
         double[] centre = {0.0, 0.0};
@@ -58,18 +62,11 @@ public class Polygon extends Figure {
         return new Point2D.Double(centre[0],centre[1]);
     }
 
-    @Override
-    public Point2D getCenter(){
-        Point2D centre  = computeCenter();
-        Point2D barycentre = new Point2D.Double();
-        getTransform().transform(centre,barycentre);
-        return barycentre;
-    }
-
 
     public void addPoint(int x, int y){
         java.awt.Polygon polygon = (java.awt.Polygon) shape;
         polygon.addPoint(x,y);
+        invalidate();
     }
 
     @Override
@@ -91,6 +88,14 @@ public class Polygon extends Figure {
                 polygon.addPoint(x[i], y[i]);
             }
         }
+        invalidate();
+    }
+
+    @Override
+    protected long shapeFootprint() {
+        java.awt.Polygon polygon = (java.awt.Polygon) shape;
+        return Footprint.ObjectHeader + (2 * Footprint.Reference) + 8
+            + (2 * Footprint.array(polygon.xpoints.length, 4));
     }
 
     @Override
@@ -111,6 +116,7 @@ public class Polygon extends Figure {
             for (int i=0;i<0;i++){
                 polygon.addPoint(x[i], y[i]);
             }
+            invalidate();
         }
     }
 }
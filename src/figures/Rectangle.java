@@ -8,6 +8,8 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.RectangularShape;
 
+import utils.Logger;
+
 public class Rectangle extends Figure {
     private static int nbRect;
     public Rectangle(BasicStroke stroke, Paint edge, Paint fill, Point2D topLeft, Point2D bottomRight) {
@@ -44,9 +46,10 @@ public class Rectangle extends Figure {
             double h = p.getY()-rectangle.y;
             rectangle.width=l;
             rectangle.height=h;
+            invalidate();
         }
         else{
-            System.err.println(getClass().getSimpleName() + "setLastPoint : erreur");
+            Logger.error(() -> "erreur");
         }
     }
 
@@ -57,15 +60,13 @@ public class Rectangle extends Figure {
         RectangularShape rectangularShape = (RectangularShape) shape;
         translation.translate(centreX, centreY);
         rectangularShape.setFrame(rectangularShape.getX()-centreX, rectangularShape.getY()-centreY,rectangularShape.getWidth(),rectangularShape.getHeight());
+        invalidate();
     }
 
     @Override
-    public Point2D getCenter() {
+    protected Point2D computeCenter() {
         RectangularShape rectangularShape = (RectangularShape) shape;
-        Point2D centre = new Point2D.Double(rectangularShape.getCenterX(),rectangularShape.getY());
-        Point2D barycentre = new Point2D.Double();
-        getTransform().transform(centre, barycentre);
-        return barycentre;
+        return new Point2D.Double(rectangularShape.getCenterX(),rectangularShape.getY());
     }
 
     @Override
@@ -1,6 +1,7 @@
 package figures;
 
 import figures.enums.FigureType;
+import history.Footprint;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
@@ -37,6 +38,7 @@ public class RoundedRectangle extends Figure {
         RoundRectangle2D.Double r = (RoundRectangle2D.Double) shape;
         r.width = p.getX()-r.x;
         r.height=p.getY()-r.y;
+        invalidate();
     }
 
     public void setArc (Point2D p){
@@ -65,6 +67,12 @@ public class RoundedRectangle extends Figure {
                 r.arcwidth=0;
             }
         }
+        invalidate();
+    }
+
+    @Override
+    protected long shapeFootprint() {
+        return Footprint.ObjectHeader + (6 * 8);
     }
 
     @Override
@@ -73,15 +81,10 @@ public class RoundedRectangle extends Figure {
     }
 
     @Override
-    public Point2D getCenter()
+    protected Point2D computeCenter()
     {
         RectangularShape rect = (RectangularShape) shape;
-
-        Point2D center = new Point2D.Double(rect.getCenterX(), rect.getCenterY());
-        Point2D tCenter = new Point2D.Double();
-        getTransform().transform(center, tCenter);
-
-        return tCenter;
+        return new Point2D.Double(rect.getCenterX(), rect.getCenterY());
     }
 
     @Override
@@ -92,5 +95,6 @@ public class RoundedRectangle extends Figure {
         RectangularShape rect = (RectangularShape) shape;
         translation.translate(cx, cy);
         rect.setFrame(rect.getX() - cx, rect.getY() - cy, rect.getWidth(), rect.getHeight());
+        invalidate();
     }
 }
@@ -0,0 +1,459 @@
+package figures;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import utils.Signature;
+
+/**
+ * Cache d'images (sprites) des figures coûteuses à dessiner (traits
+ * pointillés, polygones comportant beaucoup de sommets) : une figure est
+ * rastérisée une fois pour son style et pour la partie linéaire (échelle,
+ * rotation) de sa transformation vers le contexte graphique, dans une image
+ * translucide. Tant que seule la translation de la figure (ou du contexte
+ * graphique) change, la figure est dessinée en copiant cette image.
+ * <ul>
+ * <li>Le nombre total de pixels des images du cache est limité
+ * ({@link #getPixelBudget()}) : les images les moins récemment utilisées
+ * sont abandonnées lorsque le budget est dépassé.</li>
+ * <li>L'image d'une figure est abandonnée lorsque son style
+ * ({@link Figure#setFillPaint(Paint)}, {@link Figure#setEdgePaint(Paint)},
+ * {@link Figure#setStroke(BasicStroke)}), sa forme, sa rotation ou son
+ * facteur d'échelle ({@link Figure#rotate(double)},
+ * {@link Figure#scale(double)}) changent.</li>
+ * <li>La position des images est arrondie au pixel près : le rendu peut
+ * différer d'un demi pixel au plus du dessin vectoriel de la figure.</li>
+ * </ul>
+ * Un cache n'est pas thread safe : il doit être utilisé par un seul thread
+ * (celui de Swing pour le dessin d'un {@link widgets.DrawingPanel}).
+ * @author davidroussel
+ * @see Figure#draw(Graphics2D, SpriteCache)
+ */
+public class SpriteCache implements Signature
+{
+	/**
+	 * Budget par défaut : nombre de pixels d'environ 16 images de 1024 x 1024
+	 * (64 Mo en ARGB)
+	 */
+	public static final long DefaultBudget = 16L * 1024L * 1024L;
+
+	/**
+	 * Nombre minimum de sommets d'un polygone pour que son dessin soit mis en
+	 * cache
+	 */
+	public static final int MinVertices = 12;
+
+	/**
+	 * Marge (en pixels) autour de la figure dans son image pour
+	 * l'antialiasing
+	 */
+	private static final int Margin = 2;
+
+	/**
+	 * Image d'une figure et conditions de validité de cette image
+	 */
+	static final class Sprite
+	{
+		/**
+		 * Le cache contenant cette image
+		 */
+		final SpriteCache cache;
+
+		/**
+		 * L'image de la figure (ou null si elle a été abandonnée)
+		 */
+		BufferedImage image;
+
+		/**
+		 * Position (dans l'image) de l'origine du repère de la figure
+		 */
+		final double originX;
+
+		/**
+		 * Position (dans l'image) de l'origine du repère de la figure
+		 */
+		final double originY;
+
+		/**
+		 * Partie linéaire de la transformation vers le contexte graphique
+		 * avec laquelle l'image a été dessinée
+		 */
+		final double m00, m01, m10, m11;
+
+		/**
+		 * Style avec lequel l'image a été dessinée (les styles proviennent
+		 * des flyweight factories et sont donc comparés par identité)
+		 */
+		final Paint fill, edge;
+
+		/**
+		 * Trait avec lequel l'image a été dessinée
+		 */
+		final BasicStroke stroke;
+
+		/**
+		 * Constructeur
+		 * @param cache le cache contenant l'image
+		 * @param image l'image de la figure
+		 * @param originX abscisse (dans l'image) de l'origine de la figure
+		 * @param originY ordonnée (dans l'image) de l'origine de la figure
+		 * @param linear la transformation avec laquelle l'image a été dessinée
+		 * @param figure la figure dessinée
+		 */
+		Sprite(SpriteCache cache,
+		       BufferedImage image,
+		       double originX,
+		       double originY,
+		       AffineTransform linear,
+		       Figure figure)
+		{
+			this.cache = cache;
+			this.image = image;
+			this.originX = originX;
+			this.originY = originY;
+			m00 = linear.getScaleX();
+			m01 = linear.getShearX();
+			m10 = linear.getShearY();
+			m11 = linear.getScaleY();
+			fill = figure.fill;
+			edge = figure.edge;
+			stroke = figure.stroke;
+		}
+
+		/**
+		 * Test de validité de l'image pour une figure et une transformation
+		 * @param figure la figure
+		 * @param t la transformation complète vers le contexte graphique
+		 * @return true si l'image correspond au style de la figure et à la
+		 * partie linéaire de la transformation
+		 */
+		boolean matches(Figure figure, AffineTransform t)
+		{
+			return (image != null)
+			    && (fill == figure.fill)
+			    && (edge == figure.edge)
+			    && (stroke == figure.stroke)
+			    && (m00 == t.getScaleX())
+			    && (m01 == t.getShearX())
+			    && (m10 == t.getShearY())
+			    && (m11 == t.getScaleY());
+		}
+
+		/**
+		 * Nombre de pixels de l'image
+		 * @return le nombre de pixels
+		 */
+		long pixels()
+		{
+			return (long) image.getWidth() * image.getHeight();
+		}
+
+		/**
+		 * Abandon de l'image (la figure a changé)
+		 */
+		void release()
+		{
+			cache.remove(this);
+		}
+	}
+
+	/**
+	 * Images présentes dans le cache de la moins récemment utilisée à la plus
+	 * récemment utilisée
+	 */
+	private final LinkedHashMap<Sprite, Boolean> sprites;
+
+	/**
+	 * Nombre maximum de pixels des images du cache
+	 */
+	private final long pixelBudget;
+
+	/**
+	 * Nombre de pixels des images du cache
+	 */
+	private long pixels;
+
+	/**
+	 * Nombre de figures dessinées à partir d'une image du cache
+	 */
+	private long hits;
+
+	/**
+	 * Nombre d'images dessinées
+	 */
+	private long misses;
+
+	/**
+	 * Constructeur d'un cache vide
+	 * @param pixelBudget le nombre maximum de pixels des images du cache
+	 */
+	public SpriteCache(long pixelBudget)
+	{
+		sprites = new LinkedHashMap<Sprite, Boolean>(64, 0.75f, true);
+		this.pixelBudget = Math.max(pixelBudget, 0L);
+		pixels = 0L;
+		hits = 0L;
+		misses = 0L;
+	}
+
+	/**
+	 * Constructeur d'un cache vide avec le budget par défaut
+	 * ({@link #DefaultBudget})
+	 */
+	public SpriteCache()
+	{
+		this(DefaultBudget);
+	}
+
+	/**
+	 * Accesseur du budget du cache
+	 * @return le nombre maximum de pixels des images du cache
+	 */
+	public long getPixelBudget()
+	{
+		return pixelBudget;
+	}
+
+	/**
+	 * Nombre de pixels des images du cache
+	 * @return le nombre de pixels utilisés
+	 */
+	public long getPixels()
+	{
+		return pixels;
+	}
+
+	/**
+	 * Nombre d'images du cache
+	 * @return le nombre d'images
+	 */
+	public int size()
+	{
+		return sprites.size();
+	}
+
+	/**
+	 * Nombre de figures dessinées à partir d'une image du cache
+	 * @return le nombre de succès du cache
+	 */
+	public long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * Nombre d'images (re)dessinées
+	 * @return le nombre d'échecs du cache
+	 */
+	public long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * Abandon de toutes les images du cache
+	 */
+	public void clear()
+	{
+		for (Sprite sprite : sprites.keySet())
+		{
+			sprite.image = null;
+		}
+		sprites.clear();
+		pixels = 0L;
+	}
+
+	/**
+	 * Indique si le dessin d'une figure mérite d'être mis en cache : figures
+	 * dont le trait est pointillé ou dont la forme comporte beaucoup de
+	 * sommets. Le dessin des autres figures est plus rapide que la copie
+	 * d'une image.
+	 * @param figure la figure
+	 * @return true si la figure doit être dessinée à partir d'une image
+	 */
+	protected boolean accepts(Figure figure)
+	{
+		Shape shape = figure.shape;
+		if (shape == null)
+		{
+			return false;
+		}
+		if ((figure.edge != null) && (figure.stroke != null)
+		    && (figure.stroke.getDashArray() != null))
+		{
+			return true;
+		}
+		if (shape instanceof java.awt.Polygon)
+		{
+			return ((java.awt.Polygon) shape).npoints >= MinVertices;
+		}
+		return shape instanceof Path2D;
+	}
+
+	/**
+	 * Dessin d'une figure à partir de son image, (re)dessinée si nécessaire
+	 * @param figure la figure à dessiner
+	 * @param g2D le contexte graphique
+	 * @return true si la figure a été dessinée, false si elle n'est pas
+	 * concernée par le cache ({@link #accepts(Figure)}) ou si son image
+	 * dépasserait le budget du cache : elle doit alors être dessinée
+	 * directement
+	 */
+	boolean draw(Figure figure, Graphics2D g2D)
+	{
+		if (!accepts(figure))
+		{
+			return false;
+		}
+		AffineTransform saved = g2D.getTransform();
+		AffineTransform t = new AffineTransform(saved);
+		t.concatenate(figure.getTransform());
+
+		Sprite sprite = figure.sprite;
+		if ((sprite != null) && (sprite.cache == this)
+		    && sprite.matches(figure, t))
+		{
+			sprites.get(sprite); // plus récemment utilisée
+			hits++;
+		}
+		else
+		{
+			if (sprite != null)
+			{
+				sprite.release();
+			}
+			sprite = render(figure, t, g2D);
+			figure.sprite = sprite;
+			if (sprite == null)
+			{
+				return false;
+			}
+			misses++;
+		}
+
+		// Copie de l'image à la position (arrondie) de l'origine de la figure
+		int x = (int) Math.round(t.getTranslateX() - sprite.originX);
+		int y = (int) Math.round(t.getTranslateY() - sprite.originY);
+		g2D.setTransform(new AffineTransform());
+		g2D.drawImage(sprite.image, x, y, null);
+		g2D.setTransform(saved);
+		return true;
+	}
+
+	/**
+	 * Dessin de l'image d'une figure et ajout de celle ci au cache
+	 * @param figure la figure
+	 * @param t la transformation complète vers le contexte graphique
+	 * @param g2D le contexte graphique dont on reprend les indications de
+	 * rendu (antialiasing)
+	 * @return la nouvelle image ou null si elle dépasserait le budget
+	 */
+	private Sprite render(Figure figure, AffineTransform t, Graphics2D g2D)
+	{
+		AffineTransform linear = new AffineTransform(t.getScaleX(),
+		                                             t.getShearY(),
+		                                             t.getShearX(),
+		                                             t.getScaleY(),
+		                                             0.0,
+		                                             0.0);
+		Rectangle2D bounds =
+		    linear.createTransformedShape(figure.shape).getBounds2D();
+		double halfStroke = 0.0;
+		if ((figure.edge != null) && (figure.stroke != null))
+		{
+			double factor = Math.max(Math.hypot(t.getScaleX(), t.getShearY()),
+			                         Math.hypot(t.getShearX(), t.getScaleY()));
+			halfStroke = (figure.stroke.getLineWidth() * factor) / 2.0;
+		}
+		double left = Math.floor(bounds.getMinX() - halfStroke) - Margin;
+		double top = Math.floor(bounds.getMinY() - halfStroke) - Margin;
+		int width = (int) Math.ceil(bounds.getMaxX() + halfStroke - left) + Margin;
+		int height = (int) Math.ceil(bounds.getMaxY() + halfStroke - top) + Margin;
+		if ((width <= 0) || (height <= 0)
+		    || (((long) width * height) > (pixelBudget / 4)))
+		{
+			return null;
+		}
+
+		BufferedImage image =
+		    new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D g = image.createGraphics();
+		try
+		{
+			g.setRenderingHints(g2D.getRenderingHints());
+			g.translate(-left, -top);
+			g.transform(linear);
+			if (figure.fill != null)
+			{
+				g.setPaint(figure.fill);
+				g.fill(figure.shape);
+			}
+			if ((figure.edge != null) && (figure.stroke != null))
+			{
+				g.setStroke(figure.stroke);
+				g.setPaint(figure.edge);
+				g.draw(figure.shape);
+			}
+		}
+		finally
+		{
+			g.dispose();
+		}
+
+		Sprite sprite = new Sprite(this, image, -left, -top, linear, figure);
+		sprites.put(sprite, Boolean.TRUE);
+		pixels += sprite.pixels();
+		evict();
+		return sprite;
+	}
+
+	/**
+	 * Retrait d'une image du cache
+	 * @param sprite l'image à retirer
+	 */
+	private void remove(Sprite sprite)
+	{
+		if (sprites.remove(sprite) != null)
+		{
+			pixels -= sprite.pixels();
+		}
+		sprite.image = null;
+	}
+
+	/**
+	 * Abandon des images les moins récemment utilisées jusqu'à respecter le
+	 * budget du cache
+	 */
+	private void evict()
+	{
+		Iterator<Sprite> it = sprites.keySet().iterator();
+		while ((pixels > pixelBudget) && it.hasNext())
+		{
+			Sprite sprite = it.next();
+			it.remove();
+			pixels -= sprite.pixels();
+			sprite.image = null;
+		}
+	}
+
+	/**
+	 * Représentation du cache
+	 * @return une chaine de caractères contenant l'occupation et les
+	 * statistiques du cache
+	 */
+	@Override
+	public String toString()
+	{
+		return getClassName() + "[sprites = " + size() + ", pixels = "
+		    + pixels + "/" + pixelBudget + ", hits = " + hits + ", misses = "
+		    + misses + "]";
+	}
+}
@@ -0,0 +1,57 @@
+package figures.enums;
+
+/**
+ * Types de modifications d'un dessin signalées à ses listeners par un
+ * {@link figures.DrawingEvent}
+ * @author davidroussel
+ */
+public enum DrawingEventType
+{
+	/**
+	 * Ajout d'une ou plusieurs figures
+	 */
+	FIGURE_ADDED,
+
+	/**
+	 * Retrait d'une ou plusieurs figures
+	 */
+	FIGURE_REMOVED,
+
+	/**
+	 * Modification géométrique (création en cours, translation, rotation ou
+	 * facteur d'échelle) d'une figure
+	 */
+	FIGURE_TRANSFORMED,
+
+	/**
+	 * Modification du style (couleurs ou trait) d'une ou plusieurs figures
+	 */
+	FIGURE_RESTYLED,
+
+	/**
+	 * Modification de l'ordre de dessin des figures
+	 */
+	FIGURES_REORDERED,
+
+	/**
+	 * Modification de l'ensemble des figures sélectionnées
+	 */
+	SELECTION_CHANGED,
+
+	/**
+	 * Modification des filtres (et donc des figures visibles)
+	 */
+	FILTERS_CHANGED,
+
+	/**
+	 * Début ou fin de la transformation interactive d'une figure
+	 * (voir {@link figures.Drawing#getActiveFigure()})
+	 */
+	ACTIVE_FIGURE_CHANGED,
+
+	/**
+	 * Modification de l'ensemble du dessin (effacement, chargement, retour à
+	 * un état précédent) ou modification non précisée
+	 */
+	DRAWING_CHANGED;
+}
@@ -14,6 +14,7 @@ import figures.listeners.creation.PolygonCreationListener;
 import figures.listeners.creation.RectangularShapeCreationListener;
 import figures.listeners.creation.RoundedRectangleCreationListener;
 import history.HistoryManager;
+import utils.Logger;
 import utils.Signature;
 
 /**
@@ -65,13 +66,11 @@ public enum FigureType implements Signature
 				return new Polygon(stroke, edge, fill, pp, pp);
 			case NGON:
 				// TODO Enlever le message et renvoyer une nouvelle figure de type NGon
-				System.err.println(getClassName() + "::" + getMethodName()
-						+ " for " + NGON + ": No such figure yet");
+				Logger.warning(() -> "for " + NGON + ": No such figure yet");
 				return null;
 			case STAR:
 				// TODO Enlever le message et renvoyer une nouvelle figure de type Star
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " for " + STAR + ": No such figure yet");
+				Logger.warning(() -> "for " + STAR + ": No such figure yet");
 				return null;
 		}
 
@@ -105,12 +104,10 @@ public enum FigureType implements Signature
 				return new PolygonCreationListener(model,history, tipLabel);
 			case NGON:
 				// TODO Enlever le message et renvoyer une nouveau CreationListener adapté aux NGon
-				System.err.println(getClassName() + "::" + getMethodName()
-						+ " for " + NGON + ": No such listener yet");
+				Logger.warning(() -> "for " + NGON + ": No such listener yet");
 			case STAR:
 				// TODO Enlever le message et renvoyer une nouveau CreationListener adapté aux Star
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " for " + STAR + ": No such listener yet");
+				Logger.warning(() -> "for " + STAR + ": No such listener yet");
 				return null;
 		}
 
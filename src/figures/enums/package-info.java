@@ -1,6 +1,6 @@
 /**
  * Ce package contient les différents énumérations utilisée pour choisir un type
- * de figure ou un type de ligne, ou encore sur quoi (trait ou remplissage)
- * appliquer une couleur.
+ * de figure ou un type de ligne, sur quoi (trait ou remplissage) appliquer une
+ * couleur, ou encore les types de modifications d'un dessin.
  */
 package figures.enums;
\ No newline at end of file
@@ -11,6 +11,7 @@ import javax.swing.JLabel;
 import figures.Drawing;
 import figures.Figure;
 import history.HistoryManager;
+import utils.Logger;
 import utils.Signature;
 
 /**
@@ -115,20 +116,17 @@ public abstract class AbstractFigureListener
 
 		if (drawingModel == null)
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " caution : null drawing model");
+			Logger.warning(() -> "caution : null drawing model");
 		}
 
 		if (history == null)
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " caution : null history manager");
+			Logger.warning(() -> "caution : null history manager");
 		}
 
 		if (tipLabel == null)
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " caution : null tip label");
+			Logger.warning(() -> "caution : null tip label");
 		}
 	}
 
@@ -172,7 +170,7 @@ public abstract class AbstractFigureListener
 	 */
 	public void setStartPoint(MouseEvent e)
 	{
-		startPoint = e.getPoint();
+		startPoint = getDrawingPoint(e);
 	}
 
 	/**
@@ -181,7 +179,38 @@ public abstract class AbstractFigureListener
 	 */
 	public void setendPoint(MouseEvent e)
 	{
-		endPoint = e.getPoint();
+		endPoint = getDrawingPoint(e);
+	}
+
+	/**
+	 * Position exacte d'un évènement souris dans le dessin
+	 * @param e l'évènement souris
+	 * @return la position non arrondie du curseur dans le dessin si
+	 * l'évènement provient d'une vue zoomée ou déplacée
+	 * ({@link DrawingMouseEvent}), sinon la position de l'évènement
+	 */
+	public static Point2D getDrawingPoint(MouseEvent e)
+	{
+		if (e instanceof DrawingMouseEvent)
+		{
+			return ((DrawingMouseEvent) e).getDrawingPoint();
+		}
+		return e.getPoint();
+	}
+
+	/**
+	 * Obtention d'une version modifiable de la {@link #currentFigure} avant
+	 * de la modifier : la figure peut être partagée avec une version
+	 * conservée du dessin (historique, rendu) auquel cas elle est remplacée
+	 * dans le dessin par une copie.
+	 * @see Drawing#mutable(Figure)
+	 */
+	protected void makeCurrentFigureMutable()
+	{
+		if (currentFigure != null)
+		{
+			currentFigure = drawingModel.mutable(currentFigure);
+		}
 	}
 
 	/**
@@ -218,8 +247,7 @@ public abstract class AbstractFigureListener
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null tipLabel");
+			Logger.warning(() -> "null tipLabel");
 		}
 	}
 }
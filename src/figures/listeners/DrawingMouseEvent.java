@@ -0,0 +1,62 @@
+package figures.listeners;
+
+import java.awt.Component;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Point2D;
+
+/**
+ * Évènement souris exprimé dans les coordonnées d'un dessin affiché au
+ * travers d'une vue (zoomée ou déplacée) : les coordonnées entières de
+ * l'évènement ({@link #getPoint()}) sont arrondies au pixel près, alors que
+ * {@link #getDrawingPoint()} fournit la position exacte du curseur dans le
+ * dessin.
+ * @author davidroussel
+ * @see AbstractFigureListener#getDrawingPoint(MouseEvent)
+ */
+public class DrawingMouseEvent extends MouseEvent
+{
+	/**
+	 * Serializable class must have a serial version UID
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Position exacte du curseur dans les coordonnées du dessin
+	 */
+	private final double drawingX, drawingY;
+
+	/**
+	 * Constructeur à partir d'un évènement souris d'une vue
+	 * @param source le composant source de l'évènement
+	 * @param e l'évènement souris dans les coordonnées de la vue (dont sont
+	 * conservés le type, la date, les modificateurs, les coordonnées écran,
+	 * le nombre de clicks et le bouton)
+	 * @param point la position du curseur dans les coordonnées du dessin
+	 */
+	public DrawingMouseEvent(Component source, MouseEvent e, Point2D point)
+	{
+		super(source,
+		      e.getID(),
+		      e.getWhen(),
+		      e.getModifiersEx(),
+		      (int) Math.round(point.getX()),
+		      (int) Math.round(point.getY()),
+		      e.getXOnScreen(),
+		      e.getYOnScreen(),
+		      e.getClickCount(),
+		      e.isPopupTrigger(),
+		      e.getButton());
+		drawingX = point.getX();
+		drawingY = point.getY();
+	}
+
+	/**
+	 * Position exacte (non arrondie) du curseur dans le dessin
+	 * @return un nouveau point contenant la position du curseur dans les
+	 * coordonnées du dessin
+	 */
+	public Point2D getDrawingPoint()
+	{
+		return new Point2D.Double(drawingX, drawingY);
+	}
+}
@@ -7,8 +7,27 @@ import history.HistoryManager;
 import javax.swing.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
-
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Listener de sélection des figures :
+ * <ul>
+ * <li>un clic sélectionne ou désélectionne la figure sous le curseur</li>
+ * <li>un glisser (ailleurs que sur une figure sélectionnée, qui est alors
+ * transformée par les listeners de transformation) trace un rectangle
+ * élastique et sélectionne les figures qu'il contient (de gauche à droite)
+ * ou qu'il intersecte (de droite à gauche). Avec Shift les figures sont
+ * ajoutées à la sélection courante.</li>
+ * </ul>
+ */
 public class SelectionFigureListener extends AbstractFigureListener{
+    /**
+     * Point de départ du rectangle élastique ou null si aucun rectangle
+     * n'est en cours de tracé
+     */
+    private Point2D anchor;
+
     /**
      * Constructeur protégé (destiné à être utilisé par les classes filles)
      *
@@ -20,8 +39,9 @@ public class SelectionFigureListener extends AbstractFigureListener{
      */
     public SelectionFigureListener(Drawing model, HistoryManager<Figure> history, JLabel infoLabel) {
         super(model, history, infoLabel, 1);
-        tips[0] = new String("Cliquez pour sélectionner ou déselectionner une figure");
+        tips[0] = new String("Cliquez pour sélectionner ou déselectionner une figure | glissez pour sélectionner une zone");
         updateTip();
+        anchor = null;
     }
 
     @Override
@@ -36,21 +56,47 @@ public class SelectionFigureListener extends AbstractFigureListener{
 
     @Override
     public void mouseClicked(MouseEvent e) {
-        currentFigure = drawingModel.getFigureAt(e.getPoint());
+        currentFigure = drawingModel.getFigureAt(getDrawingPoint(e));
         if(currentFigure != null)        {
-            currentFigure.setSelected(!currentFigure.isSelected());
-            drawingModel.updateSelection();
+            drawingModel.toggleSelection(currentFigure);
         }
     }
 
+    /**
+     * Début du tracé d'un rectangle élastique, à moins que le bouton ne soit
+     * pressé sur une figure sélectionnée (qui va être transformée)
+     * @param e l'évènement souris
+     */
     @Override
     public void mousePressed(MouseEvent e) {
-
+        if (e.getButton() == MouseEvent.BUTTON1) {
+            Figure figure = drawingModel.getFigureAt(getDrawingPoint(e));
+            if ((figure == null) || !figure.isSelected()) {
+                anchor = getDrawingPoint(e);
+            }
+        }
     }
 
+    /**
+     * Fin du tracé du rectangle élastique : sélection des figures de la zone
+     * en une seule requête
+     * @param e l'évènement souris
+     */
     @Override
     public void mouseReleased(MouseEvent e) {
-
+        if ((anchor != null) && (e.getButton() == MouseEvent.BUTTON1)) {
+            Rectangle2D area = selectionArea(e);
+            // De gauche à droite : figures contenues, sinon intersectées
+            boolean contained = getDrawingPoint(e).getX() >= anchor.getX();
+            anchor = null;
+            drawingModel.transaction(() -> {
+                drawingModel.setSelectionArea(null);
+                // Un simple clic est traité par mouseClicked
+                if ((area.getWidth() >= 1.0) || (area.getHeight() >= 1.0)) {
+                    drawingModel.selectArea(area, contained, e.isShiftDown());
+                }
+            });
+        }
     }
 
     @Override
@@ -63,9 +109,26 @@ public class SelectionFigureListener extends AbstractFigureListener{
 
     }
 
+    /**
+     * Mise à jour du rectangle élastique
+     * @param e l'évènement souris
+     */
     @Override
     public void mouseDragged(MouseEvent e) {
+        if (anchor != null) {
+            drawingModel.setSelectionArea(selectionArea(e));
+        }
+    }
 
+    /**
+     * Rectangle élastique entre le point de départ et la position courante
+     * @param e l'évènement souris donnant la position courante
+     * @return le rectangle élastique
+     */
+    private Rectangle2D selectionArea(MouseEvent e) {
+        Rectangle2D area = new Rectangle2D.Double(anchor.getX(), anchor.getY(), 0, 0);
+        area.add(getDrawingPoint(e));
+        return area;
     }
 
     @Override
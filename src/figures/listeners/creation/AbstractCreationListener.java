@@ -11,6 +11,7 @@ import figures.Drawing;
 import figures.Figure;
 import figures.listeners.AbstractFigureListener;
 import history.HistoryManager;
+import utils.Logger;
 import utils.Signature;
 
 /**
@@ -44,7 +45,9 @@ public abstract class AbstractCreationListener extends AbstractFigureListener
 	 * Initialisation de la création d'une nouvelle figure. détermine le point
 	 * de départ de la figure ({@link #startPoint}), initie une nouvelle figure
 	 * à la position de l'évènement ({@link Drawing#initiateFigure(Point2D)}),
-	 * met à jour le dessin {@link Drawing#update()}, puis passe à l'étape
+	 * met à jour le dessin {@link Drawing#update(Figure)} (en une seule
+	 * notification, voir {@link Drawing#transaction(Runnable)}), puis passe à
+	 * l'étape
 	 * suivante en mettant à jour les conseils utilisateurs (
 	 * {@link #updateTip()}). Pour la plupart des figures la création commence
 	 * par un appui sur le bouton gauche de la souris. A utiliser dans
@@ -58,11 +61,12 @@ public abstract class AbstractCreationListener extends AbstractFigureListener
 	{
 		history.record();
 		setStartPoint(e);
-		currentFigure = drawingModel.initiateFigure(e.getPoint());
+		drawingModel.transaction(() -> {
+			currentFigure = drawingModel.initiateFigure(getDrawingPoint(e));
+			drawingModel.update(currentFigure);
+		});
 
 		nextStep();
-
-		drawingModel.update();
 	}
 
 	/**
@@ -70,7 +74,8 @@ public abstract class AbstractCreationListener extends AbstractFigureListener
 	 * détermine la position du point de terminaison de la figure (
 	 * {@link #endPoint}), vérifie que la figure ainsi terminée n'est pas de
 	 * taille 0 ({@link #checkZeroSizeFigure()}), puis met à jour le dessin (
-	 * {@link Drawing#update()}) et les conseils utilisateurs (
+	 * {@link Drawing#update(Figure)}, en une seule notification) et les
+	 * conseils utilisateurs (
 	 * {@link #updateTip()}). A utiliser dans un
 	 * {@link MouseListener#mousePressed(MouseEvent)} ou bien dans un
 	 * {@link MouseListener#mouseClicked(MouseEvent)} suivant la figure à créer.
@@ -89,21 +94,23 @@ public abstract class AbstractCreationListener extends AbstractFigureListener
 		// sur son barycentre et la position du barycentre dans la translation
 		if (currentFigure != null)
 		{
+			makeCurrentFigureMutable();
 			currentFigure.normalize();
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null figure");
+			Logger.error(() -> "null figure");
 		}
 
-		if (checkZeroSizeFigure())
-		{
-			// cancel last memento
-			history.cancel();
-		}
+		drawingModel.transaction(() -> {
+			if (checkZeroSizeFigure())
+			{
+				// cancel last memento
+				history.cancel();
+			}
 
-		drawingModel.update();
+			drawingModel.update(currentFigure);
+		});
 
 		updateTip();
 	}
@@ -119,8 +126,8 @@ public abstract class AbstractCreationListener extends AbstractFigureListener
 	{
 		if (startPoint.distance(endPoint) < 1.0)
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " Removed zero sized figure " + drawingModel.getLastFigure());
+			Logger.info(() -> "Removed zero sized figure "
+			    + drawingModel.getLastFigure());
 			drawingModel.removeLastFigure();
 			return true;
 		}
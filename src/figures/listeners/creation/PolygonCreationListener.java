@@ -9,10 +9,12 @@ import history.HistoryManager;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import javax.swing.JLabel;
-import java.awt.Point;
+import java.awt.geom.Point2D;
 
 import figures.Polygon;
 
+import utils.Logger;
+
 public class PolygonCreationListener extends AbstractCreationListener {
     /**
      * Constructeur protégé (destiné à être utilisé par les classes filles)
@@ -31,18 +33,31 @@ public class PolygonCreationListener extends AbstractCreationListener {
 
     @Override
     public void mouseClicked(MouseEvent e) {
-        Point p = e.getPoint();
+        // Les modifications du dessin dues à ce clic sont notifiées ensemble
+        drawingModel.transaction(() -> addPointAt(e));
+        updateTip();
+    }
+
+    /**
+     * Démarrage, ajout ou retrait d'un point, ou terminaison du polygone
+     * suivant l'étape courante et le bouton utilisé
+     * @param e l'évènement souris
+     */
+    private void addPointAt(MouseEvent e) {
+        Point2D p = getDrawingPoint(e);
         if (currentStep == 0){
             if (e.getButton() == MouseEvent.BUTTON1){
                 startAction(e);
             }
         }
         else{
+            makeCurrentFigureMutable();
             Polygon poly = (Polygon) currentFigure;
             switch (e.getButton())
             {
                 case MouseEvent.BUTTON1:
-                    poly.addPoint(p.x, p.y);
+                    poly.addPoint((int) Math.round(p.getX()),
+                                  (int) Math.round(p.getY()));
                     break;
                 case MouseEvent.BUTTON2:
                     poly.removeLastPoint();
@@ -53,8 +68,7 @@ public class PolygonCreationListener extends AbstractCreationListener {
             }
         }
 
-        drawingModel.update();
-        updateTip();
+        drawingModel.update(currentFigure);
     }
 
     @Override
@@ -86,12 +100,13 @@ public class PolygonCreationListener extends AbstractCreationListener {
     public void mouseMoved(MouseEvent e) {
         if (currentStep > 0){
             if (currentFigure != null){
-                currentFigure.setLastPoint(e.getPoint());
+                makeCurrentFigureMutable();
+                currentFigure.setLastPoint(getDrawingPoint(e));
             }
             else{
-                System.err.println(getClass().getSimpleName() + "erreur");
+                Logger.error(() -> "erreur");
             }
-            drawingModel.update();
+            drawingModel.update(currentFigure);
         }
     }
 
@@ -8,6 +8,7 @@ import javax.swing.JLabel;
 import figures.Drawing;
 import figures.Figure;
 import history.HistoryManager;
+import utils.Logger;
 
 /**
  * Listener permettant d'enchainer les actions souris pour créer des formes
@@ -40,7 +41,7 @@ public class RectangularShapeCreationListener extends AbstractCreationListener
 
 		updateTip();
 
-		System.out.println(getClassName() + "::" + getMethodName() + " created");
+		Logger.debug(() -> "created");
 	}
 
 	/**
@@ -127,15 +128,15 @@ public class RectangularShapeCreationListener extends AbstractCreationListener
 			// AbstractFigure figure = drawingModel.getLastFigure();
 			if (currentFigure != null)
 			{
-				currentFigure.setLastPoint(e.getPoint());
+				makeCurrentFigureMutable();
+				currentFigure.setLastPoint(getDrawingPoint(e));
 			}
 			else
 			{
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " : null figure");
+				Logger.error(() -> "null figure");
 			}
 
-			drawingModel.update();
+			drawingModel.update(currentFigure);
 		}
 	}
 
@@ -60,17 +60,19 @@ public class RoundedRectangleCreationListener extends AbstractCreationListener {
     @Override
     public void mouseDragged(MouseEvent e) {
         if (currentStep == 1){
-            currentFigure.setLastPoint(e.getPoint());
-            drawingModel.update();
+            makeCurrentFigureMutable();
+            currentFigure.setLastPoint(getDrawingPoint(e));
+            drawingModel.update(currentFigure);
         }
     }
 
     @Override
     public void mouseMoved(MouseEvent e) {
         if (currentStep == 2){
+            makeCurrentFigureMutable();
             RoundedRectangle rect = (RoundedRectangle) currentFigure;
-            rect.setArc(e.getPoint());
-            drawingModel.update();
+            rect.setArc(getDrawingPoint(e));
+            drawingModel.update(currentFigure);
         }
     }
 
@@ -14,6 +14,7 @@ import figures.Figure;
 import figures.listeners.AbstractFigureListener;
 import figures.listeners.creation.AbstractCreationListener;
 import history.HistoryManager;
+import utils.Logger;
 
 /**
  * Listener permettant de transformer une figure
@@ -77,7 +78,7 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 
 		updateTip();
 
-		System.out.println(getClassName() + " created");
+		Logger.debug(() -> "created");
 
 		center = null;
 
@@ -101,7 +102,10 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 	 * Initialisation de la transformation de la figure. Détermine le point de
 	 * départ de la transformation de la figure ({@link #startPoint}) ainsi que
 	 * la figure sélectionnée qui peut éventuellement être nulle s'il n'y a pas
-	 * de figures sélectionnées ou sous le curseur.
+	 * de figures sélectionnées ou sous le curseur. La figure est signalée
+	 * comme étant en cours de transformation
+	 * ({@link Drawing#setActiveFigure(Figure)}) afin que les vues ne
+	 * redessinent qu'elle jusqu'à la fin de la transformation.
 	 * A utiliser dans
 	 * {@link MouseListener#mousePressed(MouseEvent)} ou bien dans
 	 * {@link MouseListener#mouseClicked(MouseEvent)} suivant la figure à créer.
@@ -118,10 +122,12 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 		currentFigure = drawingModel.getFigureAt(startPoint);
 		if (currentFigure != null)
 		{
+			makeCurrentFigureMutable();
+			drawingModel.recordTransform(currentFigure);
 			center = currentFigure.getCenter();
 			init();
 			nextStep();
-			drawingModel.update(); // optionel
+			drawingModel.setActiveFigure(currentFigure);
 		}
 	}
 
@@ -137,8 +143,10 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 	/**
 	 * Terminaison de la transformation d'une figure. remet l'étape courante à 0,
 	 * détermine la position du point de terminaison du déplacement de la figure
-	 * ({@link #endPoint}), puis met à jour le dessin (
-	 * {@link Drawing#update()}) et les conseils utilisateurs (
+	 * ({@link #endPoint}), puis met à jour le dessin et termine la
+	 * transformation de la figure ({@link Drawing#update(Figure)} et
+	 * {@link Drawing#setActiveFigure(Figure)} en une seule notification) et
+	 * les conseils utilisateurs (
 	 * {@link #updateTip()}). A utiliser dans un
 	 * {@link MouseListener#mousePressed(MouseEvent)} ou bien dans un
 	 * {@link MouseListener#mouseClicked(MouseEvent)} suivant la figure à transformer.
@@ -153,8 +161,11 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 			// listener sur une autre figure
 			nextStep();
 			setendPoint(e);
+			drawingModel.transaction(() -> {
+				drawingModel.update(currentFigure);
+				drawingModel.setActiveFigure(null);
+			});
 			currentFigure = null;
-			drawingModel.update();
 		}
 	}
 
@@ -168,7 +179,7 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 	@Override
 	public void mousePressed(MouseEvent e)
 	{
-		currentFigure = drawingModel.getFigureAt(e.getPoint());
+		currentFigure = drawingModel.getFigureAt(getDrawingPoint(e));
 
 		if (currentFigure != null)
 		{
@@ -180,8 +191,7 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " : null figure");
+			Logger.debug(() -> "null figure");
 		}
 	}
 
@@ -256,13 +266,13 @@ public abstract class AbstractTransformShapeListener extends AbstractFigureListe
 		{
 			if (currentFigure != null)
 			{
+				makeCurrentFigureMutable();
 				updateDrag(e);
-				drawingModel.update();
+				drawingModel.update(currentFigure);
 			}
 			else
 			{
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + " : null figure");
+				Logger.warning(() -> "null figure");
 			}
 		}
 	}
@@ -3,6 +3,7 @@ package figures.listeners.transform;
 import figures.Drawing;
 import figures.Figure;
 import history.HistoryManager;
+import utils.Logger;
 
 import javax.swing.*;
 import java.awt.event.MouseEvent;
@@ -32,16 +33,16 @@ public class MoveShapeListener extends AbstractTransformShapeListener{
         pointPrecedent = startPoint;
         if (currentFigure != null){
             initialTransform = currentFigure.getTranslation();
-            System.out.println("MoveShapeListener2 initialized");
+            Logger.debug(() -> "initialized");
         }
         else{
-            System.err.println(getClass().getSimpleName() + "::init : null figure");
+            Logger.warning(() -> "null figure");
         }
     }
 
     @Override
     public void updateDrag(MouseEvent e) {
-        Point2D point = e.getPoint();
+        Point2D point = getDrawingPoint(e);
         double abs = point.getX() - pointPrecedent.getX();
         double ord = point.getY() - pointPrecedent.getY();
         AffineTransform trans = AffineTransform.getTranslateInstance(abs, ord);
@@ -4,6 +4,7 @@ import figures.Drawing;
 import figures.Figure;
 import figures.listeners.creation.AbstractCreationListener;
 import history.HistoryManager;
+import utils.Logger;
 import utils.Vector2D;
 
 import javax.swing.*;
@@ -37,13 +38,13 @@ public class RotateShapeListener extends AbstractTransformShapeListener {
             initialTransform = currentFigure.getRotation();
         }
         else{
-            System.err.println(getClass().getSimpleName() + "erreur");
+            Logger.error(() -> "erreur");
         }
     }
 
     @Override
     public void updateDrag(MouseEvent e) {
-        Point2D currentPoint = e.getPoint();
+        Point2D currentPoint = getDrawingPoint(e);
         vecteur2.setEnd(currentPoint);
         if (currentFigure != null) {
             double angle = vecteur1.angle(vecteur2);
@@ -52,7 +53,7 @@ public class RotateShapeListener extends AbstractTransformShapeListener {
             currentFigure.setRotation(rotate);
         }
         else {
-            System.err.println(getClass().getSimpleName() + "updateDrag : figure null");
+            Logger.error(() -> "figure null");
         }
     }
 }
@@ -10,6 +10,8 @@ import java.awt.event.MouseEvent;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 
+import utils.Logger;
+
 public class ScaleShapeListener extends AbstractTransformShapeListener{
     private Double distance1;
     private Double distance2;
@@ -34,13 +36,13 @@ public class ScaleShapeListener extends AbstractTransformShapeListener{
             initialTransform = currentFigure.getScale();
         }
         else{
-            System.err.println("erreur (ScaleShape)");
+            Logger.error(() -> "erreur");
         }
     }
 
     @Override
     public void updateDrag(MouseEvent e) {
-        Point2D currentPoint = e.getPoint();
+        Point2D currentPoint = getDrawingPoint(e);
         if ((currentFigure != null) && (center != null)){
             distance2 = center.distance(currentPoint);
             double scale = distance2 / distance1;
@@ -49,7 +51,7 @@ public class ScaleShapeListener extends AbstractTransformShapeListener{
             currentFigure.setScale(scaleT);
         }
         else{
-            System.err.println(getClass().getSimpleName() + "::updateDrag : figure ou centre null");
+            Logger.error(() -> "figure ou centre null");
         }
     }
 }
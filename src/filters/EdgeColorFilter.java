@@ -1,8 +1,10 @@
 package filters;
 
+import figures.AttributeIndex;
 import figures.Figure;
 
 import java.awt.*;
+import java.util.BitSet;
 
 public class EdgeColorFilter extends FigureFilter<Paint> {
     public EdgeColorFilter(Paint paint) {
@@ -10,5 +12,11 @@ public class EdgeColorFilter extends FigureFilter<Paint> {
     }
     @Override
     public boolean test(Figure f) {
-        return f.getEdgePaint().equals(element);    }
+        return (element != null) && element.equals(f.getEdgePaint());
+    }
+
+    @Override
+    public BitSet select(AttributeIndex index) {
+        return (element != null ? index.withEdge(element) : new BitSet());
+    }
 }
@@ -1,7 +1,9 @@
 package filters;
 
+import java.util.BitSet;
 import java.util.function.Predicate;
 
+import figures.AttributeIndex;
 import figures.Figure;
 import utils.Signature;
 
@@ -60,6 +62,20 @@ public abstract class FigureFilter<T> implements Predicate<Figure>, Signature
 	@Override
 	public abstract boolean test(Figure f);
 
+	/**
+	 * Évaluation du prédicat sur l'ensemble des figures d'un dessin à partir
+	 * de l'index des attributs de ses figures
+	 * @param index l'index des attributs des figures du dessin
+	 * @return l'ensemble des rangs des figures vérifiant ce prédicat (à ne pas
+	 * modifier) ou bien null si ce filtre ne peut pas être évalué à partir
+	 * de l'index (les figures devront alors être testées une à une avec
+	 * {@link #test(Figure)})
+	 */
+	public BitSet select(AttributeIndex index)
+	{
+		return null;
+	}
+
 	/**
 	 * Caomparaison avec un autr objet
 	 * @param obj l'objet à comparer
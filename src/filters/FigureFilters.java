@@ -1,9 +1,11 @@
 package filters;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Vector;
 
+import figures.AttributeIndex;
 import figures.Figure;
 
 /**
@@ -32,18 +34,45 @@ public class FigureFilters<T> extends FigureFilter<T> implements Collection<Figu
 	 * Test du prédicat
 	 * @param f la figure à tester
 	 * @return true si l'un au moins des prédicats de la collection de filtres
-	 * est true, false sinon
+	 * est true, false sinon (les filtres suivant le premier filtre vérifié ne
+	 * sont pas testés)
 	 * @see filters.FigureFilter#test(figures.Figure)
 	 */
 	@Override
 	public boolean test(Figure f)
 	{
-		boolean result = false;
+		for (FigureFilter<T> ff : this)
+		{
+			if (ff.test(f))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Évaluation du prédicat à partir de l'index des attributs des figures
+	 * @param index l'index des attributs des figures du dessin
+	 * @return l'union des ensembles de figures sélectionnées par chacun des
+	 * filtres de la collection ou bien null si l'un d'entre eux ne peut pas
+	 * être évalué à partir de l'index
+	 * @see filters.FigureFilter#select(figures.AttributeIndex)
+	 */
+	@Override
+	public BitSet select(AttributeIndex index)
+	{
+		BitSet result = new BitSet();
 
 		for (FigureFilter<T> ff : this)
 		{
-			boolean thisResult = ff.test(f);
-			result |= thisResult;
+			BitSet selected = ff.select(index);
+			if (selected == null)
+			{
+				return null;
+			}
+			result.or(selected);
 		}
 
 		return result;
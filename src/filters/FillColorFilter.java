@@ -1,8 +1,10 @@
 package filters;
 
+import figures.AttributeIndex;
 import figures.Figure;
 
 import java.awt.*;
+import java.util.BitSet;
 
 public class FillColorFilter extends FigureFilter<Paint>{
     public FillColorFilter(Paint paint) {
@@ -10,6 +12,11 @@ public class FillColorFilter extends FigureFilter<Paint>{
     }
     @Override
     public boolean test(Figure f) {
-        return f.getFillPaint().equals(element);
+        return (element != null) && element.equals(f.getFillPaint());
+    }
+
+    @Override
+    public BitSet select(AttributeIndex index) {
+        return (element != null ? index.withFill(element) : new BitSet());
     }
 }
@@ -0,0 +1,204 @@
+package filters;
+
+import java.awt.Paint;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import figures.AttributeIndex;
+import figures.Figure;
+import figures.enums.LineType;
+
+/**
+ * Compilateur de filtres : transforme un ensemble de filtres (chacun devant
+ * être vérifié) en un unique prédicat spécialisé.
+ * <ul>
+ * <li>les ensembles de filtres de types de figures ou de types de traits
+ * ({@link FigureFilters} de {@link ShapeFilter} ou de {@link LineFilter})
+ * deviennent un test d'appartenance à un masque de bits (indexé par
+ * l'ordinal des types)</li>
+ * <li>les filtres de couleurs ({@link FillColorFilter},
+ * {@link EdgeColorFilter}) deviennent une simple comparaison avec la couleur
+ * du filtre</li>
+ * <li>les filtres sont testés du plus sélectif au moins sélectif afin que
+ * le test d'une figure s'arrête au plus tôt. La sélectivité d'un filtre est
+ * mesurée sur l'index des attributs des figures lorsque le filtre peut y être
+ * évalué ({@link FigureFilter#select(AttributeIndex)}), ou bien sur un
+ * échantillon des figures sinon</li>
+ * </ul>
+ * Le prédicat obtenu ne dépend plus des filtres compilés : il peut être
+ * conservé et utilisé depuis d'autres threads.
+ * @author davidroussel
+ */
+public class FilterCompiler
+{
+	/**
+	 * Nombre maximum de figures testées pour mesurer la sélectivité d'un
+	 * filtre qui ne peut pas être évalué sur l'index des attributs
+	 */
+	public static final int SampleSize = 64;
+
+	/**
+	 * Compilation d'un ensemble de filtres
+	 * @param filters les filtres qui doivent tous être vérifiés par une figure
+	 * (les ensembles de filtres {@link FigureFilters} étant vérifiés si l'un de
+	 * leurs filtres l'est)
+	 * @param index l'index des attributs des figures servant à mesurer la
+	 * sélectivité des filtres (ou null)
+	 * @param figures les figures auxquelles le prédicat sera appliqué, dont
+	 * un échantillon sert à mesurer la sélectivité des filtres qui ne peuvent
+	 * pas être évalués sur l'index
+	 * @return un prédicat vérifié par les figures passant tous les filtres
+	 */
+	public static Predicate<Figure> compile(List<FigureFilter<?>> filters,
+	                                        AttributeIndex index,
+	                                        List<Figure> figures)
+	{
+		int n = filters.size();
+		@SuppressWarnings("unchecked")
+		Predicate<Figure>[] stages = (Predicate<Figure>[]) new Predicate<?>[n];
+		double[] selectivities = new double[n];
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++)
+		{
+			FigureFilter<?> filter = filters.get(i);
+			stages[i] = specialize(filter);
+			selectivities[i] = selectivity(filter, stages[i], index, figures);
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, Comparator.comparingDouble(
+		    (Integer i) -> selectivities[i.intValue()]));
+
+		if (n == 0)
+		{
+			return (Figure f) -> true;
+		}
+		// Predicate#and n'évalue le second prédicat que si le premier est vérifié
+		Predicate<Figure> result = stages[order[0].intValue()];
+		for (int i = 1; i < n; i++)
+		{
+			result = result.and(stages[order[i].intValue()]);
+		}
+		return result;
+	}
+
+	/**
+	 * Prédicat spécialisé équivalent à un filtre
+	 * @param filter le filtre
+	 * @return un prédicat équivalent au filtre et indépendant de celui ci
+	 */
+	private static Predicate<Figure> specialize(FigureFilter<?> filter)
+	{
+		if (filter instanceof FigureFilters<?>)
+		{
+			FigureFilters<?> group = (FigureFilters<?>) filter;
+			long typeMask = 0L;
+			long lineMask = 0L;
+			boolean types = true;
+			boolean lines = true;
+			for (FigureFilter<?> member : group)
+			{
+				types &= (member instanceof ShapeFilter)
+				    && (member.getElement() != null);
+				lines &= (member instanceof LineFilter)
+				    && (member.getElement() != null);
+				if (types)
+				{
+					typeMask |= 1L << ((ShapeFilter) member).getElement().ordinal();
+				}
+				if (lines)
+				{
+					lineMask |= 1L << ((LineFilter) member).getElement().ordinal();
+				}
+			}
+			if (group.isEmpty())
+			{
+				return (Figure f) -> false;
+			}
+			if (types)
+			{
+				long mask = typeMask;
+				return (Figure f) -> (mask & (1L << f.getType().ordinal())) != 0L;
+			}
+			if (lines)
+			{
+				long mask = lineMask;
+				return (Figure f) ->
+				    (mask & (1L << LineType.fromStroke(f.getStroke()).ordinal())) != 0L;
+			}
+			// Ensemble hétérogène : union des membres spécialisés
+			Predicate<Figure> result = (Figure f) -> false;
+			for (FigureFilter<?> member : group)
+			{
+				result = result.or(specialize(member));
+			}
+			return result;
+		}
+		if (filter instanceof ShapeFilter)
+		{
+			Object type = filter.getElement();
+			return (Figure f) -> f.getType() == type;
+		}
+		if (filter instanceof LineFilter)
+		{
+			Object type = filter.getElement();
+			return (Figure f) -> LineType.fromStroke(f.getStroke()) == type;
+		}
+		if (filter instanceof FillColorFilter)
+		{
+			Paint paint = ((FillColorFilter) filter).getElement();
+			if (paint == null)
+			{
+				return (Figure f) -> false;
+			}
+			return (Figure f) -> paint.equals(f.getFillPaint());
+		}
+		if (filter instanceof EdgeColorFilter)
+		{
+			Paint paint = ((EdgeColorFilter) filter).getElement();
+			if (paint == null)
+			{
+				return (Figure f) -> false;
+			}
+			return (Figure f) -> paint.equals(f.getEdgePaint());
+		}
+		return filter::test;
+	}
+
+	/**
+	 * Mesure de la sélectivité d'un filtre
+	 * @param filter le filtre
+	 * @param predicate le prédicat spécialisé équivalent au filtre
+	 * @param index l'index des attributs des figures (ou null)
+	 * @param figures les figures
+	 * @return la proportion de figures vérifiant le filtre (entre 0 et 1)
+	 */
+	private static double selectivity(FigureFilter<?> filter,
+	                                  Predicate<Figure> predicate,
+	                                  AttributeIndex index,
+	                                  List<Figure> figures)
+	{
+		int size = figures.size();
+		if (size == 0)
+		{
+			return 1.0;
+		}
+		BitSet selected = (index != null ? filter.select(index) : null);
+		if (selected != null)
+		{
+			return selected.cardinality() / (double) size;
+		}
+		int samples = Math.min(SampleSize, size);
+		int passed = 0;
+		for (int i = 0; i < samples; i++)
+		{
+			if (predicate.test(figures.get((int) (((long) i * size) / samples))))
+			{
+				passed++;
+			}
+		}
+		return passed / (double) samples;
+	}
+}
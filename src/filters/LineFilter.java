@@ -1,5 +1,8 @@
 package filters;
 
+import java.util.BitSet;
+
+import figures.AttributeIndex;
 import figures.Figure;
 import figures.enums.LineType;
 
@@ -11,4 +14,9 @@ public class LineFilter extends FigureFilter<LineType>{
     public boolean test(Figure f) {
         return LineType.fromStroke(f.getStroke()) == element;
     }
+
+    @Override
+    public BitSet select(AttributeIndex index) {
+        return index.withLine(element);
+    }
 }
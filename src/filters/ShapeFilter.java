@@ -1,5 +1,8 @@
 package filters;
 
+import java.util.BitSet;
+
+import figures.AttributeIndex;
 import figures.Figure;
 import figures.enums.FigureType;
 
@@ -13,4 +16,9 @@ public class ShapeFilter extends FigureFilter<FigureType> {
     public boolean test(Figure f) {
         return f.getType() == element;
     }
+
+    @Override
+    public BitSet select(AttributeIndex index) {
+        return index.ofType(element);
+    }
 }
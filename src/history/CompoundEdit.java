@@ -0,0 +1,108 @@
+package history;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Suite de modifications ({@link Edit}) constituant une seule étape de
+ * l'historique : elles sont annulées dans l'ordre inverse de leur
+ * réalisation et rejouées dans leur ordre de réalisation.
+ * @author davidroussel
+ */
+public class CompoundEdit implements Edit
+{
+	/**
+	 * Les modifications dans l'ordre de leur réalisation
+	 */
+	private List<Edit> edits;
+
+	/**
+	 * Constructeur d'une étape vide
+	 */
+	public CompoundEdit()
+	{
+		edits = new ArrayList<Edit>();
+	}
+
+	/**
+	 * Ajout d'une modification à la fin de l'étape
+	 * @param edit la modification à ajouter
+	 */
+	public void add(Edit edit)
+	{
+		if (edit != null)
+		{
+			edits.add(edit);
+		}
+	}
+
+	/**
+	 * Indique si l'étape ne contient aucune modification
+	 * @return true si l'étape est vide
+	 */
+	public boolean isEmpty()
+	{
+		return edits.isEmpty();
+	}
+
+	/**
+	 * Nombre de modifications de l'étape
+	 * @return le nombre de modifications de l'étape
+	 */
+	public int size()
+	{
+		return edits.size();
+	}
+
+	/**
+	 * Annulation de toutes les modifications (de la dernière à la première)
+	 */
+	@Override
+	public void undo()
+	{
+		for (ListIterator<Edit> it = edits.listIterator(edits.size());
+		     it.hasPrevious();)
+		{
+			it.previous().undo();
+		}
+	}
+
+	/**
+	 * Rejeu de toutes les modifications (de la première à la dernière)
+	 */
+	@Override
+	public void redo()
+	{
+		for (Edit edit : edits)
+		{
+			edit.redo();
+		}
+	}
+
+	/**
+	 * Estimation de la mémoire occupée par l'étape : la somme de celles de
+	 * ses modifications
+	 * @return le nombre estimé d'octets occupés par l'étape
+	 */
+	@Override
+	public long footprint()
+	{
+		long bytes = Footprint.ObjectHeader
+		    + Footprint.array(edits.size(), Footprint.Reference);
+		for (Edit edit : edits)
+		{
+			bytes += edit.footprint();
+		}
+		return bytes;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return edits.toString();
+	}
+}
@@ -0,0 +1,26 @@
+package history;
+
+/**
+ * Une modification élémentaire (ou composée) de l'état d'un
+ * {@link Originator} pouvant être annulée puis rejouée.
+ * Contrairement à un {@link Memento} qui contient une copie de tout l'état,
+ * une Edit ne contient que ce qui a changé : sa taille est donc
+ * proportionnelle à la modification et non à l'état.
+ * @note une Edit doit être annulée (resp. rejouée) alors que l'état de
+ * l'originator est celui qui suivait (resp. précédait) la modification.
+ * @note {@link #footprint()} estime la mémoire occupée par la modification
+ * (et non par l'état de l'originator).
+ * @author davidroussel
+ */
+public interface Edit extends Footprint
+{
+	/**
+	 * Annulation de la modification
+	 */
+	public abstract void undo();
+
+	/**
+	 * Rejeu de la modification (après son annulation)
+	 */
+	public abstract void redo();
+}
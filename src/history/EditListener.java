@@ -0,0 +1,15 @@
+package history;
+
+/**
+ * Interface des objets souhaitant être informés des modifications
+ * ({@link Edit}) réalisées par une {@link EditSource}
+ * @author davidroussel
+ */
+public interface EditListener
+{
+	/**
+	 * Notification d'une modification qui vient d'être réalisée
+	 * @param edit la modification réalisée
+	 */
+	public abstract void editPerformed(Edit edit);
+}
@@ -0,0 +1,21 @@
+package history;
+
+/**
+ * Interface des {@link Originator} capables de décrire chacune de leurs
+ * modifications sous forme d'{@link Edit} auprès d'{@link EditListener}s
+ * @author davidroussel
+ */
+public interface EditSource
+{
+	/**
+	 * Ajout d'un listener de modifications
+	 * @param listener le listener à ajouter
+	 */
+	public abstract void addEditListener(EditListener listener);
+
+	/**
+	 * Retrait d'un listener de modifications
+	 * @param listener le listener à retirer
+	 */
+	public abstract void removeEditListener(EditListener listener);
+}
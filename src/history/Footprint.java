@@ -0,0 +1,45 @@
+package history;
+
+/**
+ * Interface des objets capables d'estimer la mémoire qu'ils occupent.
+ * Utilisée par le {@link HistoryManager} pour limiter la mémoire occupée par
+ * l'historique. Les estimations sont basées sur une JVM 64 bits avec
+ * références compressées.
+ * @author davidroussel
+ */
+public interface Footprint
+{
+	/**
+	 * Taille (en octets) d'un en-tête d'objet
+	 */
+	public static final long ObjectHeader = 16;
+
+	/**
+	 * Taille (en octets) d'une référence
+	 */
+	public static final long Reference = 8;
+
+	/**
+	 * Taille (en octets) d'une {@link java.awt.geom.AffineTransform} (6
+	 * doubles et l'état de la transformation)
+	 */
+	public static final long AffineTransformSize = ObjectHeader + 64;
+
+	/**
+	 * Estimation de la mémoire occupée par cet objet et par les objets qu'il
+	 * est seul à référencer
+	 * @return le nombre estimé d'octets occupés par cet objet
+	 */
+	public abstract long footprint();
+
+	/**
+	 * Estimation de la taille d'un tableau
+	 * @param length le nombre d'éléments du tableau
+	 * @param elementSize la taille (en octets) d'un élément
+	 * @return la taille estimée (en octets) du tableau
+	 */
+	public static long array(int length, long elementSize)
+	{
+		return ObjectHeader + (length * elementSize);
+	}
+}
@@ -1,51 +1,246 @@
 package history;
 
+import utils.Logger;
 import utils.Signature;
 
 import java.util.Stack;
 
 /**
- * Classe permettant de gérer les piles de Undo et de Redo de E
+ * Classe permettant de gérer les piles de Undo et de Redo de E.
+ * Deux modes d'enregistrement des étapes sont possibles (voir
+ * {@link HistoryMode}) :
+ * <ul>
+ * <li>{@link HistoryMode#SNAPSHOT} : chaque étape est un {@link Memento}
+ * (copie complète) de l'état de l'{@link #originator}</li>
+ * <li>{@link HistoryMode#DELTA} : chaque étape regroupe les {@link Edit}
+ * signalées par l'{@link #originator} (qui doit alors être une
+ * {@link EditSource}) depuis le dernier {@link #record()}</li>
+ * </ul>
+ * L'historique est borné par un nombre maximum d'étapes ainsi que par un
+ * budget mémoire (optionnel) : lorsque l'une de ces limites est dépassée, les
+ * étapes les plus anciennes sont oubliées. La mémoire occupée par chaque
+ * étape est estimée par {@link Edit#footprint()}.
  * @param E l'état à sauvegarder dans les piles
  * @author davidroussel
  */
-public class HistoryManager<E extends Prototype<E>> implements Signature
+public class HistoryManager<E extends Prototype<E>>
+    implements EditListener, Signature
 {
 	/**
 	 * Le nombre maximum d'undo / redo
 	 */
 	private int size;
 
+	/**
+	 * Le budget mémoire (en octets) de l'historique ou bien 0 si la mémoire
+	 * occupée par l'historique n'est pas limitée
+	 * @see #memoryUsage()
+	 */
+	private long budget;
+
 	/**
 	 * L'originator dont on doit sauvegarder l'état.
 	 * Permet de demander à l'originator de générer un memento ou de
 	 * mettre en place un memento qu'on lui fournit
 	 */
 	private Originator<E> originator;
-	private Stack<Memento<E>> undo;
-	private Stack<Memento<E>> redo;
 
 	/**
-	 * Constructeur du manager de Undo/Redo
+	 * Le mode d'enregistrement des étapes
+	 */
+	private HistoryMode mode;
+
+	/**
+	 * Pile des étapes pouvant être annulées
+	 */
+	private Stack<Edit> undo;
+
+	/**
+	 * Pile des étapes annulées pouvant être rejouées
+	 */
+	private Stack<Edit> redo;
+
+	/**
+	 * Étape en cours (en mode {@link HistoryMode#DELTA}) à laquelle sont
+	 * ajoutées les modifications signalées par l'{@link #originator}.
+	 * null lorsqu'aucune étape n'est ouverte.
+	 */
+	private CompoundEdit current;
+
+	/**
+	 * Indique qu'une étape est en cours d'annulation ou de rejeu : les
+	 * modifications signalées par l'{@link #originator} pendant ce temps ne
+	 * doivent pas être enregistrées
+	 */
+	private boolean replaying;
+
+	/**
+	 * Constructeur du manager de Undo/Redo en mode
+	 * {@link HistoryMode#SNAPSHOT}
 	 * @param origin l'originator dont on doit savegarder l'état
 	 * @param size ne nombre maximum d'undos/redos à mémorsier
 	 */
 	public HistoryManager(Originator<E> origin, int size)
 	{
-		this.size = size;
+		this(origin, size, HistoryMode.SNAPSHOT);
+	}
+
+	/**
+	 * Constructeur du manager de Undo/Redo
+	 * @param origin l'originator dont on doit savegarder l'état
+	 * @param size ne nombre maximum d'undos/redos à mémorsier
+	 * @param mode le mode d'enregistrement des étapes. Le mode
+	 * {@link HistoryMode#DELTA} n'est possible que si l'originator est aussi
+	 * une {@link EditSource}, à défaut le mode {@link HistoryMode#SNAPSHOT}
+	 * est utilisé.
+	 */
+	public HistoryManager(Originator<E> origin, int size, HistoryMode mode)
+	{
+		this(origin, size, mode, 0);
+	}
+
+	/**
+	 * Constructeur du manager de Undo/Redo avec un budget mémoire
+	 * @param origin l'originator dont on doit savegarder l'état
+	 * @param size ne nombre maximum d'undos/redos à mémorsier (au moins 1)
+	 * @param mode le mode d'enregistrement des étapes. Le mode
+	 * {@link HistoryMode#DELTA} n'est possible que si l'originator est aussi
+	 * une {@link EditSource}, à défaut le mode {@link HistoryMode#SNAPSHOT}
+	 * est utilisé.
+	 * @param budget la mémoire maximum (estimée, en octets) occupée par
+	 * l'historique ou bien 0 pour ne pas limiter la mémoire
+	 */
+	public HistoryManager(Originator<E> origin,
+	                      int size,
+	                      HistoryMode mode,
+	                      long budget)
+	{
+		this.size = Math.max(size, 1);
+		this.budget = Math.max(budget, 0);
 		originator = origin;
-		this.redo = new Stack<Memento<E>>();
-		this.undo = new Stack<Memento<E>>();
+		this.redo = new Stack<Edit>();
+		this.undo = new Stack<Edit>();
+		current = null;
+		replaying = false;
+
+		if ((mode == HistoryMode.DELTA) && !(origin instanceof EditSource))
+		{
+			Logger.warning(() -> "originator is not an EditSource : "
+			    + "using SNAPSHOT mode");
+			mode = HistoryMode.SNAPSHOT;
+		}
+		this.mode = mode;
+
+		if (this.mode == HistoryMode.DELTA)
+		{
+			((EditSource) origin).addEditListener(this);
+		}
 	}
 
 	@Override
 	protected void finalize() throws Throwable
 	{
-		this.redo = new Stack<Memento<E>>();
-		this.undo = new Stack<Memento<E>>();
+		if (mode == HistoryMode.DELTA)
+		{
+			((EditSource) originator).removeEditListener(this);
+		}
+		this.redo = new Stack<Edit>();
+		this.undo = new Stack<Edit>();
 		super.finalize();
 	}
 
+	/**
+	 * Accesseur du mode d'enregistrement des étapes
+	 * @return le mode d'enregistrement des étapes
+	 */
+	public HistoryMode getMode()
+	{
+		return mode;
+	}
+
+	/**
+	 * Accesseur du budget mémoire de l'historique
+	 * @return la mémoire maximum (estimée, en octets) occupée par l'historique
+	 * ou bien 0 si celle-ci n'est pas limitée
+	 */
+	public long getMemoryBudget()
+	{
+		return budget;
+	}
+
+	/**
+	 * Mise en place d'un nouveau budget mémoire. Les étapes les plus
+	 * anciennes sont oubliées si le nouveau budget est dépassé.
+	 * @param budget la mémoire maximum (estimée, en octets) occupée par
+	 * l'historique ou bien 0 pour ne pas limiter la mémoire
+	 */
+	public void setMemoryBudget(long budget)
+	{
+		this.budget = Math.max(budget, 0);
+		trim();
+	}
+
+	/**
+	 * Estimation de la mémoire occupée par les étapes de la pile des undo
+	 * @return le nombre estimé d'octets occupés par la pile des undo
+	 */
+	public long undoMemoryUsage()
+	{
+		return memoryUsage(undo);
+	}
+
+	/**
+	 * Estimation de la mémoire occupée par l'historique (piles des undo et
+	 * des redo)
+	 * @return le nombre estimé d'octets occupés par l'historique
+	 */
+	public long memoryUsage()
+	{
+		return memoryUsage(undo) + memoryUsage(redo);
+	}
+
+	/**
+	 * Estimation de la mémoire occupée par les étapes d'une pile
+	 * @param stack la pile
+	 * @return le nombre estimé d'octets occupés par les étapes de la pile
+	 */
+	private static long memoryUsage(Stack<Edit> stack)
+	{
+		long bytes = 0;
+		for (Edit step : stack)
+		{
+			bytes += step.footprint();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Oubli des étapes les plus anciennes tant que le nombre maximum d'étapes
+	 * ({@link #size}) ou que le budget mémoire ({@link #budget}) est dépassé.
+	 * La dernière étape de la pile des undo est toujours conservée afin de
+	 * pouvoir annuler la dernière action ; si elle dépasse à elle seule le
+	 * budget, ce sont les étapes de la pile des redo qui sont oubliées.
+	 */
+	private void trim()
+	{
+		while (undo.size() > size)
+		{
+			undo.remove(0);
+		}
+		if (budget > 0)
+		{
+			long usage = memoryUsage();
+			while ((usage > budget) && (undo.size() > 1))
+			{
+				usage -= undo.remove(0).footprint();
+			}
+			while ((usage > budget) && !redo.empty())
+			{
+				usage -= redo.remove(0).footprint();
+			}
+		}
+	}
+
 	/**
 	 * Nombre d'éléments accumulés dans la pile de undo
 	 * @return Le nombre d'éléments accumulés dans la pile de undo
@@ -65,55 +260,159 @@ public class HistoryManager<E extends Prototype<E>> implements Signature
 	}
 
 	/**
-	 * Enregistre un {@link Memento} de l'{@link #originator} pour pouvoir
-	 * le restituer par la suite.
+	 * Enregistre une nouvelle étape pour pouvoir restituer par la suite l'état
+	 * courant de l'{@link #originator} :
+	 * <ul>
+	 * <li>en mode {@link HistoryMode#SNAPSHOT} un {@link Memento} de
+	 * l'{@link #originator}</li>
+	 * <li>en mode {@link HistoryMode#DELTA} une nouvelle étape vide à
+	 * laquelle seront ajoutées les modifications à venir de
+	 * l'{@link #originator}</li>
+	 * </ul>
 	 */
 	public void record()
 	{
-		undo.push(originator.createMemento());
+		if (mode == HistoryMode.DELTA)
+		{
+			closeStep();
+			current = new CompoundEdit();
+			undo.push(current);
+		}
+		else
+		{
+			undo.push(new MementoEdit<E>(originator, previousSnapshot()));
+			redo.clear();
+		}
+		trim();
 	}
 
 	/**
-	 * Restitue le dernier Memento sauvegardé dans la pile des undo
-	 * @return le dernier memento sauvegardé dans la pile des undo
-	 * ({@link #undoStack}), ou bien null si celle-ci est vide.
-	 * @post un {@link Memento} de l'{@link #originator} a été créé au préalable
-	 * dans la pile des redo.
+	 * Dernière étape de la pile des undo en mode {@link HistoryMode#SNAPSHOT}
+	 * @return la dernière étape de la pile des undo ou null si celle-ci est
+	 * vide
+	 */
+	@SuppressWarnings("unchecked")
+	private MementoEdit<E> previousSnapshot()
+	{
+		if (!undo.empty() && (undo.peek() instanceof MementoEdit<?>))
+		{
+			return (MementoEdit<E>) undo.peek();
+		}
+		return null;
+	}
+
+	/**
+	 * Restitue l'état précédant la dernière étape enregistrée dans la pile
+	 * des undo (s'il y en a une) qui est alors placée dans la pile des redo.
 	 */
 	public void undo()
 	{
-		redo.push(originator.createMemento());
-		if (!undo.empty()){
-			originator.setMemento(undo.pop());
+		closeStep();
+		if (!undo.empty())
+		{
+			Edit step = undo.pop();
+			replaying = true;
+			try
+			{
+				step.undo();
+			}
+			finally
+			{
+				replaying = false;
+			}
+			redo.push(step);
+			trim();
 		}
 	}
 
 	/**
-	 * Annule le dernier {@link Memento} enregistré dans la pile des undo.
+	 * Annule la dernière étape enregistrée dans la pile des undo.
 	 * Lorsque l'action n'a pas modifié l'état (par exemple si elle a échoué)
 	 */
 	public void cancel()
 	{
-		undo.pop();
+		if (!undo.empty() && ((current == null) || (undo.peek() == current)))
+		{
+			undo.pop();
+		}
+		current = null;
 	}
 
 	/**
-	 * Restitue de dernier Memento sauvegardé dans la pile des redo
-	 * @return Le dernier Memento sauvegardé dans la pile des redo
-	 * ({@link #redoStack}) ou bien null si celle-ci est vide.
-	 * @post un {@link Memento} de l'{@link #originator} a été créé au préalable
-	 * dans la pile des undo.
+	 * Rejoue la dernière étape annulée de la pile des redo (s'il y en a une)
+	 * qui est alors replacée dans la pile des undo.
 	 */
 	public void redo()
 	{
-		undo.push(originator.createMemento());
-		if (!redo.empty()){
-			originator.setMemento(redo.pop());
+		closeStep();
+		if (!redo.empty())
+		{
+			Edit step = redo.pop();
+			replaying = true;
+			try
+			{
+				step.redo();
+			}
+			finally
+			{
+				replaying = false;
+			}
+			undo.push(step);
+			trim();
 		}
 	}
 
 	/**
-	 * Affichage du contenu des piles {@link #undoStack} et {@link #redoStack}
+	 * Ajout d'une modification signalée par l'{@link #originator} à l'étape
+	 * en cours (mode {@link HistoryMode#DELTA}). Si aucune étape n'est en
+	 * cours (modification réalisée sans {@link #record()} préalable), une
+	 * nouvelle étape est ouverte.
+	 * @param edit la modification réalisée
+	 */
+	@Override
+	public void editPerformed(Edit edit)
+	{
+		if (replaying)
+		{
+			return;
+		}
+		if (current == null)
+		{
+			current = new CompoundEdit();
+			undo.push(current);
+			trim();
+		}
+		current.add(edit);
+	}
+
+	/**
+	 * Fermeture de l'étape en cours (mode {@link HistoryMode#DELTA}).
+	 * Une étape vide est retirée de la pile des undo pour ne pas avoir à
+	 * l'annuler. Une étape non vide modifie l'état : les étapes de la pile des
+	 * redo ne peuvent alors plus être rejouées et sont abandonnées (ce n'est
+	 * pas le cas si l'étape est annulée par {@link #cancel()}).
+	 */
+	private void closeStep()
+	{
+		if (current != null)
+		{
+			if (current.isEmpty())
+			{
+				if (!undo.empty() && (undo.peek() == current))
+				{
+					undo.pop();
+				}
+			}
+			else
+			{
+				redo.clear();
+			}
+			current = null;
+		}
+	}
+
+	/**
+	 * Affichage du contenu des piles {@link #undo} et {@link #redo}
 	 * @return Une chaîne permettant d'afficher le contenu des piles (utile
 	 * pour débuguer)
 	 */
@@ -123,25 +422,16 @@ public class HistoryManager<E extends Prototype<E>> implements Signature
 		StringBuilder sb = new StringBuilder();
 
 		sb.append(super.toString());
-		sb.append("[" + String.valueOf(size) + "] :\nUndo = {");
-		Stack<Memento<E>> tmp_stack = new Stack<Memento<E>>();
-		Memento<E> tmp_mem;
-		while (!undo.empty()){
-			tmp_mem = undo.pop();
-			sb.append(tmp_mem.toString() + "\n");
-			tmp_stack.push(tmp_mem);
-		}
-		while (!tmp_stack.empty()){
-			undo.push( tmp_stack.pop());
+		sb.append("[" + String.valueOf(size) + ", " + mode + ", "
+		    + memoryUsage() + "/" + budget + " bytes] :\nUndo = {");
+		for (int i = undo.size() - 1; i >= 0; i--)
+		{
+			sb.append(undo.get(i).toString() + "\n");
 		}
 		sb.append("},\nRedo = {");
-		while (!redo.empty()){
-			tmp_mem = redo.pop();
-			sb.append(tmp_mem.toString() + "\n");
-			tmp_stack.push(tmp_mem);
-		}
-		while (!tmp_stack.empty()){
-			redo.push( tmp_stack.pop());
+		for (int i = redo.size() - 1; i >= 0; i--)
+		{
+			sb.append(redo.get(i).toString() + "\n");
 		}
 		sb.append("}");
 		return sb.toString();
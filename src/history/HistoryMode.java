@@ -0,0 +1,23 @@
+package history;
+
+/**
+ * Modes d'enregistrement des étapes de l'historique par le
+ * {@link HistoryManager}
+ * @author davidroussel
+ */
+public enum HistoryMode
+{
+	/**
+	 * Chaque étape est un {@link Memento} contenant une copie complète de
+	 * l'état de l'{@link Originator}
+	 */
+	SNAPSHOT,
+
+	/**
+	 * Chaque étape est une {@link CompoundEdit} regroupant les seules
+	 * modifications ({@link Edit}) réalisées depuis l'enregistrement de
+	 * l'étape. Nécessite un {@link Originator} qui soit aussi une
+	 * {@link EditSource}.
+	 */
+	DELTA;
+}
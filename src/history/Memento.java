@@ -4,11 +4,15 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import utils.PersistentVector;
+
 /**
  * Un état constitué d'une liste de d'éléments de type E constituant
  * l'état à sauvegarder dans le Memento.
  * @note les élements doivent dériver de {@link Prototype} pour pouvoir
  * être effectivement clonés (Deep Copy) dans l'état du Memento.
+ * Lorsque l'état est fourni sous la forme d'une liste persistante
+ * ({@link PersistentVector}) il est partagé sans copie.
  * @author davidroussel
  */
 public class Memento<E extends Prototype<E>>
@@ -18,18 +22,54 @@ public class Memento<E extends Prototype<E>>
 	 */
 	private List<E> state;
 
+	/**
+	 * Indique que l'état est une liste persistante partagée (sans copie des
+	 * éléments) avec l'originator
+	 */
+	private final boolean shared;
+
+	/**
+	 * Estimation de la mémoire occupée par un noeud de
+	 * {@link PersistentVector} : entête, 3 références et 2 entiers
+	 */
+	private static final long NodeSize =
+	    Footprint.ObjectHeader + (3 * Footprint.Reference) + 8;
+
+	/**
+	 * Estimation (calculée à la demande) de la mémoire occupée par le memento
+	 * ou -1 si elle n'a pas encore été calculée
+	 * @see #footprint()
+	 */
+	private long footprint;
+
 	/**
 	 * Constructeur par défaut d'un état
 	 */
 	public Memento(List<E> things)
 	{
 		this.state = new ArrayList<E>();
+		shared = false;
+		footprint = -1;
 		for (E elt : things)
 		{
 			this.state.add(elt.clone());
 		}
 	}
 
+	/**
+	 * Constructeur d'un état partagé en O(1) : la liste persistante n'étant
+	 * jamais modifiée, elle est conservée telle quelle. L'originator doit
+	 * garantir que les éléments de cette liste ne seront plus modifiés (par
+	 * exemple en les copiant avant toute modification).
+	 * @param things la version de la liste des éléments à conserver
+	 */
+	public Memento(PersistentVector<E> things)
+	{
+		this.state = things;
+		shared = true;
+		footprint = -1;
+	}
+
 	/**
 	 * Accesseur à l'état du memento
 	 * @return l'état stocké dans le memento
@@ -39,6 +79,66 @@ public class Memento<E extends Prototype<E>>
 		return state;
 	}
 
+	/**
+	 * Estimation de la mémoire occupée par un memento partagé relativement à
+	 * un memento précédent (l'état précédent dans l'historique) : seuls les
+	 * noeuds de la liste persistante qui ne sont pas partagés avec ceux du
+	 * memento précédent sont comptés
+	 * ({@link PersistentVector#unsharedNodes(PersistentVector)}).
+	 * Sans effet si l'un des deux mementos n'est pas partagé ou si
+	 * l'estimation a déjà été calculée.
+	 * @param previous le memento précédent (ou null)
+	 */
+	@SuppressWarnings("unchecked")
+	void estimate(Memento<E> previous)
+	{
+		if ((footprint < 0) && shared && (previous != null) && previous.shared)
+		{
+			footprint = (2 * Footprint.ObjectHeader)
+			    + (((PersistentVector<E>) state).unsharedNodes(
+			        (PersistentVector<E>) previous.state) * NodeSize);
+		}
+	}
+
+	/**
+	 * Estimation de la mémoire occupée par le memento : la liste et les
+	 * copies des éléments qu'elle contient (estimées par
+	 * {@link Footprint#footprint()} lorsque les éléments le permettent).
+	 * Lorsque l'état est partagé seuls les noeuds de la liste persistante
+	 * sont comptés : les éléments sont en majorité partagés avec l'originator,
+	 * et seuls les noeuds absents du memento précédent le sont si celui-ci
+	 * a été fourni (voir {@link #estimate(Memento)}).
+	 * L'état d'un memento n'étant pas modifié, cette estimation n'est calculée
+	 * qu'une seule fois.
+	 * @return le nombre estimé d'octets occupés par le memento
+	 */
+	public long footprint()
+	{
+		if ((footprint < 0) && shared)
+		{
+			footprint = (2 * Footprint.ObjectHeader)
+			    + (state.size() * NodeSize);
+		}
+		else if (footprint < 0)
+		{
+			long bytes = (2 * Footprint.ObjectHeader)
+			    + Footprint.array(state.size(), Footprint.Reference);
+			for (E elt : state)
+			{
+				if (elt instanceof Footprint)
+				{
+					bytes += ((Footprint) elt).footprint();
+				}
+				else
+				{
+					bytes += Footprint.ObjectHeader;
+				}
+			}
+			footprint = bytes;
+		}
+		return footprint;
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#hashCode()
 	 */
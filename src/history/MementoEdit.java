@@ -0,0 +1,88 @@
+package history;
+
+/**
+ * Étape de l'historique en mode {@link HistoryMode#SNAPSHOT} : contient le
+ * {@link Memento} de l'état précédant l'étape et, une fois l'étape annulée,
+ * celui de l'état qui la suivait afin de pouvoir la rejouer.
+ * @param E le type des éléments de l'état
+ * @author davidroussel
+ */
+class MementoEdit<E extends Prototype<E>> implements Edit
+{
+	/**
+	 * L'originator dont on restitue l'état
+	 */
+	private Originator<E> originator;
+
+	/**
+	 * L'état précédant l'étape
+	 */
+	private Memento<E> before;
+
+	/**
+	 * L'état suivant l'étape (obtenu lors de la première annulation)
+	 */
+	private Memento<E> after;
+
+	/**
+	 * Constructeur
+	 * @param originator l'originator dont on sauvegarde l'état
+	 * @param previous l'étape précédente de l'historique (ou null) : la
+	 * mémoire occupée par l'état sauvegardé est estimée relativement à
+	 * celui de cette étape (voir {@link Memento#estimate(Memento)})
+	 */
+	public MementoEdit(Originator<E> originator, MementoEdit<E> previous)
+	{
+		this.originator = originator;
+		before = originator.createMemento();
+		before.estimate(previous != null ? previous.before : null);
+		after = null;
+	}
+
+	/**
+	 * Restitution de l'état précédant l'étape (après avoir sauvegardé l'état
+	 * courant s'il ne l'a pas déjà été)
+	 */
+	@Override
+	public void undo()
+	{
+		if (after == null)
+		{
+			after = originator.createMemento();
+			after.estimate(before);
+		}
+		originator.setMemento(before);
+	}
+
+	/**
+	 * Restitution de l'état suivant l'étape
+	 */
+	@Override
+	public void redo()
+	{
+		if (after != null)
+		{
+			originator.setMemento(after);
+		}
+	}
+
+	/**
+	 * Estimation de la mémoire occupée par les mementos de l'étape
+	 * @return le nombre estimé d'octets occupés par l'étape
+	 */
+	@Override
+	public long footprint()
+	{
+		return Footprint.ObjectHeader + before.footprint()
+		    + (after != null ? after.footprint() : 0);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return before.toString();
+	}
+}
@@ -1,6 +1,7 @@
 /**
  * Package contenant les classes nécessaire à l'implémentation d'un
- * système de Undo/Redo en utilisant le design pattern Memento
+ * système de Undo/Redo en utilisant le design pattern Memento (copies
+ * complètes) ou bien des modifications élémentaires ({@link history.Edit})
  * @author davidroussel
  */
 package history;
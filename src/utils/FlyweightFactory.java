@@ -1,90 +1,167 @@
 package utils;
 
-import java.util.HashMap;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 /**
  * Flyweight gérant les différents éléments utilisés dans la zone de dessin.
- * Utilisable avec les {@link Paint} et avec les {@link BasicStroke} des figures
- * Gère les éléments dans une HashMap<Integer, T> dont la clé correspond au
- * hashCode de l'élément correspondant. Lorsque l'on demande un élément à la
- * Factory, celui ci le recherche dans sa table de hachage : Si l'élément n'est
- * pas déjà présent dans la table de hachage il est ajouté, puis renvoyé, s'il
- * est déjà présent dans la table de hachage il est directement renvoyé et celui
- * demandé est alors destructible par le garbage collector.
+ * Utilisable avec les {@link java.awt.Paint} et avec les
+ * {@link java.awt.BasicStroke} des figures.
+ * Lorsque l'on demande un élément à la Factory, celle ci le recherche parmi
+ * les éléments qu'elle contient : si un élément égal ({@link Object#equals})
+ * est déjà présent il est directement renvoyé et celui demandé est alors
+ * destructible par le garbage collector, sinon l'élément demandé est ajouté
+ * puis renvoyé.
+ * Les éléments sont rangés dans une table à adressage ouvert (sondage
+ * linéaire) composée d'un tableau des codes de hachage des éléments
+ * (primitifs) et d'un tableau de références faibles vers les éléments :
+ * <ul>
+ * <li>deux éléments distincts de même code de hachage sont tous deux
+ * conservés (la recherche compare les éléments avec equals)</li>
+ * <li>les recherches ne prennent pas de verrou (seuls les ajouts et la
+ * réorganisation de la table sont synchronisés) et la factory peut donc être
+ * utilisée depuis plusieurs threads</li>
+ * <li>un élément qui n'est plus utilisé en dehors de la factory peut être
+ * détruit par le garbage collector, sa place dans la table étant récupérée
+ * lors des ajouts suivants</li>
+ * </ul>
+ * Le nombre de recherches fructueuses ({@link #getHits()}), infructueuses
+ * ({@link #getMisses()}) et le nombre d'éléments ({@link #size()}) sont
+ * disponibles.
  *
  * @author davidroussel
  */
 public class FlyweightFactory<T> implements Signature
 {
 	/**
-	 * La table de hachage contenant les différentes paires <hashcode,elt> et
-	 * dont les clés sont les hashCode des différents élements.
+	 * Capacité initiale (puissance de 2) de la table
 	 */
-	protected HashMap<Integer, T> map;
+	private static final int InitialCapacity = 64;
 
 	/**
-	 * Constructeur d'un FlyweightFactory.
-	 * Initialise la {@link HashMap}
+	 * Référence placée dans la table à la place d'un élément détruit : elle
+	 * ne correspond à aucun élément mais ne termine pas une séquence de
+	 * sondage
 	 */
-	public FlyweightFactory()
-	{
-		map = new HashMap<Integer, T>();
-	}
+	private static final Reference<Object> Removed =
+	    new WeakReference<Object>(null);
 
 	/**
-	 * Obtention d'un élément à partir son hashcode plutôt que par l'élément
-	 * lui même
-	 * @param hash le hachage de l'élément demandé
-	 * @return l'élément correspondant au hachage demandé ou bien null si aucun
-	 * élément avec ce hachage n'est contenu dans la factory
-	 * @note cette méthode est nécessaire lorsque l'on veut stocker dans la
-	 * factory des éléments qui ne réimplémentent pas la méthode hashCode.
-	 * Auquel cas on fournit soi même un code de hachage.
+	 * Référence faible vers un élément de la factory, mémorisant son code de
+	 * hachage afin de retrouver sa place dans la table une fois l'élément
+	 * détruit
 	 */
-	protected T get(int hash)
+	private static final class Entry<T> extends WeakReference<T>
 	{
-		Integer key = Integer.valueOf(hash);
-		if (map.containsKey(key))
+		/**
+		 * Code de hachage de l'élément
+		 */
+		final int hash;
+
+		/**
+		 * Constructeur
+		 * @param element l'élément
+		 * @param hash le code de hachage de l'élément
+		 * @param queue la file recevant la référence lorsque l'élément est
+		 * détruit
+		 */
+		Entry(T element, int hash, ReferenceQueue<? super T> queue)
 		{
-			return map.get(key);
+			super(element, queue);
+			this.hash = hash;
 		}
-
-		return null;
 	}
 
 	/**
-	 * Ajout d'un élément à la factory en fournissant un hashcode particulier
-	 * @param hash le hachage voulu pour cet élément
-	 * @param element l'élément à ajouter
-	 * @return true si aucun élément avec ce hachage n'était contenu dans la
-	 * factory et que le couple hash/value a bien été ajouté à la factory
-	 * @note cette méthode est nécessaire lorsque l'on veut stocker dans la
-	 * factory des éléments qui ne réimplémentent pas la méthode hashCode.
-	 * Auquel cas on fournit soi même un code de hachage.
+	 * Table à adressage ouvert. Une case est vide tant que sa référence est
+	 * null. Une case n'est remplie que par un ajout (son code de hachage
+	 * étant écrit avant sa référence) et ne redevient jamais vide : une table
+	 * remplacée par une table plus grande n'est donc plus jamais modifiée et
+	 * peut encore être parcourue par les recherches en cours.
 	 */
-	protected boolean put(int hash, T element)
+	private static final class Table
 	{
-		Integer key = Integer.valueOf(hash);
-		if (!map.containsKey(key))
+		/**
+		 * Codes de hachage des éléments
+		 */
+		final int[] hashes;
+
+		/**
+		 * Références vers les éléments (ou null pour une case vide)
+		 */
+		final AtomicReferenceArray<Reference<?>> entries;
+
+		/**
+		 * Masque des indices (capacité - 1)
+		 */
+		final int mask;
+
+		/**
+		 * Constructeur d'une table vide
+		 * @param capacity la capacité (puissance de 2) de la table
+		 */
+		Table(int capacity)
 		{
-			if (element != null)
-			{
-				map.put(key, element);
-				return true;
-			}
-			else
-			{
-				System.err.println(getClassName() + "::" + getMethodName()
-				    + "(...) : null element");
-			}
+			hashes = new int[capacity];
+			entries = new AtomicReferenceArray<Reference<?>>(capacity);
+			mask = capacity - 1;
 		}
-		return false;
 	}
 
 	/**
-	 * Obtention d'un élément (nouveau ou pas) : Lorsque l'élément demandé est
-	 * déjà présent dans la table on le renvoie directement sinon celui ci est
-	 * ajouté à la table avant d'être renvoyé
+	 * La table courante
+	 */
+	private volatile Table table;
+
+	/**
+	 * Nombre de cases non vides (éléments et éléments retirés) de la table
+	 * courante
+	 */
+	private int used;
+
+	/**
+	 * Nombre d'éléments de la table courante (y compris ceux dont la
+	 * destruction n'a pas encore été traitée)
+	 */
+	private volatile int count;
+
+	/**
+	 * File des références vers les éléments détruits
+	 */
+	private final ReferenceQueue<T> queue;
+
+	/**
+	 * Nombre de recherches fructueuses
+	 */
+	private final LongAdder hits;
+
+	/**
+	 * Nombre de recherches infructueuses
+	 */
+	private final LongAdder misses;
+
+	/**
+	 * Constructeur d'un FlyweightFactory vide
+	 */
+	public FlyweightFactory()
+	{
+		table = new Table(InitialCapacity);
+		used = 0;
+		count = 0;
+		queue = new ReferenceQueue<T>();
+		hits = new LongAdder();
+		misses = new LongAdder();
+	}
+
+	/**
+	 * Obtention d'un élément (nouveau ou pas) : Lorsqu'un élément égal à
+	 * l'élément demandé est déjà présent dans la table on le renvoie
+	 * directement sinon l'élément demandé est ajouté à la table avant d'être
+	 * renvoyé
 	 * @param element l'élément demandé [celui ci pourra être détruit par le
 	 * garbage collector si il en existe déjà un équivalent dans la table]
 	 * @return l'élément demandé en provenance de la table
@@ -94,23 +171,141 @@ public class FlyweightFactory<T> implements Signature
 		if (element != null)
 		{
 			int hash = element.hashCode();
-			T result = get(hash);
+			T result = find(hash, element::equals);
 			if (result == null)
 			{
-				put(hash, element);
-				result = get(hash);
+				result = putIfAbsent(hash, element, element::equals);
 			}
 			return result;
 		}
 		return null;
 	}
 
+	/**
+	 * Recherche (sans verrou) d'un élément par son code de hachage et un
+	 * critère d'égalité particulier
+	 * @param hash le code de hachage de l'élément recherché
+	 * @param matches le critère d'égalité avec l'élément recherché
+	 * @return l'élément de la table de même code de hachage vérifiant le
+	 * critère ou bien null si la table ne contient pas un tel élément
+	 * @note cette méthode est nécessaire lorsque l'on veut stocker dans la
+	 * factory des éléments qui ne réimplémentent pas les méthodes equals et
+	 * hashCode. Auquel cas on fournit soi même un code de hachage et un
+	 * critère d'égalité.
+	 */
+	protected T find(int hash, Predicate<? super T> matches)
+	{
+		T result = probe(table, hash, matches);
+		if (result != null)
+		{
+			hits.increment();
+		}
+		else
+		{
+			misses.increment();
+		}
+		return result;
+	}
+
+	/**
+	 * Ajout d'un élément à la factory en fournissant un code de hachage et un
+	 * critère d'égalité particuliers
+	 * @param hash le code de hachage de l'élément
+	 * @param element l'élément à ajouter
+	 * @param matches le critère d'égalité avec l'élément
+	 * @return l'élément de la table vérifiant le critère s'il y en avait déjà
+	 * un, ou bien l'élément ajouté (ou null si l'élément est null)
+	 * @note cette méthode est nécessaire lorsque l'on veut stocker dans la
+	 * factory des éléments qui ne réimplémentent pas les méthodes equals et
+	 * hashCode. Auquel cas on fournit soi même un code de hachage et un
+	 * critère d'égalité.
+	 */
+	protected synchronized T putIfAbsent(int hash,
+	                                     T element,
+	                                     Predicate<? super T> matches)
+	{
+		if (element == null)
+		{
+			Logger.error(() -> getClassName() + " : null element");
+			return null;
+		}
+		expunge();
+		Table current = table;
+		T existing = probe(current, hash, matches);
+		if (existing != null)
+		{
+			return existing;
+		}
+		if (4 * (used + 1) > 3 * (current.mask + 1))
+		{
+			current = resize(current);
+		}
+
+		// Première case vide ou libérée de la séquence de sondage
+		int i = spread(hash) & current.mask;
+		Reference<?> reference;
+		while (((reference = current.entries.get(i)) != null)
+		    && (reference.get() != null))
+		{
+			i = (i + 1) & current.mask;
+		}
+		if (reference == null)
+		{
+			used++;
+		}
+		else if (reference != Removed)
+		{
+			// Élément détruit dont la référence n'a pas encore été traitée
+			// par expunge : elle ne sera plus trouvée dans la table
+			count--;
+		}
+		current.hashes[i] = hash;
+		current.entries.set(i, new Entry<T>(element, hash, queue));
+		count++;
+		return element;
+	}
+
+	/**
+	 * Nombre d'éléments de la factory
+	 * @return le nombre d'éléments encore utilisés de la factory
+	 */
+	public synchronized int size()
+	{
+		expunge();
+		return count;
+	}
+
+	/**
+	 * Nombre de recherches ayant trouvé l'élément demandé dans la factory
+	 * @return le nombre de recherches fructueuses
+	 */
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * Nombre de recherches n'ayant pas trouvé l'élément demandé dans la
+	 * factory (et ayant donc conduit à un ajout)
+	 * @return le nombre de recherches infructueuses
+	 */
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
 	/**
 	 * Nettoyage de tous les éléments
 	 */
-	public void clear()
+	public synchronized void clear()
 	{
-		map.clear();
+		table = new Table(InitialCapacity);
+		used = 0;
+		count = 0;
+		while (queue.poll() != null)
+		{
+			// les éléments détruits ne sont plus dans la table
+		}
 	}
 
 	/**
@@ -121,4 +316,123 @@ public class FlyweightFactory<T> implements Signature
 	{
 		clear();
 	}
+
+	/**
+	 * Représentation de la factory
+	 * @return une chaine de caractères contenant le nombre d'éléments et de
+	 * recherches fructueuses et infructueuses
+	 */
+	@Override
+	public String toString()
+	{
+		return getClassName() + "[size = " + size() + ", hits = " + getHits()
+		    + ", misses = " + getMisses() + "]";
+	}
+
+	/**
+	 * Recherche d'un élément dans une table
+	 * @param current la table
+	 * @param hash le code de hachage de l'élément recherché
+	 * @param matches le critère d'égalité avec l'élément recherché
+	 * @return l'élément trouvé ou null
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T probe(Table current,
+	                           int hash,
+	                           Predicate<? super T> matches)
+	{
+		int i = spread(hash) & current.mask;
+		Reference<?> reference;
+		// La lecture de la référence garantit celle du code de hachage
+		while ((reference = current.entries.get(i)) != null)
+		{
+			if (current.hashes[i] == hash)
+			{
+				T element = (T) reference.get();
+				if ((element != null) && matches.test(element))
+				{
+					return element;
+				}
+			}
+			i = (i + 1) & current.mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Libération des cases des éléments détruits par le garbage collector
+	 * (à appeler en possédant le verrou de la factory)
+	 */
+	private void expunge()
+	{
+		Table current = table;
+		Reference<? extends T> reference;
+		while ((reference = queue.poll()) != null)
+		{
+			int i = spread(((Entry<?>) reference).hash) & current.mask;
+			Reference<?> candidate;
+			while ((candidate = current.entries.get(i)) != null)
+			{
+				if (candidate == reference)
+				{
+					current.entries.set(i, Removed);
+					count--;
+					break;
+				}
+				i = (i + 1) & current.mask;
+			}
+			// Une référence absente a été abandonnée lors d'une réorganisation
+		}
+	}
+
+	/**
+	 * Remplacement de la table par une table dimensionnée selon le nombre
+	 * d'éléments encore présents (à appeler en possédant le verrou de la
+	 * factory)
+	 * @param current la table courante
+	 * @return la nouvelle table
+	 */
+	private Table resize(Table current)
+	{
+		int capacity = InitialCapacity;
+		while (capacity < (4 * count))
+		{
+			capacity <<= 1;
+		}
+		Table next = new Table(capacity);
+		int n = 0;
+		for (int j = 0; j <= current.mask; j++)
+		{
+			Reference<?> reference = current.entries.get(j);
+			if ((reference != null) && (reference.get() != null))
+			{
+				int hash = current.hashes[j];
+				int i = spread(hash) & next.mask;
+				while (next.entries.get(i) != null)
+				{
+					i = (i + 1) & next.mask;
+				}
+				next.hashes[i] = hash;
+				next.entries.set(i, reference);
+				n++;
+			}
+		}
+		used = n;
+		count = n;
+		table = next;
+		return next;
+	}
+
+	/**
+	 * Dispersion des bits d'un code de hachage (les codes de hachage
+	 * de {@link java.awt.Color} par exemple ne diffèrent souvent que par leurs
+	 * bits de poids faible)
+	 * @param hash le code de hachage
+	 * @return le code de hachage dispersé
+	 */
+	private static int spread(int hash)
+	{
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
 }
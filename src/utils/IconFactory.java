@@ -1,6 +1,7 @@
 package utils;
 
 import java.net.URL;
+import java.util.function.Predicate;
 
 import javax.swing.ImageIcon;
 
@@ -8,6 +9,9 @@ import javax.swing.ImageIcon;
  * Classe contenant une FlyweigtFactory pour les icônes, afin de pouvoir
  * réutiliser une même icône (chargée à partir d'un fichier image contenu dans
  * le package "images") à plusieurs endroits de l'interface graphique.
+ * Les icônes n'implémentant pas equals, elles sont recherchées dans la factory
+ * par le code de hachage de leur nom et comparées par leur description (qui
+ * contient leur nom).
  * @author davidroussel
  */
 public class IconFactory implements Signature
@@ -41,7 +45,9 @@ public class IconFactory implements Signature
 		if (name.length() > 0)
 		{
 			int hash = name.hashCode();
-			ImageIcon icon = iconFactory.get(hash);
+			Predicate<ImageIcon> named =
+			    (ImageIcon candidate) -> name.equals(candidate.getDescription());
+			ImageIcon icon = iconFactory.find(hash, named);
 			if (icon == null)
 			{
 				URL url = IconFactory.class.getResource(ImageBase + name + ImageType);
@@ -52,7 +58,7 @@ public class IconFactory implements Signature
 						(icon.getImageLoadStatus() == java.awt.MediaTracker.COMPLETE))
 					{
 						icon.setDescription(name);
-						iconFactory.put(hash, icon);
+						return iconFactory.putIfAbsent(hash, icon, named);
 					}
 				}
 				else
@@ -64,7 +70,7 @@ public class IconFactory implements Signature
 					    + ImageType);
 				}
 
-				return iconFactory.get(hash);
+				return null;
 			}
 			else
 			{
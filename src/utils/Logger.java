@@ -0,0 +1,234 @@
+package utils;
+
+import java.io.PrintStream;
+import java.util.function.Supplier;
+
+/**
+ * Journalisation des messages de diagnostic par niveaux.
+ * <ul>
+ * <li>Le niveau minimal des messages affichés est lu une seule fois, dans la
+ * propriété système {@value #LevelProperty} (WARNING par défaut) : les tests
+ * de niveau portent donc sur des constantes que le compilateur JIT élimine,
+ * et un message d'un niveau désactivé ne coûte rien.</li>
+ * <li>Les messages sont fournis par un {@link Supplier} qui n'est évalué que
+ * si le niveau du message est activé.</li>
+ * <li>La classe et la méthode à l'origine du message ne sont recherchées
+ * (avec un {@link StackWalker}) que lorsque le message est affiché, au lieu
+ * de parcourir toute la pile à chaque appel comme
+ * {@link Signature#getMethodName()}.</li>
+ * </ul>
+ * Les messages de niveau {@link Level#WARNING} et {@link Level#ERROR} sont
+ * affichés sur la sortie d'erreur, les autres sur la sortie standard, sous la
+ * forme "[NIVEAU] Classe::méthode message".
+ * @author davidroussel
+ */
+public final class Logger
+{
+	/**
+	 * Niveaux des messages, du plus détaillé au plus grave
+	 */
+	public enum Level
+	{
+		/**
+		 * Suivi détaillé de l'exécution
+		 */
+		TRACE,
+		/**
+		 * Informations de mise au point
+		 */
+		DEBUG,
+		/**
+		 * Informations sur le déroulement du programme
+		 */
+		INFO,
+		/**
+		 * Situation anormale dont le programme peut se remettre
+		 */
+		WARNING,
+		/**
+		 * Erreur
+		 */
+		ERROR,
+		/**
+		 * Aucun message (uniquement comme niveau minimal)
+		 */
+		OFF
+	}
+
+	/**
+	 * Nom de la propriété système contenant le niveau minimal des messages
+	 * affichés (l'un des noms de {@link Level})
+	 */
+	public static final String LevelProperty = "editor.log.level";
+
+	/**
+	 * Niveau minimal des messages affichés
+	 */
+	public static final Level Threshold = threshold();
+
+	/**
+	 * Affichage des messages de niveau {@link Level#TRACE}
+	 */
+	public static final boolean TraceEnabled = Threshold.compareTo(Level.TRACE) <= 0;
+
+	/**
+	 * Affichage des messages de niveau {@link Level#DEBUG}
+	 */
+	public static final boolean DebugEnabled = Threshold.compareTo(Level.DEBUG) <= 0;
+
+	/**
+	 * Affichage des messages de niveau {@link Level#INFO}
+	 */
+	public static final boolean InfoEnabled = Threshold.compareTo(Level.INFO) <= 0;
+
+	/**
+	 * Affichage des messages de niveau {@link Level#WARNING}
+	 */
+	public static final boolean WarningEnabled = Threshold.compareTo(Level.WARNING) <= 0;
+
+	/**
+	 * Affichage des messages de niveau {@link Level#ERROR}
+	 */
+	public static final boolean ErrorEnabled = Threshold.compareTo(Level.ERROR) <= 0;
+
+	/**
+	 * Parcours de la pile pour retrouver l'origine des messages affichés
+	 */
+	private static final StackWalker Walker = StackWalker.getInstance();
+
+	/**
+	 * Nombre de cadres de pile séparant {@link #print(Level, Supplier)} de la
+	 * méthode à l'origine du message (print, méthode de niveau)
+	 */
+	private static final int CallerDepth = 2;
+
+	/**
+	 * Constructeur privé : classe utilitaire
+	 */
+	private Logger()
+	{
+	}
+
+	/**
+	 * Test d'activation d'un niveau de message
+	 * @param level le niveau
+	 * @return true si les messages de ce niveau sont affichés
+	 */
+	public static boolean isEnabled(Level level)
+	{
+		return (level != Level.OFF) && (Threshold.compareTo(level) <= 0);
+	}
+
+	/**
+	 * Message de niveau {@link Level#TRACE}
+	 * @param message le fournisseur du message (évalué seulement si ce niveau
+	 * est activé)
+	 */
+	public static void trace(Supplier<String> message)
+	{
+		if (TraceEnabled)
+		{
+			print(Level.TRACE, message);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#DEBUG}
+	 * @param message le fournisseur du message (évalué seulement si ce niveau
+	 * est activé)
+	 */
+	public static void debug(Supplier<String> message)
+	{
+		if (DebugEnabled)
+		{
+			print(Level.DEBUG, message);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#INFO}
+	 * @param message le fournisseur du message (évalué seulement si ce niveau
+	 * est activé)
+	 */
+	public static void info(Supplier<String> message)
+	{
+		if (InfoEnabled)
+		{
+			print(Level.INFO, message);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#WARNING}
+	 * @param message le fournisseur du message (évalué seulement si ce niveau
+	 * est activé)
+	 */
+	public static void warning(Supplier<String> message)
+	{
+		if (WarningEnabled)
+		{
+			print(Level.WARNING, message);
+		}
+	}
+
+	/**
+	 * Message de niveau {@link Level#ERROR}
+	 * @param message le fournisseur du message (évalué seulement si ce niveau
+	 * est activé)
+	 */
+	public static void error(Supplier<String> message)
+	{
+		if (ErrorEnabled)
+		{
+			print(Level.ERROR, message);
+		}
+	}
+
+	/**
+	 * Affichage d'un message précédé de son niveau et de la méthode à
+	 * son origine
+	 * @param level le niveau du message
+	 * @param message le fournisseur du message
+	 */
+	private static void print(Level level, Supplier<String> message)
+	{
+		StackWalker.StackFrame caller = Walker.walk(
+		    frames -> frames.skip(CallerDepth).findFirst().orElse(null));
+		StringBuilder builder = new StringBuilder();
+		builder.append('[').append(level).append("] ");
+		if (caller != null)
+		{
+			String className = caller.getClassName();
+			builder.append(className.substring(className.lastIndexOf('.') + 1))
+			    .append("::").append(caller.getMethodName()).append(' ');
+		}
+		builder.append(message.get());
+		PrintStream stream = (level.compareTo(Level.WARNING) >= 0 ? System.err
+		                                                         : System.out);
+		stream.println(builder);
+	}
+
+	/**
+	 * Lecture du niveau minimal des messages affichés dans la propriété
+	 * système {@value #LevelProperty}
+	 * @return le niveau minimal lu ou bien {@link Level#WARNING} si la
+	 * propriété est absente ou invalide
+	 */
+	private static Level threshold()
+	{
+		String name = System.getProperty(LevelProperty);
+		if (name != null)
+		{
+			try
+			{
+				return Level.valueOf(name.trim().toUpperCase());
+			}
+			catch (IllegalArgumentException e)
+			{
+				System.err.println(Signature.getClassName(Logger.class)
+				    + "::threshold : unknown level " + name);
+			}
+		}
+		return Level.WARNING;
+	}
+}
@@ -48,6 +48,16 @@ public class PaintFactory
 	private static FlyweightFactory<Paint> paintFactory =
 		new FlyweightFactory<Paint>();
 
+	/**
+	 * Accès à la factory stockant les {@link Paint} (afin de consulter ses
+	 * compteurs de recherches et son nombre d'éléments)
+	 * @return la factory des paints
+	 */
+	public static FlyweightFactory<Paint> getFactory()
+	{
+		return paintFactory;
+	}
+
 	/**
 	 * Obtention d'un {@link Paint} de la factory
 	 * @param paint le paint recherché
@@ -0,0 +1,705 @@
+package utils;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Liste immuable (persistante) à partage de structure.
+ * Les éléments sont stockés dans un arbre AVL dont chaque noeud connaît la
+ * taille de son sous-arbre, ce qui permet d'accéder au i<sup>ème</sup>
+ * élément, de le remplacer, d'insérer ou de retirer un élément à n'importe
+ * quel indice en O(log n). Les opérations de modification
+ * ({@link #plus(Object)}, {@link #plus(int, Object)}, {@link #with(int, Object)}
+ * et {@link #minus(int)}) ne modifient pas la liste : elles renvoient une
+ * nouvelle liste qui partage avec l'ancienne tous les noeuds non concernés
+ * par la modification (seuls les O(log n) noeuds du chemin sont recopiés).
+ * Conserver une version de la liste (pour un historique ou pour la dessiner
+ * pendant que la liste continue d'évoluer) se fait donc en O(1).
+ * Une liste peut être construite avec des éléments différés
+ * ({@link #lazy(int, IntFunction)}) qui ne sont obtenus qu'au moment où ils
+ * sont lus.
+ * Les méthodes de modification de {@link java.util.List} lèvent une
+ * {@link UnsupportedOperationException}.
+ * @param <E> le type des éléments
+ * @author davidroussel
+ */
+public class PersistentVector<E> extends AbstractList<E> implements RandomAccess
+{
+	/**
+	 * Noeud (immuable) de l'arbre
+	 * @param <E> le type des éléments
+	 */
+	private static final class Node<E>
+	{
+		final E value;
+		final Node<E> left;
+		final Node<E> right;
+		final int size;
+		final int height;
+
+		Node(Node<E> left, E value, Node<E> right)
+		{
+			this.left = left;
+			this.value = value;
+			this.right = right;
+			size = size(left) + 1 + size(right);
+			height = Math.max(height(left), height(right)) + 1;
+		}
+	}
+
+	/**
+	 * Élément différé (voir {@link PersistentVector#lazy(int, IntFunction)})
+	 * stocké dans un noeud à la place de l'élément lui même
+	 * @param <E> le type des éléments
+	 */
+	private static final class Deferred<E>
+	{
+		/**
+		 * La fonction fournissant les éléments
+		 */
+		final IntFunction<? extends E> loader;
+
+		/**
+		 * L'indice de l'élément d'après la fonction {@link #loader}
+		 */
+		final int slot;
+
+		Deferred(IntFunction<? extends E> loader, int slot)
+		{
+			this.loader = loader;
+			this.slot = slot;
+		}
+	}
+
+	/**
+	 * La liste vide (partagée par tous les types d'éléments)
+	 */
+	@SuppressWarnings("rawtypes")
+	private static final PersistentVector Empty = new PersistentVector<>(null);
+
+	/**
+	 * La racine de l'arbre (null pour la liste vide)
+	 */
+	private final Node<E> root;
+
+	/**
+	 * Constructeur privé : les listes sont obtenues par {@link #empty()},
+	 * {@link #of(Collection)} ou {@link #of(Object[])} puis par les
+	 * opérations de modification
+	 * @param root la racine de l'arbre
+	 */
+	private PersistentVector(Node<E> root)
+	{
+		this.root = root;
+	}
+
+	/**
+	 * La liste vide
+	 * @param <E> le type des éléments
+	 * @return la liste vide
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentVector<E> empty()
+	{
+		return Empty;
+	}
+
+	/**
+	 * Construction d'une liste (équilibrée) en O(n) à partir d'un tableau
+	 * @param <E> le type des éléments
+	 * @param elements les éléments dans l'ordre de la liste
+	 * @return une nouvelle liste contenant les éléments
+	 */
+	@SafeVarargs
+	@SuppressWarnings("varargs")
+	public static <E> PersistentVector<E> of(E... elements)
+	{
+		if (elements.length == 0)
+		{
+			return empty();
+		}
+		return new PersistentVector<E>(build(elements, 0, elements.length));
+	}
+
+	/**
+	 * Construction d'une liste (équilibrée) en O(n) à partir d'une collection
+	 * @param <E> le type des éléments
+	 * @param elements les éléments dans l'ordre de la liste
+	 * @return une nouvelle liste contenant les éléments
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentVector<E> of(Collection<? extends E> elements)
+	{
+		if (elements instanceof PersistentVector<?>)
+		{
+			return (PersistentVector<E>) elements;
+		}
+		return of((E[]) elements.toArray());
+	}
+
+	/**
+	 * Construction d'une liste (équilibrée) en O(n) dont les éléments sont
+	 * différés : l'élément d'indice i n'est obtenu (par loader.apply(i)) que
+	 * lorsqu'il est lu. Les éléments ne sont pas conservés par la liste :
+	 * loader doit donc renvoyer le même élément pour un même indice tant que
+	 * celui-ci est utilisé (un élément à conserver pouvant être remplacé par
+	 * lui même avec {@link #with(int, Object)}) et pouvoir être appelé depuis
+	 * plusieurs threads si la liste est partagée.
+	 * Les éléments ajoutés ou remplacés par la suite ne sont pas différés.
+	 * @param <E> le type des éléments
+	 * @param size le nombre d'éléments
+	 * @param loader la fonction fournissant l'élément de chaque indice
+	 * @return une nouvelle liste de size éléments différés
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentVector<E> lazy(int size,
+	                                           IntFunction<? extends E> loader)
+	{
+		if (size <= 0)
+		{
+			return empty();
+		}
+		Object[] elements = new Object[size];
+		for (int i = 0; i < size; i++)
+		{
+			elements[i] = new Deferred<E>(loader, i);
+		}
+		return new PersistentVector<E>(build((E[]) elements, 0, size));
+	}
+
+	/**
+	 * Valeur d'un élément stocké dans un noeud (obtention des éléments
+	 * différés)
+	 * @param value l'élément stocké
+	 * @return l'élément lui même
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E> E resolve(E value)
+	{
+		if (value instanceof Deferred<?>)
+		{
+			Deferred<E> deferred = (Deferred<E>) value;
+			return deferred.loader.apply(deferred.slot);
+		}
+		return value;
+	}
+
+	/**
+	 * Construction d'un sous-arbre équilibré
+	 * @param elements les éléments
+	 * @param from l'indice du premier élément (inclus)
+	 * @param to l'indice du dernier élément (exclus)
+	 * @return la racine du sous arbre contenant les éléments [from, to[
+	 */
+	private static <E> Node<E> build(E[] elements, int from, int to)
+	{
+		if (from >= to)
+		{
+			return null;
+		}
+		int middle = (from + to) >>> 1;
+		return new Node<E>(build(elements, from, middle),
+		                   elements[middle],
+		                   build(elements, middle + 1, to));
+	}
+
+	/**
+	 * Taille d'un sous arbre
+	 * @param node la racine du sous arbre
+	 * @return le nombre d'éléments du sous arbre
+	 */
+	private static int size(Node<?> node)
+	{
+		return (node == null ? 0 : node.size);
+	}
+
+	/**
+	 * Hauteur d'un sous arbre
+	 * @param node la racine du sous arbre
+	 * @return la hauteur du sous arbre
+	 */
+	private static int height(Node<?> node)
+	{
+		return (node == null ? 0 : node.height);
+	}
+
+	/**
+	 * Création d'un noeud équilibré à partir de deux sous arbres dont les
+	 * hauteurs diffèrent d'au plus 2 (rotations simples ou doubles)
+	 * @param left le sous arbre gauche
+	 * @param value l'élément du noeud
+	 * @param right le sous arbre droit
+	 * @return un nouveau noeud équilibré contenant left, value puis right
+	 */
+	private static <E> Node<E> balance(Node<E> left, E value, Node<E> right)
+	{
+		int hl = height(left);
+		int hr = height(right);
+		if (hl > hr + 1)
+		{
+			if (height(left.left) >= height(left.right))
+			{
+				return new Node<E>(left.left, left.value,
+				                   new Node<E>(left.right, value, right));
+			}
+			Node<E> lr = left.right;
+			return new Node<E>(new Node<E>(left.left, left.value, lr.left),
+			                   lr.value,
+			                   new Node<E>(lr.right, value, right));
+		}
+		if (hr > hl + 1)
+		{
+			if (height(right.right) >= height(right.left))
+			{
+				return new Node<E>(new Node<E>(left, value, right.left),
+				                   right.value, right.right);
+			}
+			Node<E> rl = right.left;
+			return new Node<E>(new Node<E>(left, value, rl.left),
+			                   rl.value,
+			                   new Node<E>(rl.right, right.value, right.right));
+		}
+		return new Node<E>(left, value, right);
+	}
+
+	/**
+	 * Insertion d'un élément dans un sous arbre
+	 * @param node la racine du sous arbre
+	 * @param index l'indice d'insertion dans le sous arbre
+	 * @param value l'élément à insérer
+	 * @return la racine du nouveau sous arbre
+	 */
+	private static <E> Node<E> insert(Node<E> node, int index, E value)
+	{
+		if (node == null)
+		{
+			return new Node<E>(null, value, null);
+		}
+		int leftSize = size(node.left);
+		if (index <= leftSize)
+		{
+			return balance(insert(node.left, index, value), node.value,
+			               node.right);
+		}
+		return balance(node.left, node.value,
+		               insert(node.right, index - leftSize - 1, value));
+	}
+
+	/**
+	 * Retrait d'un élément d'un sous arbre
+	 * @param node la racine du sous arbre
+	 * @param index l'indice de l'élément à retirer dans le sous arbre
+	 * @return la racine du nouveau sous arbre
+	 */
+	private static <E> Node<E> remove(Node<E> node, int index)
+	{
+		int leftSize = size(node.left);
+		if (index < leftSize)
+		{
+			return balance(remove(node.left, index), node.value, node.right);
+		}
+		if (index > leftSize)
+		{
+			return balance(node.left, node.value,
+			               remove(node.right, index - leftSize - 1));
+		}
+		if (node.left == null)
+		{
+			return node.right;
+		}
+		if (node.right == null)
+		{
+			return node.left;
+		}
+		// remplacement par le successeur
+		return balance(node.left, get(node.right, 0), remove(node.right, 0));
+	}
+
+	/**
+	 * Remplacement d'un élément d'un sous arbre
+	 * @param node la racine du sous arbre
+	 * @param index l'indice de l'élément à remplacer dans le sous arbre
+	 * @param value le nouvel élément
+	 * @return la racine du nouveau sous arbre
+	 */
+	private static <E> Node<E> replace(Node<E> node, int index, E value)
+	{
+		int leftSize = size(node.left);
+		if (index < leftSize)
+		{
+			return new Node<E>(replace(node.left, index, value), node.value,
+			                   node.right);
+		}
+		if (index > leftSize)
+		{
+			return new Node<E>(node.left, node.value,
+			                   replace(node.right, index - leftSize - 1, value));
+		}
+		return new Node<E>(node.left, value, node.right);
+	}
+
+	/**
+	 * Accès à un élément d'un sous arbre (tel qu'il est stocké, éventuellement
+	 * différé)
+	 * @param node la racine du sous arbre
+	 * @param index l'indice de l'élément dans le sous arbre
+	 * @return l'élément stocké
+	 */
+	private static <E> E get(Node<E> node, int index)
+	{
+		while (true)
+		{
+			int leftSize = size(node.left);
+			if (index < leftSize)
+			{
+				node = node.left;
+			}
+			else if (index > leftSize)
+			{
+				index -= leftSize + 1;
+				node = node.right;
+			}
+			else
+			{
+				return node.value;
+			}
+		}
+	}
+
+	/**
+	 * Contrôle d'un indice
+	 * @param index l'indice à contrôler
+	 * @param max la valeur maximum (incluse) de l'indice
+	 * @throws IndexOutOfBoundsException si l'indice n'est pas dans [0, max]
+	 */
+	private static void check(int index, int max)
+	{
+		if ((index < 0) || (index > max))
+		{
+			throw new IndexOutOfBoundsException("Index: " + index
+			    + ", Size: " + (max + 1));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size()
+	{
+		return size(root);
+	}
+
+	/**
+	 * Accès à un élément en O(log n)
+	 * @param index l'indice de l'élément
+	 * @return l'élément à l'indice index
+	 * @throws IndexOutOfBoundsException si l'indice n'est pas valide
+	 */
+	@Override
+	public E get(int index)
+	{
+		check(index, size() - 1);
+		return resolve(get(root, index));
+	}
+
+	/**
+	 * Recherche dichotomique d'un élément en O(log n) dans une liste dont les
+	 * éléments sont triés selon un ordre donné (comme
+	 * {@link java.util.Collections#binarySearch(java.util.List, Object,
+	 * Comparator)},
+	 * mais en descendant directement dans l'arbre). Seuls les éléments du
+	 * chemin parcouru sont obtenus s'ils sont différés.
+	 * @param key l'élément recherché
+	 * @param order l'ordre selon lequel les éléments de la liste sont triés
+	 * @return l'indice d'un élément égal à key selon order s'il y en a un,
+	 * sinon (-(point d'insertion) - 1), le point d'insertion étant l'indice
+	 * auquel key devrait être inséré pour conserver l'ordre de la liste
+	 */
+	public int binarySearch(E key, Comparator<? super E> order)
+	{
+		Node<E> node = root;
+		int index = 0;
+		while (node != null)
+		{
+			int comparison = order.compare(key, resolve(node.value));
+			if (comparison < 0)
+			{
+				node = node.left;
+			}
+			else if (comparison > 0)
+			{
+				index += size(node.left) + 1;
+				node = node.right;
+			}
+			else
+			{
+				return index + size(node.left);
+			}
+		}
+		return -index - 1;
+	}
+
+	/**
+	 * Ajout d'un élément en fin de liste
+	 * @param value l'élément à ajouter
+	 * @return une nouvelle liste contenant les éléments de cette liste suivis
+	 * de value
+	 */
+	public PersistentVector<E> plus(E value)
+	{
+		return plus(size(), value);
+	}
+
+	/**
+	 * Insertion d'un élément
+	 * @param index l'indice de l'élément inséré dans la nouvelle liste
+	 * @param value l'élément à insérer
+	 * @return une nouvelle liste contenant value à l'indice index
+	 * @throws IndexOutOfBoundsException si l'indice n'est pas dans
+	 * [0, size()]
+	 */
+	public PersistentVector<E> plus(int index, E value)
+	{
+		check(index, size());
+		return new PersistentVector<E>(insert(root, index, value));
+	}
+
+	/**
+	 * Remplacement d'un élément
+	 * @param index l'indice de l'élément à remplacer
+	 * @param value le nouvel élément
+	 * @return une nouvelle liste dans laquelle l'élément à l'indice index
+	 * est value
+	 * @throws IndexOutOfBoundsException si l'indice n'est pas valide
+	 */
+	public PersistentVector<E> with(int index, E value)
+	{
+		check(index, size() - 1);
+		return new PersistentVector<E>(replace(root, index, value));
+	}
+
+	/**
+	 * Retrait d'un élément
+	 * @param index l'indice de l'élément à retirer
+	 * @return une nouvelle liste ne contenant plus l'élément à l'indice index
+	 * @throws IndexOutOfBoundsException si l'indice n'est pas valide
+	 */
+	public PersistentVector<E> minus(int index)
+	{
+		check(index, size() - 1);
+		Node<E> newRoot = remove(root, index);
+		return (newRoot == null ? empty() : new PersistentVector<E>(newRoot));
+	}
+
+	/**
+	 * Parcours des éléments dans l'ordre de la liste (sans passer par
+	 * {@link #get(int)}, donc en O(n))
+	 * @param action l'action à appliquer à chaque élément
+	 */
+	@Override
+	public void forEach(Consumer<? super E> action)
+	{
+		forEach(root, action);
+	}
+
+	/**
+	 * Parcours infixe d'un sous arbre
+	 * @param node la racine du sous arbre
+	 * @param action l'action à appliquer à chaque élément
+	 */
+	private static <E> void forEach(Node<E> node, Consumer<? super E> action)
+	{
+		while (node != null)
+		{
+			forEach(node.left, action);
+			action.accept(resolve(node.value));
+			node = node.right;
+		}
+	}
+
+	/**
+	 * Parcours des seuls éléments non différés dans l'ordre de la liste : les
+	 * éléments différés ({@link #lazy(int, IntFunction)}) ne sont pas obtenus
+	 * mais seulement comptés
+	 * @param action l'action à appliquer à chaque élément non différé
+	 * @return le nombre d'éléments différés de la liste
+	 */
+	public int forEachPresent(Consumer<? super E> action)
+	{
+		return forEachPresentIndexed((E element, int index) ->
+		    action.accept(element));
+	}
+
+	/**
+	 * Parcours des seuls éléments non différés dans l'ordre de la liste avec
+	 * leurs indices : les éléments différés ({@link #lazy(int, IntFunction)})
+	 * ne sont pas obtenus mais seulement comptés
+	 * @param action l'action à appliquer à chaque élément non différé et à
+	 * son indice
+	 * @return le nombre d'éléments différés de la liste
+	 */
+	public int forEachPresentIndexed(ObjIntConsumer<? super E> action)
+	{
+		int deferred = 0;
+		int index = 0;
+		Deque<Node<E>> stack = new ArrayDeque<Node<E>>();
+		Node<E> node = root;
+		while ((node != null) || !stack.isEmpty())
+		{
+			while (node != null)
+			{
+				stack.push(node);
+				node = node.left;
+			}
+			node = stack.pop();
+			if (node.value instanceof Deferred<?>)
+			{
+				deferred++;
+			}
+			else
+			{
+				action.accept(node.value, index);
+			}
+			index++;
+			node = node.right;
+		}
+		return deferred;
+	}
+
+	/**
+	 * Estimation du nombre de noeuds de cette liste qui ne sont pas partagés
+	 * avec une autre version de la liste (dont elle a été obtenue ou qui a
+	 * été obtenue d'elle). Les deux arbres sont parcourus simultanément en
+	 * s'arrêtant aux sous-arbres communs : le coût est proportionnel au
+	 * nombre de noeuds recopiés entre les deux versions. Un sous-arbre commun
+	 * déplacé par une rotation est recherché parmi les deux premiers niveaux
+	 * du sous-arbre correspondant de l'autre version, au delà il est compté
+	 * comme non partagé (l'estimation est alors par excès).
+	 * Les éléments (même différés) ne sont pas obtenus.
+	 * @param other l'autre version de la liste (ou null)
+	 * @return le nombre estimé de noeuds de cette liste absents de other
+	 */
+	public int unsharedNodes(PersistentVector<E> other)
+	{
+		return unshared(root, (other != null ? other.root : null));
+	}
+
+	/**
+	 * Estimation du nombre de noeuds d'un sous-arbre absents d'un autre
+	 * sous-arbre
+	 * @param node le sous-arbre dont on compte les noeuds
+	 * @param other le sous-arbre correspondant de l'autre version
+	 * @return le nombre estimé de noeuds de node absents de other
+	 */
+	private static int unshared(Node<?> node, Node<?> other)
+	{
+		if ((node == null) || (node == other))
+		{
+			return 0;
+		}
+		if (other == null)
+		{
+			return node.size;
+		}
+		return 1 + unshared(node.left, match(node.left, other, other.left))
+		    + unshared(node.right, match(node.right, other, other.right));
+	}
+
+	/**
+	 * Recherche d'un sous-arbre parmi un noeud et ses descendants sur deux
+	 * niveaux
+	 * @param node le sous-arbre recherché
+	 * @param other le noeud parmi les descendants duquel chercher node
+	 * @param fallback le sous-arbre renvoyé si node n'est pas trouvé
+	 * @return node s'il est trouvé, fallback sinon
+	 */
+	private static Node<?> match(Node<?> node, Node<?> other, Node<?> fallback)
+	{
+		if ((node == null) || (node == other))
+		{
+			return node;
+		}
+		for (Node<?> child : new Node<?>[] {other.left, other.right})
+		{
+			if (child != null)
+			{
+				if ((node == child) || (node == child.left)
+				    || (node == child.right))
+				{
+					return node;
+				}
+			}
+		}
+		return fallback;
+	}
+
+	/**
+	 * Itérateur (en lecture seule) parcourant l'arbre en O(n)
+	 * @return un itérateur sur les éléments de la liste
+	 */
+	@Override
+	public Iterator<E> iterator()
+	{
+		return new Iterator<E>()
+		{
+			/**
+			 * Noeuds dont l'élément et le sous arbre droit restent à parcourir
+			 */
+			private final Deque<Node<E>> stack = new ArrayDeque<Node<E>>();
+
+			{
+				pushLeft(root);
+			}
+
+			private void pushLeft(Node<E> node)
+			{
+				while (node != null)
+				{
+					stack.push(node);
+					node = node.left;
+				}
+			}
+
+			@Override
+			public boolean hasNext()
+			{
+				return !stack.isEmpty();
+			}
+
+			@Override
+			public E next()
+			{
+				if (stack.isEmpty())
+				{
+					throw new NoSuchElementException();
+				}
+				Node<E> node = stack.pop();
+				pushLeft(node.right);
+				return resolve(node.value);
+			}
+		};
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.List#spliterator()
+	 */
+	@Override
+	public Spliterator<E> spliterator()
+	{
+		return Spliterators.spliterator(iterator(), size(),
+		                                Spliterator.ORDERED
+		                                    | Spliterator.IMMUTABLE);
+	}
+}
@@ -0,0 +1,808 @@
+package utils;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Index spatial (R-tree de Guttman avec découpage quadratique) associant des
+ * éléments à leur rectangle englobant.
+ * Les éléments sont identifiés par leur référence (et non par
+ * {@link Object#equals(Object)}), ce qui permet d'indexer des objets mutables
+ * dont le hashCode change au cours du temps (comme les figures).
+ * Les requêtes (par point ou par rectangle) ne parcourent que les branches
+ * dont le rectangle englobant intersecte la zone recherchée, ce qui permet
+ * d'obtenir un coût en O(log n) pour des éléments raisonnablement répartis.
+ * Un grand nombre d'éléments peut être indexé d'un coup
+ * ({@link #load(int, double[], IntFunction, ToIntFunction)}) en construisant
+ * l'arbre par tri (Sort-Tile-Recursive) plutôt que par insertions
+ * successives. Les éléments ainsi indexés peuvent être différés : ils ne sont
+ * obtenus qu'au moment où une recherche les atteint, et ne sont pas conservés
+ * par l'index.
+ * @param <E> le type des éléments indexés
+ * @author davidroussel
+ */
+public class RTree<E>
+{
+	/**
+	 * Nombre maximum d'entrées par noeud
+	 */
+	private static final int MaxEntries = 16;
+
+	/**
+	 * Nombre minimum d'entrées par noeud (hors racine)
+	 */
+	private static final int MinEntries = 6;
+
+	/**
+	 * Boîte englobante commune aux noeuds et aux entrées de l'arbre
+	 */
+	private static abstract class Box
+	{
+		double minX;
+		double minY;
+		double maxX;
+		double maxY;
+
+		/**
+		 * Le noeud contenant cette boîte (null pour la racine)
+		 */
+		Node parent;
+
+		double area()
+		{
+			return (maxX - minX) * (maxY - minY);
+		}
+
+		double enlargement(Box b)
+		{
+			double w = Math.max(maxX, b.maxX) - Math.min(minX, b.minX);
+			double h = Math.max(maxY, b.maxY) - Math.min(minY, b.minY);
+			return (w * h) - area();
+		}
+
+		boolean intersects(double x0, double y0, double x1, double y1)
+		{
+			return (minX <= x1) && (maxX >= x0) && (minY <= y1) && (maxY >= y0);
+		}
+	}
+
+	/**
+	 * Entrée terminale de l'arbre : un élément et son rectangle englobant
+	 */
+	private static final class Entry<E> extends Box
+	{
+		/**
+		 * L'élément (null pour un élément différé, obtenu à chaque recherche)
+		 */
+		E item;
+
+		/**
+		 * Indice d'un élément différé (voir {@link RTree#deferred})
+		 */
+		int slot;
+
+		Entry(E item)
+		{
+			this.item = item;
+			slot = -1;
+		}
+	}
+
+	/**
+	 * Noeud de l'arbre contenant soit des {@link Entry} (feuille) soit
+	 * d'autres {@link Node}
+	 */
+	private static final class Node extends Box
+	{
+		final boolean leaf;
+		final Box[] children = new Box[MaxEntries + 1];
+		int count;
+
+		Node(boolean leaf)
+		{
+			this.leaf = leaf;
+			clearBounds();
+		}
+
+		void clearBounds()
+		{
+			minX = Double.POSITIVE_INFINITY;
+			minY = Double.POSITIVE_INFINITY;
+			maxX = Double.NEGATIVE_INFINITY;
+			maxY = Double.NEGATIVE_INFINITY;
+		}
+
+		void add(Box b)
+		{
+			children[count++] = b;
+			b.parent = this;
+			include(b);
+		}
+
+		void include(Box b)
+		{
+			minX = Math.min(minX, b.minX);
+			minY = Math.min(minY, b.minY);
+			maxX = Math.max(maxX, b.maxX);
+			maxY = Math.max(maxY, b.maxY);
+		}
+
+		void remove(Box b)
+		{
+			for (int i = 0; i < count; i++)
+			{
+				if (children[i] == b)
+				{
+					children[i] = children[--count];
+					children[count] = null;
+					b.parent = null;
+					return;
+				}
+			}
+		}
+
+		void recomputeBounds()
+		{
+			clearBounds();
+			for (int i = 0; i < count; i++)
+			{
+				include(children[i]);
+			}
+		}
+	}
+
+	/**
+	 * La racine de l'arbre
+	 */
+	private Node root;
+
+	/**
+	 * Association entre les éléments indexés et leurs entrées dans l'arbre
+	 * (par référence)
+	 */
+	private Map<E, Entry<E>> entries;
+
+	/**
+	 * Entrées des éléments différés (par indice), dont les éléments sont
+	 * obtenus par {@link #loader} à chaque fois qu'ils sont atteints et ne
+	 * figurent donc pas dans {@link #entries}, ou null s'il n'y a pas
+	 * d'éléments différés
+	 * @see #load(int, double[], IntFunction, ToIntFunction)
+	 */
+	private Entry<E>[] deferred;
+
+	/**
+	 * Nombre d'entrées de {@link #deferred}
+	 */
+	private int deferredCount;
+
+	/**
+	 * Fonction fournissant les éléments différés à partir de leurs indices
+	 */
+	private IntFunction<? extends E> loader;
+
+	/**
+	 * Fonction fournissant l'indice d'un élément différé (ou -1)
+	 */
+	private ToIntFunction<? super E> slots;
+
+	/**
+	 * Constructeur d'un index spatial vide
+	 */
+	public RTree()
+	{
+		root = new Node(true);
+		entries = new IdentityHashMap<E, Entry<E>>();
+		deferred = null;
+		deferredCount = 0;
+		loader = null;
+		slots = null;
+	}
+
+	/**
+	 * Nombre d'éléments indexés
+	 * @return le nombre d'éléments indexés
+	 */
+	public int size()
+	{
+		return entries.size() + deferredCount;
+	}
+
+	/**
+	 * Indique si un élément est indexé
+	 * @param item l'élément recherché
+	 * @return true si l'élément est présent dans l'index
+	 */
+	public boolean contains(E item)
+	{
+		return entry(item) != null;
+	}
+
+	/**
+	 * Entrée d'un élément
+	 * @param item l'élément recherché
+	 * @return l'entrée de l'élément (éventuellement différée) ou bien null si
+	 * l'élément n'est pas indexé
+	 */
+	private Entry<E> entry(E item)
+	{
+		Entry<E> entry = entries.get(item);
+		if ((entry == null) && (deferredCount > 0) && (item != null))
+		{
+			int slot = slots.applyAsInt(item);
+			if ((slot >= 0) && (slot < deferred.length)
+			    && (deferred[slot] != null) && (loader.apply(slot) == item))
+			{
+				entry = deferred[slot];
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Retrait d'une entrée des entrées différées (avant qu'elle ne soit
+	 * retirée de l'index ou associée explicitement à son élément)
+	 * @param entry l'entrée différée
+	 */
+	private void undefer(Entry<E> entry)
+	{
+		deferred[entry.slot] = null;
+		entry.slot = -1;
+		if (--deferredCount == 0)
+		{
+			deferred = null;
+			loader = null;
+			slots = null;
+		}
+	}
+
+	/**
+	 * Rectangle englobant sous lequel un élément est indexé
+	 * @param item l'élément recherché
+	 * @return une copie du rectangle englobant de l'élément ou bien null si
+	 * l'élément n'est pas indexé
+	 */
+	public Rectangle2D getBounds(E item)
+	{
+		Entry<E> entry = entry(item);
+		if (entry != null)
+		{
+			return new Rectangle2D.Double(entry.minX,
+			                              entry.minY,
+			                              entry.maxX - entry.minX,
+			                              entry.maxY - entry.minY);
+		}
+		return null;
+	}
+
+	/**
+	 * Ajout ou mise à jour d'un élément dans l'index
+	 * @param item l'élément à indexer
+	 * @param bounds le rectangle englobant de l'élément
+	 */
+	public void put(E item, Rectangle2D bounds)
+	{
+		if ((item == null) || (bounds == null))
+		{
+			return;
+		}
+
+		Entry<E> entry = entry(item);
+		if (entry != null)
+		{
+			if ((entry.minX == bounds.getMinX()) &&
+			    (entry.minY == bounds.getMinY()) &&
+			    (entry.maxX == bounds.getMaxX()) &&
+			    (entry.maxY == bounds.getMaxY()))
+			{
+				return;
+			}
+			removeEntry(entry);
+			if (entry.item == null)
+			{
+				undefer(entry);
+				entry.item = item;
+				entries.put(item, entry);
+			}
+		}
+		else
+		{
+			entry = new Entry<E>(item);
+			entries.put(item, entry);
+		}
+
+		entry.minX = bounds.getMinX();
+		entry.minY = bounds.getMinY();
+		entry.maxX = bounds.getMaxX();
+		entry.maxY = bounds.getMaxY();
+		insert(entry);
+	}
+
+	/**
+	 * Retrait d'un élément de l'index
+	 * @param item l'élément à retirer
+	 * @return true si l'élément était indexé et a été retiré
+	 */
+	public boolean remove(E item)
+	{
+		Entry<E> entry = entry(item);
+		if (entry != null)
+		{
+			if (entry.item == null)
+			{
+				undefer(entry);
+			}
+			else
+			{
+				entries.remove(item);
+			}
+			removeEntry(entry);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Effacement de l'index
+	 */
+	public void clear()
+	{
+		root = new Node(true);
+		entries.clear();
+		deferred = null;
+		deferredCount = 0;
+		loader = null;
+		slots = null;
+	}
+
+	/**
+	 * Remplacement du contenu de l'index par un ensemble d'éléments différés
+	 * dont les rectangles englobants sont connus. L'arbre est construit en
+	 * O(n log n) par tri (Sort-Tile-Recursive) : les entrées sont triées selon
+	 * l'abscisse de leur centre, découpées en tranches verticales elles mêmes
+	 * triées selon l'ordonnée puis regroupées par {@link #MaxEntries}, et ainsi
+	 * de suite pour chaque niveau de l'arbre.
+	 * Les éléments ne sont obtenus (avec items) qu'au moment où une recherche
+	 * les atteint ou lorsqu'ils sont passés à l'une des méthodes de l'index,
+	 * et ne sont pas conservés par l'index : ils sont obtenus à nouveau à
+	 * chaque recherche tant qu'ils n'ont pas été ajoutés explicitement
+	 * ({@link #put(Object, Rectangle2D)}).
+	 * @param count le nombre d'éléments
+	 * @param bounds les rectangles englobants des éléments (minX, minY, maxX,
+	 * maxY pour chaque élément)
+	 * @param items la fonction fournissant l'élément de chaque indice (qui
+	 * doit renvoyer le même élément pour un même indice tant que celui-ci est
+	 * utilisé)
+	 * @param slots la fonction fournissant l'indice d'un élément obtenu par
+	 * items (ou -1 pour tout autre élément)
+	 */
+	@SuppressWarnings("unchecked")
+	public void load(int count,
+	                 double[] bounds,
+	                 IntFunction<? extends E> items,
+	                 ToIntFunction<? super E> slots)
+	{
+		clear();
+		if (count <= 0)
+		{
+			return;
+		}
+		deferred = (Entry<E>[]) new Entry<?>[count];
+		for (int i = 0; i < count; i++)
+		{
+			Entry<E> entry = new Entry<E>(null);
+			entry.slot = i;
+			entry.minX = bounds[4 * i];
+			entry.minY = bounds[(4 * i) + 1];
+			entry.maxX = bounds[(4 * i) + 2];
+			entry.maxY = bounds[(4 * i) + 3];
+			deferred[i] = entry;
+		}
+		deferredCount = count;
+		loader = items;
+		this.slots = slots;
+
+		Box[] level = Arrays.copyOf(deferred, count, Box[].class);
+		boolean leaf = true;
+		do
+		{
+			level = pack(level, leaf);
+			leaf = false;
+		}
+		while (level.length > 1);
+		root = (Node) level[0];
+		root.parent = null;
+	}
+
+	/**
+	 * Regroupement (Sort-Tile-Recursive) d'un niveau de boîtes dans des
+	 * noeuds d'au plus {@link #MaxEntries} boîtes
+	 * @param boxes les boîtes à regrouper
+	 * @param leaf true si les boîtes sont des entrées terminales
+	 * @return les noeuds du niveau supérieur
+	 */
+	private static Box[] pack(Box[] boxes, boolean leaf)
+	{
+		int n = boxes.length;
+		int nodeCount = (n + MaxEntries - 1) / MaxEntries;
+		int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+		int sliceSize = sliceCount * MaxEntries;
+
+		// Tri (de types primitifs) des indices des boîtes selon leur centre
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++)
+		{
+			keys[i] = sortKey(boxes[i].minX + boxes[i].maxX, i);
+		}
+		Arrays.sort(keys);
+
+		Box[] nodes = new Box[nodeCount + sliceCount];
+		int nodeIndex = 0;
+		for (int from = 0; from < n; from += sliceSize)
+		{
+			int to = Math.min(from + sliceSize, n);
+			for (int i = from; i < to; i++)
+			{
+				Box box = boxes[(int) keys[i]];
+				keys[i] = sortKey(box.minY + box.maxY, (int) keys[i]);
+			}
+			Arrays.sort(keys, from, to);
+			for (int i = from; i < to; i += MaxEntries)
+			{
+				Node node = new Node(leaf);
+				for (int j = i; j < Math.min(i + MaxEntries, to); j++)
+				{
+					node.add(boxes[(int) keys[j]]);
+				}
+				nodes[nodeIndex++] = node;
+			}
+		}
+		return Arrays.copyOf(nodes, nodeIndex);
+	}
+
+	/**
+	 * Clé de tri associant une coordonnée et un indice : les clés sont
+	 * ordonnées comme les coordonnées (en simple précision) et l'indice
+	 * occupe les 32 bits de poids faible
+	 * @param value la coordonnée
+	 * @param index l'indice associé
+	 * @return la clé de tri
+	 */
+	private static long sortKey(double value, int index)
+	{
+		int bits = Float.floatToIntBits((float) value);
+		// Les flottants négatifs sont ordonnés à l'envers de leurs bits
+		bits ^= (bits >> 31) & 0x7FFFFFFF;
+		return ((long) bits << 32) | (index & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Recherche des éléments dont le rectangle englobant contient le point p
+	 * @param p le point recherché
+	 * @param action l'action à appliquer à chacun des éléments trouvés (dans
+	 * un ordre quelconque)
+	 */
+	public void search(Point2D p, Consumer<? super E> action)
+	{
+		double x = p.getX();
+		double y = p.getY();
+		search(x, y, x, y, action);
+	}
+
+	/**
+	 * Recherche des éléments dont le rectangle englobant intersecte une zone
+	 * @param area la zone recherchée
+	 * @param action l'action à appliquer à chacun des éléments trouvés (dans
+	 * un ordre quelconque)
+	 */
+	public void search(Rectangle2D area, Consumer<? super E> action)
+	{
+		search(area.getMinX(), area.getMinY(), area.getMaxX(), area.getMaxY(),
+		       action);
+	}
+
+	/**
+	 * Recherche des éléments dont le rectangle englobant intersecte la zone
+	 * [x0, x1] x [y0, y1]
+	 * @param x0 abcisse minimale de la zone
+	 * @param y0 ordonnée minimale de la zone
+	 * @param x1 abcisse maximale de la zone
+	 * @param y1 ordonnée maximale de la zone
+	 * @param action l'action à appliquer à chacun des éléments trouvés
+	 */
+	public void search(double x0, double y0, double x1, double y1,
+	                   Consumer<? super E> action)
+	{
+		if (size() > 0)
+		{
+			search(root, x0, y0, x1, y1, action);
+		}
+	}
+
+	/**
+	 * Recherche récursive (sans allocation) dans un sous-arbre
+	 * @param node la racine du sous-arbre
+	 * @param x0 abcisse minimale de la zone
+	 * @param y0 ordonnée minimale de la zone
+	 * @param x1 abcisse maximale de la zone
+	 * @param y1 ordonnée maximale de la zone
+	 * @param action l'action à appliquer à chacun des éléments trouvés
+	 */
+	@SuppressWarnings("unchecked")
+	private void search(Node node, double x0, double y0, double x1, double y1,
+	                    Consumer<? super E> action)
+	{
+		for (int i = 0; i < node.count; i++)
+		{
+			Box child = node.children[i];
+			if (child.intersects(x0, y0, x1, y1))
+			{
+				if (node.leaf)
+				{
+					Entry<E> entry = (Entry<E>) child;
+					action.accept(entry.item != null ? entry.item
+					                                 : loader.apply(entry.slot));
+				}
+				else
+				{
+					search((Node) child, x0, y0, x1, y1, action);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Insertion d'une entrée terminale dans la feuille la plus adaptée puis
+	 * propagation des éventuels découpages de noeuds vers la racine
+	 * @param entry l'entrée à insérer
+	 */
+	private void insert(Entry<E> entry)
+	{
+		Node node = root;
+		while (!node.leaf)
+		{
+			Box best = null;
+			double bestEnlargement = Double.POSITIVE_INFINITY;
+			double bestArea = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < node.count; i++)
+			{
+				Box child = node.children[i];
+				double enlargement = child.enlargement(entry);
+				double area = child.area();
+				if ((enlargement < bestEnlargement) ||
+				    ((enlargement == bestEnlargement) && (area < bestArea)))
+				{
+					best = child;
+					bestEnlargement = enlargement;
+					bestArea = area;
+				}
+			}
+			node = (Node) best;
+		}
+
+		node.add(entry);
+		adjust(node);
+	}
+
+	/**
+	 * Remontée vers la racine après une insertion : découpage des noeuds
+	 * trop pleins et mise à jour des rectangles englobants
+	 * @param node le noeud modifié
+	 */
+	private void adjust(Node node)
+	{
+		while (node != null)
+		{
+			Node parent = node.parent;
+			if (node.count > MaxEntries)
+			{
+				Node sibling = split(node);
+				if (parent == null)
+				{
+					root = new Node(false);
+					root.add(node);
+					root.add(sibling);
+					return;
+				}
+				parent.add(sibling);
+				parent.recomputeBounds();
+			}
+			else if (parent != null)
+			{
+				parent.include(node);
+			}
+			node = parent;
+		}
+	}
+
+	/**
+	 * Découpage quadratique d'un noeud trop plein
+	 * @param node le noeud à découper (conserve une partie des enfants)
+	 * @return le nouveau noeud contenant l'autre partie des enfants
+	 */
+	private Node split(Node node)
+	{
+		int n = node.count;
+		Box[] boxes = new Box[n];
+		System.arraycopy(node.children, 0, boxes, 0, n);
+
+		// Choix des deux germes gaspillant le plus de surface
+		int seed1 = 0;
+		int seed2 = 1;
+		double worst = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++)
+		{
+			for (int j = i + 1; j < n; j++)
+			{
+				double w = Math.max(boxes[i].maxX, boxes[j].maxX)
+				    - Math.min(boxes[i].minX, boxes[j].minX);
+				double h = Math.max(boxes[i].maxY, boxes[j].maxY)
+				    - Math.min(boxes[i].minY, boxes[j].minY);
+				double waste = (w * h) - boxes[i].area() - boxes[j].area();
+				if (waste > worst)
+				{
+					worst = waste;
+					seed1 = i;
+					seed2 = j;
+				}
+			}
+		}
+
+		for (int i = 0; i < n; i++)
+		{
+			node.children[i] = null;
+		}
+		node.count = 0;
+		node.clearBounds();
+		Node sibling = new Node(node.leaf);
+		node.add(boxes[seed1]);
+		sibling.add(boxes[seed2]);
+		boxes[seed1] = null;
+		boxes[seed2] = null;
+
+		int remaining = n - 2;
+		while (remaining > 0)
+		{
+			// Si l'un des groupes doit prendre tout le reste pour atteindre
+			// le minimum d'entrées on lui affecte directement
+			Node forced = null;
+			if ((node.count + remaining) == MinEntries)
+			{
+				forced = node;
+			}
+			else if ((sibling.count + remaining) == MinEntries)
+			{
+				forced = sibling;
+			}
+
+			if (forced != null)
+			{
+				for (int i = 0; i < n; i++)
+				{
+					if (boxes[i] != null)
+					{
+						forced.add(boxes[i]);
+						boxes[i] = null;
+					}
+				}
+				break;
+			}
+
+			// Choix de l'entrée ayant la plus forte préférence pour un groupe
+			int next = -1;
+			double maxDiff = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < n; i++)
+			{
+				if (boxes[i] != null)
+				{
+					double diff = Math.abs(node.enlargement(boxes[i])
+					    - sibling.enlargement(boxes[i]));
+					if (diff > maxDiff)
+					{
+						maxDiff = diff;
+						next = i;
+					}
+				}
+			}
+
+			Box b = boxes[next];
+			boxes[next] = null;
+			double e1 = node.enlargement(b);
+			double e2 = sibling.enlargement(b);
+			if ((e1 < e2) ||
+			    ((e1 == e2) && (node.area() < sibling.area())) ||
+			    ((e1 == e2) && (node.area() == sibling.area()) &&
+			     (node.count <= sibling.count)))
+			{
+				node.add(b);
+			}
+			else
+			{
+				sibling.add(b);
+			}
+			remaining--;
+		}
+
+		return sibling;
+	}
+
+	/**
+	 * Retrait d'une entrée terminale de l'arbre puis condensation de l'arbre :
+	 * les noeuds devenus trop peu remplis sont retirés et leurs entrées
+	 * réinsérées.
+	 * @param entry l'entrée à retirer
+	 */
+	@SuppressWarnings("unchecked")
+	private void removeEntry(Entry<E> entry)
+	{
+		Node node = entry.parent;
+		if (node == null)
+		{
+			return;
+		}
+		node.remove(entry);
+
+		List<Entry<E>> orphans = new ArrayList<Entry<E>>();
+		while (node != root)
+		{
+			Node parent = node.parent;
+			if (node.count < MinEntries)
+			{
+				parent.remove(node);
+				collect(node, orphans);
+			}
+			else
+			{
+				node.recomputeBounds();
+			}
+			node = parent;
+		}
+		root.recomputeBounds();
+
+		while (!root.leaf && (root.count == 1))
+		{
+			root = (Node) root.children[0];
+			root.parent = null;
+		}
+		if (!root.leaf && (root.count == 0))
+		{
+			root = new Node(true);
+		}
+
+		for (Entry<E> orphan : orphans)
+		{
+			insert(orphan);
+		}
+	}
+
+	/**
+	 * Collecte de toutes les entrées terminales d'un sous-arbre
+	 * @param node la racine du sous-arbre
+	 * @param result la liste dans laquelle ajouter les entrées
+	 */
+	@SuppressWarnings("unchecked")
+	private void collect(Node node, List<Entry<E>> result)
+	{
+		for (int i = 0; i < node.count; i++)
+		{
+			Box child = node.children[i];
+			child.parent = null;
+			if (node.leaf)
+			{
+				result.add((Entry<E>) child);
+			}
+			else
+			{
+				collect((Node) child, result);
+			}
+		}
+	}
+}
@@ -31,37 +31,38 @@ public interface Signature
 	 * Method name accessor.
 	 * To be called from static methods
 	 * @return the name of the method calling this method based on
-	 * the stack trace
+	 * the call stack
 	 */
 	public static String getStaticMethodName()
 	{
-		StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-		if (stackTrace.length >= 2)
-		{
-			return stackTrace[2].getMethodName();
-		}
-		else
-		{
-			return new String();
-		}
+		return callerName();
 	}
 
 	/**
 	 * Method name accessor.
 	 * To be called from instance methods
 	 * @return the name of the method calling this method based on
-	 * the stack trace
+	 * the call stack
 	 */
 	public default String getMethodName()
 	{
-		StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-		if (stackTrace.length >= 2)
-		{
-			return stackTrace[2].getMethodName();
-		}
-		else
-		{
-			return new String();
-		}
+		return callerName();
+	}
+
+	/**
+	 * Name of the method calling the method calling this method, obtained
+	 * with a {@link StackWalker} which only walks the required frames instead
+	 * of capturing the whole stack trace
+	 * @return the name of the calling method or an empty string if there is
+	 * no such method
+	 * @see Logger to print messages whose caller is only resolved when they
+	 * are enabled
+	 */
+	private static String callerName()
+	{
+		return StackWalker.getInstance().walk(frames -> frames.skip(2)
+		    .findFirst()
+		    .map(StackWalker.StackFrame::getMethodName)
+		    .orElse(""));
 	}
 }
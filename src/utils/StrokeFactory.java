@@ -17,6 +17,16 @@ public class StrokeFactory
 	private static FlyweightFactory<BasicStroke> strokeFactory =
 		new FlyweightFactory<BasicStroke>();
 
+	/**
+	 * Accès à la factory stockant les {@link BasicStroke} (afin de consulter ses
+	 * compteurs de recherches et son nombre d'éléments)
+	 * @return la factory des strokes
+	 */
+	public static FlyweightFactory<BasicStroke> getFactory()
+	{
+		return strokeFactory;
+	}
+
 	/**
 	 * Obtention d'un {@link BasicStroke} de la factory
 	 * @param stroke le paint recherché
@@ -5,6 +5,7 @@
  * 	<li>une usine à icônes : {@link utils.IconFactory}</li>
  * 	<li>une usine à Paint : {@link utils.PaintFactory}</li>
  * 	<li>une usine à Stroke : {@link utils.StrokeFactory}</li>
+ * 	<li>la journalisation des messages de diagnostic : {@link utils.Logger}</li>
  * </ul>
  */
 package utils;
\ No newline at end of file
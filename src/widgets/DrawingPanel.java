@@ -1,34 +1,58 @@
 package widgets;
 
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.awt.event.InputEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.VolatileImage;
 import java.text.DecimalFormat;
-import java.util.Observable;
-import java.util.Observer;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 
 import figures.Drawing;
+import figures.DrawingEvent;
+import figures.DrawingListener;
 import figures.Figure;
+import figures.LevelOfDetail;
+import figures.SpriteCache;
+import figures.enums.DrawingEventType;
 import figures.listeners.AbstractFigureListener;
+import figures.listeners.DrawingMouseEvent;
 import figures.listeners.creation.AbstractCreationListener;
+import utils.Logger;
 import utils.Signature;
+import widgets.enums.RenderMode;
 
 /**
  * Panel de dessin des figures (Vue): mis à jour par modèle des figures (
- * {@link Drawing}) au travers d'un observateur. On attache des Listeners
+ * {@link Drawing}) dont il écoute les modifications ({@link DrawingListener}). On attache des Listeners
  * (Controleurs) à ce Panel pour :
  * <dl>
  * <dt>Attachements statiques :</dt>
@@ -42,10 +66,22 @@ import utils.Signature;
  * pour traduire les évènements souris en instructions pour le modèle de dessin
  * lors de la création d'une nouvelle figure.
  * </dl>
+ * Le dessin des figures peut être réalisé directement par le thread de Swing
+ * ou bien par un thread de rendu en arrière plan (voir {@link RenderMode}).
+ * Pendant la transformation interactive d'une figure
+ * ({@link Drawing#getActiveFigure()}), les figures situées sous et au dessus
+ * de celle-ci sont conservées dans deux calques et seule la figure
+ * transformée est redessinée.
+ * La vue peut être déplacée (glisser avec le bouton du milieu) et zoomée
+ * (molette de la souris) : les figures sont dessinées au travers de la
+ * transformation de la vue ({@link #getView()}) et seules les figures
+ * visibles dans le panel sont dessinées. Les listeners de figures reçoivent
+ * des évènements souris exprimés dans les coordonnées du dessin.
  * @author davidroussel
  */
 public class DrawingPanel extends JPanel
-    implements Observer, MouseListener, MouseMotionListener, Signature
+    implements DrawingListener, MouseListener, MouseMotionListener,
+    MouseWheelListener, Signature
 {
 	/**
 	 * Serializable class must have a serial version UID
@@ -76,6 +112,10 @@ public class DrawingPanel extends JPanel
 		public void componentResized(ComponentEvent e)
 		{
 			size = e.getComponent().getSize();
+			if (renderer != null)
+			{
+				requestFrame();
+			}
 		}
 	}
 
@@ -116,6 +156,201 @@ public class DrawingPanel extends JPanel
 	 */
 	private boolean sendInfoState;
 
+	/**
+	 * Marge (en pixels) ajoutée autour des zones endommagées signalées par le
+	 * modèle afin d'englober le soulignement des figures sélectionnées ainsi
+	 * que l'antialiasing
+	 */
+	private final static int damageMargin = 3;
+
+	/**
+	 * Types des modifications du dessin qui ne concernent que la figure en
+	 * cours de transformation et conservent donc les calques
+	 */
+	private final static Set<DrawingEventType> dragTypes =
+	    EnumSet.of(DrawingEventType.FIGURE_TRANSFORMED);
+
+	/**
+	 * Couleur du contour de la zone de sélection en cours de tracé
+	 */
+	private final static Color selectionAreaEdge = new Color(0, 120, 215);
+
+	/**
+	 * Couleur (translucide) de l'intérieur de la zone de sélection en cours
+	 * de tracé
+	 */
+	private final static Color selectionAreaFill = new Color(0, 120, 215, 40);
+
+	/**
+	 * Facteur de zoom minimum de la vue
+	 */
+	public final static double minZoom = 1.0 / 32.0;
+
+	/**
+	 * Facteur de zoom maximum de la vue
+	 */
+	public final static double maxZoom = 32.0;
+
+	/**
+	 * Facteur de zoom appliqué pour chaque cran de la molette de la souris
+	 */
+	public final static double zoomStep = 1.1;
+
+	/**
+	 * Facteur de zoom de la vue
+	 */
+	private double zoom;
+
+	/**
+	 * Position (en pixels) de l'origine du dessin dans le panel
+	 */
+	private double panX, panY;
+
+	/**
+	 * Transformation du dessin vers le panel : zoom de facteur {@link #zoom}
+	 * puis translation de ({@link #panX}, {@link #panY})
+	 */
+	private final AffineTransform view;
+
+	/**
+	 * Dernière position du curseur lors du déplacement de la vue (bouton du
+	 * milieu enfoncé) ou null
+	 */
+	private Point panPoint;
+
+	/**
+	 * Adaptateurs transmettant aux listeners de figures les évènements souris
+	 * exprimés dans les coordonnées du dessin
+	 */
+	private final Map<AbstractFigureListener, ViewMouseAdapter> figureListeners;
+
+	/**
+	 * Adaptateur transmettant à un listener de figures les évènements souris
+	 * du panel exprimés dans les coordonnées du dessin
+	 */
+	private class ViewMouseAdapter implements MouseListener, MouseMotionListener
+	{
+		/**
+		 * Le listener de figures
+		 */
+		private final AbstractFigureListener listener;
+
+		/**
+		 * Constructeur
+		 * @param listener le listener de figures auquel transmettre les
+		 * évènements
+		 */
+		public ViewMouseAdapter(AbstractFigureListener listener)
+		{
+			this.listener = listener;
+		}
+
+		@Override
+		public void mouseClicked(MouseEvent e)
+		{
+			listener.mouseClicked(toDrawing(e));
+		}
+
+		@Override
+		public void mousePressed(MouseEvent e)
+		{
+			listener.mousePressed(toDrawing(e));
+		}
+
+		@Override
+		public void mouseReleased(MouseEvent e)
+		{
+			listener.mouseReleased(toDrawing(e));
+		}
+
+		@Override
+		public void mouseEntered(MouseEvent e)
+		{
+			listener.mouseEntered(toDrawing(e));
+		}
+
+		@Override
+		public void mouseExited(MouseEvent e)
+		{
+			listener.mouseExited(toDrawing(e));
+		}
+
+		/**
+		 * Transmission des déplacements de la souris bouton enfoncé, sauf
+		 * ceux déplaçant la vue (bouton du milieu) qui ne concernent pas les
+		 * figures
+		 * @param e l'évènement souris du panel
+		 */
+		@Override
+		public void mouseDragged(MouseEvent e)
+		{
+			if ((e.getModifiersEx() & InputEvent.BUTTON2_DOWN_MASK) == 0)
+			{
+				listener.mouseDragged(toDrawing(e));
+			}
+		}
+
+		@Override
+		public void mouseMoved(MouseEvent e)
+		{
+			listener.mouseMoved(toDrawing(e));
+		}
+	}
+
+	/**
+	 * Le mode de rendu des figures
+	 */
+	private RenderMode renderMode;
+
+	/**
+	 * Le thread de rendu en arrière plan (en mode
+	 * {@link RenderMode#BACKGROUND}) ou null
+	 */
+	private RenderThread renderer;
+
+	/**
+	 * Nombre maximum d'images par seconde dessinées par le {@link #renderer}
+	 * ou 0 si le rendu n'est pas cadencé
+	 */
+	private int frameRate;
+
+	/**
+	 * Le cache des images des figures complexes utilisé en mode
+	 * {@link RenderMode#DIRECT} ou null pour dessiner toutes les figures
+	 * directement
+	 */
+	private SpriteCache sprites;
+
+	/**
+	 * La politique de niveau de détail du rendu des figures ou null pour
+	 * dessiner toutes les figures complètement
+	 */
+	private LevelOfDetail levelOfDetail;
+
+	/**
+	 * Utilisation de calques pendant la transformation interactive d'une
+	 * figure en mode {@link RenderMode#DIRECT}
+	 */
+	private boolean layered;
+
+	/**
+	 * Calque (opaque) contenant le fond et les figures situées sous la
+	 * figure en cours de transformation
+	 */
+	private VolatileImage backLayer;
+
+	/**
+	 * Calque (translucide) contenant les figures situées au dessus de la
+	 * figure en cours de transformation ainsi que le soulignement des figures
+	 * sélectionnées autres que celle-ci
+	 */
+	private VolatileImage frontLayer;
+
+	/**
+	 * Indique si le contenu des calques correspond au dessin
+	 */
+	private boolean layersValid;
+
 	/**
 	 * Constructeur de la zone de dessin à partir d'un modèle de dessin.
 	 * @param drawing le modèle de dessin
@@ -136,15 +371,30 @@ public class DrawingPanel extends JPanel
 		setLayout(null);
 		setDoubleBuffered(true);
 
+		renderMode = RenderMode.DIRECT;
+		renderer = null;
+		frameRate = 0;
+		sprites = null;
+		levelOfDetail = null;
+		layered = true;
+		backLayer = null;
+		frontLayer = null;
+		layersValid = false;
+		zoom = 1.0;
+		panX = 0.0;
+		panY = 0.0;
+		view = new AffineTransform();
+		panPoint = null;
+		figureListeners = new HashMap<AbstractFigureListener, ViewMouseAdapter>();
+
 		drawingModel = drawing;
 		if (drawing != null)
 		{
-			drawingModel.addObserver(this);
+			drawingModel.addDrawingListener(this);
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null drawing");
+			Logger.error(() -> "null drawing");
 		}
 
 		this.coordLabel = coordLabel;
@@ -155,8 +405,7 @@ public class DrawingPanel extends JPanel
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null coordLabel");
+			Logger.error(() -> "null coordLabel");
 		}
 
 		this.infoPanel = infoPanel;
@@ -164,22 +413,27 @@ public class DrawingPanel extends JPanel
 		if (this.infoPanel != null)
 		{
 			this.infoPanel.resetLabels();
+			this.infoPanel.setDrawing(drawingModel);
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null infoPanel");
+			Logger.error(() -> "null infoPanel");
 		}
 
 		// DrawingPanel est son propre listener d'évènements souris
 		addMouseListener(this);
 		addMouseMotionListener(this);
+		addMouseWheelListener(this);
 	}
 
 	@Override
 	protected void finalize() throws Throwable
 	{
-		drawingModel.deleteObserver(this);
+		if (renderer != null)
+		{
+			renderer.shutdown();
+		}
+		drawingModel.removeDrawingListener(this);
 		super.finalize();
 	}
 
@@ -199,7 +453,8 @@ public class DrawingPanel extends JPanel
 
 	/**
 	 * Mise en place du modèle de dessin. Met en place un nouveau modèle et s'il
-	 * est non null ajoute ce panel comme observateur du modèle
+	 * est non null abonne ce panel (et l'{@link #infoPanel}) aux
+	 * modifications du modèle
 	 * @param drawing le modèle de dessin à mettre en place
 	 */
 	public void setDrawing(Drawing drawing)
@@ -207,14 +462,379 @@ public class DrawingPanel extends JPanel
 		// retrait du précédent modèle de dessin (s'il existe)
 		if (drawingModel != null)
 		{
-			drawing.deleteObserver(this);
+			drawingModel.removeDrawingListener(this);
 		}
 
 		// Mise en place du nouveau modèle de dessin
 		drawingModel = drawing;
+		layersValid = false;
+		if (infoPanel != null)
+		{
+			infoPanel.setDrawing(drawingModel);
+		}
 		if (drawingModel != null)
 		{
-			drawingModel.addObserver(this);
+			drawingModel.addDrawingListener(this);
+			if (renderer != null)
+			{
+				requestFrame();
+			}
+		}
+	}
+
+	/**
+	 * Accesseur du mode de rendu
+	 * @return le mode de rendu courant
+	 */
+	public RenderMode getRenderMode()
+	{
+		return renderMode;
+	}
+
+	/**
+	 * Changement du mode de rendu. Démarre ou arrête le thread de rendu en
+	 * arrière plan puis redessine le panel.
+	 * @param mode le nouveau mode de rendu
+	 */
+	public void setRenderMode(RenderMode mode)
+	{
+		if ((mode == null) || (mode == renderMode))
+		{
+			return;
+		}
+		renderMode = mode;
+		if (renderMode == RenderMode.BACKGROUND)
+		{
+			renderer = new RenderThread(() -> repaint(), frameRate);
+			renderer.start();
+			requestFrame();
+		}
+		else
+		{
+			renderer.shutdown();
+			renderer = null;
+			repaint();
+		}
+	}
+
+	/**
+	 * Accesseur de la cadence de rendu en arrière plan
+	 * @return le nombre maximum d'images par seconde dessinées en mode
+	 * {@link RenderMode#BACKGROUND} ou 0 si le rendu n'est pas cadencé
+	 */
+	public int getFrameRate()
+	{
+		return frameRate;
+	}
+
+	/**
+	 * Mise en place de la cadence de rendu en arrière plan : les
+	 * modifications du dessin survenant entre deux images sont regroupées
+	 * dans l'image suivante.
+	 * @param frameRate le nombre maximum d'images par seconde dessinées en
+	 * mode {@link RenderMode#BACKGROUND} ou 0 pour ne pas cadencer le rendu
+	 */
+	public void setFrameRate(int frameRate)
+	{
+		this.frameRate = Math.max(frameRate, 0);
+		if (renderer != null)
+		{
+			renderer.setFrameRate(this.frameRate);
+		}
+	}
+
+	/**
+	 * Nombre d'images dessinées par le thread de rendu en arrière plan depuis
+	 * son démarrage
+	 * @return le nombre d'images dessinées ou 0 en mode
+	 * {@link RenderMode#DIRECT}
+	 */
+	public long getRenderedFrames()
+	{
+		return (renderer != null ? renderer.renderedFrames() : 0);
+	}
+
+	/**
+	 * Nombre d'images abandonnées par le thread de rendu en arrière plan
+	 * (remplacées par une image plus récente avant d'avoir été dessinées)
+	 * depuis son démarrage
+	 * @return le nombre d'images abandonnées ou 0 en mode
+	 * {@link RenderMode#DIRECT}
+	 */
+	public long getDroppedFrames()
+	{
+		return (renderer != null ? renderer.droppedFrames() : 0);
+	}
+
+	/**
+	 * Accesseur du cache d'images des figures complexes
+	 * @return le cache d'images utilisé en mode {@link RenderMode#DIRECT} ou
+	 * null si les figures sont toutes dessinées directement
+	 */
+	public SpriteCache getSpriteCache()
+	{
+		return sprites;
+	}
+
+	/**
+	 * Mise en place d'un cache d'images pour les figures complexes (traits
+	 * pointillés, nombreux sommets) : celles ci sont alors copiées depuis
+	 * leur image lorsqu'elles sont seulement déplacées, puis redessine le
+	 * panel.
+	 * @param sprites le cache d'images à utiliser en mode
+	 * {@link RenderMode#DIRECT} ou null pour dessiner toutes les figures
+	 * directement
+	 */
+	public void setSpriteCache(SpriteCache sprites)
+	{
+		if (sprites == this.sprites)
+		{
+			return;
+		}
+		if (this.sprites != null)
+		{
+			this.sprites.clear();
+		}
+		this.sprites = sprites;
+		repaint();
+	}
+
+	/**
+	 * Accesseur de la politique de niveau de détail
+	 * @return la politique de niveau de détail du rendu ou null si toutes
+	 * les figures sont dessinées complètement
+	 */
+	public LevelOfDetail getLevelOfDetail()
+	{
+		return levelOfDetail;
+	}
+
+	/**
+	 * Mise en place d'une politique de niveau de détail du rendu des figures
+	 * (figures dessinées par un point, sans antialiasing ni pointillés ou
+	 * simplifiées suivant leur taille à l'écran), puis redessin du panel
+	 * @param levelOfDetail la politique de niveau de détail ou null pour
+	 * dessiner toutes les figures complètement
+	 */
+	public void setLevelOfDetail(LevelOfDetail levelOfDetail)
+	{
+		this.levelOfDetail = levelOfDetail;
+		layersValid = false;
+		if (renderer != null)
+		{
+			requestFrame();
+		}
+		else
+		{
+			repaint();
+		}
+	}
+
+	/**
+	 * Obtention du dessinateur des figures dans un contexte graphique dont la
+	 * transformation et la zone de dessin sont déjà en place : selon la
+	 * politique de niveau de détail s'il y en a une et à partir du cache
+	 * d'images s'il y en a un
+	 * @param g2D le contexte graphique
+	 * @return le dessinateur de figures à utiliser pour un parcours des
+	 * figures
+	 */
+	private Consumer<Figure> painter(Graphics2D g2D)
+	{
+		if (levelOfDetail != null)
+		{
+			return levelOfDetail.painter(g2D, sprites);
+		}
+		return (Figure f) -> f.draw(g2D, sprites);
+	}
+
+	/**
+	 * Indique si des calques sont utilisés pendant la transformation
+	 * interactive d'une figure
+	 * @return true si seule la figure en cours de transformation est
+	 * redessinée pendant sa transformation
+	 */
+	public boolean isLayered()
+	{
+		return layered;
+	}
+
+	/**
+	 * Mise en place ou retrait des calques utilisés pendant la
+	 * transformation interactive d'une figure (en mode
+	 * {@link RenderMode#DIRECT}). Les calques sont libérés lorsqu'ils ne
+	 * sont plus utilisés.
+	 * @param layered true pour ne redessiner que la figure en cours de
+	 * transformation pendant sa transformation
+	 */
+	public void setLayered(boolean layered)
+	{
+		this.layered = layered;
+		if (!layered)
+		{
+			releaseLayers();
+		}
+	}
+
+	/**
+	 * Accesseur de la transformation de la vue
+	 * @return une copie de la transformation du dessin vers le panel
+	 */
+	public AffineTransform getView()
+	{
+		return new AffineTransform(view);
+	}
+
+	/**
+	 * Accesseur du facteur de zoom de la vue
+	 * @return le facteur de zoom de la vue
+	 */
+	public double getZoom()
+	{
+		return zoom;
+	}
+
+	/**
+	 * Mise en place de la vue puis redessin du panel
+	 * @param zoom le facteur de zoom (borné à [{@link #minZoom},
+	 * {@link #maxZoom}])
+	 * @param panX l'abscisse (en pixels) de l'origine du dessin dans le panel
+	 * @param panY l'ordonnée (en pixels) de l'origine du dessin dans le panel
+	 */
+	public void setView(double zoom, double panX, double panY)
+	{
+		this.zoom = Math.min(Math.max(zoom, minZoom), maxZoom);
+		this.panX = panX;
+		this.panY = panY;
+		view.setToTranslation(panX, panY);
+		view.scale(this.zoom, this.zoom);
+		layersValid = false;
+		if (renderer != null)
+		{
+			requestFrame();
+		}
+		else
+		{
+			repaint();
+		}
+	}
+
+	/**
+	 * Zoom de la vue autour d'un point du panel qui reste immobile
+	 * @param factor le facteur à appliquer au zoom courant
+	 * @param anchor le point fixe (en coordonnées du panel)
+	 */
+	public void zoom(double factor, Point2D anchor)
+	{
+		double newZoom = Math.min(Math.max(zoom * factor, minZoom), maxZoom);
+		double ratio = newZoom / zoom;
+		setView(newZoom,
+		        anchor.getX() - ((anchor.getX() - panX) * ratio),
+		        anchor.getY() - ((anchor.getY() - panY) * ratio));
+	}
+
+	/**
+	 * Déplacement de la vue
+	 * @param dx le déplacement horizontal (en pixels)
+	 * @param dy le déplacement vertical (en pixels)
+	 */
+	public void pan(double dx, double dy)
+	{
+		setView(zoom, panX + dx, panY + dy);
+	}
+
+	/**
+	 * Retour à la vue initiale (pas de zoom ni de déplacement)
+	 */
+	public void resetView()
+	{
+		setView(1.0, 0.0, 0.0);
+	}
+
+	/**
+	 * Conversion d'un point du panel en point du dessin
+	 * @param p le point en coordonnées du panel
+	 * @return le point correspondant dans les coordonnées du dessin
+	 */
+	public Point2D toDrawing(Point2D p)
+	{
+		return new Point2D.Double((p.getX() - panX) / zoom,
+		                          (p.getY() - panY) / zoom);
+	}
+
+	/**
+	 * Conversion d'une zone du panel en zone du dessin
+	 * @param r la zone en coordonnées du panel
+	 * @return la zone du dessin affichée dans r
+	 */
+	public Rectangle2D toDrawing(Rectangle2D r)
+	{
+		return inverse(view, r);
+	}
+
+	/**
+	 * Conversion d'une zone du dessin en zone du panel
+	 * @param r la zone en coordonnées du dessin
+	 * @return la zone du panel dans laquelle r est affichée
+	 */
+	public Rectangle2D toView(Rectangle2D r)
+	{
+		return view.createTransformedShape(r).getBounds2D();
+	}
+
+	/**
+	 * Zone du dessin affichée dans une zone d'une image au travers d'une
+	 * transformation de vue
+	 * @param view la transformation du dessin vers l'image
+	 * @param r la zone de l'image
+	 * @return la zone du dessin affichée dans r
+	 */
+	static Rectangle2D inverse(AffineTransform view, Rectangle2D r)
+	{
+		try
+		{
+			return view.createInverse().createTransformedShape(r).getBounds2D();
+		}
+		catch (NoninvertibleTransformException e)
+		{
+			Logger.error(() -> "non invertible view " + view);
+			return r;
+		}
+	}
+
+	/**
+	 * Conversion d'un évènement souris du panel en évènement exprimé dans les
+	 * coordonnées du dessin (les coordonnées écran sont conservées)
+	 * @param e l'évènement souris du panel
+	 * @return l'évènement lui même si la vue n'est ni zoomée ni déplacée ou
+	 * bien un nouvel évènement aux coordonnées du dessin, dont la position
+	 * exacte est fournie par {@link DrawingMouseEvent#getDrawingPoint()}
+	 */
+	private MouseEvent toDrawing(MouseEvent e)
+	{
+		if (view.isIdentity())
+		{
+			return e;
+		}
+		return new DrawingMouseEvent(e.getComponent(),
+		                             e,
+		                             toDrawing(e.getPoint()));
+	}
+
+	/**
+	 * Demande de rendu en arrière plan de la version courante du dessin
+	 */
+	private void requestFrame()
+	{
+		if (drawingModel != null)
+		{
+			renderer.request(new RenderThread.Frame(drawingModel.snapshot(),
+			                                        drawingModel.visibility(),
+			                                        getWidth(),
+			                                        getHeight(),
+			                                        getBackground(),
+			                                        view,
+			                                        levelOfDetail));
 		}
 	}
 
@@ -236,11 +856,25 @@ public class DrawingPanel extends JPanel
 	 */
 	public void setInfoPanel(InfoPanel infoPanel)
 	{
+		if (this.infoPanel != null)
+		{
+			this.infoPanel.setDrawing(null);
+		}
 		this.infoPanel = infoPanel;
+		if (this.infoPanel != null)
+		{
+			this.infoPanel.setDrawing(drawingModel);
+		}
 	}
 
 	/**
 	 * Dessin du panel. Effacement ce celui-ci puis dessin des figures.
+	 * Seule la zone de clip du contexte graphique (qui correspond à l'union
+	 * des zones endommagées demandées par {@link #drawingChanged(DrawingEvent)})
+	 * est effacée et seules les figures intersectant cette zone sont
+	 * dessinées.
+	 * En mode {@link RenderMode#BACKGROUND} seule la dernière image complète
+	 * produite par le thread de rendu est affichée.
 	 * @param g le contexte graphique
 	 * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
 	 */
@@ -254,11 +888,24 @@ public class DrawingPanel extends JPanel
 		g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
 		                     RenderingHints.VALUE_ANTIALIAS_ON);
 
-		// taille de la zone de dessin
-		Dimension d = getSize();
+		// zone à redessiner (toute la zone de dessin à défaut de clip)
+		Rectangle clip = g2D.getClipBounds();
+		if (clip == null)
+		{
+			Dimension d = getSize();
+			clip = new Rectangle(0, 0, d.width, d.height);
+		}
 		// on commence par effacer le fond
 		g2D.setColor(getBackground());
-		g2D.fillRect(0, 0, d.width, d.height);
+		g2D.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+		if (renderer != null)
+		{
+			// Affichage de la dernière image dessinée en arrière plan
+			renderer.paint(g2D, getBackground());
+			paintSelectionArea(g2D);
+			return;
+		}
 
 		// Puis on dessine l'ensemble des figures
 		if (drawingModel != null)
@@ -266,9 +913,22 @@ public class DrawingPanel extends JPanel
 			/*
 			 * Application d'un Consumer<Figure> en tant que lambda expression
 			 * sur le flux (éventuellement filtré) des figures permettant
-			 * de dessiner les figures
+			 * de dessiner les figures (à partir de leurs images pour les
+			 * figures complexes lorsqu'un cache d'images est utilisé)
 			 */
-			drawingModel.stream().forEach((Figure f) -> f.draw(g2D));
+			Figure active = drawingModel.getActiveFigure();
+			if (layered && (active != null) && paintLayers(g2D, active))
+			{
+				return;
+			}
+
+			// Seules les figures visibles dans la zone à redessiner sont
+			// dessinées, au travers de la transformation de la vue
+			Rectangle2D area = toDrawing(clip);
+			AffineTransform savedT = g2D.getTransform();
+			g2D.transform(view);
+
+			drawingModel.stream(area).forEach(painter(g2D));
 
 			/*
 			 * Soulignement des figures sélectionnées (s'il y en a).
@@ -277,32 +937,242 @@ public class DrawingPanel extends JPanel
 			 */
 			if (drawingModel.hasSelection())
 			{
-				drawingModel.stream()
+				drawingModel.stream(area)
 				    .forEach((Figure f) -> f.drawSelection(g2D));
 			}
+			g2D.setTransform(savedT);
+
+			paintSelectionArea(g2D);
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-			    + " null model");
+			Logger.error(() -> "null model");
+		}
+	}
+
+	/**
+	 * Dessin de la zone de sélection en cours de tracé (s'il y en a une) par
+	 * dessus les figures
+	 * @param g2D le contexte graphique (dans les coordonnées du panel)
+	 */
+	private void paintSelectionArea(Graphics2D g2D)
+	{
+		Rectangle2D area =
+		    (drawingModel != null ? drawingModel.getSelectionArea() : null);
+		if (area != null)
+		{
+			Rectangle r = toView(area).getBounds();
+			g2D.setPaint(selectionAreaFill);
+			g2D.fill(r);
+			g2D.setPaint(selectionAreaEdge);
+			g2D.setStroke(new BasicStroke(1.0f));
+			g2D.drawRect(r.x, r.y, r.width, r.height);
+		}
+	}
+
+	/**
+	 * Dessin du panel pendant la transformation interactive d'une figure :
+	 * composition du calque inférieur, de la figure transformée, du calque
+	 * supérieur puis du soulignement de la figure transformée. Les calques
+	 * sont (re)dessinés s'ils ont été invalidés par une modification du
+	 * dessin ou perdus par la carte graphique.
+	 * @param g2D le contexte graphique
+	 * @param active la figure en cours de transformation
+	 * @return true si le panel a été dessiné, false si les calques ne peuvent
+	 * pas être utilisés (panel non affiché ou figure absente du dessin)
+	 */
+	private boolean paintLayers(Graphics2D g2D, Figure active)
+	{
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		int width = getWidth();
+		int height = getHeight();
+		int activeIndex = drawingModel.indexOf(active);
+		if ((gc == null) || (width <= 0) || (height <= 0) || (activeIndex < 0))
+		{
+			return false;
+		}
+		boolean visible = drawingModel.visibility().test(active);
+
+		do
+		{
+			backLayer = validLayer(backLayer, gc, width, height,
+			                       Transparency.OPAQUE);
+			frontLayer = validLayer(frontLayer, gc, width, height,
+			                        Transparency.TRANSLUCENT);
+			if (!layersValid)
+			{
+				renderLayers(active, activeIndex, width, height);
+				layersValid = true;
+			}
+
+			AffineTransform savedT = g2D.getTransform();
+			g2D.drawImage(backLayer, 0, 0, null);
+			if (visible)
+			{
+				g2D.transform(view);
+				painter(g2D).accept(active);
+				g2D.setTransform(savedT);
+			}
+			g2D.drawImage(frontLayer, 0, 0, null);
+			if (visible)
+			{
+				g2D.transform(view);
+				active.drawSelection(g2D);
+				g2D.setTransform(savedT);
+			}
+
+			if (backLayer.contentsLost() || frontLayer.contentsLost())
+			{
+				layersValid = false;
+			}
+		}
+		while (!layersValid);
+
+		return true;
+	}
+
+	/**
+	 * Obtention d'un calque utilisable de la taille du panel
+	 * @param layer le calque actuel (éventuellement null)
+	 * @param gc la configuration graphique du panel
+	 * @param width la largeur du panel
+	 * @param height la hauteur du panel
+	 * @param transparency la transparence du calque
+	 * @return le calque actuel s'il est encore utilisable ou bien un nouveau
+	 * calque. Les calques sont invalidés si leur contenu a été perdu.
+	 */
+	private VolatileImage validLayer(VolatileImage layer,
+	                                 GraphicsConfiguration gc,
+	                                 int width,
+	                                 int height,
+	                                 int transparency)
+	{
+		if (layer != null)
+		{
+			if ((layer.getWidth() == width) && (layer.getHeight() == height))
+			{
+				int status = layer.validate(gc);
+				if (status == VolatileImage.IMAGE_OK)
+				{
+					return layer;
+				}
+				if (status == VolatileImage.IMAGE_RESTORED)
+				{
+					layersValid = false;
+					return layer;
+				}
+			}
+			layer.flush();
 		}
+		layersValid = false;
+		return gc.createCompatibleVolatileImage(width, height, transparency);
 	}
 
 	/**
-	 * Mise en place d'un nouveau listener de figure
+	 * Dessin des calques : fond et figures situées sous la figure en cours de
+	 * transformation dans le calque inférieur, figures situées au dessus de
+	 * celle-ci et soulignement des figures sélectionnées dans le calque
+	 * supérieur
+	 * @param active la figure en cours de transformation
+	 * @param activeIndex le rang de celle-ci dans l'ordre de dessin
+	 * @param width la largeur des calques
+	 * @param height la hauteur des calques
+	 */
+	private void renderLayers(Figure active,
+	                          int activeIndex,
+	                          int width,
+	                          int height)
+	{
+		Graphics2D back = backLayer.createGraphics();
+		Graphics2D front = frontLayer.createGraphics();
+		try
+		{
+			back.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+			                      RenderingHints.VALUE_ANTIALIAS_ON);
+			front.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+			                       RenderingHints.VALUE_ANTIALIAS_ON);
+			back.setColor(getBackground());
+			back.fillRect(0, 0, width, height);
+			front.setComposite(AlphaComposite.Clear);
+			front.fillRect(0, 0, width, height);
+			front.setComposite(AlphaComposite.SrcOver);
+			back.setClip(0, 0, width, height);
+			front.setClip(0, 0, width, height);
+			back.transform(view);
+			front.transform(view);
+
+			// Les figures (visibles dans le panel) sont fournies dans l'ordre
+			// de dessin
+			Rectangle2D all = toDrawing(new Rectangle(0, 0, width, height));
+			Iterator<Figure> it = drawingModel.stream(all).iterator();
+			Consumer<Figure> backPainter = painter(back);
+			Consumer<Figure> layer = backPainter;
+			while (it.hasNext())
+			{
+				Figure f = it.next();
+				if ((layer == backPainter)
+				    && (drawingModel.indexOf(f) > activeIndex))
+				{
+					layer = painter(front);
+				}
+				if (f != active)
+				{
+					layer.accept(f);
+				}
+			}
+
+			if (drawingModel.hasSelection())
+			{
+				drawingModel.stream(all)
+				    .filter((Figure f) -> f != active)
+				    .forEach((Figure f) -> f.drawSelection(front));
+			}
+		}
+		finally
+		{
+			back.dispose();
+			front.dispose();
+		}
+	}
+
+	/**
+	 * Libération des calques
+	 */
+	private void releaseLayers()
+	{
+		if (backLayer != null)
+		{
+			backLayer.flush();
+			backLayer = null;
+		}
+		if (frontLayer != null)
+		{
+			frontLayer.flush();
+			frontLayer = null;
+		}
+		layersValid = false;
+	}
+
+	/**
+	 * Mise en place d'un nouveau listener de figure. Celui ci reçoit les
+	 * évènements souris du panel exprimés dans les coordonnées du dessin.
 	 * @param fl le nouveau listener
 	 */
 	public void addFigureListener(AbstractFigureListener fl)
 	{
 		if (fl != null)
 		{
-			addMouseListener(fl);
-			addMouseMotionListener(fl);
+			if (!figureListeners.containsKey(fl))
+			{
+				ViewMouseAdapter adapter = new ViewMouseAdapter(fl);
+				figureListeners.put(fl, adapter);
+				addMouseListener(adapter);
+				addMouseMotionListener(adapter);
+			}
 		}
 		else
 		{
-			System.err.println(getClassName() + "::" + getMethodName()
-				+ "(null)");
+			Logger.error(() -> "(null)");
 		}
 	}
 
@@ -312,28 +1182,51 @@ public class DrawingPanel extends JPanel
 	 */
 	public void removeFigureListener(AbstractFigureListener fl)
 	{
-		if (fl != null)
+		ViewMouseAdapter adapter = figureListeners.remove(fl);
+		if (adapter != null)
 		{
-			removeMouseListener(fl);
-			removeMouseMotionListener(fl);
+			removeMouseListener(adapter);
+			removeMouseMotionListener(adapter);
 		}
 	}
 
 	/**
-	 * Mise à jour déclenchée par un {@link Observable#notifyObservers()} : en
-	 * l'occurence le modèle de dessin ({@link Drawing}) lorsque celui ci est
-	 * modifié. Cette mise à jour déclenche une requête de redessin du panel.
-	 * @param observable l'observable ayant déclenché cette MAJ
-	 * @param data les données (evt) transmises par l'observable [non utilisé
-	 * ici]
-	 * @see java.util.Observer#update(java.util.Observable, java.lang.Object)
+	 * Mise à jour déclenchée par une modification du modèle de dessin
+	 * ({@link Drawing}). Cette mise à jour déclenche une requête de redessin
+	 * du panel, limitée à la zone endommagée lorsque l'évènement en fournit
+	 * une.
+	 * @param event l'évènement décrivant les modifications du dessin
+	 * @see DrawingListener#drawingChanged(DrawingEvent)
 	 */
 	@Override
-	public void update(Observable observable, Object data)
+	public void drawingChanged(DrawingEvent event)
 	{
-		if (observable instanceof Drawing)
+		// Le modèle à changé il faut redessiner les figures
+		if (!dragTypes.containsAll(event.getTypes()))
+		{
+			// Les figures autres que celle en cours de transformation (ou
+			// la figure transformée) ont changé
+			layersValid = false;
+		}
+		if (renderer != null)
+		{
+			// Le thread de rendu redessine la nouvelle version du dessin
+			requestFrame();
+			return;
+		}
+		Rectangle2D area = event.getDamage();
+		if (area != null)
+		{
+			/*
+			 * Seule la zone endommagée est redessinée. Le RepaintManager
+			 * fusionne les zones demandées avant le prochain dessin.
+			 */
+			Rectangle damage = toView(area).getBounds();
+			damage.grow(damageMargin, damageMargin);
+			repaint(damage);
+		}
+		else
 		{
-			// Le modèle à changé il faut redessiner les figures
 			repaint();
 		}
 	}
@@ -346,10 +1239,18 @@ public class DrawingPanel extends JPanel
 	@Override
 	public void mouseDragged(MouseEvent e)
 	{
+		if (panPoint != null)
+		{
+			// Déplacement de la vue avec le bouton du milieu
+			Point p = e.getPoint();
+			pan(p.x - panPoint.x, p.y - panPoint.y);
+			panPoint = p;
+		}
 		// Déplacement de la souris (btn enfoncé) : MAJ des coordonnées
 		// de la souris dans le coordLabel et infoPanel
-		refreshCoordLabel(e.getPoint());
-		refreshInfoPanel(e.getPoint());
+		Point2D p = toDrawing(e.getPoint());
+		refreshCoordLabel(p);
+		refreshInfoPanel(p);
 	}
 
 	/**
@@ -362,7 +1263,7 @@ public class DrawingPanel extends JPanel
 	{
 		// Déplacement de la souris : MAJ des coordonnées
 		// de la souris dans le coordLabel et infoPanel
-		Point p = e.getPoint();
+		Point2D p = toDrawing(e.getPoint());
 		refreshCoordLabel(p);
 		refreshInfoPanel(p);
 	}
@@ -382,8 +1283,9 @@ public class DrawingPanel extends JPanel
 	public void mouseEntered(MouseEvent e)
 	{
 		sendInfoState = true;
-		refreshCoordLabel(e.getPoint());
-		refreshInfoPanel(e.getPoint());
+		Point2D p = toDrawing(e.getPoint());
+		refreshCoordLabel(p);
+		refreshInfoPanel(p);
 	}
 
 	/**
@@ -397,29 +1299,53 @@ public class DrawingPanel extends JPanel
 		// Rien si ce n'est de remettre les coordonnés dans la barre d'état
 		// à x = ___ y = ___
 		sendInfoState = false;
-		refreshCoordLabel(e.getPoint());
+		refreshCoordLabel(toDrawing(e.getPoint()));
 		infoPanel.resetLabels();
 	}
 
+	/**
+	 * Début du déplacement de la vue lorsque le bouton du milieu est enfoncé
+	 * @param e l'évènement souris associé
+	 */
 	@Override
 	public void mousePressed(MouseEvent e)
 	{
-		// Rien
+		if (e.getButton() == MouseEvent.BUTTON2)
+		{
+			panPoint = e.getPoint();
+		}
 	}
 
+	/**
+	 * Fin du déplacement de la vue lorsque le bouton du milieu est relâché
+	 * @param e l'évènement souris associé
+	 */
 	@Override
 	public void mouseReleased(MouseEvent e)
 	{
-		// Rien
+		if (e.getButton() == MouseEvent.BUTTON2)
+		{
+			panPoint = null;
+		}
+	}
+
+	/**
+	 * Zoom de la vue autour du curseur avec la molette de la souris
+	 * @param e l'évènement molette associé
+	 */
+	@Override
+	public void mouseWheelMoved(MouseWheelEvent e)
+	{
+		zoom(Math.pow(zoomStep, -e.getPreciseWheelRotation()), e.getPoint());
 	}
 
 	/**
 	 * Rafraichissement du {@link #coordLabel} (s'il est non null) avec de
 	 * nouvelles coordonnées ou bien avec la {@link #defaultCoordString} si l'on
 	 * affiche pas les coordonnées
-	 * @param p le point à afficher
+	 * @param p le point (du dessin) à afficher
 	 */
-	private void refreshCoordLabel(Point p)
+	private void refreshCoordLabel(Point2D p)
 	{
 		if ((p != null) && (coordLabel != null)){
 			if (sendInfoState){
@@ -435,19 +1361,13 @@ public class DrawingPanel extends JPanel
 
 	/**
 	 * Rafraichissement du panneau d'information {@link #infoPanel}
-	 * @param p la position du curseur pour déclencher la recherche de figures
-	 * sous ce curseur
+	 * @param p la position du curseur (dans le dessin) pour déclencher la
+	 * recherche de figures sous ce curseur
 	 */
 	private void refreshInfoPanel(Point2D p)
 	{
 		if ((infoPanel != null) && sendInfoState){
-			Figure fig = drawingModel.getFigureAt(p);
-			if (fig != null){
-				infoPanel.updateLabels(fig);
-			}
-			else{
-				infoPanel.resetLabels();
-			}
+			infoPanel.showFigureAt(p);
 		}
 	}
 }
@@ -6,6 +6,8 @@ import java.awt.event.InputEvent;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.EventObject;
@@ -17,7 +19,10 @@ import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 import figures.Drawing;
+import figures.DrawingFile;
 import figures.Figure;
+import figures.LevelOfDetail;
+import figures.SpriteCache;
 import figures.enums.FigureType;
 import figures.enums.LineType;
 import figures.enums.PaintToType;
@@ -30,10 +35,13 @@ import figures.listeners.transform.RotateShapeListener;
 import figures.listeners.transform.ScaleShapeListener;
 import filters.*;
 import history.HistoryManager;
+import history.HistoryMode;
 import utils.IconFactory;
+import utils.Logger;
 import utils.PaintFactory;
 import utils.Signature;
 import widgets.enums.OperationMode;
+import widgets.enums.RenderMode;
 
 /**
  *
@@ -63,6 +71,17 @@ public class EditorFrame extends JFrame implements Signature
 	 */
 	protected static final int historyLength = 32;
 
+	/**
+	 * Budget mémoire (estimé, en octets) de l'historique
+	 */
+	protected static final long historyBudget = 64L * 1024L * 1024L;
+
+	/**
+	 * Nombre maximum d'images par seconde dessinées lors du rendu en arrière
+	 * plan
+	 */
+	protected static final int renderFrameRate = 60;
+
 	/**
 	 * Indique si l'éditeur est en mode Création de figures ou édition
 	 * de figures (mode initial : création de figures)
@@ -248,6 +267,39 @@ public class EditorFrame extends JFrame implements Signature
 	 */
 	private final Action filterAction = new FilterAction();
 
+	/**
+	 * Action déclenchée pour dessiner ou non les figures en arrière plan
+	 */
+	private final Action backgroundRenderAction = new BackgroundRenderAction();
+
+	/**
+	 * Action déclenchée pour dessiner ou non les figures complexes à partir
+	 * d'images mises en cache
+	 */
+	private final Action spriteCacheAction = new SpriteCacheAction();
+
+	/**
+	 * Action déclenchée pour agrandir la vue du dessin
+	 */
+	private final Action zoomInAction =
+	    new ZoomAction("Zoom in", 2.0, KeyEvent.VK_EQUALS);
+
+	/**
+	 * Action déclenchée pour réduire la vue du dessin
+	 */
+	private final Action zoomOutAction =
+	    new ZoomAction("Zoom out", 0.5, KeyEvent.VK_MINUS);
+
+	/**
+	 * Action déclenchée pour revenir à la vue initiale du dessin
+	 */
+	private final Action resetViewAction = new ResetViewAction();
+
+	/**
+	 * Action déclenchée pour simplifier ou non le rendu des petites figures
+	 */
+	private final Action levelOfDetailAction = new LevelOfDetailAction();
+
 	/**
 	 * Action déclenchée lorsque l'on clique sur l'item de menu de filtrage
 	 * des cercles
@@ -347,6 +399,20 @@ public class EditorFrame extends JFrame implements Signature
 	 */
 	private final Action moveDownAction = new MoveDownAction();
 
+	/**
+	 * Action réalisée pour monter d'un rang les figures sélectionnées dans
+	 * la liste des figures
+	 */
+	private final Action stepUpAction =
+	    new StepAction("Up one", true, KeyEvent.VK_UP);
+
+	/**
+	 * Action réalisée pour descendre d'un rang les figures sélectionnées
+	 * dans la liste des figures
+	 */
+	private final Action stepDownAction =
+	    new StepAction("Down one", false, KeyEvent.VK_DOWN);
+
 	/**
 	 * Action réalisée pour appliquer le style courant (couleur de remplissage,
 	 * couleur de trait et style de trait) aux figures sélectionnées
@@ -359,6 +425,28 @@ public class EditorFrame extends JFrame implements Signature
 	 */
 	private final Action magicDrawAction = new MagicDrawAction();
 
+	/**
+	 * Action permettant d'ouvrir un fichier de dessin
+	 */
+	private final Action openAction = new OpenAction();
+
+	/**
+	 * Action permettant d'enregistrer le dessin dans un fichier
+	 */
+	private final Action saveAction = new SaveAction();
+
+	/**
+	 * Action permettant de ranger les figures du dessin dans un stockage
+	 * compact
+	 */
+	private final Action compactAction = new CompactAction();
+
+	/**
+	 * Sélecteur de fichiers de dessin (conserve le dernier répertoire
+	 * utilisé)
+	 */
+	private JFileChooser fileChooser = null;
+
 	/**
 	 * Constructeur de la fenètre de l'éditeur.
 	 * Construit les widgets et assigne les actions et autres listeners
@@ -368,7 +456,8 @@ public class EditorFrame extends JFrame implements Signature
 	public EditorFrame() throws HeadlessException
 	{
 		drawingModel = new Drawing();
-		history = new HistoryManager<Figure>(drawingModel, historyLength);
+		history = new HistoryManager<Figure>(drawingModel, historyLength,
+		                                    HistoryMode.DELTA, historyBudget);
 		operationMode = OperationMode.CREATION;
 
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -531,6 +620,7 @@ public class EditorFrame extends JFrame implements Signature
 		// Zone de dessin
 		// --------------------------------------------------------------------
 		drawingPanel = new DrawingPanel(drawingModel, coordsLabel, infoPanel);
+		drawingPanel.setFrameRate(renderFrameRate);
 
 		JScrollPane scrollPane = new JScrollPane();
 		scrollPane.setWheelScrollingEnabled(false);
@@ -550,6 +640,18 @@ public class EditorFrame extends JFrame implements Signature
 		mntmMagicDraw.setAction(magicDrawAction);
 		menuFile.add(mntmMagicDraw);
 
+		JMenuItem mntmOpen = new JMenuItem("Open...");
+		mntmOpen.setAction(openAction);
+		menuFile.add(mntmOpen);
+
+		JMenuItem mntmSave = new JMenuItem("Save...");
+		mntmSave.setAction(saveAction);
+		menuFile.add(mntmSave);
+
+		JMenuItem mntmCompact = new JMenuItem("Compact");
+		mntmCompact.setAction(compactAction);
+		menuFile.add(mntmCompact);
+
 		JMenu menuEdition = new JMenu("Edition");
 		menuBar.add(menuEdition);
 
@@ -559,6 +661,44 @@ public class EditorFrame extends JFrame implements Signature
 		    .registerButton(chckbxmntmEdit);
 		menuEdition.add(chckbxmntmEdit);
 
+		JMenuItem mntmStepUp = new JMenuItem("Up one");
+		mntmStepUp.setAction(stepUpAction);
+		menuEdition.add(mntmStepUp);
+
+		JMenuItem mntmStepDown = new JMenuItem("Down one");
+		mntmStepDown.setAction(stepDownAction);
+		menuEdition.add(mntmStepDown);
+
+		JCheckBoxMenuItem chckbxmntmBackgroundRender =
+		    new JCheckBoxMenuItem("Background rendering");
+		chckbxmntmBackgroundRender.setAction(backgroundRenderAction);
+		menuEdition.add(chckbxmntmBackgroundRender);
+
+		JCheckBoxMenuItem chckbxmntmSpriteCache =
+		    new JCheckBoxMenuItem("Sprite cache");
+		chckbxmntmSpriteCache.setAction(spriteCacheAction);
+		menuEdition.add(chckbxmntmSpriteCache);
+
+		JMenu menuView = new JMenu("View");
+		menuBar.add(menuView);
+
+		JMenuItem mntmZoomIn = new JMenuItem("Zoom in");
+		mntmZoomIn.setAction(zoomInAction);
+		menuView.add(mntmZoomIn);
+
+		JMenuItem mntmZoomOut = new JMenuItem("Zoom out");
+		mntmZoomOut.setAction(zoomOutAction);
+		menuView.add(mntmZoomOut);
+
+		JMenuItem mntmResetView = new JMenuItem("Reset view");
+		mntmResetView.setAction(resetViewAction);
+		menuView.add(mntmResetView);
+
+		JCheckBoxMenuItem chckbxmntmLevelOfDetail =
+		    new JCheckBoxMenuItem("Level of detail");
+		chckbxmntmLevelOfDetail.setAction(levelOfDetailAction);
+		menuView.add(chckbxmntmLevelOfDetail);
+
 		JMenu menuFilter = new JMenu("Filter");
 		menuBar.add(menuFilter);
 
@@ -696,8 +836,8 @@ public class EditorFrame extends JFrame implements Signature
 		@Override
 		public void actionPerformed(ActionEvent e)
 		{
-			history.undo();
-			drawingModel.update();
+			// Les modifications annulées sont signalées en un seul évènement
+			drawingModel.transaction(history::undo);
 		}
 	}
 
@@ -729,8 +869,7 @@ public class EditorFrame extends JFrame implements Signature
 		@Override
 		public void actionPerformed(ActionEvent e)
 		{
-			history.redo();
-			drawingModel.update();
+			drawingModel.transaction(history::redo);
 		}
 	}
 
@@ -766,7 +905,6 @@ public class EditorFrame extends JFrame implements Signature
 		{
 			history.record();
 			drawingModel.clear();
-			drawingModel.update();
 		}
 	}
 
@@ -941,6 +1079,191 @@ public class EditorFrame extends JFrame implements Signature
 		}
 	}
 
+	/**
+	 * Action réalisée pour dessiner les figures en arrière plan (par un
+	 * thread de rendu dédié) ou directement dans le thread de Swing
+	 */
+	private class BackgroundRenderAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action de changement de mode de rendu
+		 */
+		public BackgroundRenderAction()
+		{
+			putValue(NAME, "Background rendering");
+			putValue(SHORT_DESCRIPTION, "Render figures in a background thread");
+		}
+
+		/**
+		 * Opérations réalisées par l'action : changement du mode de rendu du
+		 * {@link EditorFrame#drawingPanel}. Les statistiques du rendu en
+		 * arrière plan sont journalisées ({@link Logger#info}) lorsque
+		 * celui-ci est arrêté.
+		 * @param event l'évènement déclenchant l'action. Peut provenir d'un
+		 * bouton ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent event)
+		{
+			AbstractButton button = (AbstractButton) event.getSource();
+			boolean selected = button.getModel().isSelected();
+			if (!selected)
+			{
+				Logger.info(() -> "background rendering : rendered frames = "
+				    + drawingPanel.getRenderedFrames() + ", dropped frames = "
+				    + drawingPanel.getDroppedFrames());
+			}
+			drawingPanel.setRenderMode(selected ? RenderMode.BACKGROUND
+			                                    : RenderMode.DIRECT);
+		}
+	}
+
+	/**
+	 * Action réalisée pour dessiner les figures complexes à partir d'images
+	 * mises en cache ou bien directement
+	 */
+	private class SpriteCacheAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action de mise en place du cache d'images
+		 */
+		public SpriteCacheAction()
+		{
+			putValue(NAME, "Sprite cache");
+			putValue(SHORT_DESCRIPTION,
+			         "Cache images of dashed or many-sided figures");
+		}
+
+		/**
+		 * Opérations réalisées par l'action : mise en place ou retrait d'un
+		 * cache d'images dans le {@link EditorFrame#drawingPanel}. Les
+		 * statistiques du cache sont journalisées ({@link Logger#info})
+		 * lorsque celui-ci est retiré.
+		 * @param event l'évènement déclenchant l'action. Peut provenir d'un
+		 * bouton ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent event)
+		{
+			AbstractButton button = (AbstractButton) event.getSource();
+			boolean selected = button.getModel().isSelected();
+			SpriteCache sprites = drawingPanel.getSpriteCache();
+			if (!selected && (sprites != null))
+			{
+				Logger.info(() -> "sprite cache : " + sprites);
+			}
+			drawingPanel.setSpriteCache(selected ? new SpriteCache() : null);
+		}
+	}
+
+	/**
+	 * Action réalisée pour zoomer la vue du dessin autour du centre du
+	 * {@link EditorFrame#drawingPanel}
+	 */
+	private class ZoomAction extends AbstractAction
+	{
+		/**
+		 * Le facteur appliqué au zoom courant
+		 */
+		private final double factor;
+
+		/**
+		 * Constructeur de l'action de zoom
+		 * @param name le nom de l'action
+		 * @param factor le facteur à appliquer au zoom courant
+		 * @param key la touche (combinée avec la touche des raccourcis de
+		 * menu) déclenchant l'action
+		 */
+		public ZoomAction(String name, double factor, int key)
+		{
+			this.factor = factor;
+			putValue(NAME, name);
+			putValue(ACCELERATOR_KEY,
+			         KeyStroke.getKeyStroke(key,
+			                                Toolkit.getDefaultToolkit()
+			                                    .getMenuShortcutKeyMask()));
+			putValue(SHORT_DESCRIPTION, name + " (x" + factor + ")");
+		}
+
+		/**
+		 * Opérations réalisées par l'action : zoom de la vue autour du
+		 * centre du panel de dessin
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 * ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			drawingPanel.zoom(factor,
+			                  new Point(drawingPanel.getWidth() / 2,
+			                            drawingPanel.getHeight() / 2));
+		}
+	}
+
+	/**
+	 * Action réalisée pour revenir à la vue initiale du dessin (pas de zoom
+	 * ni de déplacement)
+	 */
+	private class ResetViewAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action de retour à la vue initiale
+		 */
+		public ResetViewAction()
+		{
+			putValue(NAME, "Reset view");
+			putValue(ACCELERATOR_KEY,
+			         KeyStroke.getKeyStroke(KeyEvent.VK_0,
+			                                Toolkit.getDefaultToolkit()
+			                                    .getMenuShortcutKeyMask()));
+			putValue(SHORT_DESCRIPTION, "Reset zoom and pan");
+		}
+
+		/**
+		 * Opérations réalisées par l'action : retour à la vue initiale
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 * ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			drawingPanel.resetView();
+		}
+	}
+
+	/**
+	 * Action réalisée pour simplifier le rendu des figures suivant leur
+	 * taille à l'écran ou bien dessiner toutes les figures complètement
+	 */
+	private class LevelOfDetailAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action de mise en place du niveau de détail
+		 */
+		public LevelOfDetailAction()
+		{
+			putValue(NAME, "Level of detail");
+			putValue(SHORT_DESCRIPTION,
+			         "Simplify the rendering of small figures");
+		}
+
+		/**
+		 * Opérations réalisées par l'action : mise en place ou retrait d'une
+		 * politique de niveau de détail (seuils par défaut) dans le
+		 * {@link EditorFrame#drawingPanel}
+		 * @param event l'évènement déclenchant l'action. Peut provenir d'un
+		 * bouton ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent event)
+		{
+			AbstractButton button = (AbstractButton) event.getSource();
+			boolean selected = button.getModel().isSelected();
+			drawingPanel.setLevelOfDetail(selected ? new LevelOfDetail()
+			                                       : null);
+		}
+	}
+
 	/**
 	 * Action réalisée pour ajouter ou retirer un filtre de type de figure
 	 */
@@ -1141,6 +1464,7 @@ public class EditorFrame extends JFrame implements Signature
 		@Override
 		public void actionPerformed(ActionEvent e)
 		{
+			history.record();
 			drawingModel.deleteSelected();
 		}
 	}
@@ -1172,6 +1496,7 @@ public class EditorFrame extends JFrame implements Signature
 		@Override
 		public void actionPerformed(ActionEvent e)
 		{
+			history.record();
 			drawingModel.moveSelectedUp();
 		}
 	}
@@ -1203,10 +1528,64 @@ public class EditorFrame extends JFrame implements Signature
 		@Override
 		public void actionPerformed(ActionEvent e)
 		{
+			history.record();
 			drawingModel.moveSelectedDown();
 		}
 	}
 
+	/**
+	 * Action réalisée pour déplacer d'un rang les figures sélectionnées dans
+	 * la liste des figures
+	 */
+	private class StepAction extends AbstractAction
+	{
+		/**
+		 * Le sens du déplacement : true vers le haut de la liste, false vers
+		 * le bas
+		 */
+		private final boolean up;
+
+		/**
+		 * Constructeur de l'action de déplacement d'un rang
+		 * @param name le nom de l'action
+		 * @param up le sens du déplacement
+		 * @param key la touche (combinée avec shift et la touche des
+		 * raccourcis de menu) déclenchant l'action
+		 */
+		public StepAction(String name, boolean up, int key)
+		{
+			this.up = up;
+			putValue(NAME, name);
+			putValue(ACCELERATOR_KEY,
+			         KeyStroke.getKeyStroke(key,
+			                                InputEvent.SHIFT_MASK
+			                                    | Toolkit.getDefaultToolkit()
+			                                        .getMenuShortcutKeyMask()));
+			putValue(SHORT_DESCRIPTION, "Move selected figures " +
+			         (up ? "up" : "down") + " by one");
+		}
+
+		/**
+		 * Opérations réalisées par l'action : Déplacement d'un rang des
+		 * figures sélectionnées dans la liste des figures.
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 * ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			history.record();
+			if (up)
+			{
+				drawingModel.stepSelectedUp();
+			}
+			else
+			{
+				drawingModel.stepSelectedDown();
+			}
+		}
+	}
+
 	/**
 	 * Action réalisée pour appliquer le style courant aux figures
 	 * sélectionnées,
@@ -1242,6 +1621,7 @@ public class EditorFrame extends JFrame implements Signature
 			Paint fill = drawingModel.getFillpaint();
 			Paint edge = drawingModel.getEdgePaint();
 			BasicStroke stroke = drawingModel.getStroke();
+			history.record();
 			drawingModel.applyStyleToSelected(fill, edge, stroke);
 		}
 	}
@@ -1297,6 +1677,168 @@ public class EditorFrame extends JFrame implements Signature
 		}
 	}
 
+	/**
+	 * Sélecteur de fichiers de dessin (créé à la première utilisation)
+	 * @return le sélecteur de fichiers
+	 */
+	private JFileChooser getFileChooser()
+	{
+		if (fileChooser == null)
+		{
+			fileChooser = new JFileChooser();
+		}
+		return fileChooser;
+	}
+
+	/**
+	 * Action réalisée pour remplacer le dessin par celui d'un fichier
+	 */
+	private class OpenAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action d'ouverture d'un fichier de dessin.
+		 * Met en place le raccourci clavier et la description de l'action
+		 */
+		public OpenAction()
+		{
+			putValue(NAME, "Open...");
+			putValue(ACCELERATOR_KEY,
+			         KeyStroke.getKeyStroke(KeyEvent.VK_O,
+			                                Toolkit.getDefaultToolkit()
+			                                    .getMenuShortcutKeyMask()));
+			putValue(SHORT_DESCRIPTION, "Open a drawing file");
+		}
+
+		/**
+		 * Opérations réalisées par l'action : choix d'un fichier puis
+		 * chargement (annulable) de ses figures dans le dessin
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 * ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			JFileChooser chooser = getFileChooser();
+			if (chooser.showOpenDialog(EditorFrame.this)
+			    == JFileChooser.APPROVE_OPTION)
+			{
+				File file = chooser.getSelectedFile();
+				try
+				{
+					DrawingFile drawingFile = DrawingFile.open(file);
+					history.record();
+					drawingModel.load(drawingFile);
+				}
+				catch (IOException ex)
+				{
+					Logger.error(() -> "unable to open " + file + " : "
+					    + ex.getMessage());
+					JOptionPane.showMessageDialog(EditorFrame.this,
+					                              "Unable to open "
+					                                  + file.getName()
+					                                  + " :\n" + ex.getMessage(),
+					                              "Open",
+					                              JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Action réalisée pour enregistrer le dessin dans un fichier
+	 */
+	private class SaveAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action d'enregistrement du dessin.
+		 * Met en place le raccourci clavier et la description de l'action
+		 */
+		public SaveAction()
+		{
+			putValue(NAME, "Save...");
+			putValue(ACCELERATOR_KEY,
+			         KeyStroke.getKeyStroke(KeyEvent.VK_S,
+			                                Toolkit.getDefaultToolkit()
+			                                    .getMenuShortcutKeyMask()));
+			putValue(SHORT_DESCRIPTION, "Save the drawing to a file");
+		}
+
+		/**
+		 * Opérations réalisées par l'action : choix d'un fichier puis
+		 * enregistrement du dessin
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 * ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			JFileChooser chooser = getFileChooser();
+			if (chooser.showSaveDialog(EditorFrame.this)
+			    == JFileChooser.APPROVE_OPTION)
+			{
+				File file = chooser.getSelectedFile();
+				try
+				{
+					drawingModel.save(file);
+				}
+				catch (IOException ex)
+				{
+					Logger.error(() -> "unable to save " + file + " : "
+					    + ex.getMessage());
+					JOptionPane.showMessageDialog(EditorFrame.this,
+					                              "Unable to save "
+					                                  + file.getName()
+					                                  + " :\n" + ex.getMessage(),
+					                              "Save",
+					                              JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Action réalisée pour ranger les figures du dessin dans un stockage en
+	 * colonnes ({@link Drawing#compact()}) afin de réduire la mémoire occupée
+	 * par un grand dessin
+	 */
+	private class CompactAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action de rangement des figures.
+		 * Met en place la description de l'action
+		 */
+		public CompactAction()
+		{
+			putValue(NAME, "Compact");
+			putValue(SHORT_DESCRIPTION,
+			         "Store the figures compactly to reduce memory usage");
+		}
+
+		/**
+		 * Opérations réalisées par l'action : rangement des figures du dessin
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 * ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			try
+			{
+				drawingModel.compact();
+			}
+			catch (IllegalArgumentException ex)
+			{
+				Logger.error(() -> "unable to compact drawing : "
+				    + ex.getMessage());
+				JOptionPane.showMessageDialog(EditorFrame.this,
+				                              "Unable to compact the drawing :\n"
+				                                  + ex.getMessage(),
+				                              "Compact",
+				                              JOptionPane.ERROR_MESSAGE);
+			}
+		}
+	}
+
 	/**
 	 * Action vide pouvant vous servir de modèle pour de nouvelles actions ...
 	 * @author davidroussel
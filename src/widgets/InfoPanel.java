@@ -1,26 +1,50 @@
 package widgets;
 
 import java.awt.*;
+import java.awt.geom.Point2D;
 import java.text.DecimalFormat;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.*;
 import javax.swing.border.LineBorder;
 
+import figures.Drawing;
+import figures.DrawingEvent;
+import figures.DrawingListener;
 import figures.Figure;
+import figures.enums.DrawingEventType;
 import figures.enums.FigureType;
 import figures.enums.LineType;
 import utils.IconFactory;
 import utils.PaintFactory;
 
-public class InfoPanel extends JPanel
+/**
+ * Panneau d'informations sur la figure située sous le curseur de la souris.
+ * Le panneau est abonné aux seules modifications du dessin pouvant changer
+ * la figure située sous le curseur ou ses caractéristiques
+ * ({@link #Interests}), afin de rester à jour lorsque le dessin change sans
+ * que la souris ne bouge.
+ */
+public class InfoPanel extends JPanel implements DrawingListener
 {
 	/**
 	 * Serializable class must have a serial version UID
 	 */
 	private static final long serialVersionUID = -5637980381468626303L;
 
+	/**
+	 * Types des modifications du dessin dont le panneau doit être informé
+	 * (les changements de sélection et le début ou la fin d'une
+	 * transformation interactive ne modifient pas les informations
+	 * affichées)
+	 */
+	public static final Set<DrawingEventType> Interests =
+	    EnumSet.complementOf(EnumSet.of(DrawingEventType.SELECTION_CHANGED,
+	                                    DrawingEventType.ACTIVE_FIGURE_CHANGED));
+
 	/**
 	 * Une chaine vide pour remplir les champs lorsque la souris n'est au dessus
 	 * d'aucune figure
@@ -68,6 +92,17 @@ public class InfoPanel extends JPanel
 	private JLabel lblCx;
 	private JLabel lblCy;
 
+	/**
+	 * Le dessin contenant les figures décrites (ou null)
+	 */
+	private Drawing drawing;
+
+	/**
+	 * La position (en coordonnées du dessin) dont on décrit la figure ou null
+	 * si aucune figure n'est décrite
+	 */
+	private Point2D location;
+
 
 
 
@@ -300,9 +335,87 @@ public class InfoPanel extends JPanel
 	}
 
 	/**
-	 * Effacement de tous les labels
+	 * Mise en place du dessin dont on décrit les figures : le panneau se
+	 * désabonne du dessin précédent et s'abonne aux modifications du
+	 * nouveau dessin ({@link #Interests})
+	 * @param drawing le dessin (ou null)
+	 */
+	public void setDrawing(Drawing drawing)
+	{
+		if (this.drawing != null)
+		{
+			this.drawing.removeDrawingListener(this);
+		}
+		this.drawing = drawing;
+		if (drawing != null)
+		{
+			drawing.addDrawingListener(this, Interests);
+		}
+		resetLabels();
+	}
+
+	/**
+	 * Affichage des informations de la figure située à une position donnée
+	 * du dessin. Les informations sont mises à jour lorsque le dessin est
+	 * modifié, jusqu'au prochain appel ou à {@link #resetLabels()}
+	 * @param p la position (en coordonnées du dessin)
+	 */
+	public void showFigureAt(Point2D p)
+	{
+		location = p;
+		refresh();
+	}
+
+	/**
+	 * Mise à jour suite à une modification du dessin : les informations ne
+	 * sont recherchées à nouveau que si la position décrite est dans la zone
+	 * modifiée
+	 * @param event l'évènement décrivant les modifications du dessin
+	 */
+	@Override
+	public void drawingChanged(DrawingEvent event)
+	{
+		if ((location != null)
+		    && event.concerns(location.getX(), location.getY()))
+		{
+			refresh();
+		}
+	}
+
+	/**
+	 * Mise à jour des labels avec les informations de la figure située à
+	 * {@link #location} (ou effacement des labels s'il n'y en a pas)
+	 */
+	private void refresh()
+	{
+		Figure figure = null;
+		if ((drawing != null) && (location != null))
+		{
+			figure = drawing.getFigureAt(location);
+		}
+		if (figure != null)
+		{
+			updateLabels(figure);
+		}
+		else
+		{
+			clearLabels();
+		}
+	}
+
+	/**
+	 * Effacement de tous les labels : plus aucune figure n'est décrite
 	 */
 	public void resetLabels()
+	{
+		location = null;
+		clearLabels();
+	}
+
+	/**
+	 * Effacement de tous les labels
+	 */
+	private void clearLabels()
 	{
 		lblFigureName.setText(emptyString);
 		lblTypeicon.setIcon(emptyIcon);
@@ -0,0 +1,378 @@
+package widgets;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.LevelOfDetail;
+import utils.Logger;
+import utils.Signature;
+
+/**
+ * Thread de rendu en arrière plan d'un {@link DrawingPanel} (voir
+ * {@link widgets.enums.RenderMode#BACKGROUND}).
+ * Le panel demande le rendu d'une {@link Frame} (une version figée du dessin,
+ * voir {@link Drawing#snapshot()}) à chaque modification du dessin. Ce thread
+ * dessine la dernière image demandée dans une image de travail, puis
+ * l'échange avec l'image affichée par le panel lors de
+ * {@link #paint(Graphics, Color)}. Le thread de Swing n'a donc jamais à
+ * attendre le dessin des figures.
+ * Lorsqu'une nouvelle image est demandée avant que la précédente n'ait été
+ * dessinée, celle-ci est abandonnée et comptée dans {@link #droppedFrames()}.
+ * Le rendu peut être cadencé ({@link #setFrameRate(int)}) afin de ne pas
+ * dessiner plus d'images que nécessaire.
+ * @author davidroussel
+ */
+class RenderThread extends Thread implements Signature
+{
+	/**
+	 * Description (immuable) d'une image à dessiner
+	 */
+	static final class Frame
+	{
+		/**
+		 * Version figée de la liste des figures dans l'ordre de dessin
+		 */
+		final List<Figure> figures;
+
+		/**
+		 * Prédicat de visibilité (filtres) des figures
+		 */
+		final Predicate<Figure> visible;
+
+		/**
+		 * Largeur de l'image
+		 */
+		final int width;
+
+		/**
+		 * Hauteur de l'image
+		 */
+		final int height;
+
+		/**
+		 * Couleur de fond de l'image
+		 */
+		final Color background;
+
+		/**
+		 * Transformation du dessin vers l'image (déplacement et zoom de la
+		 * vue)
+		 */
+		final AffineTransform view;
+
+		/**
+		 * Politique de niveau de détail du rendu (immuable) ou null
+		 */
+		final LevelOfDetail levelOfDetail;
+
+		/**
+		 * Constructeur
+		 * @param figures la version figée de la liste des figures
+		 * @param visible le prédicat de visibilité des figures
+		 * @param width la largeur de l'image
+		 * @param height la hauteur de l'image
+		 * @param background la couleur de fond
+		 * @param view la transformation du dessin vers l'image (copiée)
+		 * @param levelOfDetail la politique de niveau de détail ou null
+		 */
+		Frame(List<Figure> figures,
+		      Predicate<Figure> visible,
+		      int width,
+		      int height,
+		      Color background,
+		      AffineTransform view,
+		      LevelOfDetail levelOfDetail)
+		{
+			this.figures = figures;
+			this.visible = visible;
+			this.width = Math.max(width, 1);
+			this.height = Math.max(height, 1);
+			this.background = background;
+			this.view = new AffineTransform(view);
+			this.levelOfDetail = levelOfDetail;
+		}
+	}
+
+	/**
+	 * Verrou protégeant {@link #pending}, {@link #front}, {@link #back} et
+	 * les compteurs d'images
+	 */
+	private final Object lock;
+
+	/**
+	 * Action à réaliser lorsqu'une nouvelle image est disponible (typiquement
+	 * demander au panel de se redessiner)
+	 */
+	private final Runnable frameReady;
+
+	/**
+	 * Prochaine image à dessiner ou null si aucune image n'est demandée
+	 */
+	private Frame pending;
+
+	/**
+	 * Dernière image complète (affichée par {@link #paint(Graphics, Color)})
+	 */
+	private BufferedImage front;
+
+	/**
+	 * Image dans laquelle est dessinée la prochaine image
+	 */
+	private BufferedImage back;
+
+	/**
+	 * Durée minimum (en nanosecondes) entre le début de deux rendus ou 0 si
+	 * le rendu n'est pas cadencé
+	 */
+	private volatile long period;
+
+	/**
+	 * Nombre d'images dessinées
+	 */
+	private long renderedFrames;
+
+	/**
+	 * Nombre d'images abandonnées avant d'avoir été dessinées
+	 */
+	private long droppedFrames;
+
+	/**
+	 * Indique si le thread doit continuer à fonctionner
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Constructeur du thread de rendu (qui doit ensuite être démarré)
+	 * @param frameReady l'action à réaliser à chaque nouvelle image
+	 * disponible
+	 * @param frameRate le nombre maximum d'images par seconde ou bien 0 pour
+	 * ne pas cadencer le rendu
+	 */
+	RenderThread(Runnable frameReady, int frameRate)
+	{
+		super("RenderThread");
+		setDaemon(true);
+		lock = new Object();
+		this.frameReady = frameReady;
+		pending = null;
+		front = null;
+		back = null;
+		renderedFrames = 0;
+		droppedFrames = 0;
+		running = true;
+		setFrameRate(frameRate);
+	}
+
+	/**
+	 * Mise en place de la cadence de rendu
+	 * @param frameRate le nombre maximum d'images par seconde ou bien 0 (ou
+	 * moins) pour ne pas cadencer le rendu
+	 */
+	void setFrameRate(int frameRate)
+	{
+		period = (frameRate > 0 ? 1000000000L / frameRate : 0L);
+	}
+
+	/**
+	 * Demande de rendu d'une nouvelle image. Une image demandée mais pas
+	 * encore dessinée est abandonnée au profit de la nouvelle.
+	 * @param frame l'image à dessiner
+	 */
+	void request(Frame frame)
+	{
+		synchronized (lock)
+		{
+			if (pending != null)
+			{
+				droppedFrames++;
+			}
+			pending = frame;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Arrêt du thread de rendu
+	 */
+	void shutdown()
+	{
+		running = false;
+		interrupt();
+	}
+
+	/**
+	 * Nombre d'images dessinées depuis le démarrage du thread
+	 * @return le nombre d'images dessinées
+	 */
+	long renderedFrames()
+	{
+		synchronized (lock)
+		{
+			return renderedFrames;
+		}
+	}
+
+	/**
+	 * Nombre d'images abandonnées (remplacées par une image plus récente
+	 * avant d'avoir été dessinées) depuis le démarrage du thread
+	 * @return le nombre d'images abandonnées
+	 */
+	long droppedFrames()
+	{
+		synchronized (lock)
+		{
+			return droppedFrames;
+		}
+	}
+
+	/**
+	 * Affichage de la dernière image complète dans un contexte graphique
+	 * @param g le contexte graphique
+	 * @param background la couleur de fond à utiliser au delà de l'image
+	 * @return true si une image a été affichée, false si aucune image n'est
+	 * encore disponible
+	 */
+	boolean paint(Graphics g, Color background)
+	{
+		synchronized (lock)
+		{
+			if (front == null)
+			{
+				return false;
+			}
+			g.drawImage(front, 0, 0, background, null);
+			return true;
+		}
+	}
+
+	/**
+	 * Boucle de rendu : attente d'une image à dessiner, cadencement puis
+	 * rendu et échange des images
+	 */
+	@Override
+	public void run()
+	{
+		long lastStart = 0;
+		while (running)
+		{
+			Frame frame;
+			try
+			{
+				synchronized (lock)
+				{
+					while (pending == null)
+					{
+						lock.wait();
+					}
+				}
+
+				long delay = (lastStart + period) - System.nanoTime();
+				if ((period > 0) && (delay > 0))
+				{
+					Thread.sleep(delay / 1000000L, (int) (delay % 1000000L));
+				}
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+
+			// La dernière image demandée (éventuellement pendant l'attente)
+			synchronized (lock)
+			{
+				frame = pending;
+				pending = null;
+			}
+
+			lastStart = System.nanoTime();
+			BufferedImage image = render(frame);
+
+			synchronized (lock)
+			{
+				back = front;
+				front = image;
+				renderedFrames++;
+			}
+			frameReady.run();
+		}
+	}
+
+	/**
+	 * Rendu d'une image dans {@link #back} (réallouée si sa taille ne
+	 * correspond pas)
+	 * @param frame l'image à dessiner
+	 * @return l'image dessinée
+	 */
+	private BufferedImage render(Frame frame)
+	{
+		BufferedImage image;
+		synchronized (lock)
+		{
+			image = back;
+		}
+		if ((image == null) || (image.getWidth() != frame.width)
+		    || (image.getHeight() != frame.height))
+		{
+			image = new BufferedImage(frame.width,
+			                          frame.height,
+			                          BufferedImage.TYPE_INT_RGB);
+		}
+
+		Graphics2D g2D = image.createGraphics();
+		try
+		{
+			g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+			                     RenderingHints.VALUE_ANTIALIAS_ON);
+			g2D.setColor(frame.background);
+			g2D.fillRect(0, 0, frame.width, frame.height);
+
+			// Zone du dessin visible dans l'image
+			Rectangle2D area = DrawingPanel.inverse(frame.view,
+			    new Rectangle2D.Double(0, 0, frame.width, frame.height));
+			g2D.setClip(0, 0, frame.width, frame.height);
+			g2D.transform(frame.view);
+			Consumer<Figure> painter = (frame.levelOfDetail != null
+			    ? frame.levelOfDetail.painter(g2D, null)
+			    : (Figure figure) -> figure.draw(g2D));
+			List<Figure> selected = new ArrayList<Figure>();
+			for (Figure figure : frame.figures)
+			{
+				if (frame.visible.test(figure)
+				    && Drawing.indexBounds(figure).intersects(area))
+				{
+					painter.accept(figure);
+					if (figure.isSelected())
+					{
+						selected.add(figure);
+					}
+				}
+			}
+
+			// Soulignement des figures sélectionnées par dessus les figures
+			for (Figure figure : selected)
+			{
+				figure.drawSelection(g2D);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			Logger.error(() -> "render failed : " + e);
+		}
+		finally
+		{
+			g2D.dispose();
+		}
+		return image;
+	}
+}
@@ -0,0 +1,22 @@
+package widgets.enums;
+
+/**
+ * Modes de rendu du panel de dessin
+ * @author davidroussel
+ */
+public enum RenderMode
+{
+	/**
+	 * Rendu direct : les figures du dessin sont dessinées par le thread de
+	 * Swing (EDT) lors de chaque paintComponent, limité aux zones
+	 * endommagées
+	 */
+	DIRECT,
+
+	/**
+	 * Rendu en arrière plan : un thread de rendu dédié dessine une version
+	 * figée du dessin dans une image, le thread de Swing se contentant
+	 * d'afficher la dernière image complète
+	 */
+	BACKGROUND;
+}
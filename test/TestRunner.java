@@ -0,0 +1,103 @@
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import export.PngEncoderTest;
+import export.TiledExporterTest;
+import figures.AttributeIndexTest;
+import figures.DrawingEventTest;
+import figures.DrawingFileTest;
+import figures.DrawingFilterTest;
+import figures.DrawingSelectionTest;
+import figures.DrawingZOrderTest;
+import figures.LevelOfDetailTest;
+import filters.FilterCompilerTest;
+import history.HistoryManagerTest;
+import utils.PersistentVectorTest;
+import utils.RTreeTest;
+
+/**
+ * Programme lançant les tests (sans bibliothèque externe) : chaque méthode
+ * publique sans argument dont le nom commence par "test" des classes de
+ * {@link #Tests} est exécutée sur une nouvelle instance de sa classe. Un test
+ * échoue s'il lève une exception (voir utils.Assert).
+ * <pre>
+ * make test
+ * java -Djava.awt.headless=true -cp testbin TestRunner [NomDeClasse ...]
+ * </pre>
+ * @author davidroussel
+ */
+public class TestRunner
+{
+	/**
+	 * Les classes de test
+	 */
+	private static final Class<?>[] Tests = {
+		RTreeTest.class,
+		HistoryManagerTest.class,
+		PersistentVectorTest.class,
+		PngEncoderTest.class,
+		TiledExporterTest.class,
+		AttributeIndexTest.class,
+		FilterCompilerTest.class,
+		DrawingEventTest.class,
+		DrawingFileTest.class,
+		DrawingFilterTest.class,
+		DrawingZOrderTest.class,
+		DrawingSelectionTest.class,
+		LevelOfDetailTest.class
+	};
+
+	/**
+	 * Programme principal
+	 * @param args les noms simples des classes de test à exécuter (toutes
+	 * si aucun nom n'est fourni)
+	 */
+	public static void main(String[] args)
+	{
+		List<String> names = Arrays.asList(args);
+		int run = 0;
+		int failed = 0;
+		for (Class<?> type : Tests)
+		{
+			if (!names.isEmpty() && !names.contains(type.getSimpleName()))
+			{
+				continue;
+			}
+			Method[] methods = type.getMethods();
+			Arrays.sort(methods, Comparator.comparing(Method::getName));
+			for (Method method : methods)
+			{
+				if (!method.getName().startsWith("test")
+				    || (method.getParameterCount() != 0)
+				    || Modifier.isStatic(method.getModifiers()))
+				{
+					continue;
+				}
+				run++;
+				String name = type.getSimpleName() + "." + method.getName();
+				try
+				{
+					method.invoke(type.getDeclaredConstructor().newInstance());
+					System.out.println("ok     " + name);
+				}
+				catch (InvocationTargetException e)
+				{
+					failed++;
+					System.out.println("FAILED " + name + " : " + e.getCause());
+					e.getCause().printStackTrace(System.out);
+				}
+				catch (ReflectiveOperationException e)
+				{
+					failed++;
+					System.out.println("FAILED " + name + " : " + e);
+				}
+			}
+		}
+		System.out.println(run + " tests, " + failed + " failed");
+		System.exit(failed > 0 ? 1 : 0);
+	}
+}
@@ -0,0 +1,163 @@
+package export;
+
+import static utils.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Tests de l'encodeur PNG par bandes {@link PngEncoder} : combinaison des
+ * sommes de contrôle Adler-32 des bandes comparée à celle de
+ * {@link Adler32} sur l'ensemble des données, et image encodée par bandes
+ * relue à l'identique par {@link ImageIO}.
+ * @author davidroussel
+ */
+public class PngEncoderTest
+{
+	/**
+	 * La combinaison des sommes de contrôle de deux suites consécutives est
+	 * la somme de contrôle de leur concaténation, y compris pour des suites
+	 * vides ou plus longues que le modulo d'Adler-32 (65521)
+	 */
+	public void testAdlerCombine()
+	{
+		Random random = new Random(6);
+		int[] lengths = {0, 1, 2, 5551, 5552, 65520, 65521, 65522, 200000};
+		for (int length1 : lengths)
+		{
+			for (int length2 : lengths)
+			{
+				byte[] data = new byte[length1 + length2];
+				random.nextBytes(data);
+				if ((length1 % 2) == 1)
+				{
+					// Octets maximaux : sommes proches du modulo
+					Arrays.fill(data, (byte) 0xFF);
+				}
+				assertCombine(data, length1);
+			}
+		}
+	}
+
+	/**
+	 * Les sommes de contrôle de bandes successives de longueurs aléatoires,
+	 * combinées au fur et à mesure, donnent celle de l'ensemble des données
+	 */
+	public void testAdlerCombineBands()
+	{
+		Random random = new Random(7);
+		byte[] data = new byte[300000];
+		random.nextBytes(data);
+		Adler32 expected = new Adler32();
+		expected.update(data, 0, data.length);
+
+		int adler = 1;
+		int offset = 0;
+		while (offset < data.length)
+		{
+			int length = Math.min(random.nextInt(70000), data.length - offset);
+			adler = PngEncoder.combine(adler, adler(data, offset, length),
+			                           length);
+			offset += length;
+		}
+		assertEquals("combined bands", (int) expected.getValue(), adler);
+	}
+
+	/**
+	 * Une image encodée en plusieurs bandes de plusieurs tuiles est relue
+	 * à l'identique
+	 * @throws IOException si l'encodage ou le décodage échoue
+	 */
+	public void testEncodeBands() throws IOException
+	{
+		int[] tileWidths = {13, 40, 7};
+		int width = 60;
+		int[] bandHeights = {5, 16, 1, 9};
+		int height = 31;
+		Random random = new Random(8);
+		int[][] image = new int[height][width];
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++)
+			{
+				image[y][x] = random.nextInt() & 0xFFFFFF;
+			}
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PngEncoder encoder =
+		    new PngEncoder(out, width, height, Deflater.BEST_SPEED);
+		int y0 = 0;
+		for (int b = 0; b < bandHeights.length; b++)
+		{
+			int rows = bandHeights[b];
+			int[][] tiles = new int[tileWidths.length][];
+			int x0 = 0;
+			for (int t = 0; t < tileWidths.length; t++)
+			{
+				tiles[t] = new int[rows * tileWidths[t]];
+				for (int y = 0; y < rows; y++)
+				{
+					System.arraycopy(image[y0 + y], x0, tiles[t],
+					                 y * tileWidths[t], tileWidths[t]);
+				}
+				x0 += tileWidths[t];
+			}
+			encoder.write(encoder.compress(tiles, tileWidths, rows,
+			                               b == bandHeights.length - 1));
+			y0 += rows;
+		}
+		encoder.finish();
+
+		BufferedImage decoded =
+		    ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals("width", width, decoded.getWidth());
+		assertEquals("height", height, decoded.getHeight());
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++)
+			{
+				assertEquals("pixel " + x + ", " + y, image[y][x],
+				             decoded.getRGB(x, y) & 0xFFFFFF);
+			}
+		}
+	}
+
+	/**
+	 * Vérification de la combinaison des sommes de contrôle des deux
+	 * parties d'un tableau
+	 * @param data les données
+	 * @param length1 la longueur de la première partie
+	 */
+	private static void assertCombine(byte[] data, int length1)
+	{
+		int length2 = data.length - length1;
+		int combined = PngEncoder.combine(adler(data, 0, length1),
+		                                  adler(data, length1, length2),
+		                                  length2);
+		assertEquals("combine " + length1 + " + " + length2,
+		             adler(data, 0, data.length), combined);
+	}
+
+	/**
+	 * Somme de contrôle Adler-32 d'une partie d'un tableau
+	 * @param data les données
+	 * @param offset l'indice du début de la partie
+	 * @param length la longueur de la partie
+	 * @return la somme de contrôle calculée par {@link Adler32}
+	 */
+	private static int adler(byte[] data, int offset, int length)
+	{
+		Adler32 checksum = new Adler32();
+		checksum.update(data, offset, length);
+		return (int) checksum.getValue();
+	}
+}
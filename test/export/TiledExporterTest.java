@@ -0,0 +1,155 @@
+package export;
+
+import static utils.Assert.assertEquals;
+import static utils.Assert.assertTrue;
+import static utils.Assert.fail;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.PaintContext;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.imageio.ImageIO;
+
+import figures.Figure;
+
+/**
+ * Tests de l'export par tuiles {@link TiledExporter} : image exportée relue
+ * par {@link ImageIO}, et échec de l'export (sans fichier partiel) lorsque
+ * le dessin d'une figure échoue.
+ * @author davidroussel
+ */
+public class TiledExporterTest
+{
+	/**
+	 * Une figure dessinée sur plusieurs tuiles et plusieurs bandes est
+	 * relue à sa place dans l'image
+	 * @throws IOException si l'export ou la relecture échoue
+	 */
+	public void testExport() throws IOException
+	{
+		List<Figure> figures = new ArrayList<Figure>();
+		figures.add(rectangle(0, 0, 100, 100, Color.white));
+		figures.add(rectangle(20, 30, 60, 50, Color.red));
+		File file = File.createTempFile("tiled", ".png");
+		try
+		{
+			export(figures, file);
+			BufferedImage image = ImageIO.read(file);
+			assertEquals("width", 100, image.getWidth());
+			assertEquals("height", 100, image.getHeight());
+			assertEquals("inside", Color.red.getRGB(), image.getRGB(50, 55));
+			assertEquals("outside", Color.white.getRGB(), image.getRGB(5, 5));
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * Le dessin d'une figure qui échoue fait échouer l'export et supprime
+	 * l'image partiellement écrite
+	 * @throws IOException si la création du fichier temporaire échoue
+	 */
+	public void testFailedTile() throws IOException
+	{
+		List<Figure> figures = new ArrayList<Figure>();
+		figures.add(rectangle(0, 0, 100, 100, Color.white));
+		figures.add(rectangle(70, 70, 20, 20, new FailingPaint()));
+		File file = File.createTempFile("tiled", ".png");
+		try
+		{
+			export(figures, file);
+			fail("export should fail");
+		}
+		catch (IllegalStateException e)
+		{
+			assertTrue("partial image deleted", !file.exists());
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * Export de figures dans un fichier avec des tuiles de 32 pixels
+	 * @param figures les figures à exporter
+	 * @param file le fichier à écrire
+	 * @throws IOException si l'export échoue
+	 */
+	private static void export(List<Figure> figures, File file)
+	    throws IOException
+	{
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try
+		{
+			TiledExporter exporter = new TiledExporter(figures, null);
+			exporter.setTileSize(32);
+			exporter.setPool(pool);
+			exporter.export(1.0, file);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Rectangle rempli sans bordure
+	 * @param x l'abscisse du rectangle
+	 * @param y l'ordonnée du rectangle
+	 * @param width la largeur du rectangle
+	 * @param height la hauteur du rectangle
+	 * @param fill le remplissage du rectangle
+	 * @return le rectangle
+	 */
+	private static Figure rectangle(double x,
+	                                double y,
+	                                double width,
+	                                double height,
+	                                Paint fill)
+	{
+		return new figures.Rectangle(new BasicStroke(),
+		                             null,
+		                             fill,
+		                             new Point2D.Double(x, y),
+		                             new Point2D.Double(x + width, y + height));
+	}
+
+	/**
+	 * Remplissage dont l'utilisation échoue
+	 */
+	private static class FailingPaint implements Paint
+	{
+		@Override
+		public PaintContext createContext(ColorModel cm,
+		                                  Rectangle deviceBounds,
+		                                  Rectangle2D userBounds,
+		                                  AffineTransform xform,
+		                                  RenderingHints hints)
+		{
+			throw new IllegalStateException("failing paint");
+		}
+
+		@Override
+		public int getTransparency()
+		{
+			return Transparency.OPAQUE;
+		}
+	}
+}
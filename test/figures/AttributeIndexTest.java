@@ -0,0 +1,163 @@
+package figures;
+
+import static utils.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import figures.enums.FigureType;
+import figures.enums.LineType;
+import filters.EdgeColorFilter;
+import filters.FigureFilter;
+import filters.FigureFilters;
+import filters.FillColorFilter;
+import filters.LineFilter;
+import filters.ShapeFilter;
+
+/**
+ * Tests de l'index des attributs des figures ({@link AttributeIndex}) : les
+ * ensembles de rangs de chaque valeur d'attribut et les filtres évalués sur
+ * l'index ({@link FigureFilter#select(AttributeIndex)}) correspondent au test
+ * de chacune des figures, y compris après insertion ou retrait de figures.
+ * @author davidroussel
+ */
+public class AttributeIndexTest
+{
+	/**
+	 * Nombre de figures
+	 */
+	private static final int Count = 30;
+
+	/**
+	 * Les couleurs utilisées par les figures (null : pas de couleur)
+	 */
+	private static final Paint[] Colors = {
+		Color.red, Color.green, Color.blue, null
+	};
+
+	/**
+	 * Les figures indexées
+	 */
+	private final List<Figure> figures;
+
+	/**
+	 * L'index testé
+	 */
+	private final AttributeIndex index;
+
+	/**
+	 * Constructeur : figures de types, de traits et de couleurs variés
+	 */
+	public AttributeIndexTest()
+	{
+		Drawing drawing = new Drawing();
+		for (int i = 0; i < Count; i++)
+		{
+			drawing.setFigureType(FigureType.fromInteger(i % 4));
+			drawing.setEdgeType(LineType.fromInteger(i % LineType.NbLineTypes));
+			drawing.setFillPaint(Colors[i % Colors.length]);
+			drawing.setEdgePaint(Colors[(i / 2) % 3]);
+			Figure figure =
+			    drawing.initiateFigure(new Point2D.Double(10 * i, 5 * i));
+			figure.setLastPoint(new Point2D.Double(10 * i + 20, 5 * i + 15));
+			figure.normalize();
+			drawing.update(figure);
+		}
+		figures = drawing.snapshot();
+		index = new AttributeIndex();
+		index.rebuild(figures);
+	}
+
+	/**
+	 * Les ensembles de l'index et les filtres évalués sur l'index
+	 * correspondent au test de chacune des figures
+	 */
+	public void testSelectMatchesFilters()
+	{
+		for (FigureFilter<?> filter : filters())
+		{
+			assertEquals(filter.toString(), expected(filter, figures),
+			             filter.select(index));
+		}
+	}
+
+	/**
+	 * Les rangs des figures sont décalés lors du retrait puis de la
+	 * réinsertion de figures
+	 */
+	public void testRemoveAndInsert()
+	{
+		int[] indices = {0, 7, 8, 21};
+		List<Figure> remaining = new ArrayList<Figure>(figures);
+		Figure[] removed = new Figure[indices.length];
+		for (int i = indices.length - 1; i >= 0; i--)
+		{
+			removed[i] = remaining.remove(indices[i]);
+		}
+
+		index.remove(indices);
+		for (FigureFilter<?> filter : filters())
+		{
+			assertEquals("removed " + filter, expected(filter, remaining),
+			             filter.select(index));
+		}
+
+		index.insert(indices, removed);
+		for (FigureFilter<?> filter : filters())
+		{
+			assertEquals("inserted " + filter, expected(filter, figures),
+			             filter.select(index));
+		}
+	}
+
+	/**
+	 * Filtres de chacune des valeurs d'attributs, et ensembles de filtres
+	 * @return les filtres à évaluer
+	 */
+	private static List<FigureFilter<?>> filters()
+	{
+		List<FigureFilter<?>> filters = new ArrayList<FigureFilter<?>>();
+		for (int i = 0; i < 4; i++)
+		{
+			filters.add(new ShapeFilter(FigureType.fromInteger(i)));
+		}
+		for (int i = 0; i < LineType.NbLineTypes; i++)
+		{
+			filters.add(new LineFilter(LineType.fromInteger(i)));
+		}
+		for (Paint paint : Arrays.asList(Color.red, Color.green, Color.blue))
+		{
+			filters.add(new FillColorFilter(paint));
+			filters.add(new EdgeColorFilter(paint));
+		}
+		FigureFilters<FigureType> shapes = new FigureFilters<FigureType>();
+		shapes.add(new ShapeFilter(FigureType.CIRCLE));
+		shapes.add(new ShapeFilter(FigureType.ROUNDED_RECTANGLE));
+		filters.add(shapes);
+		return filters;
+	}
+
+	/**
+	 * Rangs des figures vérifiant un filtre
+	 * @param filter le filtre
+	 * @param figures les figures
+	 * @return l'ensemble des rangs des figures vérifiant le filtre
+	 */
+	private static BitSet expected(FigureFilter<?> filter, List<Figure> figures)
+	{
+		BitSet expected = new BitSet();
+		for (int i = 0; i < figures.size(); i++)
+		{
+			if (filter.test(figures.get(i)))
+			{
+				expected.set(i);
+			}
+		}
+		return expected;
+	}
+}
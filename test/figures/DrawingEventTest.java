@@ -0,0 +1,142 @@
+package figures;
+
+import static utils.Assert.assertEquals;
+import static utils.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import figures.enums.DrawingEventType;
+import figures.enums.FigureType;
+
+/**
+ * Tests des notifications du dessin ({@link DrawingEvent}) : types des
+ * modifications et zones endommagées, regroupement des modifications d'une
+ * transaction en un seul évènement et abonnement à certains types de
+ * modifications.
+ * @author davidroussel
+ */
+public class DrawingEventTest
+{
+	/**
+	 * Le dessin testé
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * Les figures du dessin
+	 */
+	private final List<Figure> figures;
+
+	/**
+	 * Les évènements reçus
+	 */
+	private final List<DrawingEvent> events;
+
+	/**
+	 * Constructeur : dessin de trois rectangles disjoints, puis abonnement
+	 * d'un listener conservant les évènements reçus
+	 */
+	public DrawingEventTest()
+	{
+		drawing = new Drawing();
+		drawing.setFigureType(FigureType.RECTANGLE);
+		for (int i = 0; i < 3; i++)
+		{
+			Figure figure =
+			    drawing.initiateFigure(new Point2D.Double(100 * i, 0));
+			figure.setLastPoint(new Point2D.Double(100 * i + 10, 10));
+			figure.normalize();
+			drawing.update(figure);
+		}
+		figures = drawing.snapshot();
+		events = new ArrayList<DrawingEvent>();
+		drawing.addDrawingListener(events::add);
+	}
+
+	/**
+	 * Hors transaction, chaque modification est signalée par un évènement
+	 * dont la zone endommagée est celle de la figure concernée
+	 */
+	public void testEventOutsideTransaction()
+	{
+		drawing.select(figures.get(1), true);
+		assertEquals("events", 1, events.size());
+		DrawingEvent event = events.get(0);
+		assertTrue("selection",
+		           event.contains(DrawingEventType.SELECTION_CHANGED));
+		assertTrue("damage",
+		           event.getDamage().contains(new Point2D.Double(105, 5)));
+		assertTrue("outside damage", !event.concerns(5, 5));
+	}
+
+	/**
+	 * Les modifications d'une transaction (éventuellement imbriquée) sont
+	 * signalées par un seul évènement à la fin de la transaction externe,
+	 * avec l'union des zones endommagées
+	 */
+	public void testTransactionCoalescesEvents()
+	{
+		drawing.beginTransaction();
+		drawing.select(figures.get(0), true);
+		drawing.transaction(() -> drawing.select(figures.get(2), true));
+		assertEquals("no event during transaction", 0, events.size());
+		drawing.endTransaction();
+
+		assertEquals("one event", 1, events.size());
+		DrawingEvent event = events.get(0);
+		assertEquals("types", EnumSet.of(DrawingEventType.SELECTION_CHANGED),
+		             event.getTypes());
+		Rectangle2D damage = event.getDamage();
+		assertTrue("first damage", damage.contains(new Point2D.Double(5, 5)));
+		assertTrue("last damage", damage.contains(new Point2D.Double(205, 5)));
+	}
+
+	/**
+	 * Une modification concernant tout le dessin au sein d'une transaction
+	 * rend l'évènement global (sans zone endommagée), et une transaction
+	 * sans modification n'émet pas d'évènement
+	 */
+	public void testWholeDrawingTransaction()
+	{
+		drawing.transaction(() -> {});
+		assertEquals("no event", 0, events.size());
+
+		drawing.transaction(() -> {
+			drawing.select(figures.get(0), true);
+			drawing.setFiltering(true);
+		});
+		assertEquals("one event", 1, events.size());
+		DrawingEvent event = events.get(0);
+		assertTrue("filters", event.contains(DrawingEventType.FILTERS_CHANGED));
+		assertTrue("selection",
+		           event.contains(DrawingEventType.SELECTION_CHANGED));
+		assertEquals("whole drawing", null, event.getDamage());
+		assertTrue("concerns everything", event.concerns(1000, 1000));
+	}
+
+	/**
+	 * Un listener abonné à certains types de modifications ne reçoit que les
+	 * évènements contenant l'un de ces types
+	 */
+	public void testSubscriptionInterests()
+	{
+		List<DrawingEvent> filterEvents = new ArrayList<DrawingEvent>();
+		DrawingListener listener = filterEvents::add;
+		drawing.addDrawingListener(listener,
+		                           EnumSet.of(DrawingEventType.FILTERS_CHANGED));
+		drawing.select(figures.get(0), true);
+		assertEquals("selection ignored", 0, filterEvents.size());
+		drawing.setFiltering(true);
+		assertEquals("filters received", 1, filterEvents.size());
+		assertEquals("all received", 2, events.size());
+
+		drawing.removeDrawingListener(listener);
+		drawing.setFiltering(false);
+		assertEquals("unsubscribed", 1, filterEvents.size());
+		assertEquals("still subscribed", 3, events.size());
+	}
+}
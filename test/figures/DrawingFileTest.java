@@ -0,0 +1,292 @@
+package figures;
+
+import static utils.Assert.assertEquals;
+import static utils.Assert.assertTrue;
+import static utils.Assert.fail;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import figures.enums.FigureType;
+import figures.enums.LineType;
+import filters.ShapeFilter;
+
+/**
+ * Tests de l'enregistrement et du chargement des dessins
+ * ({@link DrawingFile}) : les figures relues ont le même type, la même
+ * géométrie et le même style que celles enregistrées, et un fichier ouvert
+ * peut être remplacé par un nouvel enregistrement. Le rangement des figures
+ * en colonnes ({@link FigureStore}), qui utilise le même codage, est
+ * également testé.
+ * @author davidroussel
+ */
+public class DrawingFileTest
+{
+	/**
+	 * Les couleurs utilisées par les figures du dessin
+	 */
+	private static final Color[] Colors = {
+		Color.red, Color.green, Color.blue, new Color(12, 34, 56, 78)
+	};
+
+	/**
+	 * Le dessin enregistré
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * Constructeur : dessin d'une figure de chaque type rectangulaire avec
+	 * des styles et des transformations différents
+	 */
+	public DrawingFileTest()
+	{
+		drawing = new Drawing();
+		FigureType[] types = {
+			FigureType.CIRCLE,
+			FigureType.ELLIPSE,
+			FigureType.RECTANGLE,
+			FigureType.ROUNDED_RECTANGLE
+		};
+		for (int i = 0; i < 12; i++)
+		{
+			drawing.setFigureType(types[i % types.length]);
+			drawing.setFillPaint((i % 5) == 0 ? null
+			                                  : Colors[i % Colors.length]);
+			drawing.setEdgePaint(Colors[(i + 1) % Colors.length]);
+			drawing.setEdgeWidth(1 + (i % 3));
+			drawing.setEdgeType(LineType.fromInteger(1 + (i % 2)));
+			Figure figure =
+			    drawing.initiateFigure(new Point2D.Double(15 * i, 7 * i));
+			figure.setLastPoint(new Point2D.Double(15 * i + 30 + i,
+			                                       7 * i + 20));
+			figure.normalize();
+			if ((i % 3) == 1)
+			{
+				figure.translate(5.5, -2.25);
+			}
+			if ((i % 4) == 2)
+			{
+				figure.rotate(Math.PI / (i + 1));
+			}
+			if ((i % 4) == 3)
+			{
+				figure.scale(1.5);
+			}
+			drawing.update(figure);
+		}
+	}
+
+	/**
+	 * Un dessin enregistré puis chargé contient les mêmes figures dans le
+	 * même ordre
+	 * @throws IOException si l'enregistrement ou l'ouverture échoue
+	 */
+	public void testRoundTrip() throws IOException
+	{
+		File file = File.createTempFile("drawing", ".fig");
+		try
+		{
+			drawing.save(file);
+			Drawing loaded = new Drawing();
+			loaded.load(DrawingFile.open(file));
+			assertSameFigures(drawing, loaded);
+
+			// Identifiants distincts des figures relues
+			Set<Long> ids = new HashSet<Long>();
+			for (Figure figure : loaded.snapshot())
+			{
+				assertTrue("duplicate id " + figure.getId(),
+				           ids.add(Long.valueOf(figure.getId())));
+				assertTrue("figure of id " + figure.getId(),
+				           loaded.getFigure(figure.getId()) == figure);
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * Un dessin chargé depuis un fichier peut être modifié puis enregistré
+	 * dans ce même fichier : le nouveau contenu est relu et le dessin chargé
+	 * depuis l'ancien contenu reste lisible
+	 * @throws IOException si l'enregistrement ou l'ouverture échoue
+	 */
+	public void testOverwriteOpenFile() throws IOException
+	{
+		File file = File.createTempFile("drawing", ".fig");
+		try
+		{
+			drawing.save(file);
+			Drawing loaded = new Drawing();
+			loaded.load(DrawingFile.open(file));
+			List<Figure> before = loaded.snapshot();
+
+			loaded.select(before.get(0), true);
+			loaded.deleteSelected();
+			loaded.select(loaded.snapshot().get(1), true);
+			loaded.applyStyleToSelected(Color.yellow, null, null);
+			loaded.save(file);
+
+			Drawing reloaded = new Drawing();
+			reloaded.load(DrawingFile.open(file));
+			assertSameFigures(loaded, reloaded);
+			assertEquals("figures", before.size() - 1,
+			             reloaded.snapshot().size());
+			assertEquals("restyled fill", Color.yellow,
+			             reloaded.snapshot().get(1).getFillPaint());
+
+			// L'ancienne version projetée en mémoire reste lisible
+			assertSameFigures(drawing, before);
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * Un fichier qui n'est pas un fichier de dessin est refusé
+	 * @throws IOException si le fichier temporaire ne peut pas être créé
+	 */
+	public void testInvalidFile() throws IOException
+	{
+		File file = File.createTempFile("drawing", ".fig");
+		try
+		{
+			Files.write(file.toPath(),
+			            "not a drawing".getBytes("US-ASCII"));
+			try
+			{
+				DrawingFile.open(file);
+				fail("invalid file opened");
+			}
+			catch (IOException e)
+			{
+				// attendu
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * Un fichier contenant une figure d'un type que
+	 * {@link FigureType#getFigure} ne sait pas construire est refusé dès son
+	 * ouverture, sans réserver d'identifiants
+	 * @throws IOException si l'enregistrement échoue
+	 */
+	public void testUnsupportedFigureType() throws IOException
+	{
+		File file = File.createTempFile("drawing", ".fig");
+		try
+		{
+			drawing.save(file);
+			byte[] bytes = Files.readAllBytes(file.toPath());
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			int record = (int) buffer.getLong(56)
+			    + buffer.getInt((int) buffer.getLong(48));
+			bytes[record] = (byte) FigureType.NGON.intValue();
+			Files.write(file.toPath(), bytes);
+
+			long nextId = Drawing.reserveIds(0);
+			try
+			{
+				DrawingFile.open(file);
+				fail("unsupported figure type opened");
+			}
+			catch (IOException e)
+			{
+				assertEquals("reserved ids", nextId, Drawing.reserveIds(0));
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * Un dessin rangé en colonnes ({@link Drawing#compact()}) contient les
+	 * mêmes figures avec les mêmes identifiants, et conserve sa sélection, y
+	 * compris celle des figures masquées par les filtres
+	 */
+	public void testCompact()
+	{
+		List<Figure> figures = drawing.snapshot();
+		drawing.select(figures.get(1), true);
+		drawing.select(figures.get(4), true);
+		drawing.setFiltering(true);
+		drawing.addShapeFilter(new ShapeFilter(FigureType.CIRCLE));
+
+		drawing.compact();
+		List<Figure> compacted = drawing.snapshot();
+		assertSameFigures(figures, compacted);
+		for (int i = 0; i < compacted.size(); i++)
+		{
+			Figure figure = compacted.get(i);
+			assertEquals("id " + i, figures.get(i).getId(), figure.getId());
+			assertTrue("figure of id " + figure.getId(),
+			           drawing.getFigure(figure.getId()) == figure);
+			assertEquals("selected " + i, Boolean.valueOf((i == 1) || (i == 4)),
+			             Boolean.valueOf(figure.isSelected()));
+		}
+		assertTrue("visible selection", drawing.hasSelection());
+	}
+
+	/**
+	 * Vérification que deux dessins contiennent des figures équivalentes
+	 * dans le même ordre
+	 * @param expected le dessin de référence
+	 * @param actual le dessin à vérifier
+	 */
+	private static void assertSameFigures(Drawing expected, Drawing actual)
+	{
+		assertSameFigures(expected, actual.snapshot());
+	}
+
+	/**
+	 * Vérification que les figures d'une liste sont équivalentes à celles
+	 * d'un dessin
+	 * @param expected le dessin de référence
+	 * @param actual les figures à vérifier
+	 */
+	private static void assertSameFigures(Drawing expected, List<Figure> actual)
+	{
+		assertSameFigures(expected.stream().collect(Collectors.toList()),
+		                  actual);
+	}
+
+	/**
+	 * Vérification que les figures de deux listes sont équivalentes
+	 * @param figures les figures de référence
+	 * @param actual les figures à vérifier
+	 */
+	private static void assertSameFigures(List<Figure> figures,
+	                                      List<Figure> actual)
+	{
+		assertEquals("size", figures.size(), actual.size());
+		for (int i = 0; i < figures.size(); i++)
+		{
+			Figure e = figures.get(i);
+			Figure a = actual.get(i);
+			assertEquals("type " + i, e.getType(), a.getType());
+			assertEquals("bounds " + i, e.getBounds2D(), a.getBounds2D());
+			assertEquals("transform " + i, e.getTransform(), a.getTransform());
+			assertEquals("fill " + i, e.getFillPaint(), a.getFillPaint());
+			assertEquals("edge " + i, e.getEdgePaint(), a.getEdgePaint());
+			assertEquals("stroke " + i, e.getStroke(), a.getStroke());
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package figures;
+
+import static utils.Assert.assertEquals;
+import static utils.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import figures.enums.FigureType;
+import figures.enums.LineType;
+import filters.LineFilter;
+import filters.ShapeFilter;
+
+/**
+ * Tests du filtrage des figures d'un dessin ({@link Drawing#stream()}) lors
+ * de l'ajout et du retrait des filtres.
+ * @author davidroussel
+ */
+public class DrawingFilterTest
+{
+	/**
+	 * Le dessin testé
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * Constructeur : dessin alternant rectangles et ellipses, traits pleins
+	 * et traits pointillés
+	 */
+	public DrawingFilterTest()
+	{
+		drawing = new Drawing();
+		for (int i = 0; i < 8; i++)
+		{
+			drawing.setFigureType((i % 2) == 0 ? FigureType.RECTANGLE
+			                                   : FigureType.ELLIPSE);
+			drawing.setEdgeType((i % 4) < 2 ? LineType.SOLID : LineType.DASHED);
+			drawing.setFillPaint((i % 3) == 0 ? Color.red : Color.blue);
+			Figure figure =
+			    drawing.initiateFigure(new Point2D.Double(10 * i, 10 * i));
+			figure.setLastPoint(new Point2D.Double(10 * i + 20, 10 * i + 20));
+			figure.normalize();
+			drawing.update(figure);
+		}
+		drawing.setFiltering(true);
+	}
+
+	/**
+	 * Un filtre de type de trait retiré ne filtre plus les figures
+	 */
+	public void testLineFilterAddRemove()
+	{
+		assertEquals("unfiltered", 8, visible().size());
+		assertTrue("added", drawing.addLineFilter(new LineFilter(LineType.DASHED)));
+		assertEquals("dashed", indices(2, 3, 6, 7), visible());
+
+		assertTrue("removed",
+		           drawing.removeLineFilter(new LineFilter(LineType.DASHED)));
+		assertEquals("after removal", 8, visible().size());
+		assertTrue("removed twice",
+		           !drawing.removeLineFilter(new LineFilter(LineType.DASHED)));
+		assertEquals("after second removal", 8, visible().size());
+	}
+
+	/**
+	 * Les filtres de types de figures et de types de traits se combinent et
+	 * se retirent indépendamment
+	 */
+	public void testShapeAndLineFilters()
+	{
+		drawing.addShapeFilter(new ShapeFilter(FigureType.ELLIPSE));
+		assertEquals("ellipses", indices(1, 3, 5, 7), visible());
+		drawing.addLineFilter(new LineFilter(LineType.SOLID));
+		assertEquals("solid ellipses", indices(1, 5), visible());
+		drawing.removeShapeFilter(new ShapeFilter(FigureType.ELLIPSE));
+		assertEquals("solid", indices(0, 1, 4, 5), visible());
+		drawing.removeLineFilter(new LineFilter(LineType.SOLID));
+		assertEquals("all", 8, visible().size());
+	}
+
+	/**
+	 * Indices (dans l'ordre de création) des figures visibles
+	 * @return les indices des figures fournies par {@link Drawing#stream()}
+	 */
+	private List<Integer> visible()
+	{
+		List<Figure> all = drawing.snapshot();
+		return drawing.stream()
+		    .map((Figure figure) -> Integer.valueOf(all.indexOf(
+		        drawing.getFigure(figure.getId()))))
+		    .collect(Collectors.toList());
+	}
+
+	/**
+	 * Liste d'indices
+	 * @param indices les indices
+	 * @return la liste des indices
+	 */
+	private static List<Integer> indices(Integer... indices)
+	{
+		return Arrays.asList(indices);
+	}
+}
@@ -0,0 +1,186 @@
+package figures;
+
+import static utils.Assert.assertEquals;
+import static utils.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import figures.enums.DrawingEventType;
+import figures.enums.FigureType;
+import filters.ShapeFilter;
+
+/**
+ * Tests de la sélection des figures d'un dessin : sélection par zone
+ * ({@link Drawing#selectArea(Rectangle2D, boolean, boolean)}), sélection
+ * et désélection des figures, et mise à jour de la sélection (figures
+ * sélectionnées visibles) lors de la modification des filtres.
+ * @author davidroussel
+ */
+public class DrawingSelectionTest
+{
+	/**
+	 * Nombre de figures du dessin
+	 */
+	private static final int Count = 8;
+
+	/**
+	 * Le dessin testé
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * Constructeur : une rangée de carrés de 10 x 10 espacés de 20 en
+	 * abscisse, alternant rectangles et ellipses
+	 */
+	public DrawingSelectionTest()
+	{
+		drawing = new Drawing();
+		for (int i = 0; i < Count; i++)
+		{
+			drawing.setFigureType((i % 2) == 0 ? FigureType.RECTANGLE
+			                                   : FigureType.ELLIPSE);
+			Figure figure =
+			    drawing.initiateFigure(new Point2D.Double(20 * i, 0));
+			figure.setLastPoint(new Point2D.Double(20 * i + 10, 10));
+			figure.normalize();
+			drawing.update(figure);
+		}
+	}
+
+	/**
+	 * La sélection par zone sélectionne les figures qui intersectent la zone
+	 * ou seulement celles qu'elle contient
+	 */
+	public void testSelectAreaIntersectsOrContains()
+	{
+		Rectangle2D area = new Rectangle2D.Double(-5, -5, 30, 20);
+		assertEquals("intersecting", 2, drawing.selectArea(area, false, false));
+		assertEquals("intersected", indices(0, 1), selected());
+
+		assertEquals("contained", 1, drawing.selectArea(area, true, false));
+		assertEquals("contained figures", indices(0), selected());
+		assertTrue("selection", drawing.hasSelection());
+	}
+
+	/**
+	 * La sélection par zone remplace la sélection courante ou la complète
+	 */
+	public void testSelectAreaReplaceOrExtend()
+	{
+		drawing.selectArea(new Rectangle2D.Double(-5, -5, 50, 20), false, false);
+		assertEquals("first area", indices(0, 1, 2), selected());
+
+		drawing.selectArea(new Rectangle2D.Double(55, -5, 10, 20), false, false);
+		assertEquals("replaced", indices(3), selected());
+
+		drawing.selectArea(new Rectangle2D.Double(95, -5, 10, 20), false, true);
+		assertEquals("extended", indices(3, 5), selected());
+
+		assertEquals("empty area", 0,
+		             drawing.selectArea(new Rectangle2D.Double(0, 50, 10, 10),
+		                                false, false));
+		assertEquals("nothing selected", indices(), selected());
+		assertTrue("no selection", !drawing.hasSelection());
+	}
+
+	/**
+	 * La sélection par zone ignore les figures masquées par les filtres
+	 */
+	public void testSelectAreaSkipsHiddenFigures()
+	{
+		drawing.setFiltering(true);
+		drawing.addShapeFilter(new ShapeFilter(FigureType.ELLIPSE));
+		Rectangle2D all = new Rectangle2D.Double(-5, -5, 20 * Count + 10, 20);
+		assertEquals("visible figures", Count / 2,
+		             drawing.selectArea(all, false, false));
+		assertEquals("ellipses", indices(1, 3, 5, 7), selected());
+	}
+
+	/**
+	 * La sélection d'une figure puis l'inversion de son état sélectionné
+	 * mettent à jour la sélection du dessin
+	 */
+	public void testSelectAndToggle()
+	{
+		Figure figure = drawing.snapshot().get(2);
+		drawing.select(figure, true);
+		assertTrue("selected", drawing.hasSelection() && figure.isSelected());
+		drawing.toggleSelection(figure);
+		assertTrue("toggled", !drawing.hasSelection() && !figure.isSelected());
+	}
+
+	/**
+	 * Les figures sélectionnées masquées par les filtres sont retirées de la
+	 * sélection du dessin puis y reviennent lorsqu'elles redeviennent
+	 * visibles, et les listeners sont informés de ces modifications
+	 */
+	public void testFiltersRefreshSelection()
+	{
+		int[] selectionEvents = {0};
+		drawing.addDrawingListener((DrawingEvent event) -> {
+			if (event.contains(DrawingEventType.SELECTION_CHANGED))
+			{
+				selectionEvents[0]++;
+			}
+		});
+		drawing.select(drawing.snapshot().get(0), true);
+		drawing.setFiltering(true);
+		drawing.addShapeFilter(new ShapeFilter(FigureType.ELLIPSE));
+		assertTrue("hidden selection", !drawing.hasSelection());
+		assertEquals("still selected", indices(0), selected());
+
+		drawing.removeShapeFilter(new ShapeFilter(FigureType.ELLIPSE));
+		assertTrue("visible selection", drawing.hasSelection());
+		assertEquals("events", 4, selectionEvents[0]);
+	}
+
+	/**
+	 * L'effacement de la sélection désélectionne aussi les figures masquées
+	 * par les filtres
+	 */
+	public void testClearSelectionClearsHiddenFigures()
+	{
+		drawing.selectArea(new Rectangle2D.Double(-5, -5, 30, 20), false, false);
+		drawing.setFiltering(true);
+		drawing.addShapeFilter(new ShapeFilter(FigureType.ELLIPSE));
+		assertTrue("visible selection", drawing.hasSelection());
+
+		drawing.clearSelection();
+		assertEquals("nothing selected", indices(), selected());
+		drawing.setFiltering(false);
+		assertTrue("no selection", !drawing.hasSelection());
+	}
+
+	/**
+	 * Indices (dans l'ordre de dessin) des figures sélectionnées, visibles
+	 * ou non
+	 * @return les indices des figures sélectionnées
+	 */
+	private List<Integer> selected()
+	{
+		List<Integer> result = new ArrayList<Integer>();
+		List<Figure> figures = drawing.snapshot();
+		for (int i = 0; i < figures.size(); i++)
+		{
+			if (figures.get(i).isSelected())
+			{
+				result.add(Integer.valueOf(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Liste d'indices
+	 * @param indices les indices
+	 * @return la liste des indices
+	 */
+	private static List<Integer> indices(Integer... indices)
+	{
+		return Arrays.asList(indices);
+	}
+}
@@ -0,0 +1,220 @@
+package figures;
+
+import static utils.Assert.assertArrayEquals;
+import static utils.Assert.assertEquals;
+import static utils.Assert.assertSame;
+import static utils.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.BitSet;
+import java.util.List;
+
+import figures.enums.FigureType;
+import history.HistoryManager;
+import history.HistoryMode;
+
+/**
+ * Tests des changements d'ordre de dessin des figures sélectionnées
+ * ({@link Drawing#stepSelectedUp()}, {@link Drawing#stepSelectedDown()},
+ * {@link Drawing#moveSelectedUp()} et {@link Drawing#moveSelectedDown()}) et
+ * de leur annulation.
+ * @author davidroussel
+ */
+public class DrawingZOrderTest
+{
+	/**
+	 * Le dessin testé
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * Les figures du dessin dans leur ordre initial
+	 */
+	private final Figure[] figures;
+
+	/**
+	 * Le gestionnaire d'historique du dessin
+	 */
+	private final HistoryManager<Figure> history;
+
+	/**
+	 * Constructeur : dessin de quatre rectangles
+	 */
+	public DrawingZOrderTest()
+	{
+		drawing = new Drawing();
+		drawing.setFigureType(FigureType.RECTANGLE);
+		figures = new Figure[4];
+		for (int i = 0; i < figures.length; i++)
+		{
+			figures[i] = drawing.initiateFigure(new Point2D.Double(10 * i,
+			                                                       10 * i));
+			figures[i].setLastPoint(new Point2D.Double(10 * i + 20,
+			                                           10 * i + 20));
+			figures[i].normalize();
+			drawing.update(figures[i]);
+		}
+		history = new HistoryManager<Figure>(drawing, 100, HistoryMode.DELTA);
+	}
+
+	/**
+	 * Un bloc de figures sélectionnées contiguës descend d'un seul tenant :
+	 * "0* 1* 2 3" donne "2 0* 1* 3" puis "2 3 0* 1*" puis reste en place
+	 */
+	public void testStepDownContiguousBlock()
+	{
+		select(0, 1);
+		drawing.stepSelectedDown();
+		assertOrder(2, 0, 1, 3);
+		drawing.stepSelectedDown();
+		assertOrder(2, 3, 0, 1);
+		drawing.stepSelectedDown();
+		assertOrder(2, 3, 0, 1);
+	}
+
+	/**
+	 * Un bloc de figures sélectionnées contiguës monte d'un seul tenant :
+	 * "0 1 2* 3*" donne "0 2* 3* 1" puis "2* 3* 0 1" puis reste en place
+	 */
+	public void testStepUpContiguousBlock()
+	{
+		select(2, 3);
+		drawing.stepSelectedUp();
+		assertOrder(0, 2, 3, 1);
+		drawing.stepSelectedUp();
+		assertOrder(2, 3, 0, 1);
+		drawing.stepSelectedUp();
+		assertOrder(2, 3, 0, 1);
+	}
+
+	/**
+	 * Une figure sélectionnée déjà en début de liste reste en place et ne
+	 * bloque pas les autres : "0* 1 2* 3" donne "0* 2* 1 3"
+	 */
+	public void testStepUpAtBoundary()
+	{
+		select(0, 2);
+		drawing.stepSelectedUp();
+		assertOrder(0, 2, 1, 3);
+	}
+
+	/**
+	 * Une figure sélectionnée déjà en fin de liste reste en place et ne
+	 * bloque pas les autres : "0 1* 2 3*" donne "0 2 1* 3*"
+	 */
+	public void testStepDownAtBoundary()
+	{
+		select(1, 3);
+		drawing.stepSelectedDown();
+		assertOrder(0, 2, 1, 3);
+	}
+
+	/**
+	 * L'annulation puis le rétablissement d'un déplacement de bloc
+	 * restaurent les ordres successifs et la sélection
+	 */
+	public void testStepUndoRedo()
+	{
+		select(0, 1);
+		history.record();
+		drawing.stepSelectedDown();
+		assertOrder(2, 0, 1, 3);
+		history.undo();
+		assertOrder(0, 1, 2, 3);
+		history.redo();
+		assertOrder(2, 0, 1, 3);
+	}
+
+	/**
+	 * Les déplacements en début ou en fin de liste conservent l'ordre relatif
+	 * des figures sélectionnées et s'annulent
+	 */
+	public void testMoveUpDown()
+	{
+		select(1, 3);
+		history.record();
+		drawing.moveSelectedUp();
+		assertOrder(1, 3, 0, 2);
+		history.record();
+		drawing.moveSelectedDown();
+		assertOrder(0, 2, 1, 3);
+		history.undo();
+		assertOrder(1, 3, 0, 2);
+		history.undo();
+		assertOrder(0, 1, 2, 3);
+	}
+
+	/**
+	 * Les changements d'ordre ne modifient pas les profondeurs des figures
+	 * d'une version conservée de la liste des figures
+	 */
+	public void testReorderKeepsSnapshots()
+	{
+		select(0, 2);
+		List<Figure> saved = drawing.snapshot();
+		double[] depths = saved.stream().mapToDouble(
+		    (Figure figure) -> figure.depth).toArray();
+		drawing.stepSelectedDown();
+		drawing.moveSelectedUp();
+		drawing.moveSelectedDown();
+		assertOrder(1, 3, 0, 2);
+		for (int i = 0; i < depths.length; i++)
+		{
+			assertTrue("depth of saved figure " + i,
+			           saved.get(i).depth == depths[i]);
+			assertSame("saved figure " + i, figures[i], saved.get(i));
+		}
+	}
+
+	/**
+	 * Sélection de figures
+	 * @param indices les indices (dans l'ordre initial) des figures à
+	 * sélectionner
+	 */
+	private void select(int... indices)
+	{
+		drawing.clearSelection();
+		for (int index : indices)
+		{
+			drawing.select(figures[index], true);
+		}
+	}
+
+	/**
+	 * Vérification de l'ordre de dessin, des rangs et de l'index de la
+	 * sélection
+	 * @param expected les indices (dans l'ordre initial) des figures dans
+	 * l'ordre de dessin attendu
+	 */
+	private void assertOrder(int... expected)
+	{
+		int[] actual = drawing.stream().mapToInt((Figure figure) -> {
+			for (int i = 0; i < figures.length; i++)
+			{
+				if (figures[i].getId() == figure.getId())
+				{
+					return i;
+				}
+			}
+			return -1;
+		}).toArray();
+		assertArrayEquals("drawing order", expected, actual);
+
+		BitSet selection = new BitSet();
+		Figure previous = null;
+		for (int rank = 0; rank < expected.length; rank++)
+		{
+			Figure figure = drawing.getFigure(figures[expected[rank]].getId());
+			assertEquals("rank of figure " + expected[rank], rank,
+			             drawing.indexOf(figure));
+			assertTrue("depth of figure " + expected[rank],
+			           (previous == null) || (previous.depth < figure.depth));
+			if (figure.isSelected())
+			{
+				selection.set(rank);
+			}
+			previous = figure;
+		}
+		assertEquals("selection index", selection, drawing.selectionIndex);
+	}
+}
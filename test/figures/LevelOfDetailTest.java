@@ -0,0 +1,83 @@
+package figures;
+
+import static utils.Assert.assertEquals;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Tests du dessin des petites figures par des points
+ * ({@link LevelOfDetail.Painter}) : la dernière figure dessinée sur un pixel
+ * reste visible.
+ * @author davidroussel
+ */
+public class LevelOfDetailTest
+{
+	/**
+	 * L'image dans laquelle sont dessinées les figures
+	 */
+	private final BufferedImage image;
+
+	/**
+	 * Le dessinateur des figures dans l'image
+	 */
+	private final LevelOfDetail.Painter painter;
+
+	/**
+	 * Constructeur : dessinateur d'une image de 10 x 10 pixels
+	 */
+	public LevelOfDetailTest()
+	{
+		image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2D = image.createGraphics();
+		g2D.setClip(0, 0, image.getWidth(), image.getHeight());
+		painter = new LevelOfDetail().painter(g2D, null);
+	}
+
+	/**
+	 * La dernière des figures dessinées par un point sur un même pixel est
+	 * visible
+	 */
+	public void testLastPointWins()
+	{
+		painter.accept(rectangle(5.1, 5.1, 0.5, Color.red));
+		assertEquals("first", Color.red.getRGB(), image.getRGB(5, 5));
+		painter.accept(rectangle(5.2, 5.2, 0.5, Color.blue));
+		assertEquals("second", Color.blue.getRGB(), image.getRGB(5, 5));
+		painter.accept(rectangle(5.3, 5.3, 0.5, Color.red));
+		assertEquals("third", Color.red.getRGB(), image.getRGB(5, 5));
+	}
+
+	/**
+	 * Un point de la même couleur qu'un point recouvert par une figure
+	 * dessinée normalement est redessiné au dessus de celle-ci
+	 */
+	public void testPointAboveLargerFigure()
+	{
+		painter.accept(rectangle(5.1, 5.1, 0.5, Color.red));
+		painter.accept(rectangle(0, 0, 10, Color.green));
+		assertEquals("covered", Color.green.getRGB(), image.getRGB(5, 5));
+		painter.accept(rectangle(5.2, 5.2, 0.5, Color.red));
+		assertEquals("redrawn", Color.red.getRGB(), image.getRGB(5, 5));
+	}
+
+	/**
+	 * Carré rempli sans bordure
+	 * @param x l'abscisse du carré
+	 * @param y l'ordonnée du carré
+	 * @param side le côté du carré
+	 * @param fill la couleur du carré
+	 * @return le carré
+	 */
+	private static Figure rectangle(double x, double y, double side, Color fill)
+	{
+		return new Rectangle(new BasicStroke(),
+		                     null,
+		                     fill,
+		                     new Point2D.Double(x, y),
+		                     new Point2D.Double(x + side, y + side));
+	}
+}
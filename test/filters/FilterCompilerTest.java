@@ -0,0 +1,199 @@
+package filters;
+
+import static utils.Assert.assertEquals;
+import static utils.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+import figures.AttributeIndex;
+import figures.Drawing;
+import figures.Figure;
+import figures.enums.FigureType;
+import figures.enums.LineType;
+
+/**
+ * Tests du compilateur de filtres ({@link FilterCompiler}) : le prédicat
+ * compilé est équivalent à la conjonction des filtres, et les filtres y sont
+ * testés du plus sélectif au moins sélectif en s'arrêtant au premier filtre
+ * non vérifié.
+ * @author davidroussel
+ */
+public class FilterCompilerTest
+{
+	/**
+	 * Nombre de figures
+	 */
+	private static final int Count = 40;
+
+	/**
+	 * Les couleurs utilisées par les figures (null : pas de couleur)
+	 */
+	private static final Paint[] Colors = {
+		Color.red, Color.green, Color.blue, null
+	};
+
+	/**
+	 * Filtre de test de résultat constant, qui compte ses évaluations
+	 */
+	private static class CountingFilter extends FigureFilter<Boolean>
+	{
+		/**
+		 * Ensemble de rangs fourni lors d'une évaluation sur un index
+		 */
+		private final BitSet selected;
+
+		/**
+		 * Nombre d'appels à {@link #test(Figure)}
+		 */
+		private int tests;
+
+		/**
+		 * Constructeur
+		 * @param result le résultat du test de chaque figure
+		 * @param selected l'ensemble de rangs fourni par
+		 * {@link #select(AttributeIndex)} (ou null)
+		 */
+		public CountingFilter(boolean result, BitSet selected)
+		{
+			super(Boolean.valueOf(result));
+			this.selected = selected;
+		}
+
+		@Override
+		public boolean test(Figure f)
+		{
+			tests++;
+			return element.booleanValue();
+		}
+
+		@Override
+		public BitSet select(AttributeIndex index)
+		{
+			return selected;
+		}
+	}
+
+	/**
+	 * Les figures filtrées
+	 */
+	private final List<Figure> figures;
+
+	/**
+	 * Constructeur : figures de types, de traits et de couleurs variés
+	 */
+	public FilterCompilerTest()
+	{
+		Drawing drawing = new Drawing();
+		for (int i = 0; i < Count; i++)
+		{
+			drawing.setFigureType(FigureType.fromInteger(i % 4));
+			drawing.setEdgeType(LineType.fromInteger(i % LineType.NbLineTypes));
+			drawing.setFillPaint(Colors[i % Colors.length]);
+			drawing.setEdgePaint(Colors[(i / 3) % 3]);
+			Figure figure =
+			    drawing.initiateFigure(new Point2D.Double(10 * i, 5 * i));
+			figure.setLastPoint(new Point2D.Double(10 * i + 20, 5 * i + 15));
+			figure.normalize();
+			drawing.update(figure);
+		}
+		figures = drawing.snapshot();
+	}
+
+	/**
+	 * Le prédicat compilé (avec ou sans index) vérifie les mêmes figures que
+	 * l'ensemble des filtres testés un à un
+	 */
+	public void testMatchesFilters()
+	{
+		FigureFilters<FigureType> shapes = new FigureFilters<FigureType>();
+		shapes.add(new ShapeFilter(FigureType.ELLIPSE));
+		shapes.add(new ShapeFilter(FigureType.RECTANGLE));
+		FigureFilters<LineType> lines = new FigureFilters<LineType>();
+		lines.add(new LineFilter(LineType.SOLID));
+		lines.add(new LineFilter(LineType.DASHED));
+		List<List<FigureFilter<?>>> cases = Arrays.asList(
+		    Arrays.<FigureFilter<?>> asList(),
+		    Arrays.<FigureFilter<?>> asList(shapes),
+		    Arrays.<FigureFilter<?>> asList(shapes, lines),
+		    Arrays.<FigureFilter<?>> asList(lines,
+		                                    new FillColorFilter(Color.red)),
+		    Arrays.<FigureFilter<?>> asList(new EdgeColorFilter(Color.green),
+		                                    shapes,
+		                                    new FillColorFilter(Color.blue)),
+		    Arrays.<FigureFilter<?>> asList(new FigureFilters<FigureType>()),
+		    Arrays.<FigureFilter<?>> asList(new FillColorFilter(null)));
+		for (List<FigureFilter<?>> filters : cases)
+		{
+			Predicate<Figure> sampled =
+			    FilterCompiler.compile(filters, null, figures);
+			Predicate<Figure> indexed =
+			    FilterCompiler.compile(filters, new AttributeIndex(), figures);
+			for (Figure figure : figures)
+			{
+				boolean expected = true;
+				for (FigureFilter<?> filter : filters)
+				{
+					expected &= filter.test(figure);
+				}
+				assertEquals(filters + " sampled", Boolean.valueOf(expected),
+				             Boolean.valueOf(sampled.test(figure)));
+				assertEquals(filters + " indexed", Boolean.valueOf(expected),
+				             Boolean.valueOf(indexed.test(figure)));
+			}
+		}
+	}
+
+	/**
+	 * Sans index, le filtre le plus sélectif sur l'échantillon des figures
+	 * est testé en premier et les suivants ne sont pas testés s'il n'est pas
+	 * vérifié
+	 */
+	public void testSampledOrderAndShortCircuit()
+	{
+		CountingFilter all = new CountingFilter(true, null);
+		CountingFilter none = new CountingFilter(false, null);
+		Predicate<Figure> predicate =
+		    FilterCompiler.compile(Arrays.<FigureFilter<?>> asList(all, none),
+		                           null,
+		                           figures);
+		assertTrue("sampled", (all.tests > 0) && (none.tests > 0)
+		    && (all.tests <= FilterCompiler.SampleSize));
+		all.tests = 0;
+		none.tests = 0;
+
+		assertTrue("rejected", !predicate.test(figures.get(0)));
+		assertEquals("most selective tested", 1, none.tests);
+		assertEquals("short circuit", 0, all.tests);
+	}
+
+	/**
+	 * Avec un index, la sélectivité des filtres évaluables sur l'index est
+	 * mesurée sur l'index (sans tester les figures)
+	 */
+	public void testIndexedOrder()
+	{
+		BitSet few = new BitSet();
+		few.set(0);
+		BitSet many = new BitSet();
+		many.set(0, Count);
+		// Sélectivités mesurées sur l'index inverses des résultats des tests
+		CountingFilter all = new CountingFilter(true, few);
+		CountingFilter none = new CountingFilter(false, many);
+		Predicate<Figure> predicate =
+		    FilterCompiler.compile(Arrays.<FigureFilter<?>> asList(none, all),
+		                           new AttributeIndex(),
+		                           figures);
+		assertEquals("not sampled", 0, all.tests + none.tests);
+
+		assertTrue("rejected", !predicate.test(figures.get(0)));
+		assertEquals("most selective on index tested first", 1, all.tests);
+		assertEquals("then", 1, none.tests);
+	}
+
+}
@@ -0,0 +1,222 @@
+package history;
+
+import static utils.Assert.assertEquals;
+import static utils.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.enums.FigureType;
+
+/**
+ * Tests du gestionnaire d'historique {@link HistoryManager} sur un dessin :
+ * annulation et rétablissement d'ajouts, de suppressions et de changements
+ * de style dans les modes {@link HistoryMode#DELTA} et
+ * {@link HistoryMode#SNAPSHOT}, puis oubli des étapes les plus anciennes
+ * lorsque le budget mémoire est dépassé.
+ * @author davidroussel
+ */
+public class HistoryManagerTest
+{
+	/**
+	 * Le dessin dont l'historique est enregistré
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * Constructeur : dessin vide de rectangles
+	 */
+	public HistoryManagerTest()
+	{
+		drawing = new Drawing();
+		drawing.setFigureType(FigureType.RECTANGLE);
+	}
+
+	/**
+	 * Annulations et rétablissements en mode {@link HistoryMode#DELTA}
+	 */
+	public void testDeltaUndoRedo()
+	{
+		HistoryManager<Figure> history =
+		    new HistoryManager<Figure>(drawing, 100, HistoryMode.DELTA);
+		assertEquals("mode", HistoryMode.DELTA, history.getMode());
+		undoRedo(history);
+	}
+
+	/**
+	 * Annulations et rétablissements en mode {@link HistoryMode#SNAPSHOT}
+	 */
+	public void testSnapshotUndoRedo()
+	{
+		HistoryManager<Figure> history =
+		    new HistoryManager<Figure>(drawing, 100, HistoryMode.SNAPSHOT);
+		assertEquals("mode", HistoryMode.SNAPSHOT, history.getMode());
+		undoRedo(history);
+	}
+
+	/**
+	 * Le nombre maximum d'étapes est respecté
+	 */
+	public void testSizeLimit()
+	{
+		HistoryManager<Figure> history =
+		    new HistoryManager<Figure>(drawing, 3, HistoryMode.DELTA);
+		for (int i = 0; i < 5; i++)
+		{
+			history.record();
+			add(i);
+		}
+		assertEquals("undo size", 3, history.undoSize());
+		for (int i = 0; i < 5; i++)
+		{
+			history.undo();
+		}
+		assertEquals("figures after undos", 2, drawing.stream().count());
+	}
+
+	/**
+	 * Le dépassement du budget mémoire oublie les étapes les plus anciennes
+	 * en conservant la dernière, dans les deux modes
+	 */
+	public void testBudgetTrim()
+	{
+		for (HistoryMode mode : HistoryMode.values())
+		{
+			Drawing model = new Drawing();
+			model.setFigureType(FigureType.RECTANGLE);
+			HistoryManager<Figure> history =
+			    new HistoryManager<Figure>(model, 100, mode);
+			for (int i = 0; i < 20; i++)
+			{
+				history.record();
+				add(model, i);
+			}
+			assertEquals(mode + " undo size", 20, history.undoSize());
+			long usage = history.memoryUsage();
+			assertTrue(mode + " memory usage " + usage, usage > 0);
+
+			long budget = usage / 2;
+			history.setMemoryBudget(budget);
+			assertEquals(mode + " budget", budget, history.getMemoryBudget());
+			int kept = history.undoSize();
+			assertTrue(mode + " trimmed size " + kept,
+			           (kept >= 1) && (kept < 20));
+			assertTrue(mode + " trimmed usage " + history.memoryUsage(),
+			           history.memoryUsage() <= budget);
+
+			// La dernière étape est conservée même si elle dépasse le budget
+			history.setMemoryBudget(1);
+			assertEquals(mode + " last step kept", 1, history.undoSize());
+			history.undo();
+			assertEquals(mode + " figures after undo", 19,
+			             model.stream().count());
+			assertEquals(mode + " redo dropped", 0, history.redoSize());
+		}
+	}
+
+	/**
+	 * Scénario commun aux deux modes : ajouts, suppression et changement de
+	 * style, annulés puis rétablis
+	 * @param history le gestionnaire d'historique du dessin
+	 */
+	private void undoRedo(HistoryManager<Figure> history)
+	{
+		for (int i = 0; i < 3; i++)
+		{
+			history.record();
+			add(i);
+		}
+		List<Long> added = ids();
+		assertEquals("figures", 3, added.size());
+
+		history.record();
+		drawing.select(drawing.getFigure(added.get(1).longValue()), true);
+		drawing.deleteSelected();
+		assertEquals("after delete",
+		             Arrays.asList(added.get(0), added.get(2)),
+		             ids());
+
+		history.record();
+		drawing.select(drawing.getFigure(added.get(0).longValue()), true);
+		drawing.applyStyleToSelected(Color.blue, Color.green, null);
+		assertEquals("fill after style", Color.blue, fill(added.get(0)));
+
+		history.undo();
+		assertEquals("fill after undo", Color.red, fill(added.get(0)));
+		history.undo();
+		assertEquals("after undo delete", added, ids());
+		history.undo();
+		assertEquals("after undo add", added.subList(0, 2), ids());
+		assertEquals("undo size", 2, history.undoSize());
+		assertEquals("redo size", 3, history.redoSize());
+
+		history.redo();
+		assertEquals("after redo add", added, ids());
+		history.redo();
+		assertEquals("after redo delete",
+		             Arrays.asList(added.get(0), added.get(2)),
+		             ids());
+		history.redo();
+		assertEquals("fill after redo", Color.blue, fill(added.get(0)));
+		assertEquals("redo size", 0, history.redoSize());
+
+		// Une nouvelle étape modifiant le dessin abandonne les étapes annulées
+		history.undo();
+		history.record();
+		add(3);
+		history.redo();
+		assertEquals("redo size after new step", 0, history.redoSize());
+		assertEquals("fill kept", Color.red, fill(added.get(0)));
+	}
+
+	/**
+	 * Ajout d'un rectangle rouge au dessin testé
+	 * @param i le numéro du rectangle (qui détermine sa position)
+	 */
+	private void add(int i)
+	{
+		add(drawing, i);
+	}
+
+	/**
+	 * Ajout d'un rectangle rouge à un dessin
+	 * @param model le dessin
+	 * @param i le numéro du rectangle (qui détermine sa position)
+	 */
+	private static void add(Drawing model, int i)
+	{
+		model.setFillPaint(Color.red);
+		Figure figure = model.initiateFigure(new Point2D.Double(10 * i,
+		                                                        10 * i));
+		figure.setLastPoint(new Point2D.Double(10 * i + 20, 10 * i + 20));
+		figure.normalize();
+		model.update(figure);
+	}
+
+	/**
+	 * Identifiants des figures du dessin testé
+	 * @return les identifiants des figures dans l'ordre de dessin
+	 */
+	private List<Long> ids()
+	{
+		return drawing.stream()
+		    .map((Figure figure) -> Long.valueOf(figure.getId()))
+		    .collect(Collectors.toList());
+	}
+
+	/**
+	 * Couleur de remplissage d'une figure du dessin testé
+	 * @param id l'identifiant de la figure
+	 * @return la couleur de remplissage de la figure
+	 */
+	private Paint fill(Long id)
+	{
+		return drawing.getFigure(id.longValue()).getFillPaint();
+	}
+}
@@ -0,0 +1,116 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Vérifications utilisées par les tests (voir TestRunner) : chaque
+ * vérification qui échoue lève une {@link AssertionError} décrivant la valeur
+ * attendue et la valeur obtenue.
+ * @author davidroussel
+ */
+public final class Assert
+{
+	/**
+	 * Constructeur privé : classe utilitaire
+	 */
+	private Assert()
+	{
+	}
+
+	/**
+	 * Échec inconditionnel
+	 * @param message le message d'erreur
+	 * @throws AssertionError toujours
+	 */
+	public static void fail(String message) throws AssertionError
+	{
+		throw new AssertionError(message);
+	}
+
+	/**
+	 * Vérification d'une condition
+	 * @param message le message d'erreur
+	 * @param condition la condition qui doit être vraie
+	 * @throws AssertionError si la condition est fausse
+	 */
+	public static void assertTrue(String message, boolean condition)
+	    throws AssertionError
+	{
+		if (!condition)
+		{
+			fail(message);
+		}
+	}
+
+	/**
+	 * Vérification de l'égalité de deux objets ({@link Object#equals(Object)})
+	 * @param message le message d'erreur
+	 * @param expected la valeur attendue
+	 * @param actual la valeur obtenue
+	 * @throws AssertionError si les deux valeurs sont différentes
+	 */
+	public static void assertEquals(String message,
+	                                Object expected,
+	                                Object actual) throws AssertionError
+	{
+		if (!Objects.equals(expected, actual))
+		{
+			fail(message + " : expected <" + expected + "> but was <" + actual
+			    + ">");
+		}
+	}
+
+	/**
+	 * Vérification de l'égalité de deux entiers
+	 * @param message le message d'erreur
+	 * @param expected la valeur attendue
+	 * @param actual la valeur obtenue
+	 * @throws AssertionError si les deux valeurs sont différentes
+	 */
+	public static void assertEquals(String message, long expected, long actual)
+	    throws AssertionError
+	{
+		if (expected != actual)
+		{
+			fail(message + " : expected <" + expected + "> but was <" + actual
+			    + ">");
+		}
+	}
+
+	/**
+	 * Vérification de l'égalité de deux tableaux d'entiers
+	 * @param message le message d'erreur
+	 * @param expected les valeurs attendues
+	 * @param actual les valeurs obtenues
+	 * @throws AssertionError si les deux tableaux sont différents
+	 */
+	public static void assertArrayEquals(String message,
+	                                     int[] expected,
+	                                     int[] actual) throws AssertionError
+	{
+		if (!Arrays.equals(expected, actual))
+		{
+			fail(message + " : expected " + Arrays.toString(expected)
+			    + " but was " + Arrays.toString(actual));
+		}
+	}
+
+	/**
+	 * Vérification de l'identité de deux objets
+	 * @param message le message d'erreur
+	 * @param expected l'objet attendu
+	 * @param actual l'objet obtenu
+	 * @throws AssertionError si les deux références sont différentes
+	 */
+	public static void assertSame(String message,
+	                              Object expected,
+	                              Object actual) throws AssertionError
+	{
+		if (expected != actual)
+		{
+			fail(message + " : expected same <" + expected + "> but was <"
+			    + actual + ">");
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package utils;
+
+import static utils.Assert.assertEquals;
+import static utils.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests de la liste persistante {@link PersistentVector} : insertions et
+ * retraits comparés à une {@link ArrayList}, conservation des versions,
+ * éléments différés et estimation des noeuds partagés entre versions.
+ * @author davidroussel
+ */
+public class PersistentVectorTest
+{
+	/**
+	 * Une suite aléatoire d'insertions, de retraits et de remplacements
+	 * donne la même liste qu'avec une {@link ArrayList}
+	 */
+	public void testInsertRemove()
+	{
+		Random random = new Random(1);
+		PersistentVector<Integer> vector = PersistentVector.empty();
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i = 0; i < 5000; i++)
+		{
+			int operation = random.nextInt(4);
+			if ((operation < 2) || expected.isEmpty())
+			{
+				int index = random.nextInt(expected.size() + 1);
+				vector = vector.plus(index, Integer.valueOf(i));
+				expected.add(index, Integer.valueOf(i));
+			}
+			else if (operation == 2)
+			{
+				int index = random.nextInt(expected.size());
+				vector = vector.minus(index);
+				expected.remove(index);
+			}
+			else
+			{
+				int index = random.nextInt(expected.size());
+				vector = vector.with(index, Integer.valueOf(-i));
+				expected.set(index, Integer.valueOf(-i));
+			}
+		}
+		assertEquals("size", expected.size(), vector.size());
+		assertEquals("elements", expected, new ArrayList<Integer>(vector));
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertEquals("element " + i, expected.get(i), vector.get(i));
+		}
+	}
+
+	/**
+	 * Les modifications renvoient de nouvelles versions et ne modifient pas
+	 * la version d'origine
+	 */
+	public void testPersistence()
+	{
+		PersistentVector<String> original = PersistentVector.of("a", "b", "c");
+		PersistentVector<String> inserted = original.plus(1, "x");
+		PersistentVector<String> removed = original.minus(0);
+		PersistentVector<String> replaced = original.with(2, "z");
+		assertEquals("original", Arrays.asList("a", "b", "c"), original);
+		assertEquals("inserted", Arrays.asList("a", "x", "b", "c"), inserted);
+		assertEquals("removed", Arrays.asList("b", "c"), removed);
+		assertEquals("replaced", Arrays.asList("a", "b", "z"), replaced);
+	}
+
+	/**
+	 * Les éléments différés ne sont obtenus que lorsqu'ils sont lus, et
+	 * {@link PersistentVector#forEachPresent} ne les obtient pas
+	 */
+	public void testLazy()
+	{
+		int[] loads = new int[100];
+		String[] elements = new String[loads.length];
+		PersistentVector<String> vector =
+		    PersistentVector.lazy(loads.length, (int i) -> {
+			    loads[i]++;
+			    if (elements[i] == null)
+			    {
+				    elements[i] = "e" + i;
+			    }
+			    return elements[i];
+		    });
+		assertEquals("size", loads.length, vector.size());
+		assertEquals("element 42", "e42", vector.get(42));
+		assertEquals("loads of 42", 1, loads[42]);
+		assertEquals("loads of 41", 0, loads[41]);
+
+		vector = vector.with(7, "x").minus(0);
+		List<String> present = new ArrayList<String>();
+		int deferred = vector.forEachPresent(present::add);
+		assertEquals("present", Arrays.asList("x"), present);
+		assertEquals("deferred", loads.length - 2, deferred);
+		int total = 0;
+		for (int count : loads)
+		{
+			total += count;
+		}
+		assertEquals("loads", 1, total);
+
+		assertEquals("element after removal", "e2", vector.get(1));
+		assertEquals("loads of 2", 1, loads[2]);
+	}
+
+	/**
+	 * Deux versions successives ne diffèrent que par les noeuds du chemin
+	 * modifié
+	 */
+	public void testUnsharedNodes()
+	{
+		Integer[] elements = new Integer[10000];
+		for (int i = 0; i < elements.length; i++)
+		{
+			elements[i] = Integer.valueOf(i);
+		}
+		PersistentVector<Integer> original = PersistentVector.of(elements);
+		assertEquals("same version", 0, original.unsharedNodes(original));
+		assertEquals("no version", elements.length,
+		             original.unsharedNodes(null));
+		assertEquals("unrelated version", elements.length,
+		             original.unsharedNodes(PersistentVector.of(elements)));
+
+		PersistentVector<Integer> version = original;
+		Random random = new Random(2);
+		for (int i = 0; i < 10; i++)
+		{
+			PersistentVector<Integer> next = (random.nextBoolean()
+			    ? version.plus(random.nextInt(version.size()), -i)
+			    : version.minus(random.nextInt(version.size())));
+			int unshared = next.unsharedNodes(version);
+			assertTrue("unshared nodes " + unshared,
+			           (unshared > 0) && (unshared < 60));
+			version = next;
+		}
+	}
+}
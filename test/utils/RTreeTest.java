@@ -0,0 +1,189 @@
+package utils;
+
+import static utils.Assert.assertEquals;
+import static utils.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests de l'index spatial {@link RTree} : construction par tri
+ * (Sort-Tile-Recursive) d'éléments différés, recherches comparées à un
+ * parcours exhaustif, puis modifications de l'index ainsi construit.
+ * @author davidroussel
+ */
+public class RTreeTest
+{
+	/**
+	 * Nombre d'éléments indexés
+	 */
+	private static final int Count = 5000;
+
+	/**
+	 * Les éléments (obtenus à la demande)
+	 */
+	private final Integer[] items;
+
+	/**
+	 * Indices des éléments obtenus par l'index (qui peut obtenir un même
+	 * élément à chaque recherche)
+	 */
+	private final BitSet loaded;
+
+	/**
+	 * Les rectangles englobants des éléments
+	 */
+	private final Rectangle2D[] bounds;
+
+	/**
+	 * L'index testé
+	 */
+	private final RTree<Integer> tree;
+
+	/**
+	 * Constructeur : index de rectangles aléatoires chargé par
+	 * {@link RTree#load}
+	 */
+	public RTreeTest()
+	{
+		Random random = new Random(3);
+		items = new Integer[Count];
+		bounds = new Rectangle2D[Count];
+		double[] coordinates = new double[4 * Count];
+		for (int i = 0; i < Count; i++)
+		{
+			double x = random.nextDouble() * 1000.0;
+			double y = random.nextDouble() * 1000.0;
+			bounds[i] = new Rectangle2D.Double(x,
+			                                   y,
+			                                   random.nextDouble() * 20.0,
+			                                   random.nextDouble() * 20.0);
+			coordinates[4 * i] = bounds[i].getMinX();
+			coordinates[(4 * i) + 1] = bounds[i].getMinY();
+			coordinates[(4 * i) + 2] = bounds[i].getMaxX();
+			coordinates[(4 * i) + 3] = bounds[i].getMaxY();
+		}
+		loaded = new BitSet(Count);
+		tree = new RTree<Integer>();
+		tree.load(Count, coordinates, (int i) -> {
+			loaded.set(i);
+			return item(i);
+		}, (Integer item) -> item.intValue());
+	}
+
+	/**
+	 * Les recherches après chargement trouvent exactement les éléments dont
+	 * le rectangle englobant intersecte la zone recherchée, et n'obtiennent
+	 * que les éléments atteints
+	 */
+	public void testLoadAndQuery()
+	{
+		assertEquals("size", Count, tree.size());
+		assertEquals("loads after load", 0, loaded.cardinality());
+		Random random = new Random(4);
+		for (int q = 0; q < 200; q++)
+		{
+			Rectangle2D area = new Rectangle2D.Double(random.nextDouble() * 1000.0,
+			                                          random.nextDouble() * 1000.0,
+			                                          random.nextDouble() * 50.0,
+			                                          random.nextDouble() * 50.0);
+			assertSearch(area);
+		}
+		assertTrue("loads " + loaded.cardinality(),
+		           loaded.cardinality() < Count);
+
+		Point2D p = new Point2D.Double(500.0, 500.0);
+		Set<Integer> found = new HashSet<Integer>();
+		tree.search(p, found::add);
+		Set<Integer> expected = new HashSet<Integer>();
+		for (int i = 0; i < Count; i++)
+		{
+			if (bounds[i].contains(p))
+			{
+				expected.add(Integer.valueOf(i));
+			}
+		}
+		assertEquals("point search", expected, found);
+	}
+
+	/**
+	 * Les éléments d'un index chargé peuvent être retirés, déplacés et
+	 * complétés
+	 */
+	public void testUpdateAfterLoad()
+	{
+		Random random = new Random(5);
+		for (int i = 0; i < Count; i += 3)
+		{
+			Integer item = item(i);
+			if (random.nextBoolean())
+			{
+				assertTrue("remove " + i, tree.remove(item));
+				bounds[i] = null;
+			}
+			else
+			{
+				bounds[i] = new Rectangle2D.Double(random.nextDouble() * 1000.0,
+				                                   random.nextDouble() * 1000.0,
+				                                   5.0,
+				                                   5.0);
+				tree.put(item, bounds[i]);
+			}
+		}
+		int size = 0;
+		for (Rectangle2D rectangle : bounds)
+		{
+			if (rectangle != null)
+			{
+				size++;
+			}
+		}
+		assertEquals("size", size, tree.size());
+		for (int q = 0; q < 200; q++)
+		{
+			assertSearch(new Rectangle2D.Double(random.nextDouble() * 1000.0,
+			                                    random.nextDouble() * 1000.0,
+			                                    random.nextDouble() * 50.0,
+			                                    random.nextDouble() * 50.0));
+		}
+		assertSearch(new Rectangle2D.Double(-10.0, -10.0, 2000.0, 2000.0));
+	}
+
+	/**
+	 * Élément d'indice donné : les éléments sont comparés par identité dans
+	 * l'index et doivent donc être toujours les mêmes instances
+	 * @param i l'indice de l'élément
+	 * @return l'élément d'indice i
+	 */
+	private Integer item(int i)
+	{
+		if (items[i] == null)
+		{
+			items[i] = Integer.valueOf(i);
+		}
+		return items[i];
+	}
+
+	/**
+	 * Vérification d'une recherche par un parcours exhaustif
+	 * @param area la zone recherchée
+	 */
+	private void assertSearch(Rectangle2D area)
+	{
+		Set<Integer> found = new HashSet<Integer>();
+		tree.search(area, found::add);
+		Set<Integer> expected = new HashSet<Integer>();
+		for (int i = 0; i < Count; i++)
+		{
+			if ((bounds[i] != null) && bounds[i].intersects(area))
+			{
+				expected.add(Integer.valueOf(i));
+			}
+		}
+		assertEquals("search " + area, expected, found);
+	}
+}